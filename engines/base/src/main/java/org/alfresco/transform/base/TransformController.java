@@ -280,7 +280,15 @@ public class TransformController
         @RequestParam(value = "timeout", required = false) Long timeout,
         @RequestParam(value = "replyToQueue", required = false) Destination replyToQueue)
     {
-        TransformReply reply = transformHandler.handleMessageRequest(request, timeout, replyToQueue, getProbeTransform());
+        return transform(request, timeout, null, replyToQueue);
+    }
+
+    // Used by the QueueTransformService, so that the time a request has been waiting on the queue is known.
+    public ResponseEntity<TransformReply> transform(TransformRequest request, Long timeout, Long sentTime,
+        Destination replyToQueue)
+    {
+        TransformReply reply = transformHandler.handleMessageRequest(request, timeout, sentTime, replyToQueue,
+            getProbeTransform());
         return new ResponseEntity<>(reply, HttpStatus.valueOf(reply.getStatus()));
     }
 
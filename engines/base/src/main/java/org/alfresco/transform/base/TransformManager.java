@@ -44,6 +44,37 @@ public interface TransformManager
      */
     String getRequestId();
 
+    /**
+     * @return the time (milliseconds since the epoch) by which the request must be completed, or {@code null} if
+     *         there is no deadline. It is the earliest of the {@code timeout} transform option or request parameter
+     *         (measured from when the request was sent, so includes any time on a queue) and the deadline in the
+     *         request's {@code InternalContext}. The default implementation has no deadline.
+     */
+    default Long getDeadline()
+    {
+        return null;
+    }
+
+    /**
+     * @return the number of milliseconds (at least 1) before the {@link #getDeadline() deadline}, or {@code null} if
+     *         there is no deadline. Used as the timeout of external commands.
+     */
+    default Long getRemainingTime()
+    {
+        return null;
+    }
+
+    /**
+     * The base t-engine checks the deadline before each stage of a request and interrupts the thread running a
+     * {@link CustomTransformer} if it passes. Once the output is complete it is returned, even if the deadline has
+     * since passed. Long-running {@link CustomTransformer}s that do not respond to interrupts may call this method
+     * periodically so that they stop early.
+     * @throws TransformException with a {@code REQUEST_TIMEOUT} status if the deadline has passed.
+     */
+    default void checkDeadline() throws TransformException
+    {
+    }
+
     /**
      * Allows a {@link CustomTransformer} to use a local source {@code File} rather than the supplied {@code InputStream}.
      * The file will be deleted once the request is completed. To avoid creating extra files, if a File has already
@@ -63,6 +94,16 @@ public interface TransformManager
      */
     File createTargetFile() throws IllegalStateException;
 
+    /**
+     * Allows a {@link CustomTransformer} to indicate that the target only contains the start of the transformed
+     * content, because a limit such as the {@code maxChars} transform option was reached. Synchronous (http)
+     * responses then include an {@code X-Alfresco-Transform-Truncated: true} header and replies to requests on
+     * queues set {@code truncated} in their {@code InternalContext}. The default implementation ignores the call.
+     */
+    default void setTargetTruncated()
+    {
+    }
+
     /**
      * Allows a single transform request to have multiple transform responses. For example, images from a video at
      * different time offsets or different pages of a document. Following a call to this method a transform response is
@@ -87,4 +128,15 @@ public interface TransformManager
     // the logging to include the index. We may also wish to modify the client data or just make the index available
     // in the message.
     OutputStream respondWithFragment(Integer index, boolean finished) throws IOException;
+
+    /**
+     * @return {@code true} if {@link #respondWithFragment(Integer, boolean)} may be called, which is only the case
+     *         for requests on queues. Allows a {@link CustomTransformer} to reject a request for fragments before
+     *         doing any work. The default implementation returns {@code true}, leaving it to
+     *         {@link #respondWithFragment(Integer, boolean)} to throw an exception if fragments are not supported.
+     */
+    default boolean canRespondWithFragments()
+    {
+        return true;
+    }
 }
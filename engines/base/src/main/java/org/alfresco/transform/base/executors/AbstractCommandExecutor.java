@@ -32,11 +32,33 @@ import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 
 import java.io.File;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.alfresco.transform.base.CustomTransformer;
+import org.alfresco.transform.base.logging.LogEntry;
 import org.alfresco.transform.exceptions.TransformException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 
-public abstract class AbstractCommandExecutor implements CommandExecutor
+public abstract class AbstractCommandExecutor implements CommandExecutor, InitializingBean
 {
+    private static final Logger logger = LoggerFactory.getLogger(AbstractCommandExecutor.class);
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+    @Autowired(required = false)
+    private ProcessLimitsConfig processLimitsConfig;
+    // Off by default, as the meters are tagged by transformer, source and target, so there may be a lot of them
+    @Value("${transform.engine.metrics.commandPercentiles:false}")
+    private boolean publishPercentileHistograms;
+
     protected RuntimeExec transformCommand = createTransformCommand();
     protected RuntimeExec checkCommand = createCheckCommand();
 
@@ -44,11 +66,36 @@ public abstract class AbstractCommandExecutor implements CommandExecutor
 
     protected abstract RuntimeExec createCheckCommand();
 
+    /**
+     * Applies any {@link ProcessLimits} configured for this transformer to the transform command. Called after any
+     * {@code @PostConstruct} methods of subclasses, which often recreate the commands once properties are injected.
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        ProcessLimits processLimits = getProcessLimits();
+        if (processLimits != null)
+        {
+            logger.info("{} external commands have {}", getName(), processLimits);
+            transformCommand.setProcessLimits(processLimits);
+        }
+    }
+
+    /**
+     * @return the {@link ProcessLimits} configured for this transformer, or {@code null} if there are none.
+     */
+    protected ProcessLimits getProcessLimits()
+    {
+        ProcessLimits processLimits = processLimitsConfig == null ? null : processLimitsConfig.getLimits(getName());
+        return processLimits == null || processLimits.isEmpty() ? null : processLimits;
+    }
+
     @Override
     public void run(Map<String, String> properties, File targetFile, Long timeout)
     {
         timeout = timeout != null && timeout > 0 ? timeout : 0;
         final ExecutionResult result = transformCommand.execute(properties, timeout);
+        recordResourceUsage(result.getResourceUsage(), properties.get("source"), targetFile);
 
         if (result.getExitValue() != 0 && result.getStdErr() != null && result.getStdErr().length() > 0)
         {
@@ -60,4 +107,84 @@ public abstract class AbstractCommandExecutor implements CommandExecutor
             throw new TransformException(INTERNAL_SERVER_ERROR, "Transformer failed to create an output file");
         }
     }
+
+    private void recordResourceUsage(ResourceUsage usage, String source, File targetFile)
+    {
+        if (usage == null)
+        {
+            return;
+        }
+
+        LogEntry.addCommandResources(usage.getCpuTimeMs(), usage.getPeakRssBytes(), usage.getBytesRead(),
+            usage.getBytesWritten());
+
+        if (meterRegistry != null)
+        {
+            Tags tags = Tags.of(
+                "transformer", getName(),
+                "source", getExtension(source),
+                "target", getExtension(targetFile.getName()));
+            recordTime("transform.command.duration", "Wall clock time of external transform commands",
+                usage.getWallTimeMs(), tags);
+            recordTime("transform.command.cpu", "CPU time of external transform commands and their child processes",
+                usage.getCpuTimeMs(), tags);
+            recordBytes("transform.command.memory.peak", "Peak resident memory of external transform commands",
+                usage.getPeakRssBytes(), tags);
+            recordBytes("transform.command.io.read", "Bytes read by external transform commands",
+                usage.getBytesRead(), tags);
+            recordBytes("transform.command.io.written", "Bytes written by external transform commands",
+                usage.getBytesWritten(), tags);
+        }
+    }
+
+    // Values of -1 are not known on this platform
+    private void recordTime(String name, String description, long ms, Tags tags)
+    {
+        if (ms >= 0)
+        {
+            Timer.builder(name)
+                 .description(description)
+                 .tags(tags)
+                 .publishPercentileHistogram(publishPercentileHistograms)
+                 .register(meterRegistry)
+                 .record(ms, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void recordBytes(String name, String description, long bytes, Tags tags)
+    {
+        if (bytes >= 0)
+        {
+            DistributionSummary.builder(name)
+                               .description(description)
+                               .baseUnit("bytes")
+                               .tags(tags)
+                               .publishPercentileHistogram(publishPercentileHistograms)
+                               .register(meterRegistry)
+                               .record(bytes);
+        }
+    }
+
+    private String getName()
+    {
+        return this instanceof CustomTransformer
+               ? ((CustomTransformer) this).getTransformerName()
+               : getClass().getSimpleName();
+    }
+
+    // The source may end with a page range such as "[0-1]"
+    private static String getExtension(String filename)
+    {
+        if (filename == null)
+        {
+            return "";
+        }
+        int bracket = filename.lastIndexOf('[');
+        if (bracket != -1 && filename.endsWith("]"))
+        {
+            filename = filename.substring(0, bracket);
+        }
+        int i = filename.lastIndexOf('.');
+        return i == -1 || filename.lastIndexOf(File.separatorChar) > i ? "" : filename.substring(i + 1);
+    }
 }
@@ -0,0 +1,236 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link RuntimeExec} command compiled once into literal text and {@code ${name}} variables, so that creating the
+ * command for each execution does not need to search every element for every property. The tokens of
+ * {@code SPLIT:} directives are cached, as the same options are often used again.
+ * <p>
+ * The result is the same as {@link RuntimeExec}'s original substitution, which replaces one property at a time. In
+ * the rare cases where the two could differ, such as property values that themselves contain {@code $} or
+ * <code>{</code>, or a command element that refers to the same variable twice, {@link #substitute} returns
+ * {@code null} so the caller can fall back to the original.
+ */
+final class CommandTemplate
+{
+    private static final String VAR_OPEN = "${";
+    private static final String VAR_CLOSE = "}";
+    private static final String DIRECTIVE_SPLIT = "SPLIT:";
+    private static final int MAX_CACHED_TOKENS = 256;
+    private static final int MAX_CACHED_STRING_LENGTH = 1024;
+
+    private static final Map<String, List<String>> tokenCache = Collections.synchronizedMap(
+        new LinkedHashMap<>(MAX_CACHED_TOKENS, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest)
+            {
+                return size() > MAX_CACHED_TOKENS;
+            }
+        });
+
+    private final String[] command;
+    private final Object[][] elements; // each part is a literal String or a Variable
+    private final boolean compiled;
+
+    private static final class Variable
+    {
+        private final String name;
+
+        private Variable(String name)
+        {
+            this.name = name;
+        }
+    }
+
+    private CommandTemplate(String[] command)
+    {
+        this.command = command;
+        elements = new Object[command.length][];
+        boolean compiled = true;
+        for (int i = 0; i < command.length && compiled; i++)
+        {
+            elements[i] = compile(command[i]);
+            compiled = elements[i] != null;
+        }
+        this.compiled = compiled;
+    }
+
+    static CommandTemplate compile(String[] command)
+    {
+        return new CommandTemplate(command);
+    }
+
+    /**
+     * @return {@code true} if this template was compiled from the supplied command array.
+     */
+    boolean isFor(String[] command)
+    {
+        return this.command == command;
+    }
+
+    // Returns null if the element contains a variable reference within a variable reference, or the same variable
+    // more than once. After replacing a variable, the original substitution continues searching one character
+    // later, so an empty value causes the next reference to the same variable to be skipped if it is adjacent.
+    private static Object[] compile(String element)
+    {
+        List<Object> parts = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        int start = 0;
+        for (int open = element.indexOf(VAR_OPEN); open != -1; open = element.indexOf(VAR_OPEN, start))
+        {
+            int close = element.indexOf(VAR_CLOSE, open + VAR_OPEN.length());
+            if (close == -1)
+            {
+                break;
+            }
+            String name = element.substring(open + VAR_OPEN.length(), close);
+            if (name.contains(VAR_OPEN) || !names.add(name))
+            {
+                return null;
+            }
+            if (open > start)
+            {
+                parts.add(element.substring(start, open));
+            }
+            parts.add(new Variable(name));
+            start = close + VAR_CLOSE.length();
+        }
+        if (start < element.length() || parts.isEmpty())
+        {
+            parts.add(element.substring(start));
+        }
+        return parts.toArray();
+    }
+
+    /**
+     * @param properties used in preference to the {@code defaultProperties}. May be the same map.
+     * @return the command with variables replaced by their values and {@code SPLIT:} directives tokenized, or
+     *         {@code null} if the result might differ from {@link RuntimeExec}'s original substitution.
+     */
+    String[] substitute(Map<String, String> properties, Map<String, String> defaultProperties)
+    {
+        if (!compiled || !isSafe(properties) || (properties != defaultProperties && !isSafe(defaultProperties)))
+        {
+            return null;
+        }
+
+        List<String> result = new ArrayList<>(command.length + 16);
+        for (Object[] parts : elements)
+        {
+            String value = parts.length == 1 ? value(parts[0], properties, defaultProperties) : concat(parts,
+                properties, defaultProperties);
+            if (value.startsWith(DIRECTIVE_SPLIT))
+            {
+                result.addAll(tokens(value.substring(DIRECTIVE_SPLIT.length())));
+            }
+            else
+            {
+                result.add(value);
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    // The original substitution replaces one property at a time, so a property value or name that could form or
+    // break up a variable reference might give a different result.
+    private static boolean isSafe(Map<String, String> properties)
+    {
+        for (Map.Entry<String, String> entry : properties.entrySet())
+        {
+            String value = entry.getValue();
+            if (hasSpecialChars(entry.getKey()) || (value != null && hasSpecialChars(value)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasSpecialChars(String string)
+    {
+        return string.indexOf('$') != -1 || string.indexOf('{') != -1 || string.indexOf('}') != -1;
+    }
+
+    private static String concat(Object[] parts, Map<String, String> properties,
+        Map<String, String> defaultProperties)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts)
+        {
+            sb.append(value(part, properties, defaultProperties));
+        }
+        return sb.toString();
+    }
+
+    private static String value(Object part, Map<String, String> properties, Map<String, String> defaultProperties)
+    {
+        if (part instanceof String)
+        {
+            return (String) part;
+        }
+        String name = ((Variable) part).name;
+        String value;
+        if (properties.containsKey(name))
+        {
+            value = properties.get(name);
+        }
+        else if (defaultProperties.containsKey(name))
+        {
+            value = defaultProperties.get(name);
+        }
+        else
+        {
+            return VAR_OPEN + name + VAR_CLOSE; // left as it is
+        }
+        return value == null ? "" : value;
+    }
+
+    private static List<String> tokens(String string)
+    {
+        if (string.length() > MAX_CACHED_STRING_LENGTH)
+        {
+            return new ExecParameterTokenizer(string).getAllTokens();
+        }
+        List<String> tokens = tokenCache.get(string);
+        if (tokens == null)
+        {
+            tokens = Collections.unmodifiableList(new ArrayList<>(new ExecParameterTokenizer(string).getAllTokens()));
+            tokenCache.put(string, tokens);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A long running external process that is sent requests on its standard input and replies on its standard output,
+ * such as {@code exiftool -stay_open True -@ -} or {@code magick -script -}. This avoids the cost of starting a new
+ * process for each transform.
+ * <p>
+ * The reply to a request is all the lines of standard output up to a line that marks its end. Standard error is
+ * collected while a request is being processed, so that it may be reported. Instances are not thread safe. They are
+ * normally obtained from a {@link PersistentProcessPool}.
+ */
+public class PersistentProcess implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(PersistentProcess.class);
+
+    private static final AtomicInteger threadCount = new AtomicInteger(1);
+    private static final int MAX_STD_ERR_CHARS = 64 * 1024;
+    private static final String EOF = new String("EOF"); // compared by identity
+
+    private final String name;
+    private final Process process;
+    private final Writer stdIn;
+    private final BlockingQueue<String> stdOutLines = new LinkedBlockingQueue<>();
+    private final StringBuilder stdErr = new StringBuilder();
+    private int jobCount;
+    private long lastUsedNanos = System.nanoTime();
+
+    /**
+     * @param command the command and its arguments
+     * @param environment if not {@code null}, replaces the whole environment of the process, as is done by
+     *                    {@link RuntimeExec#setProcessProperties(Map)}
+     * @param charset of standard input and output
+     */
+    public PersistentProcess(String[] command, Map<String, String> environment, Charset charset) throws IOException
+    {
+        name = command[0];
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        if (environment != null)
+        {
+            processBuilder.environment().clear();
+            processBuilder.environment().putAll(environment);
+        }
+        process = processBuilder.start();
+        logger.debug("Started {} {}", process.pid(), Arrays.toString(command));
+        stdIn = new OutputStreamWriter(process.getOutputStream(), charset);
+        startReader("out", () -> readStdOut(process.getInputStream(), charset));
+        startReader("err", () -> readStdErr(process.getErrorStream(), charset));
+    }
+
+    private void startReader(String stream, Runnable runnable)
+    {
+        Thread thread = new Thread(runnable, "T-Persistent-std" + stream + "-" + threadCount.getAndIncrement());
+        thread.setDaemon(true); // must not hold up the VM if it is terminating
+        thread.start();
+    }
+
+    private void readStdOut(InputStream is, Charset charset)
+    {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, charset)))
+        {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                stdOutLines.add(line);
+            }
+        }
+        catch (IOException ignore)
+        {
+            // the process has been destroyed
+        }
+        stdOutLines.add(EOF);
+    }
+
+    private void readStdErr(InputStream is, Charset charset)
+    {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, charset)))
+        {
+            for (String line = reader.readLine(); line != null; line = reader.readLine())
+            {
+                synchronized (stdErr)
+                {
+                    if (stdErr.length() < MAX_STD_ERR_CHARS)
+                    {
+                        stdErr.append(line).append('\n');
+                    }
+                }
+            }
+        }
+        catch (IOException ignore)
+        {
+            // the process has been destroyed
+        }
+    }
+
+    /**
+     * Sends a request and waits for the reply.
+     *
+     * @param request written to standard input, normally ending with a new line
+     * @param endMarker the line of standard output that ends the reply
+     * @param timeoutMs the maximum time to wait for the reply, or 0 to wait forever
+     * @return the lines of standard output before the {@code endMarker}.
+     * @throws IOException if the process exits or the timeout is reached, in which case it should not be used again.
+     */
+    public List<String> execute(String request, String endMarker, long timeoutMs) throws IOException
+    {
+        jobCount++;
+        synchronized (stdErr)
+        {
+            stdErr.setLength(0);
+        }
+        stdIn.write(request);
+        stdIn.flush();
+
+        long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeoutMs);
+        List<String> lines = new ArrayList<>();
+        try
+        {
+            while (true)
+            {
+                String line = timeoutMs > 0
+                              ? stdOutLines.poll(deadline - System.nanoTime(), NANOSECONDS)
+                              : stdOutLines.take();
+                if (line == null)
+                {
+                    throw new IOException(name + " did not reply within " + timeoutMs + " ms" + stdErrSuffix());
+                }
+                if (line == EOF)
+                {
+                    stdOutLines.add(EOF);
+                    throw new IOException(name + " exited" + stdErrSuffix());
+                }
+                if (line.equals(endMarker))
+                {
+                    lastUsedNanos = System.nanoTime();
+                    return lines;
+                }
+                lines.add(line);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException(name + " was interrupted", e);
+        }
+    }
+
+    private String stdErrSuffix()
+    {
+        String err = getStdErr();
+        return err.isEmpty() ? "" : ": " + err;
+    }
+
+    /**
+     * @return standard error written while processing the last request.
+     */
+    public String getStdErr()
+    {
+        synchronized (stdErr)
+        {
+            return stdErr.toString().trim();
+        }
+    }
+
+    /**
+     * @return the number of requests sent to the process.
+     */
+    public int getJobCount()
+    {
+        return jobCount;
+    }
+
+    /**
+     * @return the time since the last reply or since the process was started.
+     */
+    public long getIdleMillis()
+    {
+        return NANOSECONDS.toMillis(System.nanoTime() - lastUsedNanos);
+    }
+
+    public boolean isAlive()
+    {
+        return process.isAlive();
+    }
+
+    public long pid()
+    {
+        return process.pid();
+    }
+
+    /**
+     * Kills the process and any processes it has started.
+     */
+    @Override
+    public void close()
+    {
+        logger.debug("Stopping {} {} after {} requests", process.pid(), name, jobCount);
+        RuntimeExec.destroyProcessTree(process);
+    }
+}
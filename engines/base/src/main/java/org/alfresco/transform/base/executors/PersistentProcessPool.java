@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A pool of {@link PersistentProcess}es running the same command. Processes are started when needed, up to a
+ * maximum, and are stopped after a number of requests or if a request fails, so that a process that has leaked
+ * resources or been left in a bad state is not reused.
+ */
+public class PersistentProcessPool implements AutoCloseable
+{
+    /**
+     * Work done using a process from the pool.
+     */
+    @FunctionalInterface
+    public interface Job<T>
+    {
+        T execute(PersistentProcess process) throws IOException;
+    }
+
+    /**
+     * Checks a process is still usable before it is reused.
+     */
+    @FunctionalInterface
+    public interface HealthCheck
+    {
+        boolean isHealthy(PersistentProcess process);
+    }
+
+    private final String[] command;
+    private final Map<String, String> environment;
+    private final Charset charset;
+    private final int maxJobsPerProcess;
+    private final Semaphore available;
+    private final Deque<PersistentProcess> idle = new ConcurrentLinkedDeque<>();
+    private HealthCheck healthCheck = process -> true;
+    private volatile boolean closed;
+
+    /**
+     * @param command the command and its arguments
+     * @param environment if not {@code null}, replaces the whole environment of the processes
+     * @param charset of standard input and output
+     * @param maxProcesses the maximum number of processes. Callers wait for a process to become available.
+     * @param maxJobsPerProcess the number of requests after which a process is stopped, or 0 for no limit
+     */
+    public PersistentProcessPool(String[] command, Map<String, String> environment, Charset charset,
+        int maxProcesses, int maxJobsPerProcess)
+    {
+        this.command = command.clone();
+        this.environment = environment;
+        this.charset = charset;
+        this.maxJobsPerProcess = maxJobsPerProcess;
+        this.available = new Semaphore(Math.max(1, maxProcesses), true);
+    }
+
+    /**
+     * @param healthCheck called before an idle process is reused. Unhealthy processes are stopped.
+     */
+    public void setHealthCheck(HealthCheck healthCheck)
+    {
+        this.healthCheck = healthCheck;
+    }
+
+    /**
+     * Runs a job using a process from the pool, starting one if none are idle.
+     *
+     * @throws IOException if the job fails or a process cannot be started.
+     */
+    public <T> T execute(Job<T> job) throws IOException
+    {
+        try
+        {
+            available.acquire();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for " + command[0], e);
+        }
+        try
+        {
+            PersistentProcess process = borrow();
+            boolean reuse = false;
+            try
+            {
+                T result = job.execute(process);
+                reuse = !closed && process.isAlive() &&
+                        (maxJobsPerProcess <= 0 || process.getJobCount() < maxJobsPerProcess);
+                return result;
+            }
+            finally
+            {
+                if (reuse)
+                {
+                    idle.addFirst(process); // the most recently used process is reused first
+                }
+                else
+                {
+                    process.close();
+                }
+            }
+        }
+        finally
+        {
+            available.release();
+        }
+    }
+
+    private PersistentProcess borrow() throws IOException
+    {
+        for (PersistentProcess process = idle.pollFirst(); process != null; process = idle.pollFirst())
+        {
+            if (process.isAlive() && healthCheck.isHealthy(process))
+            {
+                return process;
+            }
+            process.close();
+        }
+        return new PersistentProcess(command, environment, charset);
+    }
+
+    /**
+     * @return the number of idle processes.
+     */
+    public int getIdleCount()
+    {
+        return idle.size();
+    }
+
+    /**
+     * Stops idle processes. Processes in use are stopped when their current job completes.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        for (PersistentProcess process = idle.pollFirst(); process != null; process = idle.pollFirst())
+        {
+            process.close();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import static java.util.stream.Collectors.joining;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Operating system limits applied to a process started by {@link RuntimeExec}, so that a single pathological
+ * source file cannot use all the memory or cores of the engine. Limits are applied by starting the command via
+ * {@code /bin/sh}, which sets them with {@code ulimit} and then execs the command, optionally via {@code taskset}
+ * to restrict it to a set of cpus. As a result they are inherited by any processes the command starts.
+ * <p>
+ * Limits are ignored on operating systems without a {@code /bin/sh}.
+ */
+public class ProcessLimits
+{
+    private static final Logger logger = LoggerFactory.getLogger(ProcessLimits.class);
+
+    private static final String SHELL = "/bin/sh";
+    private static final boolean SHELL_AVAILABLE = File.separatorChar == '/' && Files.isExecutable(Paths.get(SHELL));
+    private static final Optional<Path> TASKSET = findOnPath("taskset");
+
+    private DataSize maxAddressSpace;
+    private Duration maxCpuTime;
+    private Integer maxOpenFiles;
+    private String cpuAffinity;
+
+    public DataSize getMaxAddressSpace()
+    {
+        return maxAddressSpace;
+    }
+
+    /**
+     * @param maxAddressSpace the maximum virtual memory of the process ({@code ulimit -v}).
+     */
+    public void setMaxAddressSpace(DataSize maxAddressSpace)
+    {
+        this.maxAddressSpace = maxAddressSpace;
+    }
+
+    public Duration getMaxCpuTime()
+    {
+        return maxCpuTime;
+    }
+
+    /**
+     * @param maxCpuTime the maximum cpu time of the process, rounded up to whole seconds ({@code ulimit -t}).
+     */
+    public void setMaxCpuTime(Duration maxCpuTime)
+    {
+        this.maxCpuTime = maxCpuTime;
+    }
+
+    public Integer getMaxOpenFiles()
+    {
+        return maxOpenFiles;
+    }
+
+    /**
+     * @param maxOpenFiles the maximum number of open file descriptors ({@code ulimit -n}).
+     */
+    public void setMaxOpenFiles(Integer maxOpenFiles)
+    {
+        this.maxOpenFiles = maxOpenFiles;
+    }
+
+    public String getCpuAffinity()
+    {
+        return cpuAffinity;
+    }
+
+    /**
+     * @param cpuAffinity a list of cpus in the form accepted by {@code taskset -c}, such as {@code "0-3"} or
+     *                    {@code "0,2"}. Ignored with a warning if {@code taskset} is not installed.
+     */
+    public void setCpuAffinity(String cpuAffinity)
+    {
+        this.cpuAffinity = cpuAffinity;
+    }
+
+    /**
+     * @return {@code true} if no limits have been set.
+     */
+    public boolean isEmpty()
+    {
+        return maxAddressSpace == null && maxCpuTime == null && maxOpenFiles == null &&
+               (cpuAffinity == null || cpuAffinity.isBlank());
+    }
+
+    /**
+     * @return the command to start, so that the limits are applied to the supplied {@code command}.
+     */
+    String[] apply(String[] command)
+    {
+        if (isEmpty() || !SHELL_AVAILABLE)
+        {
+            return command;
+        }
+
+        StringBuilder script = new StringBuilder();
+        if (maxAddressSpace != null)
+        {
+            script.append("ulimit -v ").append(Math.max(1, maxAddressSpace.toKilobytes())).append(" && ");
+        }
+        if (maxCpuTime != null)
+        {
+            long seconds = maxCpuTime.getSeconds() + (maxCpuTime.getNano() > 0 ? 1 : 0);
+            script.append("ulimit -t ").append(Math.max(1, seconds)).append(" && ");
+        }
+        if (maxOpenFiles != null)
+        {
+            script.append("ulimit -n ").append(maxOpenFiles).append(" && ");
+        }
+        script.append("exec \"$@\"");
+
+        List<String> wrapped = new ArrayList<>(Arrays.asList(SHELL, "-c", script.toString(), SHELL));
+        if (cpuAffinity != null && !cpuAffinity.isBlank())
+        {
+            if (isCpuAffinitySupported())
+            {
+                wrapped.addAll(Arrays.asList(TASKSET.get().toString(), "-c", cpuAffinity.trim()));
+            }
+            else
+            {
+                logger.warn("Unable to set the cpu affinity of {} as taskset is not installed", command[0]);
+            }
+        }
+        wrapped.addAll(Arrays.asList(command));
+        return wrapped.toArray(new String[0]);
+    }
+
+    static boolean isCpuAffinitySupported()
+    {
+        return SHELL_AVAILABLE && TASKSET.isPresent();
+    }
+
+    private static Optional<Path> findOnPath(String executable)
+    {
+        String path = System.getenv("PATH");
+        return path == null
+               ? Optional.empty()
+               : Stream.of(path.split(File.pathSeparator))
+                       .map(dir -> Paths.get(dir, executable))
+                       .filter(Files::isExecutable)
+                       .findFirst();
+    }
+
+    @Override
+    public String toString()
+    {
+        return Stream.of(
+                         maxAddressSpace == null ? null : "maxAddressSpace=" + maxAddressSpace,
+                         maxCpuTime == null ? null : "maxCpuTime=" + maxCpuTime,
+                         maxOpenFiles == null ? null : "maxOpenFiles=" + maxOpenFiles,
+                         cpuAffinity == null ? null : "cpuAffinity=" + cpuAffinity)
+                     .filter(s -> s != null)
+                     .collect(joining(", ", "ProcessLimits{", "}"));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * {@link ProcessLimits} applied to the external commands of each transformer.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "transform.engine.process")
+public class ProcessLimitsConfig
+{
+    public static final String DEFAULT = "default";
+
+    // Populated from Spring Boot properties such as transform.engine.process.limits.<transformerName>.maxCpuTime or
+    // environment variables like TRANSFORM_ENGINE_PROCESS_LIMITS_<TRANSFORMERNAME>_MAXCPUTIME. Limits under the
+    // "default" name are used by transformers that have none of their own.
+    private final Map<String, ProcessLimits> limits = new HashMap<>();
+
+    public Map<String, ProcessLimits> getLimits()
+    {
+        return limits;
+    }
+
+    /**
+     * @return the limits for the named transformer, or {@code null} if there are none.
+     */
+    public ProcessLimits getLimits(String transformerName)
+    {
+        ProcessLimits processLimits = limits.get(transformerName);
+        return processLimits == null ? limits.get(DEFAULT) : processLimits;
+    }
+}
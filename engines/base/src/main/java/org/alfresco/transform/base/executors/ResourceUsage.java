@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+/**
+ * Resources used by an external command and any processes it started. Values other than the wall time are sampled
+ * from {@link ProcessHandle.Info} and {@code /proc} while the command runs, so are not available on all platforms
+ * and may miss the final moments of a command. {@code -1} indicates a value is not known.
+ */
+public class ResourceUsage
+{
+    private final long wallTimeMs;
+    private final long cpuTimeMs;
+    private final long peakRssBytes;
+    private final long bytesRead;
+    private final long bytesWritten;
+
+    public ResourceUsage(long wallTimeMs, long cpuTimeMs, long peakRssBytes, long bytesRead, long bytesWritten)
+    {
+        this.wallTimeMs = wallTimeMs;
+        this.cpuTimeMs = cpuTimeMs;
+        this.peakRssBytes = peakRssBytes;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+    }
+
+    public long getWallTimeMs()
+    {
+        return wallTimeMs;
+    }
+
+    /**
+     * @return user plus system CPU time.
+     */
+    public long getCpuTimeMs()
+    {
+        return cpuTimeMs;
+    }
+
+    /**
+     * @return the sum of the peak resident set size (VmHWM) of each process.
+     */
+    public long getPeakRssBytes()
+    {
+        return peakRssBytes;
+    }
+
+    /**
+     * @return bytes read by the processes, including from pipes (rchar).
+     */
+    public long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    /**
+     * @return bytes written by the processes, including to pipes (wchar).
+     */
+    public long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ResourceUsage{" +
+               "wallTimeMs=" + wallTimeMs +
+               ", cpuTimeMs=" + cpuTimeMs +
+               ", peakRssBytes=" + peakRssBytes +
+               ", bytesRead=" + bytesRead +
+               ", bytesWritten=" + bytesWritten +
+               '}';
+    }
+}
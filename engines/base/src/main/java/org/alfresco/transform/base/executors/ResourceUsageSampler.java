@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Samples the resources used by a running process and its descendants. CPU time comes from
+ * {@link ProcessHandle.Info}. The peak resident set size and bytes read and written come from {@code /proc} on Linux.
+ * Values are kept per process id, so a process that has exited still contributes its last sampled values.
+ * Finding the descendants walks every process, so it is done less often than sampling, with the set found last
+ * time being sampled in between.
+ */
+class ResourceUsageSampler
+{
+    private static final Path PROC = Paths.get("/proc");
+    private static final boolean PROC_AVAILABLE = Files.isDirectory(PROC.resolve("self"));
+
+    private static final int CPU_MS = 0;
+    private static final int PEAK_RSS = 1;
+    private static final int READ = 2;
+    private static final int WRITTEN = 3;
+
+    private static final long FIRST_DESCENDANT_SCAN_INTERVAL_MS = 20;
+    private static final long MAX_DESCENDANT_SCAN_INTERVAL_MS = 2000;
+
+    private final Process process;
+    private final long startNanos = System.nanoTime();
+    private final Map<Long, long[]> usageByPid = new HashMap<>();
+    private List<ProcessHandle> descendants = List.of();
+    private long nextDescendantScanNanos = startNanos;
+    private long descendantScanIntervalNanos = MILLISECONDS.toNanos(FIRST_DESCENDANT_SCAN_INTERVAL_MS);
+
+    ResourceUsageSampler(Process process)
+    {
+        this.process = process;
+    }
+
+    void sample()
+    {
+        sample(process.toHandle());
+        long now = System.nanoTime();
+        if (now - nextDescendantScanNanos >= 0)
+        {
+            descendants = process.descendants().collect(toList());
+            nextDescendantScanNanos = now + descendantScanIntervalNanos;
+            descendantScanIntervalNanos = Math.min(descendantScanIntervalNanos * 2,
+                MILLISECONDS.toNanos(MAX_DESCENDANT_SCAN_INTERVAL_MS));
+        }
+        for (ProcessHandle descendant : descendants)
+        {
+            // The pid of one that has exited may have been reused
+            if (descendant.isAlive())
+            {
+                sample(descendant);
+            }
+        }
+    }
+
+    private void sample(ProcessHandle handle)
+    {
+        long[] usage = usageByPid.computeIfAbsent(handle.pid(), pid -> new long[]{-1, -1, -1, -1});
+        handle.info().totalCpuDuration().ifPresent(cpu -> usage[CPU_MS] = Math.max(usage[CPU_MS], cpu.toMillis()));
+        if (PROC_AVAILABLE)
+        {
+            Path dir = PROC.resolve(Long.toString(handle.pid()));
+            for (String line : readLines(dir.resolve("status")))
+            {
+                if (line.startsWith("VmHWM:"))
+                {
+                    usage[PEAK_RSS] = Math.max(usage[PEAK_RSS], value(line) * 1024); // in kB
+                }
+            }
+            for (String line : readLines(dir.resolve("io")))
+            {
+                if (line.startsWith("rchar:"))
+                {
+                    usage[READ] = Math.max(usage[READ], value(line));
+                }
+                else if (line.startsWith("wchar:"))
+                {
+                    usage[WRITTEN] = Math.max(usage[WRITTEN], value(line));
+                }
+            }
+        }
+    }
+
+    private static List<String> readLines(Path path)
+    {
+        try
+        {
+            return Files.readAllLines(path);
+        }
+        catch (IOException | SecurityException e)
+        {
+            return List.of(); // the process has exited or the file is not readable
+        }
+    }
+
+    // Lines have the form "name:   value" or "name:   value kB"
+    private static long value(String line)
+    {
+        String[] fields = line.substring(line.indexOf(':') + 1).trim().split("\\s+");
+        try
+        {
+            return Long.parseLong(fields[0]);
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+    ResourceUsage getResourceUsage()
+    {
+        return new ResourceUsage(NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+            total(CPU_MS), total(PEAK_RSS), total(READ), total(WRITTEN));
+    }
+
+    private long total(int index)
+    {
+        long total = -1;
+        for (long[] usage : usageByPid.values())
+        {
+            if (usage[index] >= 0)
+            {
+                total = Math.max(total, 0) + usage[index];
+            }
+        }
+        return total;
+    }
+}
@@ -27,8 +27,12 @@
 package org.alfresco.transform.base.executors;
 
 import static java.util.Collections.emptyMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
 
-import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -43,8 +47,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -95,6 +104,13 @@ import org.slf4j.LoggerFactory;
  *
  * Tokenization of quoted parameter values is handled by ExecParameterTokenizer, which
  * describes the support in more detail.
+ * <p>
+ * The standard output and error of the process are drained by a pool of threads shared by all instances, and only
+ * the first {@link #setMaxOutputBytes(int) maxOutputBytes} of each are kept. The pool has two threads for each of
+ * the commands that may run at the same time, set by the {@code transform.exec.maxConcurrentCommands} system
+ * property (default {@value #DEFAULT_MAX_CONCURRENT_COMMANDS}). Once that many are running, a command is not started
+ * until the output of another has been read. If a timeout is supplied, it includes that wait, and the process and
+ * any processes it has started are killed when it is reached.
  *
  * @author Derek Hulley
  */
@@ -108,19 +124,33 @@ public class RuntimeExec
     private static final String KEY_OS_DEFAULT = "*";
 
     private static final String KEY_OS_NAME = "os.name";
-    private static final int BUFFER_SIZE = 1024;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int DEFAULT_MAX_OUTPUT_BYTES = 1024 * 1024;
+    private static final long OUTPUT_COMPLETION_WAIT_MS = 5000;
+    private static final long FIRST_SAMPLE_INTERVAL_MS = 5;
+    private static final long MAX_SAMPLE_INTERVAL_MS = 500;
+    private static final int DEFAULT_MAX_CONCURRENT_COMMANDS = 32;
+    static final int MAX_CONCURRENT_COMMANDS =
+        Math.max(1, Integer.getInteger("transform.exec.maxConcurrentCommands", DEFAULT_MAX_CONCURRENT_COMMANDS));
     private static final String VAR_OPEN = "${";
     private static final String VAR_CLOSE = "}";
     private static final String DIRECTIVE_SPLIT = "SPLIT:";
 
     private String[] command;
+    private volatile CommandTemplate commandTemplate;
     private Charset charset = Charset.defaultCharset();
     private boolean waitForCompletion = true;
     private Map<String, String> defaultProperties = emptyMap();
     private String[] processProperties;
     private File processDirectory;
     private final Set<Integer> errCodes;
-    private final Timer timer = new Timer(true);
+    private int maxOutputBytes = DEFAULT_MAX_OUTPUT_BYTES;
+    private ProcessLimits processLimits;
+
+    // Shared by all instances, so that running a command does not start two new threads to read its output. A
+    // permit is taken for each reader before the process is started, so a thread is always free to read its output.
+    private static final Semaphore outputReaderPermits = new Semaphore(2 * MAX_CONCURRENT_COMMANDS, true);
+    private static final ExecutorService outputReaders = createOutputReaders(2 * MAX_CONCURRENT_COMMANDS);
 
     /**
      * Default constructor.  Initialize this instance by setting individual properties.
@@ -153,6 +183,10 @@ public class RuntimeExec
         sb.append("   env props:  ").append(Arrays.toString(processProperties)).append("\n")
           .append("   dir:        ").append(processDirectory).append("\n")
           .append("   os:         ").append(System.getProperty(KEY_OS_NAME)).append("\n");
+        if (processLimits != null)
+        {
+            sb.append("   limits:     ").append(processLimits).append("\n");
+        }
         return sb.toString();
     }
 
@@ -474,6 +508,27 @@ public class RuntimeExec
         }
     }
 
+    /**
+     * Sets the maximum number of bytes of standard output and of standard error that are kept. Anything more is
+     * read and discarded, so that a command with a lot of output cannot use up the heap. Defaults to 1 MB.
+     *
+     * @param maxOutputBytes the maximum number of bytes kept from each stream
+     */
+    public void setMaxOutputBytes(int maxOutputBytes)
+    {
+        this.maxOutputBytes = maxOutputBytes;
+    }
+
+    /**
+     * Set operating system limits, such as the maximum memory or cpu time, to be applied to the process.
+     *
+     * @param processLimits the limits, or <tt>null</tt> for none.
+     */
+    public void setProcessLimits(ProcessLimits processLimits)
+    {
+        this.processLimits = processLimits;
+    }
+
     /**
      * Executes the command using the default properties
      *
@@ -499,14 +554,14 @@ public class RuntimeExec
 
     /**
      * Executes the statement that this instance was constructed with an optional
-     * timeout after which the command is asked to
+     * timeout after which the command is killed.
      *
      * @param properties the properties that the command might be executed with.
      *                   <code>null</code> properties will be treated as an empty string for substitution
      *                   purposes.
-     * @param timeoutMs  a timeout after which {@link Process#destroy()} is called.
-     *                   ignored if less than or equal to zero. Note this method does not guarantee
-     *                   to terminate the process (it is not a kill -9).
+     * @param timeoutMs  a timeout after which the process and all its descendants are forcibly destroyed.
+     *                   Ignored if less than or equal to zero. The process is also destroyed if the calling
+     *                   thread is interrupted while waiting for it.
      * @return Returns the full execution results
      */
     public ExecutionResult execute(Map<String, String> properties, final long timeoutMs)
@@ -519,97 +574,204 @@ public class RuntimeExec
             throw new RuntimeException("Runtime command has not been set: \n" + this);
         }
 
-        // create the properties
-        Runtime runtime = Runtime.getRuntime();
         Process process;
         String[] commandToExecute = null;
+        Long remainingMs;
         try
         {
             // execute the command with full property replacement
             commandToExecute = getCommand(properties);
-            final Process thisProcess = runtime.exec(commandToExecute, processProperties,
-                processDirectory);
-            process = thisProcess;
-            if (timeoutMs > 0)
-            {
-                final String[] command = commandToExecute;
-                timer.schedule(new TimerTask()
-                {
-                    @Override
-                    public void run()
-                    {
-                        // Only try to kill the process if it is still running
-                        try
-                        {
-                            thisProcess.exitValue();
-                        }
-                        catch (IllegalThreadStateException stillRunning)
-                        {
-                            logger.debug(
-                                "Process has taken too long ({} seconds). Killing process {}",
-                                timeoutMs / 1000, Arrays.deepToString(command));
-                        }
-                    }
-                }, timeoutMs);
-            }
+            remainingMs = acquireOutputReaders(timeoutMs);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return failedToStart(commandToExecute, defaultFailureExitValue, e.toString());
+        }
+        if (remainingMs == null)
+        {
+            return failedToStart(commandToExecute, defaultFailureExitValue,
+                "Process was not started within " + timeoutMs + " ms, as " + MAX_CONCURRENT_COMMANDS +
+                " commands were already running");
+        }
+        try
+        {
+            process = createProcessBuilder(commandToExecute).start();
         }
         catch (IOException e)
         {
             // The process could not be executed here, so just drop out with an appropriate error state
-            String execOut = "";
-            String execErr = e.getMessage();
-            ExecutionResult result = new ExecutionResult(null, commandToExecute, errCodes,
-                defaultFailureExitValue, execOut, execErr);
-            logFullEnvironmentDump(result);
-            return result;
+            outputReaderPermits.release(2);
+            return failedToStart(commandToExecute, defaultFailureExitValue, e.getMessage());
         }
 
-        // create the stream gobblers
-        InputStreamReaderThread stdOutGobbler = new InputStreamReaderThread(
-            process.getInputStream(), charset);
-        InputStreamReaderThread stdErrGobbler = new InputStreamReaderThread(
-            process.getErrorStream(), charset);
-
-        // start gobbling
-        stdOutGobbler.start();
-        stdErrGobbler.start();
+        ResourceUsageSampler resourceUsageSampler = new ResourceUsageSampler(process);
+        OutputReader stdOutReader = new OutputReader(process.getInputStream(), maxOutputBytes);
+        OutputReader stdErrReader = new OutputReader(process.getErrorStream(), maxOutputBytes);
+        outputReaders.execute(stdOutReader);
+        outputReaders.execute(stdErrReader);
+        closeStdIn(process);
 
         // wait for the process to finish
         int exitValue = 0;
-        try
+        String failure = null;
+        if (waitForCompletion)
         {
-            if (waitForCompletion)
+            try
             {
-                exitValue = process.waitFor();
+                if (waitFor(process, remainingMs, resourceUsageSampler))
+                {
+                    exitValue = process.exitValue();
+                }
+                else
+                {
+                    logger.debug("Process has taken too long ({} ms). Killing process {}",
+                        timeoutMs, Arrays.deepToString(commandToExecute));
+                    destroyProcessTree(process);
+                    failure = "Process was killed after " + timeoutMs + " ms";
+                    exitValue = defaultFailureExitValue;
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // process was interrupted - kill it and generate an error message
+                destroyProcessTree(process);
+                failure = e.toString();
+                exitValue = defaultFailureExitValue;
+                Thread.currentThread().interrupt();
             }
-        }
-        catch (InterruptedException e)
-        {
-            // process was interrupted - generate an error message
-            stdErrGobbler.addToBuffer(e.toString());
-            exitValue = defaultFailureExitValue;
-        }
 
-        if (waitForCompletion)
-        {
-            // ensure that the stream gobblers get to finish
-            stdOutGobbler.waitForCompletion();
-            stdErrGobbler.waitForCompletion();
+            // ensure that the output readers get to finish, unless a process that could not be killed still has
+            // the stream open
+            stdOutReader.waitForCompletion(OUTPUT_COMPLETION_WAIT_MS);
+            stdErrReader.waitForCompletion(OUTPUT_COMPLETION_WAIT_MS);
         }
 
         // get the stream values
-        String execOut = stdOutGobbler.getBuffer();
-        String execErr = stdErrGobbler.getBuffer();
+        String execOut = stdOutReader.getOutput(charset);
+        String execErr = stdErrReader.getOutput(charset);
+        if (failure != null)
+        {
+            execErr = execErr.isEmpty() ? failure : execErr + "\n" + failure;
+        }
 
         // construct the return value
         ExecutionResult result = new ExecutionResult(process, commandToExecute, errCodes, exitValue,
-            execOut, execErr);
+            execOut, execErr, resourceUsageSampler.getResourceUsage());
 
         // done
         logFullEnvironmentDump(result);
         return result;
     }
 
+    /**
+     * Waits until there are threads to read the output of another command.
+     *
+     * @return the time left before the timeout, {@code timeoutMs} itself if it is less than or equal to zero, or
+     *         {@code null} if the timeout was reached first
+     */
+    private static Long acquireOutputReaders(long timeoutMs) throws InterruptedException
+    {
+        if (outputReaderPermits.tryAcquire(2))
+        {
+            return timeoutMs;
+        }
+        logger.debug("Waiting to start a process, as {} commands are already running", MAX_CONCURRENT_COMMANDS);
+        if (timeoutMs <= 0)
+        {
+            outputReaderPermits.acquire(2);
+            return timeoutMs;
+        }
+        long start = System.nanoTime();
+        if (!outputReaderPermits.tryAcquire(2, timeoutMs, MILLISECONDS))
+        {
+            return null;
+        }
+        return Math.max(1, timeoutMs - NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private ExecutionResult failedToStart(String[] commandToExecute, int exitValue, String execErr)
+    {
+        ExecutionResult result = new ExecutionResult(null, commandToExecute, errCodes, exitValue, "", execErr, null);
+        logFullEnvironmentDump(result);
+        return result;
+    }
+
+    private static ExecutorService createOutputReaders(int threads)
+    {
+        // Threads are only started when needed and stop once they have been idle for a minute
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, SECONDS,
+            new LinkedBlockingQueue<>(), new OutputReaderThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Waits for the process to exit, sampling its resource usage. Samples are taken frequently at first, so that
+     * short commands are measured, and then less often.
+     *
+     * @return {@code false} if the timeout was reached first
+     */
+    private static boolean waitFor(Process process, long timeoutMs, ResourceUsageSampler resourceUsageSampler)
+        throws InterruptedException
+    {
+        long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeoutMs);
+        long sampleInterval = MILLISECONDS.toNanos(FIRST_SAMPLE_INTERVAL_MS);
+        while (true)
+        {
+            resourceUsageSampler.sample();
+            long wait = timeoutMs > 0 ? Math.min(sampleInterval, deadline - System.nanoTime()) : sampleInterval;
+            if (process.waitFor(wait, NANOSECONDS))
+            {
+                return true;
+            }
+            if (timeoutMs > 0 && System.nanoTime() - deadline >= 0)
+            {
+                return false;
+            }
+            sampleInterval = Math.min(sampleInterval * 2, MILLISECONDS.toNanos(MAX_SAMPLE_INTERVAL_MS));
+        }
+    }
+
+    private ProcessBuilder createProcessBuilder(String[] commandToExecute)
+    {
+        ProcessBuilder processBuilder = new ProcessBuilder(
+            processLimits == null ? commandToExecute : processLimits.apply(commandToExecute))
+            .directory(processDirectory);
+        if (processProperties != null)
+        {
+            // As with Runtime.exec, the process properties replace the whole environment
+            Map<String, String> environment = processBuilder.environment();
+            environment.clear();
+            for (String property : processProperties)
+            {
+                int i = property.indexOf('=');
+                environment.put(property.substring(0, i), property.substring(i + 1));
+            }
+        }
+        return processBuilder;
+    }
+
+    // The commands are not interactive, so a command that tries to read input gets an end of file.
+    private static void closeStdIn(Process process)
+    {
+        try
+        {
+            process.getOutputStream().close();
+        }
+        catch (IOException ignore)
+        {
+        }
+    }
+
+    // The descendants are found before the process is destroyed, as they would no longer be its descendants after it.
+    static void destroyProcessTree(Process process)
+    {
+        List<ProcessHandle> descendants = process.descendants().collect(toList());
+        process.destroyForcibly();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+    }
+
     /**
      * Dump the full environment in debug mode
      */
@@ -645,8 +807,6 @@ public class RuntimeExec
             logger.trace(sb.toString());
         }
         logger.debug("Result: " + result.toString());
-
-        // close output stream (connected to input stream of native subprocess) 
     }
 
     /**
@@ -669,6 +829,22 @@ public class RuntimeExec
      * be supplied
      */
     public String[] getCommand(Map<String, String> properties)
+    {
+        CommandTemplate template = commandTemplate;
+        if (template == null || !template.isFor(command))
+        {
+            template = CommandTemplate.compile(command);
+            commandTemplate = template;
+        }
+        String[] substituted = template.substitute(properties, defaultProperties);
+        return substituted != null ? substituted : substituteEachProperty(properties);
+    }
+
+    /**
+     * The original substitution, which replaces one property at a time. Used if the {@link CommandTemplate} might
+     * give a different result.
+     */
+    String[] substituteEachProperty(Map<String, String> properties)
     {
         Map<String, String> execProperties;
         if (properties == defaultProperties)
@@ -741,9 +917,11 @@ public class RuntimeExec
         private final int exitValue;
         private final String stdOut;
         private final String stdErr;
+        private final ResourceUsage resourceUsage;
 
         /**
          * @param process the process attached to Java - <tt>null</tt> is allowed
+         * @param resourceUsage <tt>null</tt> if the process could not be started
          */
         private ExecutionResult(
             final Process process,
@@ -751,7 +929,8 @@ public class RuntimeExec
             final Set<Integer> errCodes,
             final int exitValue,
             final String stdOut,
-            final String stdErr)
+            final String stdErr,
+            final ResourceUsage resourceUsage)
         {
             this.process = process;
             this.command = command;
@@ -759,6 +938,7 @@ public class RuntimeExec
             this.exitValue = exitValue;
             this.stdOut = stdOut;
             this.stdErr = stdErr;
+            this.resourceUsage = resourceUsage;
         }
 
         @Override
@@ -776,6 +956,10 @@ public class RuntimeExec
                                       .append("   exit code:  ").append(exitValue).append("\n")
                                       .append("   out:        ").append(out).append("\n")
                                       .append("   err:        ").append(err);
+            if (resourceUsage != null)
+            {
+                sb.append("\n   resources:  ").append(resourceUsage);
+            }
             return sb.toString();
         }
 
@@ -876,108 +1060,103 @@ public class RuntimeExec
         {
             return stdErr;
         }
+
+        /**
+         * @return the resources used by the process, or <tt>null</tt> if it could not be started.
+         */
+        public ResourceUsage getResourceUsage()
+        {
+            return resourceUsage;
+        }
+    }
+
+    private static class OutputReaderThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "T-Exec-output-" + count.getAndIncrement());
+            thread.setDaemon(true); // must not hold up the VM if it is terminating
+            return thread;
+        }
     }
 
     /**
-     * Gobbles an <code>InputStream</code> and writes it into a
-     * <code>StringBuffer</code>
-     * <p>
-     * The reading of the input stream is buffered.
+     * Reads an <code>InputStream</code> to the end, keeping up to a maximum number of bytes. The bytes are only
+     * converted to characters once the stream has been read, so multi-byte characters are not split.
      */
-    public static class InputStreamReaderThread extends Thread
+    private static class OutputReader implements Runnable
     {
         private final InputStream is;
-        private final Charset charset;
-        private final StringBuffer buffer;          // we require the synchronization
-        private boolean completed;
+        private final int maxBytes;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private long discardedBytes;
 
-        /**
-         * @param is an input stream to read - it will be wrapped in a buffer
-         *           for reading
-         */
-        public InputStreamReaderThread(InputStream is, Charset charset)
+        private OutputReader(InputStream is, int maxBytes)
         {
-            super();
-            setDaemon(true); // must not hold up the VM if it is terminating
             this.is = is;
-            this.charset = charset;
-            this.buffer = new StringBuffer(BUFFER_SIZE);
-            this.completed = false;
+            this.maxBytes = maxBytes;
         }
 
-        public synchronized void run()
+        @Override
+        public void run()
         {
-            completed = false;
-
             byte[] bytes = new byte[BUFFER_SIZE];
-            try (InputStream tempIs = new BufferedInputStream(is, BUFFER_SIZE))
+            try (InputStream tempIs = is)
             {
-                int count = -2;
-                while (count != -1)
+                int count;
+                while ((count = tempIs.read(bytes)) != -1)
                 {
-                    // do we have something previously read?
-                    if (count > 0)
-                    {
-                        String toWrite = new String(bytes, 0, count, charset.name());
-                        buffer.append(toWrite);
-                    }
-                    // read the next set of bytes
-                    count = tempIs.read(bytes);
+                    append(bytes, count);
                 }
-                // done
             }
             catch (IOException e)
             {
-                throw new RuntimeException("Unable to read stream", e);
+                // The stream is closed if the process is destroyed
+                logger.trace("Stopped reading process output: {}", e.getMessage());
             }
             finally
             {
-                // The thread has finished consuming the stream
-                completed = true;
-                // Notify waiters
-                this.notifyAll();       // Note: Method is synchronized
+                completed.countDown();
+                outputReaderPermits.release();
             }
         }
 
-        /**
-         * Waits for the run to complete.
-         * <p>
-         * <b>Remember to <code>start</code> the thread first
-         */
-        public synchronized void waitForCompletion()
+        private synchronized void append(byte[] bytes, int count)
+        {
+            int keep = Math.max(0, Math.min(count, maxBytes - buffer.size()));
+            buffer.write(bytes, 0, keep);
+            discardedBytes += count - keep;
+        }
+
+        private void waitForCompletion(long timeoutMs)
         {
-            while (!completed)
+            // Called after an interrupt has been handled, so clear it while waiting and then restore it
+            boolean interrupted = Thread.interrupted();
+            try
             {
-                try
-                {
-                    // release our lock and wait a bit
-                    this.wait(1000L); // 200 ms
-                }
-                catch (InterruptedException ignore)
+                completed.await(timeoutMs, MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+            finally
+            {
+                if (interrupted)
                 {
+                    Thread.currentThread().interrupt();
                 }
             }
         }
 
-        /**
-         * @param msg the message to add to the buffer
-         */
-        public void addToBuffer(String msg)
-        {
-            buffer.append(msg);
-        }
-
-        public boolean isComplete()
-        {
-            return completed;
-        }
-
-        /**
-         * @return Returns the current state of the buffer
-         */
-        public String getBuffer()
+        private synchronized String getOutput(Charset charset)
         {
-            return buffer.toString();
+            String output = buffer.toString(charset);
+            return discardedBytes == 0 ? output : output + "\n... " + discardedBytes + " more bytes were discarded";
         }
     }
 }
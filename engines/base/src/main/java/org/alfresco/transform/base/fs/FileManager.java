@@ -46,6 +46,7 @@ import java.nio.file.Files;
 
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.alfresco.transform.common.ExtensionService.getExtensionForMimetype;
+import static org.alfresco.transform.common.RequestParamMap.TARGET_TRUNCATED_HEADER;
 import static org.springframework.http.HttpHeaders.CONTENT_DISPOSITION;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.INSUFFICIENT_STORAGE;
@@ -187,12 +188,23 @@ public class FileManager
     }
 
     public static ResponseEntity<Resource> createAttachment(String targetFilename, File targetFile)
+    {
+        return createAttachment(targetFilename, targetFile, false);
+    }
+
+    public static ResponseEntity<Resource> createAttachment(String targetFilename, File targetFile,
+        boolean targetTruncated)
     {
         Resource targetResource = load(targetFile);
         // targetFilename should never be null (will be "transform."+<something>), so we should not worry about encodePath(null)
         targetFilename = UriUtils.encodePath(getFilename(targetFilename), "UTF-8");
-        return ResponseEntity.ok().header(CONTENT_DISPOSITION,
-            "attachment; filename*=UTF-8''" + targetFilename).body(targetResource);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().header(CONTENT_DISPOSITION,
+            "attachment; filename*=UTF-8''" + targetFilename);
+        if (targetTruncated)
+        {
+            builder.header(TARGET_TRUNCATED_HEADER, "true");
+        }
+        return builder.body(targetResource);
     }
 
     /**
@@ -77,6 +77,10 @@ public final class LogEntry
     private long targetSize = -1;
     private String options;
     private String message;
+    private long commandCpu = -1;
+    private long commandPeakRss = -1;
+    private long commandRead = -1;
+    private long commandWritten = -1;
 
     @Override
     public String toString()
@@ -91,6 +95,7 @@ public final class LogEntry
         append(sb, getTarget());
         append(sb, getTargetSize());
         append(sb, getOptions());
+        append(sb, getResources());
         sb.append(getMessage());
         return sb.toString();
     }
@@ -147,6 +152,25 @@ public final class LogEntry
         currentLogEntry.get().options = options;
     }
 
+    /**
+     * Records the resources used by external commands run as part of the transform. Called once per command, so
+     * values are accumulated, apart from the peak memory which is the largest of any command. {@code -1} indicates
+     * a value is not known.
+     */
+    public static void addCommandResources(long cpuMs, long peakRss, long bytesRead, long bytesWritten)
+    {
+        LogEntry logEntry = currentLogEntry.get();
+        logEntry.commandCpu = add(logEntry.commandCpu, cpuMs);
+        logEntry.commandPeakRss = max(logEntry.commandPeakRss, peakRss);
+        logEntry.commandRead = add(logEntry.commandRead, bytesRead);
+        logEntry.commandWritten = add(logEntry.commandWritten, bytesWritten);
+    }
+
+    private static long add(long total, long value)
+    {
+        return value == -1 ? total : max(total, 0) + value;
+    }
+
     public static void setStatusCodeAndMessage(HttpStatus status, String message)
     {
         LogEntry logEntry = currentLogEntry.get();
@@ -234,6 +258,28 @@ public final class LogEntry
         return message;
     }
 
+    public String getResources()
+    {
+        StringBuilder sb = new StringBuilder();
+        appendResource(sb, "cpu ", time(commandCpu));
+        appendResource(sb, "peak ", size(commandPeakRss));
+        appendResource(sb, "read ", size(commandRead));
+        appendResource(sb, "written ", size(commandWritten));
+        return sb.length() == 0 ? "" : "(" + sb + ")";
+    }
+
+    private void appendResource(StringBuilder sb, String label, String value)
+    {
+        if (!value.isEmpty())
+        {
+            if (sb.length() > 0)
+            {
+                sb.append(' ');
+            }
+            sb.append(label).append(value);
+        }
+    }
+
     private String time(long ms)
     {
         return ms == -1 ? "" : size(ms, "1ms",
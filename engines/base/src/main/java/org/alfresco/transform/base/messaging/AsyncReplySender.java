@@ -0,0 +1,334 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.alfresco.transform.client.model.TransformReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.Destination;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Sends {@link TransformReply}s on a separate thread for {@link TransformReplySender}, so that a listener thread does
+ * not have to wait for a session to be checked out of the pool and for a round trip to the broker before it can take
+ * the next request. The sender thread keeps its own connection and transacted session, with a cached
+ * {@link MessageProducer} per {@code replyTo} destination. Up to {@code batchSize} waiting replies are sent with a
+ * single commit.<p>
+ *
+ * The queue of waiting replies is bounded. When it is full, the listener thread waits for space, which stops the
+ * t-engine taking more requests than it can reply to. If there is still no space after {@code queueTimeoutMillis},
+ * the reply is sent synchronously. When stopped, waiting replies are sent before the connection is closed. Any reply
+ * that cannot be sent is handed back to the synchronous path.
+ */
+class AsyncReplySender
+{
+    private static final Logger logger = LoggerFactory.getLogger(AsyncReplySender.class);
+
+    private static final ObjectMapper jsonObjectMapper = new ObjectMapper();
+    private static final long POLL_MILLIS = 100;
+    private static final int MAX_CACHED_PRODUCERS = 100;
+
+    /**
+     * Called with replies that could not be sent asynchronously.
+     */
+    interface Fallback
+    {
+        void send(Destination destination, TransformReply reply, String correlationId);
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final MessageConverter messageConverter;
+    private final Fallback fallback;
+    private final int batchSize;
+    private final long queueTimeoutMillis;
+    private final BlockingQueue<PendingReply> queue;
+    // Held for reading while a reply is queued and for writing while stopping, so no reply is queued after the drain
+    private final ReadWriteLock stopLock = new ReentrantReadWriteLock();
+    private final Timer sendTimer;
+    private final Thread senderThread;
+    private volatile boolean running = true;
+
+    // Only used by the sender thread
+    private Connection connection;
+    private Session session;
+    private final Map<Destination, MessageProducer> producers = new HashMap<>();
+
+    private static class PendingReply
+    {
+        private final Destination destination;
+        private final TransformReply reply;
+        private final String correlationId;
+        private final long queuedNanos = System.nanoTime();
+
+        private PendingReply(Destination destination, TransformReply reply, String correlationId)
+        {
+            this.destination = destination;
+            this.reply = reply;
+            this.correlationId = correlationId;
+        }
+    }
+
+    AsyncReplySender(ConnectionFactory connectionFactory, MessageConverter messageConverter,
+        MeterRegistry meterRegistry, int queueCapacity, int batchSize, long queueTimeoutMillis, Fallback fallback)
+    {
+        this.connectionFactory = connectionFactory;
+        this.messageConverter = messageConverter;
+        this.fallback = fallback;
+        this.batchSize = Math.max(1, batchSize);
+        this.queueTimeoutMillis = Math.max(0, queueTimeoutMillis);
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        Gauge.builder("transform.reply.queue.size", queue, BlockingQueue::size)
+             .description("T-Replies waiting to be sent")
+             .register(meterRegistry);
+        sendTimer = Timer.builder("transform.reply.send")
+                         .description("Time from a T-Reply being queued until it was sent")
+                         .register(meterRegistry);
+
+        senderThread = new Thread(this::sendLoop, "T-Reply sender");
+        senderThread.setDaemon(true);
+        senderThread.start();
+    }
+
+    /**
+     * Queues a copy of the reply, waiting while the queue is full. If the sender has been stopped or there is still
+     * no space after the queue timeout, the reply is sent by the fallback.
+     */
+    void send(Destination destination, TransformReply reply, String correlationId)
+    {
+        stopLock.readLock().lock();
+        try
+        {
+            // The caller may change the reply (for example to send the next fragment), so take a copy
+            if (running && queue.offer(new PendingReply(destination, copy(reply), correlationId),
+                queueTimeoutMillis, TimeUnit.MILLISECONDS))
+            {
+                return;
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            stopLock.readLock().unlock();
+        }
+        fallback.send(destination, reply, correlationId);
+    }
+
+    int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting replies and waits for the waiting replies to be sent. Any that are still waiting after the
+     * timeout are sent by the fallback.
+     */
+    void stop(long timeoutMillis)
+    {
+        // Waits for any send that is queuing a reply, so that it is either sent by the sender thread or drained below
+        stopLock.writeLock().lock();
+        try
+        {
+            running = false;
+        }
+        finally
+        {
+            stopLock.writeLock().unlock();
+        }
+        try
+        {
+            senderThread.join(timeoutMillis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingReply> unsent = new ArrayList<>();
+        queue.drainTo(unsent);
+        if (!unsent.isEmpty())
+        {
+            logger.warn("{} T-Reply(s) were not sent asynchronously before shutdown", unsent.size());
+            unsent.forEach(this::sendViaFallback);
+        }
+    }
+
+    private void sendLoop()
+    {
+        List<PendingReply> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty())
+        {
+            try
+            {
+                PendingReply first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first != null)
+                {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    sendBatch(batch);
+                    batch.clear();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                // Only stop() ends the loop, as replies may already be queued and more are queued while running
+                logger.debug("Ignored an interrupt of the T-Reply sender thread");
+            }
+        }
+        closeConnection();
+    }
+
+    private void sendBatch(List<PendingReply> batch)
+    {
+        try
+        {
+            Session session = getSession();
+            for (PendingReply pendingReply : batch)
+            {
+                Message message = messageConverter.toMessage(pendingReply.reply, session);
+                message.setJMSCorrelationID(pendingReply.correlationId);
+                getProducer(session, pendingReply.destination).send(message);
+            }
+            session.commit();
+            for (PendingReply pendingReply : batch)
+            {
+                sendTimer.record(System.nanoTime() - pendingReply.queuedNanos, TimeUnit.NANOSECONDS);
+                logger.trace("Sent: {} - with correlation ID {}", pendingReply.reply, pendingReply.correlationId);
+            }
+        }
+        catch (Exception e)
+        {
+            // Nothing in the batch was committed, so it is all sent again via the fallback
+            logger.warn("Failed to send {} T-Reply(s) asynchronously: {}", batch.size(), e.getMessage());
+            closeConnection();
+            batch.forEach(this::sendViaFallback);
+        }
+    }
+
+    private void sendViaFallback(PendingReply pendingReply)
+    {
+        fallback.send(pendingReply.destination, pendingReply.reply, pendingReply.correlationId);
+    }
+
+    private Session getSession() throws JMSException
+    {
+        if (session == null)
+        {
+            connection = connectionFactory.createConnection();
+            connection.start();
+            session = connection.createSession(true, Session.SESSION_TRANSACTED);
+        }
+        return session;
+    }
+
+    private MessageProducer getProducer(Session session, Destination destination) throws JMSException
+    {
+        MessageProducer producer = producers.get(destination);
+        if (producer == null)
+        {
+            if (producers.size() >= MAX_CACHED_PRODUCERS)
+            {
+                closeProducers();
+            }
+            producer = session.createProducer(destination);
+            producers.put(destination, producer);
+        }
+        return producer;
+    }
+
+    private void closeProducers()
+    {
+        for (MessageProducer producer : producers.values())
+        {
+            try
+            {
+                producer.close();
+            }
+            catch (JMSException ignore)
+            {
+            }
+        }
+        producers.clear();
+    }
+
+    private void closeConnection()
+    {
+        closeProducers();
+        try
+        {
+            if (session != null)
+            {
+                session.close();
+            }
+            if (connection != null)
+            {
+                connection.close();
+            }
+        }
+        catch (JMSException e)
+        {
+            logger.debug("Failed to close the T-Reply sender connection: {}", e.getMessage());
+        }
+        session = null;
+        connection = null;
+    }
+
+    private static TransformReply copy(TransformReply reply)
+    {
+        try
+        {
+            return jsonObjectMapper.readValue(jsonObjectMapper.writeValueAsBytes(reply), TransformReply.class);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Failed to copy " + reply, e);
+        }
+    }
+}
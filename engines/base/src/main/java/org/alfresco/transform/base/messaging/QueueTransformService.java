@@ -123,7 +123,7 @@ public class QueueTransformService
             return;
         }
 
-        transformController.transform(transformRequest.get(), null, replyToQueue);
+        transformController.transform(transformRequest.get(), null, tryRetrieveTimestamp(msg), replyToQueue);
     }
 
     /**
@@ -182,6 +182,19 @@ public class QueueTransformService
         transformReplySender.send(replyToQueue, reply, correlationId);
     }
 
+    private static Long tryRetrieveTimestamp(final Message msg)
+    {
+        try
+        {
+            long timestamp = msg.getJMSTimestamp();
+            return timestamp == 0 ? null : timestamp; // 0 if the producer disabled timestamps
+        }
+        catch (Exception ignore)
+        {
+            return null;
+        }
+    }
+
     private static String tryRetrieveCorrelationId(final Message msg)
     {
         try
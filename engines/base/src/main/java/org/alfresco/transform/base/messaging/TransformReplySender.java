@@ -26,18 +26,30 @@
  */
 package org.alfresco.transform.base.messaging;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.jms.ConnectionFactory;
 import jakarta.jms.Destination;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.alfresco.transform.client.model.TransformReply;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * Copied from the t-router.
  *
+ * If {@code transform.engine.replySender.async} is {@code true}, replies are sent on a separate thread by an
+ * {@link AsyncReplySender}, rather than on the listener thread. Note that a reply is then only sent after the
+ * listener's transaction has been committed, so a reply that is still waiting when the pod is killed (rather than
+ * shut down) is lost and the request will not be redelivered. This is why it is not the default.
+ *
  * @author Cezar Leahu
  */
 @Component
@@ -47,28 +59,83 @@ public class TransformReplySender
 
     @Autowired
     private JmsTemplate jmsTemplate;
+    @Autowired
+    private ConnectionFactory connectionFactory;
+    @Autowired
+    private TransformMessageConverter transformMessageConverter;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${transform.engine.replySender.async:false}")
+    private boolean async;
+    @Value("${transform.engine.replySender.queueCapacity:1000}")
+    private int queueCapacity;
+    @Value("${transform.engine.replySender.batchSize:10}")
+    private int batchSize;
+    @Value("${transform.engine.replySender.queueTimeout:10}")
+    private long queueTimeoutSeconds;
+    @Value("${transform.engine.replySender.shutdownTimeout:30}")
+    private long shutdownTimeoutSeconds;
+
+    private AsyncReplySender asyncReplySender;
+
+    @PostConstruct
+    void init()
+    {
+        if (async)
+        {
+            asyncReplySender = new AsyncReplySender(connectionFactory, transformMessageConverter, meterRegistry,
+                queueCapacity, batchSize, TimeUnit.SECONDS.toMillis(queueTimeoutSeconds), this::sendNow);
+        }
+    }
+
+    @PreDestroy
+    void stop()
+    {
+        if (asyncReplySender != null)
+        {
+            asyncReplySender.stop(TimeUnit.SECONDS.toMillis(shutdownTimeoutSeconds));
+        }
+    }
 
-    public void send(final Destination destination, final TransformReply reply)
+    public boolean send(final Destination destination, final TransformReply reply)
     {
-        send(destination, reply, reply.getRequestId());
+        return send(destination, reply, reply.getRequestId());
     }
 
-    public void send(final Destination destination, final TransformReply reply, final String correlationId)
+    /**
+     * @return {@code true} if the reply is known to have been sent. {@code false} if there is no destination, the
+     *         send failed or the reply has been queued to be sent asynchronously.
+     */
+    public boolean send(final Destination destination, final TransformReply reply, final String correlationId)
     {
-        if (destination != null)
+        if (destination == null)
+        {
+            return false;
+        }
+        if (asyncReplySender != null)
+        {
+            asyncReplySender.send(destination, reply, correlationId);
+            return false;
+        }
+        return sendNow(destination, reply, correlationId);
+    }
+
+    private boolean sendNow(final Destination destination, final TransformReply reply, final String correlationId)
+    {
+        try
+        {
+            jmsTemplate.convertAndSend(destination, reply, m -> {
+                m.setJMSCorrelationID(correlationId);
+                return m;
+            });
+            logger.trace("Sent: {} - with correlation ID {}", reply, correlationId);
+            return true;
+        }
+        catch (Exception e)
         {
-            try
-            {
-                jmsTemplate.convertAndSend(destination, reply, m -> {
-                    m.setJMSCorrelationID(correlationId);
-                    return m;
-                });
-                logger.trace("Sent: {} - with correlation ID {}", reply, correlationId);
-            }
-            catch (Exception e)
-            {
-                logger.error("Failed to send T-Reply " + reply + " - for correlation ID " + correlationId, e);
-            }
+            logger.error("Failed to send T-Reply " + reply + " - for correlation ID " + correlationId, e);
+            return false;
         }
     }
 }
@@ -29,9 +29,12 @@ package org.alfresco.transform.base.metadata;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.alfresco.transform.base.CustomTransformer;
 import org.alfresco.transform.base.TransformManager;
 import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -43,6 +46,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -81,6 +85,11 @@ import static org.alfresco.transform.base.metadata.AbstractMetadataExtractorEmbe
  *     {@code cm:taggable}. Defaults to {@code "false"} to ignore mapping strings to tags.</li>
  *     <li>{@code "sys:carryAspectProperties"} </li>
  *     <li>{@code "sys:stringTaggingSeparators"} </li>
+ *     <li>{@code "sys:text"} the text of the document, if requested with the {@code includeText} transform option,
+ *     so that it does not have to be transformed to text separately. It is limited by the {@code maxChars} transform
+ *     option, or a default set by the t-engine. This is an addition to the metadata contract, so should only be
+ *     requested by clients, such as a content repository, that know to remove it before the properties are
+ *     mapped and to store it as the document's text.</li>
  * </ul>
  *
  * If a transform specifies that it can convert from {@code "<MIMETYPE>"} to {@code "alfresco-metadata-embed"}, it is
@@ -106,17 +115,38 @@ public abstract class AbstractMetadataExtractorEmbedder implements CustomTransfo
     private static final char NAMESPACE_BEGIN = '{';
     private static final char NAMESPACE_END = '}';
 
+    public static final String SYS_TEXT = "sys:text";
+
     private static final List<String> SYS_PROPERTIES = Arrays.asList(
             "sys:overwritePolicy",
             "sys:enableStringTagging",
             "sys:carryAspectProperties",
-            "sys:stringTaggingSeparators");
+            "sys:stringTaggingSeparators",
+            SYS_TEXT);
 
     private static final ObjectMapper jsonObjectMapper = new ObjectMapper();
+    // Readers and writers are thread safe and avoid looking up the type for each request
+    private static final ObjectReader extractMappingReader =
+            jsonObjectMapper.readerFor(new TypeReference<HashMap<String, Set<String>>>() {});
+    private static final ObjectReader metadataReader =
+            jsonObjectMapper.readerFor(new TypeReference<HashMap<String, Serializable>>() {});
+    private static final ObjectWriter metadataWriter = jsonObjectMapper.writer();
 
     protected final Logger logger;
     private Map<String, Set<String>> defaultExtractMapping;
     private final ThreadLocal<Map<String, Set<String>>> extractMapping = new ThreadLocal<>();
+    @Value("${transform.engine.metadata.extractMappingCacheSize:100}")
+    private int extractMappingCacheSize = 100;
+    // The repository sends the same extractMapping option with many requests, so the parsed mapping is kept,
+    // keyed on the option's json, and shared, as the default mapping is.
+    private final Map<String, Map<String, Set<String>>> extractMappingCache = new LinkedHashMap<>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, Set<String>>> eldest)
+        {
+            return size() > extractMappingCacheSize;
+        }
+    };
     private Map<String, Set<String>> embedMapping;
 
     public enum Type
@@ -178,8 +208,7 @@ public abstract class AbstractMetadataExtractorEmbedder implements CustomTransfo
 
         try
         {
-            TypeReference<HashMap<String, Serializable>> typeRef = new TypeReference<>() {};
-            HashMap<String, Serializable> systemProperties = jsonObjectMapper.readValue(metadataAsJson, typeRef);
+            HashMap<String, Serializable> systemProperties = metadataReader.readValue(metadataAsJson);
             return mapSystemToRaw(systemProperties);
         }
         catch (JsonProcessingException e)
@@ -518,19 +547,44 @@ public abstract class AbstractMetadataExtractorEmbedder implements CustomTransfo
             Set<String>> defaultExtractMapping)
     {
         String extractMappingOption = transformOptions.get(EXTRACT_MAPPING);
-        if (extractMappingOption != null)
+        if (extractMappingOption == null)
         {
-            try
-            {
-                TypeReference<HashMap<String, Set<String>>> typeRef = new TypeReference<>() {};
-                return jsonObjectMapper.readValue(extractMappingOption, typeRef);
-            }
-            catch (JsonProcessingException e)
+            return defaultExtractMapping;
+        }
+
+        Map<String, Set<String>> mapping;
+        synchronized (extractMappingCache)
+        {
+            mapping = extractMappingCache.get(extractMappingOption);
+        }
+        if (mapping == null)
+        {
+            mapping = readExtractMapping(extractMappingOption);
+            if (extractMappingCacheSize > 0)
             {
-                throw new IllegalArgumentException("Failed to read "+ EXTRACT_MAPPING +" from request", e);
+                synchronized (extractMappingCache)
+                {
+                    extractMappingCache.put(extractMappingOption, mapping);
+                }
             }
         }
-        return defaultExtractMapping;
+        return mapping;
+    }
+
+    // The result is unmodifiable, as it may be shared by concurrent requests
+    private Map<String, Set<String>> readExtractMapping(String extractMappingOption)
+    {
+        try
+        {
+            HashMap<String, Set<String>> mapping = extractMappingReader.readValue(extractMappingOption);
+            mapping.replaceAll((documentKey, systemQNames) ->
+                    systemQNames == null ? Collections.emptySet() : Collections.unmodifiableSet(systemQNames));
+            return Collections.unmodifiableMap(mapping);
+        }
+        catch (JsonProcessingException e)
+        {
+            throw new IllegalArgumentException("Failed to read "+ EXTRACT_MAPPING +" from request", e);
+        }
     }
 
     public void mapMetadataAndWrite(OutputStream outputStream, Map<String, Serializable> metadata,
@@ -561,7 +615,8 @@ public abstract class AbstractMetadataExtractorEmbedder implements CustomTransfo
         {
             logger.debug("Returned metadata:");
         }
-        Map<String, Serializable> systemProperties = new HashMap<>(rawMetadata.size() * 2 + 1);
+        // Built in key order for the response, rather than copied into a TreeMap at the end
+        Map<String, Serializable> systemProperties = new TreeMap<>();
         for (Map.Entry<String, Serializable> entry : rawMetadata.entrySet())
         {
             String documentKey = entry.getKey();
@@ -576,13 +631,13 @@ public abstract class AbstractMetadataExtractorEmbedder implements CustomTransfo
                 continue;
             }
             // Check if there is a mapping for this
-            if (!extractMapping.containsKey(documentKey))
+            Set<String> systemQNames = extractMapping.get(documentKey);
+            if (systemQNames == null)
             {
                 // No mapping - ignore
                 continue;
             }
 
-            Set<String> systemQNames = extractMapping.get(documentKey);
             for (String systemQName : systemQNames)
             {
                 if (debugEnabled)
@@ -592,12 +647,12 @@ public abstract class AbstractMetadataExtractorEmbedder implements CustomTransfo
                 systemProperties.put(systemQName, documentValue);
             }
         }
-        return new TreeMap<>(systemProperties);
+        return systemProperties;
     }
 
     private void writeMetadata(OutputStream outputStream, Map<String, Serializable> results)
             throws IOException
     {
-        jsonObjectMapper.writeValue(outputStream, results);
+        metadataWriter.writeValue(outputStream, results);
     }
 }
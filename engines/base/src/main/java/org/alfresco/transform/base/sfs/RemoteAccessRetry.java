@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.sfs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Retries calls to the Shared File Store and to direct access urls that fail with what looks like a transient error,
+ * using an exponential backoff with jitter. Without this, the failure becomes a failed T-Reply and the t-router
+ * retries the whole transform, throwing away work that may have been expensive. Only connect and read timeouts,
+ * connection resets and 5xx statuses are retried. Other failures, such as 4xx statuses (including a direct access
+ * url that has expired or is not authorised), unknown hosts, refused connections and malformed urls, are not.<p>
+ *
+ * Controlled by {@code transform.engine.remoteRetry.*}. A {@code maxAttempts} of 1 disables retries. The number of
+ * retries and the time taken by each call (including retries) are recorded per endpoint as
+ * {@code transform.remote.retries} and {@code transform.remote.calls}.
+ */
+@Component
+public class RemoteAccessRetry
+{
+    private static final Logger logger = LoggerFactory.getLogger(RemoteAccessRetry.class);
+
+    public static final String SFS_RETRIEVE = "sfs.retrieve";
+    public static final String SFS_SAVE = "sfs.save";
+    public static final String DIRECT_URL_FETCH = "directAccessUrl";
+
+    private static final String ENDPOINT = "endpoint";
+    private static final Pattern HTTP_URL_CONNECTION_STATUS =
+        Pattern.compile("Server returned HTTP response code: (\\d{3})");
+
+    @Value("${transform.engine.remoteRetry.maxAttempts:3}")
+    private int maxAttempts;
+    @Value("${transform.engine.remoteRetry.initialInterval:500}")
+    private long initialIntervalMillis;
+    @Value("${transform.engine.remoteRetry.multiplier:2.0}")
+    private double multiplier;
+    @Value("${transform.engine.remoteRetry.maxInterval:5000}")
+    private long maxIntervalMillis;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private RetryTemplate retryTemplate;
+
+    @PostConstruct
+    void init()
+    {
+        maxAttempts = Math.max(1, maxAttempts);
+        retryTemplate = RetryTemplate.builder()
+            .customPolicy(new TransientFailureRetryPolicy(maxAttempts))
+            .exponentialBackoff(initialIntervalMillis, multiplier, maxIntervalMillis, true)
+            .withListener(new RetryListener()
+            {
+                @Override
+                public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback,
+                    Throwable throwable)
+                {
+                    String endpoint = (String) context.getAttribute(RetryContext.NAME);
+                    if (context.getRetryCount() < maxAttempts && isTransient(throwable))
+                    {
+                        logger.debug("Retrying {} after attempt {}: {}", endpoint, context.getRetryCount(),
+                            throwable.getMessage());
+                        Counter.builder("transform.remote.retries")
+                               .description("Retries of calls to the SFS or direct access urls")
+                               .tag(ENDPOINT, endpoint)
+                               .register(meterRegistry)
+                               .increment();
+                    }
+                }
+            })
+            .build();
+    }
+
+    /**
+     * Calls the supplier, retrying transient failures.
+     * @param endpoint one of {@link #SFS_RETRIEVE}, {@link #SFS_SAVE} or {@link #DIRECT_URL_FETCH}.
+     * @return the result of the supplier.
+     */
+    public <T> T execute(String endpoint, Supplier<T> supplier)
+    {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try
+        {
+            T result = retryTemplate.execute(context ->
+            {
+                context.setAttribute(RetryContext.NAME, endpoint);
+                return supplier.get();
+            });
+            outcome = "success";
+            return result;
+        }
+        finally
+        {
+            sample.stop(Timer.builder("transform.remote.calls")
+                             .description("Calls to the SFS or direct access urls, including retries")
+                             .tag(ENDPOINT, endpoint)
+                             .tag("outcome", outcome)
+                             .register(meterRegistry));
+        }
+    }
+
+    /**
+     * @return {@code true} if the {@code throwable} or one of its causes looks like a failure that might not happen
+     *         if the call is made again.
+     */
+    static boolean isTransient(Throwable throwable)
+    {
+        for (Throwable t = throwable; t != null; t = t.getCause() == t ? null : t.getCause())
+        {
+            if (t instanceof HttpServerErrorException || // 5xx from the SFS
+                t instanceof SocketTimeoutException ||   // connect and read timeouts
+                (t instanceof SocketException && isConnectionReset(t.getMessage())) ||
+                (t instanceof IOException && isServerErrorStatus(t.getMessage())))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isConnectionReset(String message)
+    {
+        return message != null && message.startsWith("Connection reset");
+    }
+
+    // HttpURLConnection (used to read direct access urls) only reports the status in the message of an IOException
+    private static boolean isServerErrorStatus(String message)
+    {
+        if (message != null)
+        {
+            Matcher matcher = HTTP_URL_CONNECTION_STATUS.matcher(message);
+            return matcher.find() && matcher.group(1).charAt(0) == '5';
+        }
+        return false;
+    }
+
+    private static class TransientFailureRetryPolicy extends SimpleRetryPolicy
+    {
+        private TransientFailureRetryPolicy(int maxAttempts)
+        {
+            super(maxAttempts);
+        }
+
+        @Override
+        public boolean canRetry(RetryContext context)
+        {
+            Throwable lastThrowable = context.getLastThrowable();
+            return (lastThrowable == null || isTransient(lastThrowable)) &&
+                   context.getRetryCount() < getMaxAttempts();
+        }
+    }
+}
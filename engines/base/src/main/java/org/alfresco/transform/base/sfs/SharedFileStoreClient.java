@@ -105,6 +105,26 @@ public class SharedFileStoreClient
         }
     }
 
+    /**
+     * Checks that a file is still in the Shared File Store, without retrieving it.
+     *
+     * @param fileRef File reference
+     * @return {@code true} if the file exists. {@code false} if it does not or this cannot be confirmed.
+     */
+    public boolean exists(String fileRef)
+    {
+        try
+        {
+            restTemplate.headForHeaders(url + "/" + fileRef);
+            return true;
+        }
+        catch (Exception e)
+        {
+            logger.debug("File {} is not available in the Shared File Store: {}", fileRef, e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Stores given file in Shared File Store
      *
@@ -47,11 +47,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static org.alfresco.transform.base.util.Util.stringToLong;
 import static org.alfresco.transform.common.RequestParamMap.DIRECT_ACCESS_URL;
 import static org.alfresco.transform.common.RequestParamMap.SOURCE_EXTENSION;
 import static org.alfresco.transform.common.RequestParamMap.SOURCE_MIMETYPE;
 import static org.alfresco.transform.common.RequestParamMap.TARGET_EXTENSION;
 import static org.alfresco.transform.common.RequestParamMap.TARGET_MIMETYPE;
+import static org.alfresco.transform.common.RequestParamMap.TIMEOUT;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.OK;
@@ -76,6 +78,7 @@ abstract class ProcessHandler extends FragmentHandler
     private final TransformerDebug transformerDebug;
     private final ProbeTransform probeTransform;
     private final CustomTransformers customTransformers;
+    private final long startTime = System.currentTimeMillis();
 
     ProcessHandler(String sourceMimetype, String targetMimetype, Map<String, String> transformOptions,
         String reference, TransformServiceRegistry transformRegistry, TransformerDebug transformerDebug,
@@ -104,9 +107,54 @@ abstract class ProcessHandler extends FragmentHandler
     protected void init() throws IOException
     {
         transformManager.setProcessHandler(this);
+        transformManager.checkDeadline(); // before reading the source, as the request may have waited on a queue
         super.init();
     }
 
+    /**
+     * @return the time the request was made, from which any {@code timeout} is measured.
+     */
+    protected long getStartTime()
+    {
+        return startTime;
+    }
+
+    /**
+     * @return the time by which the request must be completed, or {@code null}. Subclasses may add other deadlines
+     *         using {@link #earliest(Long, Long)}.
+     */
+    protected Long getDeadline()
+    {
+        String timeout = transformOptions.get(TIMEOUT);
+        try
+        {
+            return deadlineFromTimeout(stringToLong(timeout));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new TransformException(BAD_REQUEST, "Invalid " + TIMEOUT + " transform option: " + timeout);
+        }
+    }
+
+    protected Long deadlineFromTimeout(Long timeout)
+    {
+        if (timeout == null || timeout <= 0)
+        {
+            return null;
+        }
+        long deadline = getStartTime() + timeout;
+        return deadline < 0 ? null : deadline; // overflow, such as a timeout of Long.MAX_VALUE
+    }
+
+    protected static Long earliest(Long deadline1, Long deadline2)
+    {
+        if (deadline1 == null)
+        {
+            return deadline2;
+        }
+        return deadline2 == null ? deadline1 : Long.valueOf(Math.min(deadline1, deadline2));
+    }
+
 
     public String getReference()
     {
@@ -121,6 +169,7 @@ abstract class ProcessHandler extends FragmentHandler
         probeTransform.incrementTransformerCount();
         try
         {
+            transformManager.setDeadline(getDeadline());
             init();
             long sourceSizeInBytes = getSourceSize();
             String transformName = getTransformerName(sourceMimetype, sourceSizeInBytes, targetMimetype, transformOptions);
@@ -159,7 +208,17 @@ abstract class ProcessHandler extends FragmentHandler
     @Override
     public void transform(CustomTransformer customTransformer) throws Exception
     {
-        customTransformer.transform(sourceMimetype, inputStream, targetMimetype, outputStream, transformOptions, transformManager);
+        transformManager.checkDeadline();
+        try (TransformManagerImpl.Interruption ignored = transformManager.interruptAtDeadline())
+        {
+            customTransformer.transform(sourceMimetype, inputStream, targetMimetype, outputStream, transformOptions, transformManager);
+        }
+        catch (Exception e)
+        {
+            // Report an interrupted transform as having run out of time, rather than whatever it threw.
+            transformManager.checkDeadline();
+            throw e;
+        }
     }
 
     protected abstract long getSourceSize();
@@ -167,6 +226,7 @@ abstract class ProcessHandler extends FragmentHandler
     @Override
     public void onSuccessfulTransform()
     {
+        // The deadline is not checked here, as the output is complete and it would be a waste to discard it
         sendTransformResponse(transformManager);
 
         LogEntry.setTargetSize(transformManager.getOutputLength());
@@ -26,6 +26,7 @@
  */
 package org.alfresco.transform.base.transform;
 
+import org.alfresco.transform.base.sfs.RemoteAccessRetry;
 import org.alfresco.transform.base.sfs.SharedFileStoreClient;
 import org.alfresco.transform.base.messaging.TransformReplySender;
 import org.alfresco.transform.base.model.FileRefResponse;
@@ -37,18 +38,17 @@ import org.alfresco.transform.client.model.TransformRequest;
 import org.alfresco.transform.common.ExtensionService;
 import org.alfresco.transform.exceptions.TransformException;
 import org.alfresco.transform.common.TransformerDebug;
-import org.alfresco.transform.messages.TransformRequestValidator;
+import org.alfresco.transform.messages.TransformRequestChecker;
 import org.alfresco.transform.messages.TransformStack;
 import org.alfresco.transform.registry.TransformServiceRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
-import org.springframework.validation.DirectFieldBindingResult;
-import org.springframework.validation.Errors;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -63,15 +63,20 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
-import static java.util.stream.Collectors.joining;
 import static org.alfresco.transform.base.fs.FileManager.createAttachment;
 import static org.alfresco.transform.base.fs.FileManager.createTargetFile;
 import static org.alfresco.transform.base.fs.FileManager.getDirectAccessUrlInputStream;
 import static org.alfresco.transform.base.fs.FileManager.getMultipartFileInputStream;
+import static org.alfresco.transform.base.sfs.RemoteAccessRetry.DIRECT_URL_FETCH;
+import static org.alfresco.transform.base.sfs.RemoteAccessRetry.SFS_RETRIEVE;
+import static org.alfresco.transform.base.sfs.RemoteAccessRetry.SFS_SAVE;
 import static org.alfresco.transform.common.RequestParamMap.DIRECT_ACCESS_URL;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.CREATED;
@@ -92,13 +97,18 @@ public class TransformHandler
     @Autowired
     private SharedFileStoreClient alfrescoSharedFileStoreClient;
     @Autowired
-    private TransformRequestValidator transformRequestValidator;
-    @Autowired
     private TransformServiceRegistry transformRegistry;
     @Autowired
     private TransformReplySender transformReplySender;
     @Autowired
     private TransformerDebug transformerDebug;
+    @Autowired
+    private TransformReplyMemo transformReplyMemo;
+    @Autowired
+    private RemoteAccessRetry remoteAccessRetry;
+
+    @Value("${transform.engine.deadline.clockSkew:2000}")
+    private long clockSkew;
 
     private final AtomicInteger httpRequestCount = new AtomicInteger(1);
 
@@ -143,7 +153,8 @@ public class TransformHandler
             protected void sendTransformResponse(TransformManagerImpl transformManager)
             {
                 String extension = ExtensionService.getExtensionForTargetMimetype(targetMimetype, sourceMimetype);
-                responseEntity.set(createAttachment("transform."+extension, transformManager.getTargetFile()));
+                responseEntity.set(createAttachment("transform."+extension, transformManager.getTargetFile(),
+                    transformManager.isTargetTruncated()));
             }
         }.handleTransformRequest();
 
@@ -189,11 +200,50 @@ public class TransformHandler
     public TransformReply handleMessageRequest(TransformRequest request, Long timeout, Destination replyToQueue,
         ProbeTransform probeTransform)
     {
+        return handleMessageRequest(request, timeout, null, replyToQueue, probeTransform);
+    }
+
+    /**
+     * @param sentTime when the request was sent (milliseconds since the epoch), so that time spent on a queue counts
+     *                 towards any timeout. {@code null} if not known. As it comes from the sender's clock, it is
+     *                 moved on by the allowed clock skew and is never later than the time the request was received.
+     */
+    public TransformReply handleMessageRequest(TransformRequest request, Long timeout, Long sentTime,
+        Destination replyToQueue, ProbeTransform probeTransform)
+    {
+        long receivedTime = System.currentTimeMillis();
         TransformReply reply = createBasicTransformReply(request);
+        // Only requests from a queue are redelivered
+        boolean memoize = replyToQueue != null && transformReplyMemo.isEnabled();
+        if (memoize && resendMemoizedReplies(request, reply, replyToQueue))
+        {
+            return reply;
+        }
+
+        List<TransformReplyMemo.Fragment> fragments = new ArrayList<>();
+        // Cleared if the transform fails or a reply is not known to have been sent
+        AtomicBoolean memoizable = new AtomicBoolean(memoize);
         new ProcessHandler(request.getSourceMediaType(), request.getTargetMediaType(),
             request.getTransformRequestOptions(),"unset", transformRegistry,
             transformerDebug, probeTransform, customTransformers)
         {
+            @Override
+            protected long getStartTime()
+            {
+                // A sender clock that is behind would otherwise make the request look older than it is
+                return sentTime == null || sentTime <= 0
+                    ? receivedTime
+                    : Math.min(receivedTime, sentTime + clockSkew);
+            }
+
+            @Override
+            protected Long getDeadline()
+            {
+                InternalContext internalContext = request.getInternalContext();
+                return earliest(earliest(super.getDeadline(), deadlineFromTimeout(timeout)),
+                    internalContext == null ? null : internalContext.getDeadline());
+            }
+
             @Override
             protected void init() throws IOException
             {
@@ -231,29 +281,84 @@ public class TransformHandler
             protected void sendTransformResponse(TransformManagerImpl transformManager)
             {
                 reply.getInternalContext().setCurrentSourceSize(transformManager.getOutputLength());
+                if (transformManager.isTargetTruncated())
+                {
+                    reply.getInternalContext().setTruncated(true);
+                }
                 saveTargetFileInSharedFileStore(transformManager.getTargetFile(), reply);
-                sendSuccessfulResponse(timeout, reply, replyToQueue);
+                if (sendSuccessfulResponse(timeout, reply, replyToQueue))
+                {
+                    fragments.add(new TransformReplyMemo.Fragment(reply.getTargetReference(),
+                        reply.getInternalContext().getCurrentSourceSize()));
+                }
+                else
+                {
+                    memoizable.set(false);
+                }
             }
 
             @Override
             protected void handleTransformException(TransformException e)
             {
+                memoizable.set(false);
                 sendFailedResponse(reply, e, e.getStatus(), replyToQueue);
             }
 
             @Override
             protected void handleException(Exception e)
             {
+                memoizable.set(false);
                 sendFailedResponse(reply, e, INTERNAL_SERVER_ERROR, replyToQueue);
             }
         }.handleTransformRequest();
+
+        if (memoizable.get())
+        {
+            transformReplyMemo.put(request, fragments);
+        }
         return reply;
     }
 
-    private void sendSuccessfulResponse(Long timeout, TransformReply reply, Destination replyToQueue)
+    /**
+     * If the request has already been completed (it has been redelivered by the broker), the replies that were sent
+     * the first time are sent again, rather than repeating the transform. This is only done if every target is still
+     * in the SFS, as the repository may have deleted them after reading the original replies.
+     * @return {@code true} if the replies were resent.
+     */
+    private boolean resendMemoizedReplies(TransformRequest request, TransformReply reply, Destination replyToQueue)
+    {
+        List<TransformReplyMemo.Fragment> fragments = transformReplyMemo.get(request);
+        if (fragments == null)
+        {
+            return false;
+        }
+        for (TransformReplyMemo.Fragment fragment : fragments)
+        {
+            if (!alfrescoSharedFileStoreClient.exists(fragment.getTargetReference()))
+            {
+                logger.debug("Request {} has already been completed, but target {} no longer exists. " +
+                    "Transforming again", request.getRequestId(), fragment.getTargetReference());
+                transformReplyMemo.remove(request);
+                return false;
+            }
+        }
+
+        logger.debug("Request {} has already been completed. Resending {} reply(s)", request.getRequestId(),
+            fragments.size());
+        for (TransformReplyMemo.Fragment fragment : fragments)
+        {
+            reply.getInternalContext().setCurrentSourceSize(fragment.getTargetSize());
+            reply.setTargetReference(fragment.getTargetReference());
+            reply.setStatus(CREATED.value());
+            transformReplySender.send(replyToQueue, reply);
+        }
+        return true;
+    }
+
+    private boolean sendSuccessfulResponse(Long timeout, TransformReply reply, Destination replyToQueue)
     {
         logger.trace("Sending successful {}, timeout {} ms", reply, timeout);
-        transformReplySender.send(replyToQueue, reply);
+        return transformReplySender.send(replyToQueue, reply);
     }
 
     private void sendFailedResponse(TransformReply reply, Exception e, HttpStatus status, Destination replyToQueue)
@@ -268,13 +373,12 @@ public class TransformHandler
 
     private void checkTransformRequestValid(TransformRequest request, TransformReply reply)
     {
-        final Errors errors = validateTransformRequest(request);
-        validateInternalContext(request, errors);
+        String errorDetails = TransformRequestChecker.check(request, "T-Request");
+        initialiseContext(request);
         reply.setInternalContext(request.getInternalContext());
 
-        if (!errors.getAllErrors().isEmpty())
+        if (errorDetails != null)
         {
-            String errorDetails = errors.getAllErrors().stream().map(Object::toString).collect(joining(", "));
             throw new TransformException(BAD_REQUEST, errorDetails);
         }
     }
@@ -290,23 +394,6 @@ public class TransformHandler
         return reply;
     }
 
-    private Errors validateTransformRequest(final TransformRequest transformRequest)
-    {
-        DirectFieldBindingResult errors = new DirectFieldBindingResult(transformRequest, "request");
-        transformRequestValidator.validate(transformRequest, errors);
-        return errors;
-    }
-
-    private void validateInternalContext(TransformRequest request, Errors errors)
-    {
-        String errorMessage = InternalContext.checkForBasicErrors(request.getInternalContext(), "T-Request");
-        if (errorMessage != null)
-        {
-            errors.rejectValue("internalContext", null, errorMessage);
-        }
-        initialiseContext(request);
-    }
-
     private void initialiseContext(TransformRequest request)
     {
         // If needed, initialise the context enough to allow logging to take place without NPE checks
@@ -315,7 +402,8 @@ public class TransformHandler
 
     private InputStream getSharedFileStoreInputStream(String sourceReference)
     {
-        ResponseEntity<Resource> responseEntity = alfrescoSharedFileStoreClient.retrieveFile(sourceReference);
+        ResponseEntity<Resource> responseEntity = remoteAccessRetry.execute(SFS_RETRIEVE,
+            () -> alfrescoSharedFileStoreClient.retrieveFile(sourceReference));
         final Resource body = responseEntity.getBody();
         if (body == null)
         {
@@ -342,7 +430,7 @@ public class TransformHandler
         final String directUrl = requestParameters.getOrDefault(DIRECT_ACCESS_URL, "");
         return new BufferedInputStream(directUrl.isBlank()
             ? getMultipartFileInputStream(sourceMultipartFile)
-            : getDirectAccessUrlInputStream(directUrl));
+            : getDirectAccessUrlInputStreamWithRetry(directUrl));
     }
 
     private InputStream getInputStreamForHandleProbeRequest(File sourceFile)
@@ -364,7 +452,7 @@ public class TransformHandler
         {
             return new BufferedInputStream(directUrl.isBlank()
                     ? getSharedFileStoreInputStream(request.getSourceReference())
-                    : getDirectAccessUrlInputStream(directUrl));
+                    : getDirectAccessUrlInputStreamWithRetry(directUrl));
         }
         catch (TransformException e)
         {
@@ -376,6 +464,11 @@ public class TransformHandler
         }
     }
 
+    private InputStream getDirectAccessUrlInputStreamWithRetry(String directUrl)
+    {
+        return remoteAccessRetry.execute(DIRECT_URL_FETCH, () -> getDirectAccessUrlInputStream(directUrl));
+    }
+
     private OutputStream getOutputStreamFromFile(File targetFile) throws IOException
     {
         return new BufferedOutputStream(new FileOutputStream(targetFile));
@@ -386,7 +479,8 @@ public class TransformHandler
         FileRefResponse targetRef;
         try
         {
-            targetRef = alfrescoSharedFileStoreClient.saveFile(targetFile);
+            // The target file is not deleted until after this method, so is still available for each attempt
+            targetRef = remoteAccessRetry.execute(SFS_SAVE, () -> alfrescoSharedFileStoreClient.saveFile(targetFile));
         }
         catch (TransformException e)
         {
@@ -29,6 +29,7 @@ package org.alfresco.transform.base.transform;
 import org.alfresco.transform.base.TransformManager;
 import org.alfresco.transform.base.fs.FileManager;
 import org.alfresco.transform.base.util.OutputStreamLengthRecorder;
+import org.alfresco.transform.exceptions.TransformException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -38,6 +39,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.springframework.http.HttpStatus.REQUEST_TIMEOUT;
 
 /**
  * Manages the input and output streams and any temporary files that have been created.
@@ -47,6 +54,13 @@ public class TransformManagerImpl implements TransformManager
 {
     private static final Logger logger = LoggerFactory.getLogger(TransformManagerImpl.class);
 
+    private static final ScheduledExecutorService deadlineTimer = Executors.newSingleThreadScheduledExecutor(r ->
+    {
+        Thread thread = new Thread(r, "T-Deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private HttpServletRequest request;
     private ProcessHandler processHandler;
     private InputStream inputStream;
@@ -60,6 +74,8 @@ public class TransformManagerImpl implements TransformManager
     private boolean createTargetFileCalled;
     private Boolean startedWithSourceFile;
     private Boolean startedWithTargetFile;
+    private Long deadline;
+    private boolean targetTruncated;
 
     public void setRequest(HttpServletRequest request)
     {
@@ -76,6 +92,82 @@ public class TransformManagerImpl implements TransformManager
         return processHandler.getReference();
     }
 
+    public void setDeadline(Long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    @Override public Long getDeadline()
+    {
+        return deadline;
+    }
+
+    @Override public Long getRemainingTime()
+    {
+        return deadline == null ? null : Math.max(1, deadline - System.currentTimeMillis());
+    }
+
+    @Override public void checkDeadline()
+    {
+        long overrun = deadline == null ? -1 : System.currentTimeMillis() - deadline;
+        if (overrun >= 0)
+        {
+            throw new TransformException(REQUEST_TIMEOUT, "The request deadline passed "+overrun+" ms ago");
+        }
+    }
+
+    /**
+     * Interrupts the current thread if the deadline passes before the returned {@code Interruption} is closed.
+     * Used while a {@link org.alfresco.transform.base.CustomTransformer} is running so that in-JVM transforms may be
+     * cancelled. Closing it clears the interrupt, so that the thread may go on to send a reply.
+     */
+    Interruption interruptAtDeadline()
+    {
+        return new Interruption(deadline);
+    }
+
+    static class Interruption implements AutoCloseable
+    {
+        private final Thread thread = Thread.currentThread();
+        private final ScheduledFuture<?> timer;
+        private boolean closed;
+        private boolean interrupted;
+
+        private Interruption(Long deadline)
+        {
+            timer = deadline == null
+                ? null
+                : deadlineTimer.schedule(this::interrupt, deadline - System.currentTimeMillis(), MILLISECONDS);
+        }
+
+        private synchronized void interrupt()
+        {
+            if (!closed)
+            {
+                logger.debug("Interrupting {} as the request deadline has passed", thread.getName());
+                interrupted = true;
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            if (timer != null)
+            {
+                timer.cancel(false);
+            }
+            synchronized (this)
+            {
+                closed = true;
+                if (interrupted)
+                {
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
     public InputStream setInputStream(InputStream inputStream)
     {
         this.inputStream = inputStream;
@@ -179,6 +271,16 @@ public class TransformManagerImpl implements TransformManager
         return targetFile;
     }
 
+    @Override public void setTargetTruncated()
+    {
+        targetTruncated = true;
+    }
+
+    public boolean isTargetTruncated()
+    {
+        return targetTruncated;
+    }
+
     public void copyTargetFileToOutputStream() throws IOException
     {
         if (targetFile != null)
@@ -224,11 +326,17 @@ public class TransformManagerImpl implements TransformManager
     @Override
     public OutputStream respondWithFragment(Integer index, boolean finished) throws IOException
     {
-        if (request != null)
+        if (!canRespondWithFragments())
         {
             throw new IllegalStateException("Fragments may only be sent via message queues. This an http request");
         }
 
         return processHandler.respondWithFragment(index, finished);
     }
+
+    @Override
+    public boolean canRespondWithFragments()
+    {
+        return request == null;
+    }
 }
@@ -0,0 +1,372 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.transform;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.alfresco.transform.client.model.InternalContext;
+import org.alfresco.transform.client.model.TransformRequest;
+import org.alfresco.transform.messages.TransformStack;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+/**
+ * Remembers the replies sent for message requests that completed successfully, so that a request redelivered by the
+ * broker (for example after a pod was killed before the message was acknowledged) does not repeat the whole
+ * download, transform and upload. The key is the {@code requestId} plus the {@link TransformStack} reference, which
+ * identifies a single step of a pipeline or failover transform. Each entry holds the SFS target reference and size of
+ * every reply (more than one if the transform produced fragments).<p>
+ *
+ * The memo is disabled by default. It is bounded to {@code transform.engine.replyMemo.maxEntries}, removing the
+ * least recently used entries first. Entries are only recorded once every reply is known to have been sent, and are
+ * only used while their targets are still in the SFS. The memo is local to the t-engine instance, so it only helps
+ * when the request is redelivered to the same instance. If {@code transform.engine.replyMemo.directory} is set,
+ * entries are also appended to a journal file in that directory, which is reloaded on startup so that the memo
+ * survives a restart.
+ */
+@Component
+public class TransformReplyMemo
+{
+    private static final Logger logger = LoggerFactory.getLogger(TransformReplyMemo.class);
+
+    static final String JOURNAL_FILENAME = "replyMemo.journal";
+
+    private static final ObjectMapper jsonObjectMapper = new ObjectMapper();
+
+    @Value("${transform.engine.replyMemo.maxEntries:0}")
+    private int maxEntries;
+
+    @Value("${transform.engine.replyMemo.directory:}")
+    private String directory;
+
+    private Map<String, List<Fragment>> memo;
+
+    // The journal has its own lock, so that lookups do not wait for file writes
+    private final Object journalLock = new Object();
+    private Path journal;
+    private Writer journalWriter;
+    private int journalLines;
+
+    /**
+     * The details of a single successful reply that are not already in the redelivered request.
+     */
+    public static class Fragment
+    {
+        private String targetReference;
+        private Long targetSize;
+
+        public Fragment()
+        {
+        }
+
+        public Fragment(String targetReference, Long targetSize)
+        {
+            this.targetReference = targetReference;
+            this.targetSize = targetSize;
+        }
+
+        public String getTargetReference()
+        {
+            return targetReference;
+        }
+
+        public void setTargetReference(String targetReference)
+        {
+            this.targetReference = targetReference;
+        }
+
+        public Long getTargetSize()
+        {
+            return targetSize;
+        }
+
+        public void setTargetSize(Long targetSize)
+        {
+            this.targetSize = targetSize;
+        }
+    }
+
+    /**
+     * A line in the journal file.
+     */
+    public static class JournalEntry
+    {
+        private String key;
+        private List<Fragment> fragments;
+
+        public JournalEntry()
+        {
+        }
+
+        JournalEntry(String key, List<Fragment> fragments)
+        {
+            this.key = key;
+            this.fragments = fragments;
+        }
+
+        public String getKey()
+        {
+            return key;
+        }
+
+        public void setKey(String key)
+        {
+            this.key = key;
+        }
+
+        public List<Fragment> getFragments()
+        {
+            return fragments;
+        }
+
+        public void setFragments(List<Fragment> fragments)
+        {
+            this.fragments = fragments;
+        }
+    }
+
+    @PostConstruct
+    void init()
+    {
+        memo = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Fragment>> eldest)
+            {
+                return size() > maxEntries;
+            }
+        };
+
+        if (isEnabled() && directory != null && !directory.isBlank())
+        {
+            journal = new File(directory, JOURNAL_FILENAME).toPath();
+            loadJournal();
+        }
+    }
+
+    public boolean isEnabled()
+    {
+        return maxEntries > 0;
+    }
+
+    /**
+     * @return the fragments recorded for a request that has already been completed, or {@code null} if the request
+     *         has not been seen before (or the memo is disabled).
+     */
+    public synchronized List<Fragment> get(TransformRequest request)
+    {
+        String key = getKey(request);
+        return key == null ? null : memo.get(key);
+    }
+
+    /**
+     * Records the fragments sent back for a request that completed successfully.
+     */
+    public void put(TransformRequest request, List<Fragment> fragments)
+    {
+        String key = getKey(request);
+        if (key != null && !fragments.isEmpty())
+        {
+            List<Fragment> value = Collections.unmodifiableList(new ArrayList<>(fragments));
+            synchronized (this)
+            {
+                memo.put(key, value);
+            }
+            appendToJournal(new JournalEntry(key, value));
+        }
+    }
+
+    /**
+     * Forgets a request, for example because its targets are no longer available. The journal is not changed, as it
+     * is only used to reload the memo, after which the targets are checked again.
+     */
+    public synchronized void remove(TransformRequest request)
+    {
+        String key = getKey(request);
+        if (key != null)
+        {
+            memo.remove(key);
+        }
+    }
+
+    synchronized int size()
+    {
+        return memo.size();
+    }
+
+    private String getKey(TransformRequest request)
+    {
+        if (!isEnabled() || request.getRequestId() == null)
+        {
+            return null;
+        }
+        InternalContext internalContext = request.getInternalContext();
+        if (InternalContext.checkForBasicErrors(internalContext, "T-Request") != null)
+        {
+            return null;
+        }
+        return request.getRequestId() + TransformStack.SEPARATOR + TransformStack.getReference(internalContext);
+    }
+
+    private void loadJournal()
+    {
+        if (Files.exists(journal))
+        {
+            try (BufferedReader reader = Files.newBufferedReader(journal, UTF_8))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    if (!line.isBlank())
+                    {
+                        JournalEntry entry = jsonObjectMapper.readValue(line, JournalEntry.class);
+                        memo.put(entry.getKey(), Collections.unmodifiableList(entry.getFragments()));
+                    }
+                }
+                logger.info("Loaded {} completed replies from {}", memo.size(), journal);
+            }
+            catch (IOException e)
+            {
+                logger.error("Failed to read the reply memo journal {}: {}", journal, e.getMessage());
+            }
+        }
+        compactJournal();
+    }
+
+    private void appendToJournal(JournalEntry entry)
+    {
+        if (journal != null)
+        {
+            synchronized (journalLock)
+            {
+                if (journalLines >= maxEntries * 2)
+                {
+                    compactJournal();
+                }
+                else
+                {
+                    try
+                    {
+                        if (journalWriter == null)
+                        {
+                            journalWriter = Files.newBufferedWriter(journal, UTF_8, CREATE, APPEND);
+                        }
+                        writeEntry(journalWriter, entry);
+                        journalWriter.flush();
+                        journalLines++;
+                    }
+                    catch (IOException e)
+                    {
+                        logger.error("Failed to append to the reply memo journal {}: {}", journal, e.getMessage());
+                        closeJournalWriter();
+                    }
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void stop()
+    {
+        synchronized (journalLock)
+        {
+            closeJournalWriter();
+        }
+    }
+
+    private void closeJournalWriter()
+    {
+        if (journalWriter != null)
+        {
+            try
+            {
+                journalWriter.close();
+            }
+            catch (IOException ignore)
+            {
+            }
+            journalWriter = null;
+        }
+    }
+
+    // Rewrites the journal so that it only contains the entries still in the memo.
+    private void compactJournal()
+    {
+        closeJournalWriter();
+        List<JournalEntry> entries = new ArrayList<>();
+        synchronized (this)
+        {
+            memo.forEach((key, fragments) -> entries.add(new JournalEntry(key, fragments)));
+        }
+        try
+        {
+            Files.createDirectories(journal.getParent());
+            Path tmp = journal.resolveSibling(JOURNAL_FILENAME + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, UTF_8))
+            {
+                for (JournalEntry entry : entries)
+                {
+                    writeEntry(writer, entry);
+                }
+            }
+            Files.move(tmp, journal, REPLACE_EXISTING, ATOMIC_MOVE);
+            journalLines = entries.size();
+        }
+        catch (IOException e)
+        {
+            logger.error("Failed to write the reply memo journal {}: {}", journal, e.getMessage());
+        }
+    }
+
+    private static void writeEntry(Writer writer, JournalEntry entry) throws IOException
+    {
+        writer.write(jsonObjectMapper.writeValueAsString(entry));
+        writer.write('\n');
+    }
+}
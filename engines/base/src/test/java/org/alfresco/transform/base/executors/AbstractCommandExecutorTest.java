@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.alfresco.transform.base.logging.LogEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests the meters published by {@link AbstractCommandExecutor} for each external command.
+ */
+public class AbstractCommandExecutorTest
+{
+    @TempDir
+    File tempDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, DistributionStatisticConfig> configs = new HashMap<>();
+
+    private static class TestCommandExecutor extends AbstractCommandExecutor
+    {
+        @Override
+        protected RuntimeExec createTransformCommand()
+        {
+            RuntimeExec runtimeExec = new RuntimeExec();
+            runtimeExec.setCommand(new String[]{"sh", "-c", "cat ${source} > ${target}"});
+            return runtimeExec;
+        }
+
+        @Override
+        protected RuntimeExec createCheckCommand()
+        {
+            return null;
+        }
+    }
+
+    @BeforeEach
+    public void before()
+    {
+        LogEntry.start();
+        meterRegistry.config().meterFilter(new MeterFilter()
+        {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config)
+            {
+                configs.put(id.getName(), config);
+                return config;
+            }
+        });
+    }
+
+    @AfterEach
+    public void after()
+    {
+        LogEntry.complete();
+    }
+
+    private void runCommand(boolean publishPercentileHistograms) throws Exception
+    {
+        TestCommandExecutor executor = new TestCommandExecutor();
+        ReflectionTestUtils.setField(executor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(executor, "publishPercentileHistograms", publishPercentileHistograms);
+
+        File source = new File(tempDir, "source.txt");
+        Files.writeString(source.toPath(), "content");
+        File target = new File(tempDir, "target.txt");
+        executor.run("", source, target, 10000L);
+
+        Timer timer = meterRegistry.get("transform.command.duration")
+                                   .tag("transformer", "TestCommandExecutor")
+                                   .tag("source", "txt")
+                                   .tag("target", "txt")
+                                   .timer();
+        assertEquals(1, timer.count());
+    }
+
+    @Test
+    public void testPlainMetersByDefault() throws Exception
+    {
+        runCommand(false);
+        assertFalse(configs.get("transform.command.duration").isPercentileHistogram());
+    }
+
+    @Test
+    public void testPercentileHistogramsWhenEnabled() throws Exception
+    {
+        runCommand(true);
+        assertTrue(configs.get("transform.command.duration").isPercentileHistogram());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the command line for each transform, comparing the compiled {@link CommandTemplate} used by
+ * {@link RuntimeExec#getCommand(Map)} with the original substitution of one property at a time. Not run as part of
+ * the build. Run the {@link #main} method from the test classpath (for example from an IDE).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandTemplateBenchmark
+{
+    @Param({"imagemagick", "pdfrenderer"})
+    public String template;
+
+    private RuntimeExec runtimeExec;
+    private Map<String, String> properties;
+
+    @Setup
+    public void setup()
+    {
+        runtimeExec = new RuntimeExec();
+        if ("imagemagick".equals(template))
+        {
+            runtimeExec.setCommand(new String[]{"/usr/bin/convert", "${source}", "SPLIT:${options}", "-strip",
+                "-quiet", "${target}"});
+            properties = Map.of(
+                "source", "/tmp/transform/source_1.jpg[0]",
+                "options", "-auto-orient -gravity Center -crop 100x100+0+0 +repage -thumbnail 100x100>",
+                "target", "/tmp/transform/target_1.png");
+        }
+        else
+        {
+            runtimeExec.setCommand(new String[]{"alfresco-pdf-renderer", "SPLIT:${options}", "${source}",
+                "${target}"});
+            properties = Map.of(
+                "source", "/tmp/transform/source_1.pdf",
+                "options", "--width=100 --height=100 --allow-enlargement --maintain-aspect-ratio --page=0",
+                "target", "/tmp/transform/target_1.png");
+        }
+        runtimeExec.setDefaultProperties(Map.of("options", "", "source", "", "target", ""));
+    }
+
+    @Benchmark
+    public String[] compiled()
+    {
+        return runtimeExec.getCommand(properties);
+    }
+
+    @Benchmark
+    public String[] legacy()
+    {
+        return runtimeExec.substituteEachProperty(properties);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+            .include(CommandTemplateBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
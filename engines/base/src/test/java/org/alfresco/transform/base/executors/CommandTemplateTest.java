@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link RuntimeExec#getCommand(Map)}, which uses a {@link CommandTemplate}, gives the same result as
+ * the original substitution of one property at a time.
+ */
+public class CommandTemplateTest
+{
+    private static final String[] IMAGEMAGICK = {"/usr/bin/convert", "${source}", "SPLIT:${options}", "-strip",
+        "-quiet", "${target}"};
+    private static final String[] PDF_RENDERER = {"alfresco-pdf-renderer", "SPLIT:${options}", "${source}",
+        "${target}"};
+
+    private static RuntimeExec runtimeExec(String[] command, Map<String, String> defaultProperties)
+    {
+        RuntimeExec runtimeExec = new RuntimeExec();
+        runtimeExec.setCommand(command);
+        runtimeExec.setDefaultProperties(defaultProperties);
+        return runtimeExec;
+    }
+
+    private static void assertSameAsOriginal(RuntimeExec runtimeExec, Map<String, String> properties)
+    {
+        String[] expected;
+        try
+        {
+            expected = runtimeExec.substituteEachProperty(properties);
+        }
+        catch (IllegalArgumentException e)
+        {
+            // such as unbalanced quotes in a SPLIT: directive
+            IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+                () -> runtimeExec.getCommand(properties));
+            assertEquals(e.getMessage(), actual.getMessage());
+            return;
+        }
+        assertArrayEquals(expected, runtimeExec.getCommand(properties),
+            Arrays.toString(runtimeExec.getCommand(properties)) + " " + properties);
+    }
+
+    @Test
+    public void testTransformerCommands()
+    {
+        Map<String, String> defaults = new HashMap<>();
+        defaults.put("options", null);
+        for (String[] command : new String[][]{IMAGEMAGICK, PDF_RENDERER})
+        {
+            RuntimeExec runtimeExec = runtimeExec(command, defaults);
+            assertSameAsOriginal(runtimeExec, Map.of(
+                "source", "/tmp/source.jpg[0]",
+                "options", "-auto-orient -gravity Center -crop 100x100+0+0 +repage -thumbnail 100x100>",
+                "target", "/tmp/target.png"));
+            assertSameAsOriginal(runtimeExec, Map.of(
+                "source", "/tmp/source.pdf",
+                "options", "--width=100 --height=100 --allow-enlargement --page=0",
+                "target", "/tmp/target.png"));
+            assertSameAsOriginal(runtimeExec, Map.of(
+                "source", "/tmp/source.jpg",
+                "options", "-draw \"text 0,12 'Copy right'\" -font 'Helvetica Bold'",
+                "target", "/tmp/target.png"));
+            assertSameAsOriginal(runtimeExec, Map.of("source", "/tmp/source.jpg", "target", "/tmp/target.png"));
+            assertSameAsOriginal(runtimeExec, defaults);
+            assertSameAsOriginal(runtimeExec, Collections.emptyMap());
+        }
+    }
+
+    @Test
+    public void testUnusualTemplates()
+    {
+        Map<String, String> properties = Map.of("a", "x", "b", "SPLIT:1 2", "ab", "y");
+        for (String element : new String[]{"", "${a}${b}", "pre${a}post", "${missing}", "${a", "${${a}}",
+            "$${a}", "${a}}", "${ab}", "SPLIT:", "SPLIT:${b}", "${b}", "${}", "{a}"})
+        {
+            assertSameAsOriginal(runtimeExec(new String[]{"cmd", element}, Collections.emptyMap()), properties);
+        }
+    }
+
+    @Test
+    public void testFallbackWhenValuesCouldFormVariables()
+    {
+        CommandTemplate template = CommandTemplate.compile(new String[]{"cmd", "${a}{b}"});
+        Map<String, String> none = Collections.emptyMap();
+
+        assertNotNull(template.substitute(Map.of("a", "x", "b", "y"), none));
+        assertNull(template.substitute(Map.of("a", "$", "b", "y"), none));
+        assertNull(template.substitute(Map.of("a", "x", "b", "${a}"), none));
+        assertNull(template.substitute(Map.of("a}", "x"), none));
+        assertNull(CommandTemplate.compile(new String[]{"${${a}}"}).substitute(none, none));
+    }
+
+    @Test
+    public void testRandomCommandsAndProperties()
+    {
+        Random random = new Random(42);
+        String[] names = {"a", "b", "ab", "options"};
+        String[] fragments = {"x", " ", "'", "\"", "$", "{", "}", "${", "SPLIT:", "-v", "${a}", "${b}", "${ab}",
+            "${options}", "${missing}"};
+        for (int i = 0; i < 5000; i++)
+        {
+            String[] command = new String[1 + random.nextInt(4)];
+            for (int j = 0; j < command.length; j++)
+            {
+                command[j] = randomString(random, fragments);
+            }
+            Map<String, String> defaults = new HashMap<>();
+            Map<String, String> properties = new HashMap<>();
+            for (String name : names)
+            {
+                addRandomValue(random, fragments, name, defaults);
+                addRandomValue(random, fragments, name, properties);
+            }
+            assertSameAsOriginal(runtimeExec(command, defaults), properties);
+        }
+    }
+
+    private static void addRandomValue(Random random, String[] fragments, String name, Map<String, String> map)
+    {
+        int choice = random.nextInt(4);
+        if (choice == 0)
+        {
+            map.put(name, null);
+        }
+        else if (choice == 1)
+        {
+            String value = randomString(random, fragments);
+            // A value that refers to its own property never finishes substituting in the original
+            if (!value.contains("${" + name + "}") && !value.contains("${") && !value.endsWith("$"))
+            {
+                map.put(name, value);
+            }
+        }
+        else if (choice == 2)
+        {
+            map.put(name, randomString(random, new String[]{"x", " ", "-y", "'a b'", "SPLIT:", "1"}));
+        }
+    }
+
+    private static String randomString(Random random, String[] fragments)
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(5); i > 0; i--)
+        {
+            sb.append(fragments[random.nextInt(fragments.length)]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link PersistentProcessPool} and {@link PersistentProcess} using a shell script that echoes each line it
+ * is sent, followed by an end marker. Some lines make it fail, write to standard error or hang.
+ */
+public class PersistentProcessPoolTest
+{
+    private static final String END = "END";
+    private static final String[] ECHO = {"sh", "-c",
+        "while read line; do " +
+        "  case \"$line\" in " +
+        "    exit) exit 1 ;; " +
+        "    hang) sleep 60 ;; " +
+        "    err) echo problem >&2; sleep 0.2 ;; " +
+        "  esac; " +
+        "  echo \"$line\"; echo " + END + "; " +
+        "done"};
+
+    private PersistentProcessPool pool;
+
+    @AfterEach
+    public void after()
+    {
+        pool.close();
+    }
+
+    private List<String> send(String line, long timeoutMs) throws IOException
+    {
+        return pool.execute(process -> process.execute(line + '\n', END, timeoutMs));
+    }
+
+    private long pid() throws IOException
+    {
+        return pool.execute(PersistentProcess::pid);
+    }
+
+    @Test
+    public void testRepliesAndReuse() throws IOException
+    {
+        pool = new PersistentProcessPool(ECHO, null, UTF_8, 2, 0);
+
+        assertEquals(List.of("one"), send("one", 5000));
+        long pid = pid();
+        assertEquals(List.of("two"), send("two", 5000));
+        assertEquals(pid, pid());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void testProcessIsReplacedAfterMaxJobs() throws IOException
+    {
+        pool = new PersistentProcessPool(ECHO, null, UTF_8, 1, 2);
+
+        AtomicReference<Long> firstPid = new AtomicReference<>();
+        pool.execute(process ->
+        {
+            firstPid.set(process.pid());
+            return process.execute("one\n", END, 5000);
+        });
+        assertEquals(List.of("two"), send("two", 5000));
+
+        assertNotEquals(firstPid.get(), pid());
+        assertFalse(ProcessHandle.of(firstPid.get()).map(ProcessHandle::isAlive).orElse(false));
+    }
+
+    @Test
+    public void testProcessIsReplacedAfterItExits() throws IOException
+    {
+        pool = new PersistentProcessPool(ECHO, null, UTF_8, 1, 0);
+        long pid = pid();
+
+        IOException e = assertThrows(IOException.class, () -> send("exit", 5000));
+        assertTrue(e.getMessage().contains("exited"), e.getMessage());
+        assertEquals(0, pool.getIdleCount());
+
+        assertEquals(List.of("again"), send("again", 5000));
+        assertNotEquals(pid, pid());
+    }
+
+    @Test
+    public void testTimeoutStopsProcess() throws IOException
+    {
+        pool = new PersistentProcessPool(ECHO, null, UTF_8, 1, 0);
+
+        long start = System.currentTimeMillis();
+        IOException e = assertThrows(IOException.class, () -> send("hang", 300));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(e.getMessage().contains("did not reply within 300 ms"), e.getMessage());
+
+        assertEquals(List.of("after"), send("after", 5000));
+    }
+
+    @Test
+    public void testStdErrIsCollectedPerRequest() throws IOException
+    {
+        pool = new PersistentProcessPool(ECHO, null, UTF_8, 1, 0);
+
+        assertEquals("problem", pool.execute(process ->
+        {
+            process.execute("err\n", END, 5000);
+            return process.getStdErr();
+        }));
+        assertEquals("", pool.execute(process ->
+        {
+            process.execute("ok\n", END, 5000);
+            return process.getStdErr();
+        }));
+    }
+
+    @Test
+    public void testUnhealthyProcessIsReplaced() throws IOException
+    {
+        pool = new PersistentProcessPool(ECHO, null, UTF_8, 1, 0);
+        long pid = pid();
+        pool.setHealthCheck(process -> false);
+
+        assertNotEquals(pid, pid());
+    }
+}
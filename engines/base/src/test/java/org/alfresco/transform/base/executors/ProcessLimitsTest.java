@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collections;
+
+import org.alfresco.transform.base.executors.RuntimeExec.ExecutionResult;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Tests {@link ProcessLimits} applied by {@link RuntimeExec}, using standard unix commands.
+ */
+public class ProcessLimitsTest
+{
+    @BeforeAll
+    public static void shellAvailable()
+    {
+        assumeTrue(Files.isExecutable(Paths.get("/bin/sh")));
+    }
+
+    private static ExecutionResult execute(ProcessLimits processLimits, String script)
+    {
+        RuntimeExec runtimeExec = new RuntimeExec();
+        runtimeExec.setCommand(new String[]{"sh", "-c", script});
+        runtimeExec.setProcessLimits(processLimits);
+        return runtimeExec.execute(Collections.emptyMap(), 20000);
+    }
+
+    @Test
+    public void testNoLimitsLeavesCommandUnchanged()
+    {
+        String[] command = {"convert", "in.png", "out.jpg"};
+        ProcessLimits processLimits = new ProcessLimits();
+
+        assertTrue(processLimits.isEmpty());
+        assertArrayEquals(command, processLimits.apply(command));
+    }
+
+    @Test
+    public void testLimitsAreApplied()
+    {
+        ProcessLimits processLimits = new ProcessLimits();
+        processLimits.setMaxAddressSpace(DataSize.ofGigabytes(2));
+        processLimits.setMaxCpuTime(Duration.ofMillis(60500));
+        processLimits.setMaxOpenFiles(64);
+
+        ExecutionResult result = execute(processLimits, "ulimit -v; ulimit -t; ulimit -n");
+
+        assertEquals(0, result.getExitValue(), result.getStdErr());
+        assertEquals("2097152\n61\n64\n", result.getStdOut());
+    }
+
+    @Test
+    public void testCpuTimeLimitStopsProcess()
+    {
+        ProcessLimits processLimits = new ProcessLimits();
+        processLimits.setMaxCpuTime(Duration.ofSeconds(1));
+
+        long start = System.currentTimeMillis();
+        ExecutionResult result = execute(processLimits, "while true; do :; done");
+
+        assertFalse(result.getExitValue() == 0);
+        assertTrue(System.currentTimeMillis() - start < 15000);
+    }
+
+    @Test
+    public void testCpuAffinity()
+    {
+        assumeTrue(ProcessLimits.isCpuAffinitySupported() && Files.isDirectory(Paths.get("/proc/self")));
+        ProcessLimits processLimits = new ProcessLimits();
+        processLimits.setCpuAffinity("0");
+
+        ExecutionResult result = execute(processLimits, "grep Cpus_allowed_list /proc/self/status");
+
+        assertEquals(0, result.getExitValue(), result.getStdErr());
+        assertTrue(result.getStdOut().trim().endsWith("\t0"), result.getStdOut());
+    }
+}
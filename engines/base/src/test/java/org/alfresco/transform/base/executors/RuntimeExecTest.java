@@ -0,0 +1,203 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.executors;
+
+import org.alfresco.transform.base.executors.RuntimeExec.ExecutionResult;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link RuntimeExec} using standard unix commands.
+ */
+public class RuntimeExecTest
+{
+    private static RuntimeExec shell(String script)
+    {
+        RuntimeExec runtimeExec = new RuntimeExec();
+        runtimeExec.setCommand(new String[]{"sh", "-c", script});
+        return runtimeExec;
+    }
+
+    @Test
+    public void testOutputAndExitValue()
+    {
+        ExecutionResult result = shell("echo out; echo err >&2; exit 2").execute();
+
+        assertEquals("out\n", result.getStdOut());
+        assertEquals("err\n", result.getStdErr());
+        assertEquals(2, result.getExitValue());
+        assertFalse(result.getSuccess());
+    }
+
+    @Test
+    public void testPropertiesAndEnvironment()
+    {
+        RuntimeExec runtimeExec = new RuntimeExec();
+        runtimeExec.setCommand(new String[]{"sh", "-c", "echo ${value} $EXTRA"});
+        runtimeExec.setProcessProperties(Map.of("EXTRA", "fromEnvironment"));
+
+        ExecutionResult result = runtimeExec.execute(Map.of("value", "fromProperty"));
+
+        assertEquals("fromProperty fromEnvironment\n", result.getStdOut());
+        assertEquals(0, result.getExitValue());
+    }
+
+    @Test
+    public void testStdInIsClosed()
+    {
+        ExecutionResult result = shell("cat").execute(Collections.emptyMap(), 10000);
+
+        assertEquals("", result.getStdOut());
+        assertEquals(0, result.getExitValue());
+    }
+
+    @Test
+    public void testOutputIsBounded()
+    {
+        RuntimeExec runtimeExec = shell("head -c 100000 /dev/zero | tr '\\0' a");
+        runtimeExec.setMaxOutputBytes(1000);
+
+        ExecutionResult result = runtimeExec.execute();
+
+        assertEquals("a".repeat(1000) + "\n... 99000 more bytes were discarded", result.getStdOut());
+        assertEquals(0, result.getExitValue());
+    }
+
+    @Test
+    public void testTimeoutKillsProcessAndDescendants()
+    {
+        // The child's pid is written before the shell waits for it
+        long start = System.currentTimeMillis();
+        ExecutionResult result = shell("sleep 60 & echo $!; wait").execute(Collections.emptyMap(), 500);
+
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertFalse(result.getSuccess());
+        assertTrue(result.getStdErr().contains("Process was killed after 500 ms"), result.getStdErr());
+        long childPid = Long.parseLong(result.getStdOut().trim());
+        await().atMost(5, TimeUnit.SECONDS).until(() ->
+            ProcessHandle.of(childPid).map(p -> !p.isAlive()).orElse(true));
+    }
+
+    @Test
+    public void testInterruptKillsProcess()
+    {
+        Thread thread = Thread.currentThread();
+        new Thread(() ->
+        {
+            try
+            {
+                Thread.sleep(300);
+            }
+            catch (InterruptedException ignore)
+            {
+            }
+            thread.interrupt();
+        }).start();
+
+        long start = System.currentTimeMillis();
+        ExecutionResult result = shell("sleep 60").execute(Collections.emptyMap(), -1);
+
+        assertTrue(Thread.interrupted());
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertFalse(result.getSuccess());
+        assertTrue(result.getStdErr().contains("InterruptedException"), result.getStdErr());
+    }
+
+    @Test
+    public void testResourceUsage()
+    {
+        // A command that writes to a file, uses some CPU and runs long enough to be sampled
+        ExecutionResult result = shell(
+            "head -c 100000 /dev/zero > /dev/null; i=0; while [ $i -lt 20000 ]; do i=$((i+1)); done; sleep 0.3")
+            .execute(Collections.emptyMap(), 10000);
+
+        ResourceUsage usage = result.getResourceUsage();
+        assertEquals(0, result.getExitValue());
+        assertTrue(usage.getWallTimeMs() >= 300, usage.toString());
+        if (Files.isDirectory(Paths.get("/proc/self")))
+        {
+            assertTrue(usage.getPeakRssBytes() > 0, usage.toString());
+            assertTrue(usage.getBytesWritten() >= 100000, usage.toString());
+        }
+    }
+
+    @Test
+    public void testResourceUsageIncludesDescendants()
+    {
+        // Only the child shell writes, and it lives long enough for the descendants to be found
+        ExecutionResult result = shell("sh -c 'i=0; while [ $i -lt 2000 ]; do " +
+            "echo 0123456789012345678901234567890123456789012345678; i=$((i+1)); done > /dev/null; sleep 0.5' & wait")
+            .execute(Collections.emptyMap(), 10000);
+
+        assertEquals(0, result.getExitValue(), result.getStdErr());
+        if (Files.isDirectory(Paths.get("/proc/self")))
+        {
+            ResourceUsage usage = result.getResourceUsage();
+            assertTrue(usage.getBytesWritten() >= 100000, usage.toString());
+        }
+    }
+
+    @Test
+    public void testMoreCommandsThanOutputReadersAllRun() throws Exception
+    {
+        // The extra commands wait for earlier ones to finish, rather than starting more output reader threads
+        int commands = RuntimeExec.MAX_CONCURRENT_COMMANDS + 4;
+        ExecutorService callers = Executors.newFixedThreadPool(commands);
+        try
+        {
+            List<Future<ExecutionResult>> results = IntStream.range(0, commands)
+                .mapToObj(i -> callers.submit(() -> shell("sleep 0.2; echo " + i).execute(Collections.emptyMap(), 30000)))
+                .collect(Collectors.toList());
+            for (int i = 0; i < commands; i++)
+            {
+                ExecutionResult result = results.get(i).get(60, TimeUnit.SECONDS);
+                assertEquals(0, result.getExitValue(), result.getStdErr());
+                assertEquals(i + "\n", result.getStdOut());
+            }
+        }
+        finally
+        {
+            callers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.fakes;
+
+import static org.alfresco.transform.base.metadata.AbstractMetadataExtractorEmbedder.Type.EXTRACTOR;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.alfresco.transform.base.TransformManager;
+import org.alfresco.transform.base.metadata.AbstractMetadataExtractorEmbedder;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Returns the raw metadata it was created with, rather than reading it from the source. Its default mapping is in
+ * {@code FakeMetadataExtractor_metadata_extract.properties}.
+ */
+public class FakeMetadataExtractor extends AbstractMetadataExtractorEmbedder
+{
+    private final Map<String, Serializable> rawMetadata;
+    private Map<String, Set<String>> lastExtractMapping;
+
+    public FakeMetadataExtractor(Map<String, Serializable> rawMetadata)
+    {
+        super(EXTRACTOR, LoggerFactory.getLogger(FakeMetadataExtractor.class));
+        this.rawMetadata = rawMetadata;
+    }
+
+    /**
+     * @return the extract mapping used by the last call to {@link #extractMetadata}.
+     */
+    public Map<String, Set<String>> getLastExtractMapping()
+    {
+        return lastExtractMapping;
+    }
+
+    @Override
+    public void embedMetadata(String sourceMimetype, InputStream inputStream, String targetMimetype,
+            OutputStream outputStream, Map<String, String> transformOptions, TransformManager transformManager)
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, Serializable> extractMetadata(String sourceMimetype, InputStream inputStream,
+            String targetMimetype, OutputStream outputStream, Map<String, String> transformOptions,
+            TransformManager transformManager)
+    {
+        lastExtractMapping = getExtractMapping();
+        return new HashMap<>(rawMetadata);
+    }
+}
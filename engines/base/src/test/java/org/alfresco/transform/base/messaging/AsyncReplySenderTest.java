@@ -0,0 +1,268 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.messaging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.alfresco.transform.client.model.TransformReply;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests {@link AsyncReplySender}.
+ */
+public class AsyncReplySenderTest
+{
+    private final ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+    private final Connection connection = mock(Connection.class);
+    private final Session session = mock(Session.class);
+    private final MessageProducer producer = mock(MessageProducer.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<TransformReply> fallbackReplies = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void before() throws JMSException
+    {
+        when(connectionFactory.createConnection()).thenReturn(connection);
+        when(connection.createSession(anyBoolean(), anyInt())).thenReturn(session);
+        when(session.createProducer(any())).thenReturn(producer);
+        when(session.createBytesMessage()).thenAnswer(invocation -> new ActiveMQBytesMessage());
+    }
+
+    private AsyncReplySender createSender(int batchSize)
+    {
+        return createSender(batchSize, TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private AsyncReplySender createSender(int batchSize, long queueTimeoutMillis)
+    {
+        return new AsyncReplySender(connectionFactory, new TransformMessageConverter(), meterRegistry, 10,
+            batchSize, queueTimeoutMillis, (destination, reply, correlationId) -> fallbackReplies.add(reply));
+    }
+
+    private static TransformReply reply(String requestId)
+    {
+        return TransformReply.builder()
+            .withRequestId(requestId)
+            .withStatus(201)
+            .withTargetReference("target" + requestId)
+            .build();
+    }
+
+    @Test
+    public void testRepliesSentAndProducerCached() throws JMSException
+    {
+        AsyncReplySender sender = createSender(1);
+        ActiveMQQueue replyQueue = new ActiveMQQueue("replyQueue");
+        sender.send(replyQueue, reply("1"), "1");
+        sender.send(replyQueue, reply("2"), "2");
+        sender.stop(TimeUnit.SECONDS.toMillis(10));
+
+        verify(producer, times(2)).send(any());
+        verify(session, times(1)).createProducer(replyQueue);
+        verify(session, times(2)).commit();
+        assertEquals(2, meterRegistry.get("transform.reply.send").timer().count());
+        assertEquals(0, fallbackReplies.size());
+    }
+
+    @Test
+    public void testReplyIsCopiedWhenQueued() throws JMSException
+    {
+        TransformMessageConverter converter = new TransformMessageConverter();
+        List<String> sentReferences = new CopyOnWriteArrayList<>();
+        doAnswer(invocation ->
+        {
+            ActiveMQBytesMessage message = invocation.getArgument(0);
+            message.reset();
+            sentReferences.add(((TransformReply) converter.fromMessage(message)).getTargetReference());
+            return null;
+        }).when(producer).send(any());
+
+        AsyncReplySender sender = createSender(1);
+        TransformReply reply = reply("1");
+        sender.send(new ActiveMQQueue("replyQueue"), reply, "1");
+        reply.setTargetReference("changed");
+        sender.stop(TimeUnit.SECONDS.toMillis(10));
+
+        assertEquals(List.of("target1"), sentReferences);
+    }
+
+    @Test
+    public void testFailedBatchUsesFallback() throws JMSException
+    {
+        doThrow(new JMSException("broker unavailable")).when(session).commit();
+        AsyncReplySender sender = createSender(10);
+        sender.send(new ActiveMQQueue("replyQueue"), reply("1"), "1");
+        sender.send(new ActiveMQQueue("replyQueue"), reply("2"), "2");
+
+        await().atMost(10, TimeUnit.SECONDS).until(() -> fallbackReplies.size() == 2);
+        sender.stop(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(0, meterRegistry.get("transform.reply.send").timer().count());
+    }
+
+    @Test
+    public void testSendAfterStopUsesFallback()
+    {
+        AsyncReplySender sender = createSender(10);
+        sender.stop(TimeUnit.SECONDS.toMillis(10));
+        sender.send(new ActiveMQQueue("replyQueue"), reply("1"), "1");
+
+        assertEquals(1, fallbackReplies.size());
+        assertEquals(0, sender.getQueueSize());
+    }
+
+    @Test
+    public void testFullQueueUsesFallbackAfterTimeout() throws JMSException
+    {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation ->
+        {
+            blocked.countDown();
+            release.await();
+            return null;
+        }).when(producer).send(any());
+
+        AsyncReplySender sender = createSender(1, 100);
+        ActiveMQQueue replyQueue = new ActiveMQQueue("replyQueue");
+        sender.send(replyQueue, reply("0"), "0");
+        await().atMost(10, TimeUnit.SECONDS).until(() -> blocked.getCount() == 0);
+        for (int i = 1; i <= 10; i++)
+        {
+            sender.send(replyQueue, reply(Integer.toString(i)), Integer.toString(i));
+        }
+        assertEquals(0, fallbackReplies.size());
+
+        sender.send(replyQueue, reply("11"), "11");
+        assertEquals(1, fallbackReplies.size());
+        assertEquals("11", fallbackReplies.get(0).getRequestId());
+
+        release.countDown();
+        sender.stop(TimeUnit.SECONDS.toMillis(10));
+        verify(producer, times(11)).send(any());
+    }
+
+    @Test
+    public void testQueuedRepliesSentAfterInterrupt() throws JMSException
+    {
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicBoolean release = new AtomicBoolean();
+        doAnswer(invocation ->
+        {
+            blocked.countDown();
+            while (!release.get())
+            {
+                // not interruptible, so the interrupt is still pending when the next reply is polled
+                Thread.onSpinWait();
+            }
+            return null;
+        }).when(producer).send(any());
+
+        AsyncReplySender sender = createSender(1);
+        ActiveMQQueue replyQueue = new ActiveMQQueue("replyQueue");
+        sender.send(replyQueue, reply("0"), "0");
+        await().atMost(10, TimeUnit.SECONDS).until(() -> blocked.getCount() == 0);
+        for (int i = 1; i <= 3; i++)
+        {
+            sender.send(replyQueue, reply(Integer.toString(i)), Integer.toString(i));
+        }
+        Thread senderThread = (Thread) ReflectionTestUtils.getField(sender, "senderThread");
+        senderThread.interrupt();
+        release.set(true);
+
+        verify(producer, timeout(10000).times(4)).send(any());
+        assertEquals(0, sender.getQueueSize());
+        assertTrue(senderThread.isAlive());
+        sender.stop(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(0, fallbackReplies.size());
+    }
+
+    @Test
+    public void testNoRepliesLostWhenStoppedDuringSends() throws Exception
+    {
+        AtomicInteger sent = new AtomicInteger();
+        doAnswer(invocation -> sent.incrementAndGet()).when(producer).send(any());
+
+        AsyncReplySender sender = createSender(10);
+        ActiveMQQueue replyQueue = new ActiveMQQueue("replyQueue");
+        int threads = 4;
+        int repliesPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            for (int t = 0; t < threads; t++)
+            {
+                executor.submit(() ->
+                {
+                    for (int i = 0; i < repliesPerThread; i++)
+                    {
+                        sender.send(replyQueue, reply(Integer.toString(i)), Integer.toString(i));
+                    }
+                });
+            }
+            sender.stop(TimeUnit.SECONDS.toMillis(10));
+        }
+        finally
+        {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(threads * repliesPerThread, sent.get() + fallbackReplies.size());
+        assertEquals(0, sender.getQueueSize());
+    }
+}
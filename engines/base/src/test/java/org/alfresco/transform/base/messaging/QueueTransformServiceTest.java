@@ -180,12 +180,12 @@ public class QueueTransformServiceTest
 
         doReturn(request).when(transformMessageConverter).fromMessage(msg);
         doAnswer(invocation -> {transformReplySender.send(destination, reply); return null;})
-            .when(transformController).transform(request, null, destination);
+            .when(transformController).transform(request, null, null, destination);
 
         queueTransformService.receive(msg);
 
         verify(transformMessageConverter).fromMessage(msg);
-        verify(transformController).transform(request, null, destination);
+        verify(transformController).transform(request, null, null, destination);
         verify(transformReplySender).send(destination, reply);
     }
 
@@ -221,12 +221,12 @@ public class QueueTransformServiceTest
 
         doReturn(request).when(transformMessageConverter).fromMessage(msg);
         doAnswer(invocation -> {transformReplySender.send(destination, reply); return null;})
-            .when(transformController).transform(request, null, destination);
+            .when(transformController).transform(request, null, null, destination);
 
         queueTransformService.receive(msg);
 
         verify(transformMessageConverter).fromMessage(msg);
-        verify(transformController).transform(request, null, destination);
+        verify(transformController).transform(request, null, null, destination);
         verify(transformReplySender).send(destination, reply);
     }
 }
@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.metadata;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+
+import org.alfresco.transform.base.fakes.FakeMetadataExtractor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests the mapping of raw metadata to system properties and the caching of the extractMapping transform option.
+ */
+public class AbstractMetadataExtractorEmbedderTest
+{
+    static final String EXTRACT_MAPPING = "extractMapping";
+    private static final String MAPPING = "{\"author\":[\"cm:creator\",\"cm:author\"],\"subject\":[\"cm:description\"]}";
+
+    private FakeMetadataExtractor extractor;
+
+    @BeforeEach
+    public void before()
+    {
+        extractor = new FakeMetadataExtractor(Map.of(
+                "author", "Fred",
+                "title", "The title",
+                "subject", "The subject",
+                "unmapped", "ignored",
+                AbstractMetadataExtractorEmbedder.SYS_TEXT, "Some text"));
+    }
+
+    private String extract(Map<String, String> transformOptions) throws Exception
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        extractor.transform("text/plain", InputStream.nullInputStream(), "alfresco-metadata-extract",
+                outputStream, transformOptions, null);
+        return outputStream.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testDefaultMapping() throws Exception
+    {
+        assertEquals("{"+
+                "\"sys:text\":\"Some text\","+
+                "\"{http://www.alfresco.org/model/content/1.0}author\":\"Fred\","+
+                "\"{http://www.alfresco.org/model/content/1.0}title\":\"The title\"}",
+                extract(Map.of()));
+    }
+
+    @Test
+    public void testExtractMappingOption() throws Exception
+    {
+        assertEquals("{"+
+                "\"cm:author\":\"Fred\","+
+                "\"cm:creator\":\"Fred\","+
+                "\"cm:description\":\"The subject\","+
+                "\"sys:text\":\"Some text\"}",
+                extract(Map.of(EXTRACT_MAPPING, MAPPING)));
+    }
+
+    @Test
+    public void testExtractMappingIsCached() throws Exception
+    {
+        extract(Map.of(EXTRACT_MAPPING, MAPPING));
+        Map<String, Set<String>> first = extractor.getLastExtractMapping();
+        extract(Map.of(EXTRACT_MAPPING, new String(MAPPING))); // equal but not the same String
+        assertSame(first, extractor.getLastExtractMapping());
+
+        extract(Map.of(EXTRACT_MAPPING, "{\"author\":[\"cm:author\"]}"));
+        assertNotSame(first, extractor.getLastExtractMapping());
+        assertEquals(Map.of("author", Set.of("cm:author")), extractor.getLastExtractMapping());
+    }
+
+    @Test
+    public void testCachedExtractMappingIsUnmodifiable() throws Exception
+    {
+        extract(Map.of(EXTRACT_MAPPING, MAPPING));
+        Map<String, Set<String>> mapping = extractor.getLastExtractMapping();
+        assertThrows(UnsupportedOperationException.class, () -> mapping.remove("author"));
+        assertThrows(UnsupportedOperationException.class, () -> mapping.get("author").clear());
+    }
+
+    @Test
+    public void testCacheSize() throws Exception
+    {
+        ReflectionTestUtils.setField(extractor, "extractMappingCacheSize", 2);
+        extract(Map.of(EXTRACT_MAPPING, "{\"a\":[\"cm:a\"]}"));
+        extract(Map.of(EXTRACT_MAPPING, "{\"b\":[\"cm:b\"]}"));
+        extract(Map.of(EXTRACT_MAPPING, "{\"a\":[\"cm:a\"]}")); // most recently used
+        extract(Map.of(EXTRACT_MAPPING, "{\"c\":[\"cm:c\"]}"));
+
+        Map<?, ?> cache = (Map<?, ?>) ReflectionTestUtils.getField(extractor, "extractMappingCache");
+        assertEquals(Set.of("{\"a\":[\"cm:a\"]}", "{\"c\":[\"cm:c\"]}"), cache.keySet());
+    }
+
+    @Test
+    public void testCacheDisabled() throws Exception
+    {
+        ReflectionTestUtils.setField(extractor, "extractMappingCacheSize", 0);
+        extract(Map.of(EXTRACT_MAPPING, MAPPING));
+        Map<String, Set<String>> first = extractor.getLastExtractMapping();
+        extract(Map.of(EXTRACT_MAPPING, MAPPING));
+        assertNotSame(first, extractor.getLastExtractMapping());
+        assertEquals(first, extractor.getLastExtractMapping());
+
+        Map<?, ?> cache = (Map<?, ?>) ReflectionTestUtils.getField(extractor, "extractMappingCache");
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testInvalidExtractMapping()
+    {
+        assertThrows(IllegalArgumentException.class, () -> extract(Map.of(EXTRACT_MAPPING, "{not json")));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.metadata;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.transform.base.fakes.FakeMetadataExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Cost of mapping and writing the response of a metadata extract when the repository supplies an extractMapping
+ * option, with and without the cache of parsed extractMapping options. Not run as part of the build. Run the
+ * {@link #main} method from the test classpath (for example from an IDE).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetadataMappingBenchmark
+{
+    @Param({"0", "100"})
+    public int cacheSize;
+
+    private FakeMetadataExtractor extractor;
+    private Map<String, String> transformOptions;
+
+    @Setup
+    public void setup()
+    {
+        Map<String, Serializable> rawMetadata = new HashMap<>();
+        StringBuilder mapping = new StringBuilder("{");
+        for (int i = 0; i < 30; i++)
+        {
+            rawMetadata.put("property" + i, "value of property " + i);
+            if (i < 20)
+            {
+                mapping.append(i == 0 ? "" : ",")
+                       .append("\"property").append(i).append("\":[\"cm:property").append(i)
+                       .append("\",\"{http://www.alfresco.org/model/content/1.0}other").append(i).append("\"]");
+            }
+        }
+        mapping.append('}');
+
+        extractor = new FakeMetadataExtractor(rawMetadata);
+        ReflectionTestUtils.setField(extractor, "extractMappingCacheSize", cacheSize);
+        transformOptions = Map.of(AbstractMetadataExtractorEmbedderTest.EXTRACT_MAPPING, mapping.toString());
+    }
+
+    @Benchmark
+    public void extract() throws Exception
+    {
+        extractor.transform("text/plain", InputStream.nullInputStream(), "alfresco-metadata-extract",
+                OutputStream.nullOutputStream(), transformOptions, null);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(MetadataMappingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
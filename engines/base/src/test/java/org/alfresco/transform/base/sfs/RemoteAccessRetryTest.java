@@ -0,0 +1,189 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.sfs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.alfresco.transform.exceptions.TransformException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.MalformedURLException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.alfresco.transform.base.sfs.RemoteAccessRetry.DIRECT_URL_FETCH;
+import static org.alfresco.transform.base.sfs.RemoteAccessRetry.SFS_RETRIEVE;
+import static org.alfresco.transform.base.sfs.RemoteAccessRetry.SFS_SAVE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.HttpStatus.BAD_GATEWAY;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * Tests {@link RemoteAccessRetry}.
+ */
+public class RemoteAccessRetryTest
+{
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RemoteAccessRetry remoteAccessRetry = new RemoteAccessRetry();
+
+    @BeforeEach
+    public void before()
+    {
+        ReflectionTestUtils.setField(remoteAccessRetry, "maxAttempts", 3);
+        ReflectionTestUtils.setField(remoteAccessRetry, "initialIntervalMillis", 1L);
+        ReflectionTestUtils.setField(remoteAccessRetry, "multiplier", 2.0);
+        ReflectionTestUtils.setField(remoteAccessRetry, "maxIntervalMillis", 5L);
+        ReflectionTestUtils.setField(remoteAccessRetry, "meterRegistry", meterRegistry);
+        remoteAccessRetry.init();
+    }
+
+    private double retries(String endpoint)
+    {
+        return meterRegistry.get("transform.remote.retries").tag("endpoint", endpoint).counter().count();
+    }
+
+    private long calls(String endpoint, String outcome)
+    {
+        return meterRegistry.get("transform.remote.calls").tag("endpoint", endpoint).tag("outcome", outcome)
+                            .timer().count();
+    }
+
+    @Test
+    public void testTransientFailureRetried()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        String result = remoteAccessRetry.execute(SFS_SAVE, () ->
+        {
+            if (attempts.incrementAndGet() < 3)
+            {
+                throw new HttpServerErrorException(SERVICE_UNAVAILABLE);
+            }
+            return "ref";
+        });
+
+        assertEquals("ref", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, retries(SFS_SAVE));
+        assertEquals(1, calls(SFS_SAVE, "success"));
+    }
+
+    @Test
+    public void testRetriesExhausted()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(ResourceAccessException.class, () -> remoteAccessRetry.execute(SFS_RETRIEVE, () ->
+        {
+            attempts.incrementAndGet();
+            throw new ResourceAccessException("I/O error", new SocketTimeoutException("Read timed out"));
+        }));
+
+        assertEquals(3, attempts.get());
+        assertEquals(2, retries(SFS_RETRIEVE));
+        assertEquals(1, calls(SFS_RETRIEVE, "failure"));
+    }
+
+    @Test
+    public void testClientErrorNotRetried()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(TransformException.class, () -> remoteAccessRetry.execute(SFS_RETRIEVE, () ->
+        {
+            attempts.incrementAndGet();
+            throw new TransformException(NOT_FOUND, "Not found", new HttpClientErrorException(NOT_FOUND));
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(1, calls(SFS_RETRIEVE, "failure"));
+    }
+
+    @Test
+    public void testDirectAccessUrlFailures()
+    {
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(TransformException.class, () -> remoteAccessRetry.execute(DIRECT_URL_FETCH, () ->
+        {
+            attempts.incrementAndGet();
+            throw new TransformException(BAD_REQUEST, "Direct Access Url not found.",
+                new IOException("Server returned HTTP response code: 502 for URL: http://host/doc"));
+        }));
+        assertEquals(3, attempts.get());
+
+        attempts.set(0);
+        assertThrows(TransformException.class, () -> remoteAccessRetry.execute(DIRECT_URL_FETCH, () ->
+        {
+            attempts.incrementAndGet();
+            throw new TransformException(BAD_REQUEST, "Direct Access Url not found.",
+                new FileNotFoundException("http://host/missing"));
+        }));
+        assertEquals(1, attempts.get());
+
+        attempts.set(0);
+        assertThrows(TransformException.class, () -> remoteAccessRetry.execute(DIRECT_URL_FETCH, () ->
+        {
+            attempts.incrementAndGet();
+            throw new TransformException(BAD_REQUEST, "Direct Access Url not found.",
+                new IOException("Server returned HTTP response code: 403 for URL: http://host/expired"));
+        }));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void testIsTransient()
+    {
+        assertTrue(RemoteAccessRetry.isTransient(new HttpServerErrorException(BAD_GATEWAY)));
+        assertTrue(RemoteAccessRetry.isTransient(new TransformException(BAD_REQUEST, "x",
+            new ResourceAccessException("I/O error", new SocketTimeoutException("Read timed out")))));
+        assertTrue(RemoteAccessRetry.isTransient(new SocketTimeoutException("Connect timed out")));
+        assertTrue(RemoteAccessRetry.isTransient(new SocketException("Connection reset")));
+        assertTrue(RemoteAccessRetry.isTransient(
+            new IOException("Server returned HTTP response code: 503 for URL: http://host/doc")));
+
+        assertFalse(RemoteAccessRetry.isTransient(new HttpClientErrorException(BAD_REQUEST)));
+        assertFalse(RemoteAccessRetry.isTransient(
+            new IOException("Server returned HTTP response code: 401 for URL: http://host/doc")));
+        assertFalse(RemoteAccessRetry.isTransient(new ResourceAccessException("I/O error",
+            new UnknownHostException("host"))));
+        assertFalse(RemoteAccessRetry.isTransient(new ConnectException("Connection refused")));
+        assertFalse(RemoteAccessRetry.isTransient(new FileNotFoundException("http://host/missing")));
+        assertFalse(RemoteAccessRetry.isTransient(new MalformedURLException("no protocol")));
+        assertFalse(RemoteAccessRetry.isTransient(new IllegalStateException()));
+    }
+}
@@ -112,7 +112,7 @@ public class FragmentHandlerTest
         doAnswer(invocation ->
         {
             replies.add(Pair.of(invocation.getArgument(0), invocation.getArgument(1)));
-            return null;
+            return true;
         }).when(transformReplySender).send(any(), any());
 
         TransformRequest request = TransformRequest
@@ -129,6 +129,12 @@ public class FragmentHandlerTest
             .build();
         transformHandler.handleMessageRequest(request, Long.MAX_VALUE, null, probeTransform);
 
+        assertReplies(replies, lines, expectedError, expectedLines);
+    }
+
+    private void assertReplies(List<Pair<Destination, TransformReply>> replies, List<String> lines,
+        String expectedError, List<String> expectedLines)
+    {
         TransformReply lastReply = replies.get(replies.size() - 1).getRight();
         String errorDetails = lastReply.getErrorDetails();
         int status = lastReply.getStatus();
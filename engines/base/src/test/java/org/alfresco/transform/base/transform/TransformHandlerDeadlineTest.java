@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.transform;
+
+import org.alfresco.transform.base.fakes.FakeTransformEngineWithFragments;
+import org.alfresco.transform.base.fakes.FakeTransformerFragments;
+import org.alfresco.transform.base.messaging.TransformReplySender;
+import org.alfresco.transform.base.model.FileRefEntity;
+import org.alfresco.transform.base.model.FileRefResponse;
+import org.alfresco.transform.base.probes.ProbeTransform;
+import org.alfresco.transform.base.sfs.SharedFileStoreClient;
+import org.alfresco.transform.client.model.TransformReply;
+import org.alfresco.transform.client.model.TransformRequest;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.alfresco.transform.base.transform.TransformHandlerReplyMemoTest.createRequest;
+import static org.alfresco.transform.common.RequestParamMap.TIMEOUT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * Tests the deadline of message requests, which includes the time spent on the queue.
+ */
+@SpringBootTest(classes={org.alfresco.transform.base.Application.class},
+    properties = {"transform.engine.deadline.clockSkew=10000"})
+@ContextConfiguration(classes = {
+    FakeTransformEngineWithFragments.class,
+    FakeTransformerFragments.class})
+public class TransformHandlerDeadlineTest
+{
+    @Autowired
+    private TransformHandler transformHandler;
+
+    @MockBean
+    protected SharedFileStoreClient fakeSfsClient;
+    @MockBean
+    private TransformReplySender transformReplySender;
+    @MockBean
+    private ProbeTransform probeTransform;
+
+    private final List<TransformReply> replies = new ArrayList<>();
+
+    @BeforeEach
+    public void before()
+    {
+        when(fakeSfsClient.retrieveFile(any()))
+            .thenReturn(new ResponseEntity<>(new ByteArrayResource("Finished".getBytes(StandardCharsets.UTF_8)),
+                new HttpHeaders(), OK));
+        when(fakeSfsClient.saveFile(any()))
+            .thenReturn(new FileRefResponse(new FileRefEntity(UUID.randomUUID().toString())));
+        doAnswer(invocation ->
+        {
+            replies.add(invocation.getArgument(1));
+            return true;
+        }).when(transformReplySender).send(any(), any());
+    }
+
+    @Test
+    public void testRequestIsDroppedIfDeadlinePassedOnQueue()
+    {
+        TransformRequest request = createRequest(Map.of());
+        long sentTime = System.currentTimeMillis() - 60000;
+        transformHandler.handleMessageRequest(request, 1000L, sentTime, new ActiveMQQueue("replyQueue"),
+            probeTransform);
+
+        assertEquals(1, replies.size());
+        assertEquals(HttpStatus.REQUEST_TIMEOUT.value(), replies.get(0).getStatus());
+        verify(fakeSfsClient, never()).retrieveFile(any());
+    }
+
+    @Test
+    public void testSenderClockBehindDoesNotExpireDeadline()
+    {
+        // Sent just now by a sender whose clock is 8 seconds behind, which is within the allowed skew
+        TransformRequest request = createRequest(Map.of());
+        long sentTime = System.currentTimeMillis() - 8000;
+        transformHandler.handleMessageRequest(request, 5000L, sentTime, new ActiveMQQueue("replyQueue"),
+            probeTransform);
+
+        assertEquals(1, replies.size());
+        assertEquals(HttpStatus.CREATED.value(), replies.get(0).getStatus());
+    }
+
+    @Test
+    public void testInvalidTimeoutOption()
+    {
+        TransformRequest request = createRequest(Map.of(TIMEOUT, "soon"));
+        transformHandler.handleMessageRequest(request, Long.MAX_VALUE, new ActiveMQQueue("replyQueue"),
+            probeTransform);
+
+        assertEquals(1, replies.size());
+        assertEquals(HttpStatus.BAD_REQUEST.value(), replies.get(0).getStatus());
+        assertEquals("Transform failed - Invalid timeout transform option: soon", replies.get(0).getErrorDetails());
+        verify(fakeSfsClient, never()).retrieveFile(any());
+    }
+}
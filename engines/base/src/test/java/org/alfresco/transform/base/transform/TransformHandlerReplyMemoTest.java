@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.transform;
+
+import com.google.common.collect.ImmutableList;
+import org.alfresco.transform.base.fakes.FakeTransformEngineWithFragments;
+import org.alfresco.transform.base.fakes.FakeTransformerFragments;
+import org.alfresco.transform.base.messaging.TransformReplySender;
+import org.alfresco.transform.base.model.FileRefEntity;
+import org.alfresco.transform.base.model.FileRefResponse;
+import org.alfresco.transform.base.probes.ProbeTransform;
+import org.alfresco.transform.base.sfs.SharedFileStoreClient;
+import org.alfresco.transform.client.model.TransformReply;
+import org.alfresco.transform.client.model.TransformRequest;
+import org.apache.activemq.command.ActiveMQQueue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ContextConfiguration;
+
+import jakarta.jms.Destination;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.alfresco.transform.base.transform.StreamHandlerTest.read;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_IMAGE_JPEG;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_PDF;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * Tests that the {@link TransformHandler} uses the {@link TransformReplyMemo} to resend the replies to a request
+ * that is redelivered by the broker, rather than transforming it again.
+ */
+@SpringBootTest(classes={org.alfresco.transform.base.Application.class},
+    properties = {"transform.engine.replyMemo.maxEntries=100"})
+@ContextConfiguration(classes = {
+    FakeTransformEngineWithFragments.class,
+    FakeTransformerFragments.class})
+public class TransformHandlerReplyMemoTest
+{
+    @Autowired
+    private TransformHandler transformHandler;
+
+    @MockBean
+    protected SharedFileStoreClient fakeSfsClient;
+    @MockBean
+    private TransformReplySender transformReplySender;
+    @MockBean
+    private ProbeTransform probeTransform;
+
+    /**
+     * @return a request on a queue for the fake fragments transformer, which returns each line of the source as a
+     *         separate fragment.
+     */
+    static TransformRequest createRequest(Map<String, String> transformOptions)
+    {
+        return TransformRequest
+            .builder()
+            .withRequestId(UUID.randomUUID().toString())
+            .withSourceMediaType(MIMETYPE_PDF)
+            .withTargetMediaType(MIMETYPE_IMAGE_JPEG)
+            .withTargetExtension("jpeg")
+            .withSchema(1)
+            .withClientData("ACS")
+            .withSourceReference(UUID.randomUUID().toString())
+            .withSourceSize(32L)
+            .withTransformRequestOptions(new HashMap<>(transformOptions))
+            .withInternalContextForTransformEngineTests()
+            .build();
+    }
+
+    /**
+     * Handles the same message request twice, as if it had been redelivered by the broker.
+     * @return the target reference of each reply
+     */
+    private List<String> handleRedeliveredRequest(List<String> lines, boolean targetsExist, boolean sent)
+    {
+        List<String> targetReferences = new ArrayList<>();
+
+        when(fakeSfsClient.retrieveFile(any()))
+            .thenReturn(new ResponseEntity<>(new ByteArrayResource("line1\nline2\nFinished".getBytes(StandardCharsets.UTF_8)),
+                new HttpHeaders(), OK));
+        when(fakeSfsClient.saveFile(any()))
+            .thenAnswer(invocation ->
+        {
+            lines.add(read(invocation.getArgument(0)));
+            return new FileRefResponse(new FileRefEntity(UUID.randomUUID().toString()));
+        });
+        when(fakeSfsClient.exists(any())).thenReturn(targetsExist);
+        doAnswer(invocation ->
+        {
+            TransformReply reply = invocation.getArgument(1);
+            assertEquals(HttpStatus.CREATED.value(), reply.getStatus());
+            targetReferences.add(reply.getTargetReference());
+            return sent;
+        }).when(transformReplySender).send(any(), any());
+
+        TransformRequest request = createRequest(Map.of());
+        Destination replyToQueue = new ActiveMQQueue("replyQueue");
+        transformHandler.handleMessageRequest(request, Long.MAX_VALUE, replyToQueue, probeTransform);
+        transformHandler.handleMessageRequest(request, Long.MAX_VALUE, replyToQueue, probeTransform);
+        return targetReferences;
+    }
+
+    @Test
+    public void testRedeliveredRequestResendsReplies()
+    {
+        List<String> lines = new ArrayList<>();
+        List<String> targetReferences = handleRedeliveredRequest(lines, true, true);
+
+        assertEquals(ImmutableList.of("line1", "line2", "Finished"), lines);
+        assertEquals(6, targetReferences.size());
+        assertEquals(targetReferences.subList(0, 3), targetReferences.subList(3, 6));
+    }
+
+    @Test
+    public void testRedeliveredRequestIsTransformedAgainIfTargetsHaveGone()
+    {
+        List<String> lines = new ArrayList<>();
+        List<String> targetReferences = handleRedeliveredRequest(lines, false, true);
+
+        assertEquals(ImmutableList.of("line1", "line2", "Finished", "line1", "line2", "Finished"), lines);
+        assertEquals(6, targetReferences.size());
+        assertEquals(6, new HashSet<>(targetReferences).size());
+    }
+
+    @Test
+    public void testRepliesAreNotMemoizedIfNotSent()
+    {
+        List<String> lines = new ArrayList<>();
+        handleRedeliveredRequest(lines, true, false);
+
+        assertEquals(ImmutableList.of("line1", "line2", "Finished", "line1", "line2", "Finished"), lines);
+        verify(fakeSfsClient, never()).exists(any());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.transform;
+
+import org.alfresco.transform.exceptions.TransformException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.http.HttpStatus.REQUEST_TIMEOUT;
+
+/**
+ * Tests the deadline and fragment handling of {@link TransformManagerImpl}.
+ */
+public class TransformManagerImplTest
+{
+    private final TransformManagerImpl transformManager = new TransformManagerImpl();
+
+    @Test
+    public void testNoDeadline() throws Exception
+    {
+        assertNull(transformManager.getRemainingTime());
+        assertDoesNotThrow(transformManager::checkDeadline);
+        try (TransformManagerImpl.Interruption ignored = transformManager.interruptAtDeadline())
+        {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testDeadlinePassed()
+    {
+        transformManager.setDeadline(System.currentTimeMillis() - 1000);
+
+        assertEquals(1L, transformManager.getRemainingTime());
+        TransformException e = assertThrows(TransformException.class, transformManager::checkDeadline);
+        assertEquals(REQUEST_TIMEOUT, e.getStatus());
+    }
+
+    @Test
+    public void testInterruptedAtDeadline()
+    {
+        transformManager.setDeadline(System.currentTimeMillis() + 100);
+
+        try (TransformManagerImpl.Interruption ignored = transformManager.interruptAtDeadline())
+        {
+            assertThrows(InterruptedException.class, () -> Thread.sleep(10000));
+        }
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertThrows(TransformException.class, transformManager::checkDeadline);
+    }
+
+    @Test
+    public void testNotInterruptedIfCompletedBeforeDeadline() throws Exception
+    {
+        transformManager.setDeadline(System.currentTimeMillis() + 100);
+
+        try (TransformManagerImpl.Interruption ignored = transformManager.interruptAtDeadline())
+        {
+            assertTrue(transformManager.getRemainingTime() <= 100);
+        }
+        Thread.sleep(200);
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void testOnlyQueueRequestsCanRespondWithFragments()
+    {
+        assertTrue(transformManager.canRespondWithFragments());
+
+        transformManager.setRequest(new MockHttpServletRequest());
+
+        assertFalse(transformManager.canRespondWithFragments());
+        assertThrows(IllegalStateException.class, () -> transformManager.respondWithFragment(0, true));
+    }
+}
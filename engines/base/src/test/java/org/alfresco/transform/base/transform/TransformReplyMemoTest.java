@@ -0,0 +1,164 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.base.transform;
+
+import org.alfresco.transform.client.model.TransformRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_IMAGE_JPEG;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_PDF;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link TransformReplyMemo}.
+ */
+public class TransformReplyMemoTest
+{
+    @TempDir
+    File tempDir;
+
+    private TransformReplyMemo createMemo(int maxEntries, String directory)
+    {
+        TransformReplyMemo memo = new TransformReplyMemo();
+        ReflectionTestUtils.setField(memo, "maxEntries", maxEntries);
+        ReflectionTestUtils.setField(memo, "directory", directory);
+        memo.init();
+        return memo;
+    }
+
+    private static TransformRequest request(String requestId)
+    {
+        return TransformRequest.builder()
+            .withRequestId(requestId)
+            .withSourceMediaType(MIMETYPE_PDF)
+            .withTargetMediaType(MIMETYPE_IMAGE_JPEG)
+            .withInternalContextForTransformEngineTests()
+            .build();
+    }
+
+    private static List<TransformReplyMemo.Fragment> fragments(String... targetReferences)
+    {
+        return Arrays.stream(targetReferences)
+            .map(ref -> new TransformReplyMemo.Fragment(ref, (long) ref.length()))
+            .toList();
+    }
+
+    @Test
+    public void testUnknownRequest()
+    {
+        TransformReplyMemo memo = createMemo(10, "");
+        assertNull(memo.get(request("1")));
+    }
+
+    @Test
+    public void testCompletedRequest()
+    {
+        TransformReplyMemo memo = createMemo(10, "");
+        memo.put(request("1"), fragments("target1", "target2"));
+
+        List<TransformReplyMemo.Fragment> fragments = memo.get(request("1"));
+        assertNotNull(fragments);
+        assertEquals(2, fragments.size());
+        assertEquals("target1", fragments.get(0).getTargetReference());
+        assertEquals("target2", fragments.get(1).getTargetReference());
+        assertEquals(7L, fragments.get(1).getTargetSize());
+        assertNull(memo.get(request("2")));
+    }
+
+    @Test
+    public void testRemove()
+    {
+        TransformReplyMemo memo = createMemo(10, "");
+        memo.put(request("1"), fragments("target1"));
+        memo.put(request("2"), fragments("target2"));
+        memo.remove(request("1"));
+
+        assertNull(memo.get(request("1")));
+        assertNotNull(memo.get(request("2")));
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        TransformReplyMemo memo = createMemo(0, "");
+        memo.put(request("1"), fragments("target1"));
+        assertNull(memo.get(request("1")));
+    }
+
+    @Test
+    public void testRequestWithoutInternalContext()
+    {
+        TransformReplyMemo memo = createMemo(10, "");
+        TransformRequest request = new TransformRequest();
+        request.setRequestId("1");
+        memo.put(request, fragments("target1"));
+        assertNull(memo.get(request));
+        assertEquals(0, memo.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedRemoved()
+    {
+        TransformReplyMemo memo = createMemo(2, "");
+        memo.put(request("1"), fragments("target1"));
+        memo.put(request("2"), fragments("target2"));
+        memo.get(request("1"));
+        memo.put(request("3"), fragments("target3"));
+
+        assertEquals(2, memo.size());
+        assertNotNull(memo.get(request("1")));
+        assertNull(memo.get(request("2")));
+        assertNotNull(memo.get(request("3")));
+    }
+
+    @Test
+    public void testSurvivesRestart()
+    {
+        TransformReplyMemo memo = createMemo(3, tempDir.getPath());
+        for (int i = 1; i <= 10; i++)
+        {
+            memo.put(request(Integer.toString(i)), fragments("target" + i));
+        }
+        assertTrue(new File(tempDir, TransformReplyMemo.JOURNAL_FILENAME).exists());
+        memo.stop();
+
+        TransformReplyMemo restarted = createMemo(3, tempDir.getPath());
+        assertEquals(3, restarted.size());
+        assertNull(restarted.get(request("7")));
+        assertEquals("target8", restarted.get(request("8")).get(0).getTargetReference());
+        assertEquals("target10", restarted.get(request("10")).get(0).getTargetReference());
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.imagemagick;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Works out the ImageMagick {@code -limit} arguments to use, so that the ImageMagick processes that may run at the
+ * same time share the memory and cpus of the container rather than each assuming it has the whole machine. Beyond the
+ * memory limit ImageMagick uses memory mapped files and then its disk cache, so a large image takes longer rather than
+ * causing the container to run out of memory.
+ * <p>
+ * The container's memory and cpus are taken from the JVM, which reads the cgroup memory limit and cpu quota when
+ * running in a container. The memory used by the JVM's heap is not available to ImageMagick.
+ * <p>
+ * The derived limits assume that every JMS listener thread may run ImageMagick at the same time, so with the default
+ * concurrency of 10 they are small. They are therefore only used when enabled. Otherwise only limits that have been
+ * set explicitly are passed.
+ */
+public class ImageMagickResourceLimits
+{
+    private static final long MIB = 1024 * 1024;
+    private static final long MIN_MEMORY = 32 * MIB;
+
+    private final long memory;
+    private final long map;
+    private final int thread;
+
+    /**
+     * @param containerMemory the total memory of the container in bytes
+     * @param jvmMemory the maximum memory that may be used by the JVM's heap
+     * @param cpus the number of cpus available to the container
+     * @param concurrency the maximum number of transforms that may run at the same time
+     */
+    public ImageMagickResourceLimits(long containerMemory, long jvmMemory, int cpus, int concurrency)
+    {
+        concurrency = Math.max(1, concurrency);
+        long available = Math.max(containerMemory - jvmMemory, containerMemory / 4);
+        long perProcess = Math.max(MIN_MEMORY, available / concurrency / MIB * MIB);
+        map = perProcess;
+        memory = Math.max(MIN_MEMORY, perProcess / 2 / MIB * MIB);
+        thread = Math.max(1, cpus / concurrency);
+    }
+
+    /**
+     * @param concurrency the maximum number of transforms that may run at the same time
+     * @return limits based on the memory and cpus of the container in which this JVM is running.
+     */
+    public static ImageMagickResourceLimits forContainer(int concurrency)
+    {
+        long containerMemory = ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+            .getTotalMemorySize();
+        return new ImageMagickResourceLimits(containerMemory, Runtime.getRuntime().maxMemory(),
+            Runtime.getRuntime().availableProcessors(), concurrency);
+    }
+
+    /**
+     * @param concurrency a JMS listener concurrency such as {@code "1-10"} or {@code "5"}
+     * @return the upper limit of the concurrency, or 1 if it cannot be parsed.
+     */
+    public static int maxConcurrency(String concurrency)
+    {
+        concurrency = StringUtils.defaultString(concurrency);
+        String max = StringUtils.substringAfter(concurrency, "-");
+        try
+        {
+            return Math.max(1, Integer.parseInt((max.isEmpty() ? concurrency : max).trim()));
+        }
+        catch (NumberFormatException e)
+        {
+            return 1;
+        }
+    }
+
+    /**
+     * @param memoryOverride if not blank, used in place of the derived memory limit, such as {@code "1GiB"}
+     * @param mapOverride if not blank, used in place of the derived map limit
+     * @param threadOverride if not blank, used in place of the derived thread limit
+     * @return the {@code -limit} arguments to pass to ImageMagick.
+     */
+    public List<String> toArguments(String memoryOverride, String mapOverride, String threadOverride)
+    {
+        List<String> arguments = new ArrayList<>();
+        addLimit(arguments, "memory", memoryOverride, memory / MIB + "MiB");
+        addLimit(arguments, "map", mapOverride, map / MIB + "MiB");
+        addLimit(arguments, "thread", threadOverride, Integer.toString(thread));
+        return arguments;
+    }
+
+    /**
+     * @return {@code -limit} arguments for just the limits that have been set, without deriving the others.
+     */
+    public static List<String> toExplicitArguments(String memory, String map, String thread)
+    {
+        List<String> arguments = new ArrayList<>();
+        if (StringUtils.isNotBlank(memory))
+        {
+            addLimit(arguments, "memory", memory, null);
+        }
+        if (StringUtils.isNotBlank(map))
+        {
+            addLimit(arguments, "map", map, null);
+        }
+        if (StringUtils.isNotBlank(thread))
+        {
+            addLimit(arguments, "thread", thread, null);
+        }
+        return arguments;
+    }
+
+    private static void addLimit(List<String> arguments, String type, String override, String derived)
+    {
+        arguments.add("-limit");
+        arguments.add(type);
+        arguments.add(StringUtils.isBlank(override) ? derived : override.trim());
+    }
+
+    public long getMemory()
+    {
+        return memory;
+    }
+
+    public long getMap()
+    {
+        return map;
+    }
+
+    public int getThread()
+    {
+        return thread;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "memory=" + memory / MIB + "MiB, map=" + map / MIB + "MiB, thread=" + thread;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.imagemagick;
+
+import java.util.List;
+
+import org.alfresco.transform.base.executors.ExecParameterTokenizer;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Creates the requests sent to a long running {@code magick -script -} process, so that the same options as
+ * {@code convert ${source} ${options} -strip -quiet ${target}} are applied without starting a new process.
+ * <p>
+ * Each request reads the source and writes the target within parentheses, with {@code -respect-parentheses}, so
+ * that settings from one request are not applied to the next. All images are then deleted, and a separate image
+ * writes the end marker to standard output, so the reply ends even if the transform itself failed.
+ */
+public final class ImageMagickScript
+{
+    public static final String END_MARKER = "ALFRESCO-IMAGEMAGICK-END";
+
+    private ImageMagickScript()
+    {
+    }
+
+    /**
+     * @param source the source file, which may include a page range such as {@code [0]}
+     * @param options created by {@link ImageMagickOptionsBuilder}
+     * @param target the target file
+     * @return a single line script.
+     */
+    public static String request(String source, String options, String target)
+    {
+        StringBuilder sb = new StringBuilder("-respect-parentheses ( -quiet -read ");
+        sb.append(quote(source));
+        if (StringUtils.isNotBlank(options))
+        {
+            List<String> tokens = new ExecParameterTokenizer(options).getAllTokens();
+            for (String token : tokens)
+            {
+                sb.append(' ').append(quote(token));
+            }
+        }
+        sb.append(" -strip -write ").append(quote(target))
+          .append(" ) -delete 0--1 ( xc: -format ").append(quote(END_MARKER + "\\n"))
+          .append(" -write info:fd:1 ) -delete 0--1\n");
+        return sb.toString();
+    }
+
+    // Within double quotes, a backslash escapes the next character
+    static String quote(String token)
+    {
+        return '"' + token.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
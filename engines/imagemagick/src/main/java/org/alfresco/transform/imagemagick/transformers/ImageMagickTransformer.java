@@ -27,7 +27,6 @@
 package org.alfresco.transform.imagemagick.transformers;
 
 import static org.alfresco.transform.base.util.Util.stringToInteger;
-import static org.alfresco.transform.base.util.Util.stringToLong;
 import static org.alfresco.transform.common.Mimetype.MIMETYPE_IMAGE_BMP;
 import static org.alfresco.transform.common.Mimetype.MIMETYPE_IMAGE_JP2;
 import static org.alfresco.transform.common.Mimetype.MIMETYPE_IMAGE_JPEG;
@@ -50,21 +49,31 @@ import static org.alfresco.transform.common.RequestParamMap.RESIZE_PERCENTAGE;
 import static org.alfresco.transform.common.RequestParamMap.RESIZE_WIDTH;
 import static org.alfresco.transform.common.RequestParamMap.START_PAGE;
 import static org.alfresco.transform.common.RequestParamMap.THUMBNAIL;
-import static org.alfresco.transform.common.RequestParamMap.TIMEOUT;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.alfresco.transform.base.TransformManager;
 import org.alfresco.transform.base.executors.AbstractCommandExecutor;
+import org.alfresco.transform.base.executors.PersistentProcessPool;
 import org.alfresco.transform.base.executors.RuntimeExec;
 import org.alfresco.transform.base.util.CustomTransformerFileAdaptor;
 import org.alfresco.transform.exceptions.TransformException;
 import org.alfresco.transform.imagemagick.ImageMagickOptionsBuilder;
+import org.alfresco.transform.imagemagick.ImageMagickResourceLimits;
+import org.alfresco.transform.imagemagick.ImageMagickScript;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -75,6 +84,8 @@ import org.springframework.stereotype.Component;
 @Component
 public class ImageMagickTransformer extends AbstractCommandExecutor implements CustomTransformerFileAdaptor
 {
+    private static final Logger logger = LoggerFactory.getLogger(ImageMagickTransformer.class);
+
     private final List<String> singlePageFormats = List.of(MIMETYPE_IMAGE_BMP, MIMETYPE_IMAGE_JP2, MIMETYPE_IMAGE_JPEG, MIMETYPE_IMAGE_PNG, MIMETYPE_IMAGE_XWD);
 
     @Value("${transform.core.imagemagick.exe}")
@@ -90,6 +101,33 @@ public class ImageMagickTransformer extends AbstractCommandExecutor implements C
     @Value("${transform.core.imagemagick.config}")
     private String config;
 
+    // -limit arguments that have been set. If enabled, the others are derived from the container's memory and cpus.
+    @Value("${transform.core.imagemagick.limit.enabled:false}")
+    private boolean limitEnabled;
+    @Value("${transform.core.imagemagick.limit.memory:}")
+    private String limitMemory;
+    @Value("${transform.core.imagemagick.limit.map:}")
+    private String limitMap;
+    @Value("${transform.core.imagemagick.limit.thread:}")
+    private String limitThread;
+    @Value("${jms-listener.concurrency:1}")
+    private String concurrency;
+
+    // Long running magick -script processes, rather than a new process per transform. Off by default, as the script
+    // syntax has only been checked by ImageMagickScriptIT, which needs ImageMagick 7 to be installed. Not used if
+    // process limits are configured, as they apply to a single transform and the pooled processes run many.
+    @Value("${transform.core.imagemagick.pool.enabled:false}")
+    private boolean poolEnabled;
+    @Value("${transform.core.imagemagick.pool.exe:/usr/bin/magick}")
+    private String poolExe;
+    @Value("${transform.core.imagemagick.pool.maxProcesses:4}")
+    private int poolMaxProcesses;
+    @Value("${transform.core.imagemagick.pool.maxJobsPerProcess:100}")
+    private int poolMaxJobsPerProcess;
+
+    private List<String> limitArguments;
+    private PersistentProcessPool pool;
+
     @PostConstruct
     private void createCommands()
     {
@@ -106,10 +144,46 @@ public class ImageMagickTransformer extends AbstractCommandExecutor implements C
             throw new IllegalArgumentException("ImageMagickTransformer IMAGEMAGICK_ROOT variable cannot be null or empty");
         }
 
+        limitArguments = createLimitArguments();
         super.transformCommand = createTransformCommand();
         super.checkCommand = createCheckCommand();
     }
 
+    /**
+     * Creates any pool of processes, once the {@link #getProcessLimits() process limits} are known.
+     */
+    @Override
+    public void afterPropertiesSet()
+    {
+        super.afterPropertiesSet();
+        if (poolEnabled)
+        {
+            if (getProcessLimits() != null)
+            {
+                logger.warn("The ImageMagick process pool is not used, as process limits are configured for {}",
+                    getTransformerName());
+            }
+            else
+            {
+                List<String> command = new ArrayList<>();
+                command.add(poolExe);
+                command.addAll(limitArguments);
+                command.addAll(List.of("-script", "-"));
+                pool = new PersistentProcessPool(command.toArray(new String[0]), createProcessProperties(),
+                    StandardCharsets.UTF_8, poolMaxProcesses, poolMaxJobsPerProcess);
+            }
+        }
+    }
+
+    @PreDestroy
+    private void closePool()
+    {
+        if (pool != null)
+        {
+            pool.close();
+        }
+    }
+
     @Override
     public String getTransformerName()
     {
@@ -121,10 +195,29 @@ public class ImageMagickTransformer extends AbstractCommandExecutor implements C
     {
         RuntimeExec runtimeExec = new RuntimeExec();
         Map<String, String[]> commandsAndArguments = new HashMap<>();
-        commandsAndArguments.put(".*",
-            new String[]{exe, "${source}", "SPLIT:${options}", "-strip", "-quiet", "${target}"});
+        List<String> command = new ArrayList<>();
+        command.add(exe);
+        if (limitArguments != null) // null when called from the super class constructor
+        {
+            command.addAll(limitArguments);
+        }
+        command.addAll(List.of("${source}", "SPLIT:${options}", "-strip", "-quiet", "${target}"));
+        commandsAndArguments.put(".*", command.toArray(new String[0]));
         runtimeExec.setCommandsAndArguments(commandsAndArguments);
+        runtimeExec.setProcessProperties(createProcessProperties());
+
+        Map<String, String> defaultProperties = new HashMap<>();
+        defaultProperties.put("options", null);
+        runtimeExec.setDefaultProperties(defaultProperties);
+
+        runtimeExec.setErrorCodes(
+            "1,2,255,400,405,410,415,420,425,430,435,440,450,455,460,465,470,475,480,485,490,495,499,700,705,710,715,720,725,730,735,740,750,755,760,765,770,775,780,785,790,795,799");
 
+        return runtimeExec;
+    }
+
+    private Map<String, String> createProcessProperties()
+    {
         Map<String, String> processProperties = new HashMap<>();
         processProperties.put("MAGICK_HOME", root);
         processProperties.put("DYLD_FALLBACK_LIBRARY_PATH", dyn);
@@ -139,16 +232,20 @@ public class ImageMagickTransformer extends AbstractCommandExecutor implements C
         {
             processProperties.put("MAGICK_CONFIGURE_PATH", config);
         }
-        runtimeExec.setProcessProperties(processProperties);
-
-        Map<String, String> defaultProperties = new HashMap<>();
-        defaultProperties.put("options", null);
-        runtimeExec.setDefaultProperties(defaultProperties);
-
-        runtimeExec.setErrorCodes(
-            "1,2,255,400,405,410,415,420,425,430,435,440,450,455,460,465,470,475,480,485,490,495,499,700,705,710,715,720,725,730,735,740,750,755,760,765,770,775,780,785,790,795,799");
+        return processProperties;
+    }
 
-        return runtimeExec;
+    private List<String> createLimitArguments()
+    {
+        List<String> arguments = limitEnabled
+            ? ImageMagickResourceLimits.forContainer(ImageMagickResourceLimits.maxConcurrency(concurrency))
+                                       .toArguments(limitMemory, limitMap, limitThread)
+            : ImageMagickResourceLimits.toExplicitArguments(limitMemory, limitMap, limitThread);
+        if (!arguments.isEmpty())
+        {
+            logger.info("ImageMagick {}", String.join(" ", arguments));
+        }
+        return arguments;
     }
 
     @Override
@@ -205,9 +302,46 @@ public class ImageMagickTransformer extends AbstractCommandExecutor implements C
                 stringToInteger(endPageString)
         );
 
-        Long timeout = stringToLong(transformOptions.get(TIMEOUT));
+        // Any timeout option is included in the deadline, which also allows for time already spent on the request
+        Long timeout = transformManager.getRemainingTime();
+
+        if (pool == null)
+        {
+            run(options, sourceFile, pageRange, targetFile, timeout);
+        }
+        else
+        {
+            runPooled(options, sourceFile, pageRange, targetFile, timeout);
+        }
+    }
 
-        run(options, sourceFile, pageRange, targetFile, timeout);
+    private void runPooled(String options, File sourceFile, String pageRange, File targetFile, Long timeout)
+    {
+        String request = ImageMagickScript.request(sourceFile.getAbsolutePath() + pageRange, options,
+            targetFile.getAbsolutePath());
+        try
+        {
+            pool.execute(process ->
+            {
+                process.execute(request, ImageMagickScript.END_MARKER, timeout == null ? 0 : timeout);
+                if (!targetFile.exists() || targetFile.length() == 0)
+                {
+                    // Throwing stops the process, in case it has been left in a bad state. As with a non-zero exit
+                    // code from a separate process, an error reported by ImageMagick is put down to the request.
+                    String stdErr = process.getStdErr();
+                    throw stdErr.isEmpty()
+                          ? new TransformException(INTERNAL_SERVER_ERROR, "Transformer failed to create an output file")
+                          : new TransformException(BAD_REQUEST,
+                              "Transformer failed to create an output file: \n" + stdErr);
+                }
+                return null;
+            });
+        }
+        catch (IOException e)
+        {
+            // The process failed to start, exited, was interrupted or did not reply in time
+            throw new TransformException(INTERNAL_SERVER_ERROR, e.getMessage(), e);
+        }
     }
 
     private static String calculatePageRange(Integer startPage, Integer endPage)
@@ -0,0 +1,161 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.imagemagick;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.transform.base.executors.PersistentProcessPool;
+import org.alfresco.transform.base.executors.RuntimeExec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Throughput and latency of creating a png thumbnail from a 100 KB jpeg, using a new {@code convert} process per
+ * transform ({@code fork}) or long running {@code magick -script -} processes ({@code pool}). Requires ImageMagick 7
+ * to be installed, so is not run as part of the build. Run the {@link #main} method from the test classpath, using
+ * {@code -Dimagemagick.exe=...} and {@code -Dimagemagick.convert=...} if {@code magick} and {@code convert} are
+ * not in {@code /usr/bin}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class ImageMagickPoolBenchmark
+{
+    private static final String EXE = System.getProperty("imagemagick.exe", "/usr/bin/magick");
+    private static final String CONVERT = System.getProperty("imagemagick.convert", "/usr/bin/convert");
+
+    @Param({"fork", "pool"})
+    public String mode;
+
+    private File directory;
+    private File source;
+    private String options;
+    private RuntimeExec convert;
+    private PersistentProcessPool pool;
+
+    @State(Scope.Thread)
+    public static class Target
+    {
+        private File file;
+
+        @Setup
+        public void setup(ImageMagickPoolBenchmark benchmark) throws IOException
+        {
+            file = File.createTempFile("target", ".png", benchmark.directory);
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException
+    {
+        directory = Files.createTempDirectory("ImageMagickPoolBenchmark").toFile();
+        source = new File(directory, "source.jpg");
+        RuntimeExec create = new RuntimeExec();
+        create.setCommand(new String[]{EXE, "-size", "640x480", "plasma:fractal", "-quality", "92",
+            source.getAbsolutePath()});
+        RuntimeExec.ExecutionResult result = create.execute(Map.of(), 60000);
+        if (!result.getSuccess())
+        {
+            throw new IOException("Unable to create the source image: " + result.getStdErr());
+        }
+
+        options = ImageMagickOptionsBuilder.builder()
+            .withAutoOrient(true)
+            .withThumbnail(true)
+            .withResizeWidth(100)
+            .withResizeHeight(100)
+            .build();
+
+        // The same commands as ImageMagickTransformer
+        convert = new RuntimeExec();
+        convert.setCommandsAndArguments(Map.of(".*",
+            new String[]{CONVERT, "${source}", "SPLIT:${options}", "-strip", "-quiet", "${target}"}));
+        pool = new PersistentProcessPool(new String[]{EXE, "-script", "-"}, null, UTF_8, 4, 100);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        pool.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public long thumbnail(Target target) throws IOException
+    {
+        String sourcePath = source.getAbsolutePath() + "[0]";
+        String targetPath = target.file.getAbsolutePath();
+        if ("pool".equals(mode))
+        {
+            pool.execute(process ->
+                process.execute(ImageMagickScript.request(sourcePath, options, targetPath),
+                    ImageMagickScript.END_MARKER, 60000));
+        }
+        else
+        {
+            RuntimeExec.ExecutionResult result = convert.execute(
+                Map.of("source", sourcePath, "options", options, "target", targetPath), 60000);
+            if (!result.getSuccess())
+            {
+                throw new IOException(result.getStdErr());
+            }
+        }
+        return target.file.length();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+            .include(ImageMagickPoolBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.imagemagick;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link ImageMagickResourceLimits}.
+ */
+public class ImageMagickResourceLimitsTest
+{
+    private static final long MIB = 1024 * 1024;
+    private static final long GIB = 1024 * MIB;
+
+    @Test
+    public void testLimitsAreSharedBetweenConcurrentTransforms()
+    {
+        ImageMagickResourceLimits limits = new ImageMagickResourceLimits(8 * GIB, 2 * GIB, 4, 3);
+
+        assertEquals(2 * GIB, limits.getMap());
+        assertEquals(GIB, limits.getMemory());
+        assertEquals(1, limits.getThread());
+        assertEquals(List.of("-limit", "memory", "1024MiB", "-limit", "map", "2048MiB", "-limit", "thread", "1"),
+            limits.toArguments(null, "", " "));
+    }
+
+    @Test
+    public void testThreadsWithMoreCpusThanTransforms()
+    {
+        assertEquals(4, new ImageMagickResourceLimits(8 * GIB, GIB, 8, 2).getThread());
+    }
+
+    @Test
+    public void testJvmUsingMostOfTheContainer()
+    {
+        // A quarter of the container is assumed to be available
+        ImageMagickResourceLimits limits = new ImageMagickResourceLimits(4 * GIB, 4 * GIB, 1, 1);
+
+        assertEquals(GIB, limits.getMap());
+    }
+
+    @Test
+    public void testMinimumMemory()
+    {
+        ImageMagickResourceLimits limits = new ImageMagickResourceLimits(GIB, 0, 1, 1000);
+
+        assertEquals(32 * MIB, limits.getMap());
+        assertEquals(32 * MIB, limits.getMemory());
+    }
+
+    @Test
+    public void testOverrides()
+    {
+        ImageMagickResourceLimits limits = new ImageMagickResourceLimits(8 * GIB, 0, 4, 1);
+
+        assertEquals(List.of("-limit", "memory", "1GiB", "-limit", "map", "8192MiB", "-limit", "thread", "2"),
+            limits.toArguments("1GiB", null, " 2 "));
+    }
+
+    @Test
+    public void testExplicitArguments()
+    {
+        assertEquals(List.of(), ImageMagickResourceLimits.toExplicitArguments(null, "", " "));
+        assertEquals(List.of("-limit", "memory", "1GiB", "-limit", "thread", "2"),
+            ImageMagickResourceLimits.toExplicitArguments("1GiB", null, " 2 "));
+    }
+
+    @Test
+    public void testMaxConcurrency()
+    {
+        assertEquals(10, ImageMagickResourceLimits.maxConcurrency("1-10"));
+        assertEquals(5, ImageMagickResourceLimits.maxConcurrency(" 5 "));
+        assertEquals(1, ImageMagickResourceLimits.maxConcurrency("x"));
+        assertEquals(1, ImageMagickResourceLimits.maxConcurrency(null));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.imagemagick;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+import org.alfresco.transform.base.executors.PersistentProcess;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs {@link ImageMagickScript} requests through a long running {@code magick -script -} process, as is done by
+ * the ImageMagickTransformer when its pool is enabled. Requires ImageMagick 7, so is skipped if {@code magick} is
+ * not installed. Use {@code -Dimagemagick.exe=...} if it is not in {@code /usr/bin}.
+ */
+public class ImageMagickScriptIT
+{
+    private static final String EXE = System.getProperty("imagemagick.exe", "/usr/bin/magick");
+    private static final long TIMEOUT_MS = 60000;
+
+    @TempDir
+    File directory;
+
+    private File source;
+    private PersistentProcess process;
+
+    @BeforeEach
+    public void before() throws IOException
+    {
+        assumeTrue(new File(EXE).canExecute(), EXE + " is not installed");
+        source = new File(directory, "quick.jpg");
+        try (var in = getClass().getClassLoader().getResourceAsStream("quick.jpg"))
+        {
+            Files.copy(in, source.toPath());
+        }
+        process = new PersistentProcess(new String[]{EXE, "-script", "-"}, null, UTF_8);
+    }
+
+    @AfterEach
+    public void after()
+    {
+        if (process != null)
+        {
+            process.close();
+        }
+    }
+
+    @Test
+    public void testThumbnail() throws IOException
+    {
+        File target = new File(directory, "target.png");
+        String options = ImageMagickOptionsBuilder.builder()
+            .withThumbnail(true)
+            .withResizeWidth(20)
+            .withResizeHeight(20)
+            .build();
+
+        List<String> lines = process.execute(ImageMagickScript.request(source.getAbsolutePath() + "[0]", options,
+            target.getAbsolutePath()), ImageMagickScript.END_MARKER, TIMEOUT_MS);
+
+        assertEquals(List.of(), lines);
+        assertEquals("", process.getStdErr());
+        assertTrue(ImageIO.read(target).getWidth() <= 20);
+    }
+
+    @Test
+    public void testOptionsDoNotLeakIntoTheNextRequest() throws IOException
+    {
+        File thumbnail = new File(directory, "thumbnail.png");
+        File target = new File(directory, "target.png");
+        String options = ImageMagickOptionsBuilder.builder()
+            .withThumbnail(true)
+            .withResizeWidth(20)
+            .withResizeHeight(20)
+            .build();
+
+        process.execute(ImageMagickScript.request(source.getAbsolutePath(), options, thumbnail.getAbsolutePath()),
+            ImageMagickScript.END_MARKER, TIMEOUT_MS);
+        process.execute(ImageMagickScript.request(source.getAbsolutePath(), "", target.getAbsolutePath()),
+            ImageMagickScript.END_MARKER, TIMEOUT_MS);
+
+        assertEquals(2, process.getJobCount());
+        assertEquals(ImageIO.read(source).getWidth(), ImageIO.read(target).getWidth());
+    }
+
+    @Test
+    public void testBadSourceStillReplies() throws IOException
+    {
+        File badSource = new File(directory, "bad.jpg");
+        Files.writeString(badSource.toPath(), "not an image");
+        File badTarget = new File(directory, "bad.png");
+        File target = new File(directory, "target.png");
+
+        process.execute(ImageMagickScript.request(badSource.getAbsolutePath(), "", badTarget.getAbsolutePath()),
+            ImageMagickScript.END_MARKER, TIMEOUT_MS);
+
+        assertFalse(badTarget.exists() && badTarget.length() > 0);
+        assertFalse(process.getStdErr().isEmpty());
+        assertTrue(process.isAlive());
+
+        // The process may still be used
+        process.execute(ImageMagickScript.request(source.getAbsolutePath(), "", target.getAbsolutePath()),
+            ImageMagickScript.END_MARKER, TIMEOUT_MS);
+        assertTrue(target.length() > 0);
+    }
+}
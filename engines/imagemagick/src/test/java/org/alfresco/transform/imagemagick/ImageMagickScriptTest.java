@@ -0,0 +1,73 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.imagemagick;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link ImageMagickScript}.
+ */
+public class ImageMagickScriptTest
+{
+    @Test
+    public void testRequest()
+    {
+        String options = ImageMagickOptionsBuilder.builder()
+            .withStartPage(0)
+            .withEndPage(0)
+            .withResizeWidth(100)
+            .withResizeHeight(100)
+            .withThumbnail(true)
+            .build();
+
+        assertEquals("-respect-parentheses ( -quiet -read \"/tmp/in.jpg[0]\"" +
+                     " \"-thumbnail\" \"100x100>\"" +
+                     " -strip -write \"/tmp/out.png\" ) -delete 0--1" +
+                     " ( xc: -format \"ALFRESCO-IMAGEMAGICK-END\\\\n\" -write info:fd:1 ) -delete 0--1\n",
+            ImageMagickScript.request("/tmp/in.jpg[0]", options, "/tmp/out.png"));
+    }
+
+    @Test
+    public void testQuotedOptions()
+    {
+        assertEquals("-respect-parentheses ( -quiet -read \"in.jpg\"" +
+                     " \"-draw\" \"text 0,12 'a\\\\b'\" \"-comment\" \"say \\\"hi\\\"\"" +
+                     " -strip -write \"out.png\" ) -delete 0--1" +
+                     " ( xc: -format \"ALFRESCO-IMAGEMAGICK-END\\\\n\" -write info:fd:1 ) -delete 0--1\n",
+            ImageMagickScript.request("in.jpg", "-draw \"text 0,12 'a\\b'\" -comment 'say \"hi\"'", "out.png"));
+    }
+
+    @Test
+    public void testNoOptions()
+    {
+        assertEquals("-respect-parentheses ( -quiet -read \"in.jpg\" -strip -write \"out.png\" ) -delete 0--1" +
+                     " ( xc: -format \"ALFRESCO-IMAGEMAGICK-END\\\\n\" -write info:fd:1 ) -delete 0--1\n",
+            ImageMagickScript.request("in.jpg", "", "out.png"));
+    }
+}
@@ -27,6 +27,8 @@
 package org.alfresco.transform.imagemagick;
 
 import org.alfresco.transform.base.AbstractBaseTest;
+import org.alfresco.transform.base.executors.ProcessLimits;
+import org.alfresco.transform.base.executors.ProcessLimitsConfig;
 import org.alfresco.transform.base.executors.RuntimeExec;
 import org.alfresco.transform.base.executors.RuntimeExec.ExecutionResult;
 import org.alfresco.transform.base.model.FileRefEntity;
@@ -48,12 +50,14 @@ import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.UUID;
@@ -62,6 +66,7 @@ import static org.alfresco.transform.common.RequestParamMap.ENDPOINT_TRANSFORM;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -403,4 +408,42 @@ public class ImageMagickTest extends AbstractBaseTest
         assertEquals(DYN, System.getProperty("IMAGEMAGICK_DYN"));
         assertEquals(ROOT, System.getProperty("IMAGEMAGICK_ROOT"));
     }
+
+    private ImageMagickTransformer createPooledTransformer(ProcessLimitsConfig processLimitsConfig)
+    {
+        ImageMagickTransformer transformer = new ImageMagickTransformer();
+        ReflectionTestUtils.setField(transformer, "exe", EXE);
+        ReflectionTestUtils.setField(transformer, "dyn", DYN);
+        ReflectionTestUtils.setField(transformer, "root", ROOT);
+        ReflectionTestUtils.setField(transformer, "poolEnabled", true);
+        ReflectionTestUtils.setField(transformer, "poolMaxProcesses", 1);
+        ReflectionTestUtils.setField(transformer, "processLimitsConfig", processLimitsConfig);
+        ReflectionTestUtils.invokeMethod(transformer, "createCommands");
+        transformer.afterPropertiesSet();
+        return transformer;
+    }
+
+    @Test
+    public void testPoolIsCreatedWithoutProcessLimits()
+    {
+        ImageMagickTransformer transformer = createPooledTransformer(new ProcessLimitsConfig());
+
+        assertNotNull(ReflectionTestUtils.getField(transformer, "pool"));
+        ReflectionTestUtils.invokeMethod(transformer, "closePool");
+    }
+
+    @Test
+    public void testPoolIsNotUsedWithProcessLimits()
+    {
+        ProcessLimits processLimits = new ProcessLimits();
+        processLimits.setMaxCpuTime(Duration.ofMinutes(5));
+        ProcessLimitsConfig processLimitsConfig = new ProcessLimitsConfig();
+        processLimitsConfig.getLimits().put(ProcessLimitsConfig.DEFAULT, processLimits);
+
+        ImageMagickTransformer transformer = createPooledTransformer(processLimitsConfig);
+
+        assertNull(ReflectionTestUtils.getField(transformer, "pool"));
+        RuntimeExec transformCommand = (RuntimeExec) ReflectionTestUtils.getField(transformer, "transformCommand");
+        assertEquals(processLimits, ReflectionTestUtils.getField(transformCommand, "processLimits"));
+    }
 }
@@ -0,0 +1,586 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.libreoffice.transformers;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.artofsolving.jodconverter.office.OfficeException;
+import org.artofsolving.jodconverter.office.OfficeManager;
+import org.artofsolving.jodconverter.office.OfficeTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * An {@link OfficeManager} that runs between {@code minProcesses} and {@code maxProcesses} LibreOffice instances,
+ * each with its own single port {@link OfficeManager}. Ports are taken from a range when an instance is started,
+ * skipping any that are already in use. An extra instance is started in the background when a task has to wait
+ * for one, and an instance that has been idle for {@code idleTimeout} milliseconds is stopped, as long as at least
+ * {@code minProcesses} remain.
+ * <p>
+ * If {@link #setMaxTasksPerProcess(int) maxTasksPerProcess} is set, instances are recycled by the pool rather than
+ * by JodConverter, which restarts the process while the next task waits. Once an instance has run that many tasks
+ * a replacement is started and warmed up in the background with the {@link #setWarmUpTask warm up task}. The old
+ * instance keeps taking tasks until the replacement is ready and is then stopped, so tasks are never given to a
+ * cold instance. While this happens the pool may briefly hold one more instance than {@code maxProcesses}, so the
+ * port range must have a spare port.
+ * <p>
+ * If a {@link MeterRegistry} is set, the pool size, the number of idle instances, the time tasks wait for an
+ * instance, the time tasks take and the fraction of time each instance has been busy are recorded. The wait and
+ * task timers publish percentiles so the tail latency can be seen.
+ */
+public class ElasticOfficeManager implements OfficeManager
+{
+    private static final Logger logger = LoggerFactory.getLogger(ElasticOfficeManager.class);
+
+    private final int minProcesses;
+    private final int maxProcesses;
+    private final int firstPort;
+    private final int lastPort;
+    private final long idleTimeout;
+    private final long taskQueueTimeout;
+    private final IntFunction<OfficeManager> officeManagerFactory;
+
+    private final List<Instance> instances = new ArrayList<>();
+    // Idle instances, most recently used first, so that surplus instances stay idle long enough to be stopped
+    private final BlockingDeque<Instance> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    // Ports handed out but not yet released, so the same one is not given to two instances that are starting
+    private final List<Integer> allocatedPorts = new ArrayList<>();
+    private int starting;
+    private volatile boolean running;
+
+    private ScheduledExecutorService scaler;
+    private int maxTasksPerProcess;
+    private OfficeTask warmUpTask;
+    private MeterRegistry meterRegistry;
+    private Timer queueWait;
+    private Timer taskDuration;
+
+    /**
+     * @param minProcesses the number of instances started by {@link #start()} and kept when idle.
+     * @param maxProcesses the maximum number of instances.
+     * @param firstPort the first port in the range that may be used.
+     * @param lastPort the last port in the range that may be used.
+     * @param idleTimeout milliseconds an instance above {@code minProcesses} may be idle before it is stopped.
+     * @param taskQueueTimeout milliseconds a task may wait for an instance.
+     * @param officeManagerFactory creates an unstarted {@link OfficeManager} for a single port.
+     */
+    public ElasticOfficeManager(int minProcesses, int maxProcesses, int firstPort, int lastPort, long idleTimeout,
+        long taskQueueTimeout, IntFunction<OfficeManager> officeManagerFactory)
+    {
+        if (minProcesses < 0 || maxProcesses < 1 || minProcesses > maxProcesses)
+        {
+            throw new IllegalArgumentException("The LibreOffice pool needs 0 <= minProcesses <= maxProcesses and " +
+                                               "maxProcesses >= 1, but was " + minProcesses + " and " + maxProcesses);
+        }
+        if (firstPort < 1 || lastPort > 65535 || lastPort - firstPort + 1 < maxProcesses)
+        {
+            throw new IllegalArgumentException("The LibreOffice pool port range " + firstPort + "-" + lastPort +
+                                               " must contain at least maxProcesses (" + maxProcesses + ") ports");
+        }
+        this.minProcesses = minProcesses;
+        this.maxProcesses = maxProcesses;
+        this.firstPort = firstPort;
+        this.lastPort = lastPort;
+        this.idleTimeout = idleTimeout;
+        this.taskQueueTimeout = taskQueueTimeout;
+        this.officeManagerFactory = officeManagerFactory;
+    }
+
+    /**
+     * @param maxTasksPerProcess the number of tasks after which an instance is replaced. {@code 0} leaves it to the
+     *                           {@link OfficeManager} of each instance. As a replacement is started before the old
+     *                           instance is stopped, the port range must then contain at least {@code maxProcesses + 1}
+     *                           ports.
+     */
+    public void setMaxTasksPerProcess(int maxTasksPerProcess)
+    {
+        if (maxTasksPerProcess > 0 && lastPort - firstPort < maxProcesses)
+        {
+            throw new IllegalArgumentException("The LibreOffice pool port range " + firstPort + "-" + lastPort +
+                                               " must contain at least maxProcesses + 1 (" + (maxProcesses + 1) +
+                                               ") ports, so that instances may be replaced");
+        }
+        this.maxTasksPerProcess = maxTasksPerProcess;
+    }
+
+    /**
+     * @param warmUpTask run on each new instance before it is given any tasks. May be {@code null}.
+     */
+    public void setWarmUpTask(OfficeTask warmUpTask)
+    {
+        this.warmUpTask = warmUpTask;
+    }
+
+    public void setMeterRegistry(MeterRegistry meterRegistry)
+    {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public synchronized void start() throws OfficeException
+    {
+        if (running)
+        {
+            return;
+        }
+        running = true;
+        if (meterRegistry != null)
+        {
+            Gauge.builder("transform.libreoffice.pool.size", this, ElasticOfficeManager::getSize)
+                 .description("Number of running LibreOffice instances")
+                 .register(meterRegistry);
+            Gauge.builder("transform.libreoffice.pool.idle", idle, BlockingDeque::size)
+                 .description("Number of LibreOffice instances waiting for a task")
+                 .register(meterRegistry);
+            Gauge.builder("transform.libreoffice.pool.waiting", waiting, AtomicInteger::get)
+                 .description("Number of tasks waiting for a LibreOffice instance")
+                 .register(meterRegistry);
+            queueWait = Timer.builder("transform.libreoffice.queue.wait")
+                             .description("Time tasks wait for a LibreOffice instance")
+                             .publishPercentiles(0.5, 0.95, 0.99)
+                             .register(meterRegistry);
+            taskDuration = Timer.builder("transform.libreoffice.task.duration")
+                                .description("Time LibreOffice instances take to run a task")
+                                .publishPercentiles(0.5, 0.95, 0.99)
+                                .register(meterRegistry);
+        }
+        scaler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "libreoffice-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long checkInterval = Math.max(1000, idleTimeout / 4);
+        scaler.scheduleWithFixedDelay(this::stopIdleInstances, checkInterval, checkInterval, MILLISECONDS);
+
+        for (int i = 0; i < minProcesses; i++)
+        {
+            addInstance(startInstance());
+        }
+    }
+
+    @Override
+    public void stop() throws OfficeException
+    {
+        List<Instance> stopping;
+        synchronized (this)
+        {
+            running = false;
+            if (scaler != null)
+            {
+                scaler.shutdownNow();
+            }
+            stopping = new ArrayList<>(instances);
+            instances.clear();
+            idle.clear();
+        }
+        for (Instance instance : stopping)
+        {
+            stopInstance(instance);
+        }
+    }
+
+    @Override
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    @Override
+    public void execute(OfficeTask task) throws OfficeException
+    {
+        Instance instance = acquire();
+        long start = System.nanoTime();
+        try
+        {
+            instance.officeManager.execute(task);
+        }
+        finally
+        {
+            long duration = System.nanoTime() - start;
+            instance.release(duration);
+            if (taskDuration != null)
+            {
+                taskDuration.record(duration, NANOSECONDS);
+            }
+            if (maxTasksPerProcess > 0 && instance.tasks >= maxTasksPerProcess)
+            {
+                replace(instance);
+            }
+            if (running && !instance.retired && instance.officeManager.isRunning())
+            {
+                idle.offerFirst(instance);
+            }
+            else
+            {
+                removeInstance(instance);
+            }
+        }
+    }
+
+    private Instance acquire() throws OfficeException
+    {
+        if (!running)
+        {
+            throw new OfficeException("The LibreOffice pool is not running");
+        }
+        Instance instance = pollIdle();
+        if (instance == null)
+        {
+            long start = System.nanoTime();
+            waiting.incrementAndGet();
+            try
+            {
+                scaleUp();
+                long end = start + MILLISECONDS.toNanos(taskQueueTimeout);
+                do
+                {
+                    instance = idle.pollFirst(end - System.nanoTime(), NANOSECONDS);
+                    if (instance != null && instance.retired)
+                    {
+                        removeInstance(instance);
+                        instance = null;
+                    }
+                }
+                while (instance == null && System.nanoTime() < end);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new OfficeException("Interrupted while waiting for a LibreOffice instance", e);
+            }
+            finally
+            {
+                waiting.decrementAndGet();
+                if (queueWait != null)
+                {
+                    queueWait.record(System.nanoTime() - start, NANOSECONDS);
+                }
+            }
+            if (instance == null)
+            {
+                throw new OfficeException("No LibreOffice instance became available within " +
+                                          taskQueueTimeout + "ms");
+            }
+        }
+        else if (queueWait != null)
+        {
+            queueWait.record(0, NANOSECONDS);
+        }
+        instance.acquire();
+        return instance;
+    }
+
+    // A retired instance may have been returned to the idle queue just as its replacement became ready
+    private Instance pollIdle()
+    {
+        Instance instance;
+        while ((instance = idle.pollFirst()) != null && instance.retired)
+        {
+            removeInstance(instance);
+        }
+        return instance;
+    }
+
+    // Starts another instance in the background if more tasks are waiting than instances are being started.
+    private synchronized void scaleUp()
+    {
+        if (running && waiting.get() > starting && getActiveSize() + starting < maxProcesses)
+        {
+            starting++;
+            scaler.execute(() -> {
+                try
+                {
+                    addInstance(startInstance());
+                }
+                catch (Exception e)
+                {
+                    logger.error("Unable to start an additional LibreOffice instance", e);
+                }
+                finally
+                {
+                    synchronized (this)
+                    {
+                        starting--;
+                    }
+                }
+            });
+        }
+    }
+
+    // Starts a warmed up replacement in the background, then retires the old instance. If it is busy at that point
+    // it is stopped when its task completes.
+    private void replace(Instance old)
+    {
+        synchronized (this)
+        {
+            if (!running || old.replacementRequested)
+            {
+                return;
+            }
+            old.replacementRequested = true;
+        }
+        logger.debug("Starting a replacement for the LibreOffice instance on port {} after {} tasks",
+            old.port, old.tasks);
+        scaler.execute(() -> {
+            try
+            {
+                addInstance(startInstance());
+            }
+            catch (Exception e)
+            {
+                logger.error("Unable to start a replacement for the LibreOffice instance on port {}", old.port, e);
+                synchronized (this)
+                {
+                    old.replacementRequested = false;
+                }
+                return;
+            }
+            old.retired = true;
+            if (idle.remove(old))
+            {
+                removeInstance(old);
+            }
+        });
+    }
+
+    private void stopIdleInstances()
+    {
+        long now = System.nanoTime();
+        for (Instance instance : idle)
+        {
+            Instance surplus = null;
+            synchronized (this)
+            {
+                if ((instance.retired || getActiveSize() > minProcesses &&
+                                         NANOSECONDS.toMillis(now - instance.lastUsed) >= idleTimeout) &&
+                    idle.remove(instance))
+                {
+                    surplus = instance;
+                }
+            }
+            if (surplus != null)
+            {
+                logger.debug("Stopping idle LibreOffice instance on port {}", surplus.port);
+                removeInstance(surplus);
+            }
+        }
+    }
+
+    private Instance startInstance()
+    {
+        int port = allocatePort();
+        OfficeManager officeManager = officeManagerFactory.apply(port);
+        try
+        {
+            officeManager.start();
+        }
+        catch (RuntimeException e)
+        {
+            releasePort(port);
+            throw e;
+        }
+        if (warmUpTask != null)
+        {
+            try
+            {
+                officeManager.execute(warmUpTask);
+            }
+            catch (RuntimeException e)
+            {
+                logger.debug("Stopping the LibreOffice instance on port {} as it failed to warm up", port);
+                stopInstance(new Instance(port, officeManager));
+                throw e;
+            }
+        }
+        logger.debug("Started LibreOffice instance on port {}", port);
+        return new Instance(port, officeManager);
+    }
+
+    private synchronized void addInstance(Instance instance)
+    {
+        if (!running)
+        {
+            stopInstance(instance);
+            return;
+        }
+        instances.add(instance);
+        if (meterRegistry != null)
+        {
+            instance.utilisation = Gauge.builder("transform.libreoffice.instance.utilisation", instance,
+                                                 Instance::getUtilisation)
+                                        .description("Fraction of time a LibreOffice instance has been busy")
+                                        .tag("port", Integer.toString(instance.port))
+                                        .register(meterRegistry);
+        }
+        idle.offerFirst(instance);
+    }
+
+    private void removeInstance(Instance instance)
+    {
+        synchronized (this)
+        {
+            if (!instances.remove(instance))
+            {
+                return;
+            }
+        }
+        stopInstance(instance);
+    }
+
+    private void stopInstance(Instance instance)
+    {
+        if (instance.utilisation != null)
+        {
+            meterRegistry.remove(instance.utilisation);
+        }
+        try
+        {
+            instance.officeManager.stop();
+        }
+        catch (Exception e)
+        {
+            logger.warn("Unable to stop the LibreOffice instance on port {}", instance.port, e);
+        }
+        finally
+        {
+            releasePort(instance.port);
+        }
+    }
+
+    private synchronized int allocatePort()
+    {
+        for (int port = firstPort; port <= lastPort; port++)
+        {
+            if (!allocatedPorts.contains(port) && isFree(port))
+            {
+                allocatedPorts.add(port);
+                return port;
+            }
+        }
+        throw new OfficeException("No free port for a LibreOffice instance in the range " + firstPort + "-" +
+                                  lastPort);
+    }
+
+    private synchronized void releasePort(int port)
+    {
+        allocatedPorts.remove(Integer.valueOf(port));
+    }
+
+    private static boolean isFree(int port)
+    {
+        try (ServerSocket socket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress()))
+        {
+            return true;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    public synchronized int getSize()
+    {
+        return instances.size();
+    }
+
+    // Instances that are not about to be replaced
+    private synchronized int getActiveSize()
+    {
+        int size = 0;
+        for (Instance instance : instances)
+        {
+            if (!instance.retired)
+            {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public int getIdleCount()
+    {
+        return idle.size();
+    }
+
+    private static class Instance
+    {
+        private final int port;
+        private final OfficeManager officeManager;
+        private final long startedAt = System.nanoTime();
+        private volatile long lastUsed = startedAt;
+        private volatile long busyStartedAt;
+        private volatile long busyNanos;
+        private volatile int tasks;
+        private boolean replacementRequested;
+        private volatile boolean retired;
+        private Gauge utilisation;
+
+        private Instance(int port, OfficeManager officeManager)
+        {
+            this.port = port;
+            this.officeManager = officeManager;
+        }
+
+        private void acquire()
+        {
+            tasks++;
+            busyStartedAt = System.nanoTime();
+        }
+
+        private void release(long nanos)
+        {
+            busyNanos += nanos;
+            busyStartedAt = 0;
+            lastUsed = System.nanoTime();
+        }
+
+        private double getUtilisation()
+        {
+            long now = System.nanoTime();
+            long busyStart = busyStartedAt;
+            long busy = busyNanos + (busyStart == 0 ? 0 : now - busyStart);
+            return (double) busy / Math.max(1, now - startedAt);
+        }
+    }
+}
@@ -37,6 +37,7 @@ import java.util.StringTokenizer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.artofsolving.jodconverter.office.DefaultOfficeManagerConfiguration;
 import org.artofsolving.jodconverter.office.OfficeException;
 import org.artofsolving.jodconverter.office.OfficeManager;
@@ -80,6 +81,16 @@ public class JodConverterSharedInstance implements JodConverter
     private Boolean enabled;
     private Long connectTimeout;
 
+    // Elastic pool settings. When the pool is enabled, portNumbers is not used. Instead, between minProcesses and
+    // maxProcesses instances are run on ports taken from poolPorts as they are needed.
+    private boolean poolEnabled;
+    private Integer minProcesses;
+    private Integer maxProcesses;
+    private int[] poolPortRange;
+    private Long idleTimeout;
+    private boolean prestartReplacement;
+    private MeterRegistry meterRegistry;
+
     private String deprecatedOooExe;
     private Boolean deprecatedOooEnabled;
     private int[] deprecatedOooPortNumbers;
@@ -146,6 +157,59 @@ public class JodConverterSharedInstance implements JodConverter
         return portNumbers;
     }
 
+    void setPoolEnabled(String poolEnabled)
+    {
+        this.poolEnabled = parseEnabled(poolEnabled);
+    }
+
+    void setMinProcesses(String minProcesses)
+    {
+        Long l = parseStringForLong(minProcesses.trim());
+        this.minProcesses = l == null ? null : l.intValue();
+    }
+
+    void setMaxProcesses(String maxProcesses)
+    {
+        Long l = parseStringForLong(maxProcesses.trim());
+        this.maxProcesses = l == null ? null : l.intValue();
+    }
+
+    // A range of the form "8100-8199"
+    void setPoolPorts(String s)
+    {
+        poolPortRange = null;
+        s = s == null ? "" : s.trim();
+        int i = s.indexOf('-');
+        if (i > 0)
+        {
+            Long first = parseStringForLong(s.substring(0, i).trim());
+            Long last = parseStringForLong(s.substring(i + 1).trim());
+            if (first != null && last != null)
+            {
+                poolPortRange = new int[]{first.intValue(), last.intValue()};
+            }
+        }
+        if (poolPortRange == null && !s.isEmpty())
+        {
+            logger.error("Unparseable value for property 'pool.ports' (expected first-last): {}", s);
+        }
+    }
+
+    void setIdleTimeout(String idleTimeout)
+    {
+        this.idleTimeout = parseStringForLong(idleTimeout.trim());
+    }
+
+    void setPrestartReplacement(String prestartReplacement)
+    {
+        this.prestartReplacement = parseEnabled(prestartReplacement);
+    }
+
+    void setMeterRegistry(MeterRegistry meterRegistry)
+    {
+        this.meterRegistry = meterRegistry;
+    }
+
     void setTaskExecutionTimeout(String taskExecutionTimeout)
     {
         this.taskExecutionTimeout = parseStringForLong(taskExecutionTimeout.trim());
@@ -310,6 +374,12 @@ public class JodConverterSharedInstance implements JodConverter
             logger.debug("  jodconverter.taskQueueTimeout = {}", taskQueueTimeout);
             logger.debug("  jodconverter.connectTimeout = {}", connectTimeout);
             logger.debug("  jodconverter.url = {}", url);
+            logger.debug("  pool.enabled = {}", poolEnabled);
+            logger.debug("  pool.minProcesses = {}", minProcesses);
+            logger.debug("  pool.maxProcesses = {}", maxProcesses);
+            logger.debug("  pool.ports = {}", getString(poolPortRange));
+            logger.debug("  pool.idleTimeout = {}", idleTimeout);
+            logger.debug("  pool.prestartReplacement = {}", prestartReplacement);
         }
 
         // Only start the JodConverter instance(s) if the subsystem is enabled.
@@ -325,37 +395,11 @@ public class JodConverterSharedInstance implements JodConverter
 
             try
             {
-                DefaultOfficeManagerConfiguration defaultOfficeMgrConfig = new DefaultOfficeManagerConfiguration();
-                if (maxTasksPerProcess != null && maxTasksPerProcess > 0)
-                {
-                    defaultOfficeMgrConfig.setMaxTasksPerProcess(maxTasksPerProcess);
-                }
-                if (officeHome != null && officeHome.length() != 0)
-                {
-                    defaultOfficeMgrConfig.setOfficeHome(officeHome);
-                }
-                if (portNumbers != null && portNumbers.length != 0)
-                {
-                    defaultOfficeMgrConfig.setPortNumbers(portNumbers);
-                }
-                if (taskExecutionTimeout != null && taskExecutionTimeout > 0)
-                {
-                    defaultOfficeMgrConfig.setTaskExecutionTimeout(taskExecutionTimeout);
-                }
-                if (taskQueueTimeout != null && taskQueueTimeout > 0)
-                {
-                    defaultOfficeMgrConfig.setTaskQueueTimeout(taskQueueTimeout);
-                }
-                if (templateProfileDir != null)
-                {
-                    defaultOfficeMgrConfig.setTemplateProfileDir(templateProfileDir);
-                }
-                if (connectTimeout != null)
-                {
-                    defaultOfficeMgrConfig.setConnectTimeout(connectTimeout);
-                }
                 // Try to configure and start the JodConverter library.
-                officeManager = defaultOfficeMgrConfig.buildOfficeManager();
+                officeManager = poolEnabled
+                                ? createElasticOfficeManager(officeHome)
+                                : createOfficeManagerConfiguration(officeHome, portNumbers, maxTasksPerProcess)
+                                    .buildOfficeManager();
                 officeManager.start();
             }
             catch (IllegalStateException e)
@@ -386,6 +430,66 @@ public class JodConverterSharedInstance implements JodConverter
         this.isAvailable = true;
     }
 
+    private DefaultOfficeManagerConfiguration createOfficeManagerConfiguration(String officeHome, int[] portNumbers,
+        Integer maxTasksPerProcess)
+    {
+        DefaultOfficeManagerConfiguration defaultOfficeMgrConfig = new DefaultOfficeManagerConfiguration();
+        if (maxTasksPerProcess != null && maxTasksPerProcess > 0)
+        {
+            defaultOfficeMgrConfig.setMaxTasksPerProcess(maxTasksPerProcess);
+        }
+        if (officeHome != null && officeHome.length() != 0)
+        {
+            defaultOfficeMgrConfig.setOfficeHome(officeHome);
+        }
+        if (portNumbers != null && portNumbers.length != 0)
+        {
+            defaultOfficeMgrConfig.setPortNumbers(portNumbers);
+        }
+        if (taskExecutionTimeout != null && taskExecutionTimeout > 0)
+        {
+            defaultOfficeMgrConfig.setTaskExecutionTimeout(taskExecutionTimeout);
+        }
+        if (taskQueueTimeout != null && taskQueueTimeout > 0)
+        {
+            defaultOfficeMgrConfig.setTaskQueueTimeout(taskQueueTimeout);
+        }
+        if (templateProfileDir != null)
+        {
+            defaultOfficeMgrConfig.setTemplateProfileDir(templateProfileDir);
+        }
+        if (connectTimeout != null)
+        {
+            defaultOfficeMgrConfig.setConnectTimeout(connectTimeout);
+        }
+        return defaultOfficeMgrConfig;
+    }
+
+    private ElasticOfficeManager createElasticOfficeManager(String officeHome)
+    {
+        if (poolPortRange == null)
+        {
+            throw new IllegalStateException("The LibreOffice pool is enabled but has no port range");
+        }
+        int max = maxProcesses == null ? 1 : maxProcesses;
+        int min = minProcesses == null ? Math.min(1, max) : minProcesses;
+        long queueTimeout = taskQueueTimeout != null && taskQueueTimeout > 0 ? taskQueueTimeout : 30000L;
+        // When the pool replaces processes itself, JodConverter must not restart them as well
+        boolean replaceInPool = prestartReplacement && maxTasksPerProcess != null && maxTasksPerProcess > 0;
+        Integer instanceMaxTasks = replaceInPool ? Integer.valueOf(Integer.MAX_VALUE) : maxTasksPerProcess;
+        ElasticOfficeManager elasticOfficeManager = new ElasticOfficeManager(min, max,
+            poolPortRange[0], poolPortRange[1], idleTimeout == null ? 300000L : idleTimeout, queueTimeout,
+            port -> createOfficeManagerConfiguration(officeHome, new int[]{port}, instanceMaxTasks)
+                .buildOfficeManager());
+        if (replaceInPool)
+        {
+            elasticOfficeManager.setMaxTasksPerProcess(maxTasksPerProcess);
+            elasticOfficeManager.setWarmUpTask(new LibreOfficeWarmUpTask());
+        }
+        elasticOfficeManager.setMeterRegistry(meterRegistry);
+        return elasticOfficeManager;
+    }
+
     private String getString(int[] portNumbers)
     {
         StringBuilder portInfo = new StringBuilder();
@@ -0,0 +1,238 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.libreoffice.transformers;
+
+import com.sun.star.frame.XComponentLoader;
+import com.sun.star.frame.XStorable;
+import com.sun.star.lang.DisposedException;
+import com.sun.star.lang.XComponent;
+import com.sun.star.lang.XServiceInfo;
+import com.sun.star.lib.uno.adapter.ByteArrayToXInputStreamAdapter;
+import com.sun.star.lib.uno.adapter.OutputStreamToXOutputStreamAdapter;
+import com.sun.star.task.ErrorCodeIOException;
+import com.sun.star.util.CloseVetoException;
+import com.sun.star.util.XCloseable;
+import com.sun.star.util.XRefreshable;
+import org.artofsolving.jodconverter.document.DocumentFamily;
+import org.artofsolving.jodconverter.document.DocumentFormat;
+import org.artofsolving.jodconverter.office.OfficeContext;
+import org.artofsolving.jodconverter.office.OfficeException;
+import org.artofsolving.jodconverter.office.OfficeTask;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.artofsolving.jodconverter.office.OfficeUtils.SERVICE_DESKTOP;
+import static org.artofsolving.jodconverter.office.OfficeUtils.cast;
+import static org.artofsolving.jodconverter.office.OfficeUtils.toUnoProperties;
+
+/**
+ * Converts a document held in memory, writing the result to an {@link OutputStream}, using the UNO
+ * {@code InputStream} and {@code OutputStream} media descriptor properties rather than files. The source is passed
+ * as a seekable stream, as LibreOffice would otherwise copy it to a temporary file before loading it. The load and
+ * store properties are the same ones JodConverter uses when converting files.
+ * <p>
+ * A failure to load or store the document is thrown as a {@link DocumentException}, with any LibreOffice error, such
+ * as the one for an empty spreadsheet, as its cause.
+ */
+public class LibreOfficeStreamConversionTask implements OfficeTask
+{
+    private static final String STREAM_URL = "private:stream";
+    private static final short QUIET_UPDATE = 1;
+
+    private final byte[] source;
+    private final DocumentFormat sourceFormat;
+    private final DocumentFormat targetFormat;
+    private final OutputStream outputStream;
+
+    public LibreOfficeStreamConversionTask(byte[] source, DocumentFormat sourceFormat, DocumentFormat targetFormat,
+        OutputStream outputStream)
+    {
+        this.source = source;
+        this.sourceFormat = sourceFormat;
+        this.targetFormat = targetFormat;
+        this.outputStream = outputStream;
+    }
+
+    @Override
+    public void execute(OfficeContext context)
+    {
+        XComponent document = null;
+        try
+        {
+            document = loadDocument(context);
+            store(document);
+        }
+        catch (OfficeException officeException)
+        {
+            throw officeException;
+        }
+        catch (DisposedException disposedException)
+        {
+            // LibreOffice exited or the connection to it was lost
+            throw new OfficeException("conversion failed", disposedException);
+        }
+        catch (Exception exception)
+        {
+            throw new DocumentException("conversion failed", exception);
+        }
+        finally
+        {
+            if (document != null)
+            {
+                XCloseable closeable = cast(XCloseable.class, document);
+                if (closeable != null)
+                {
+                    try
+                    {
+                        closeable.close(true);
+                    }
+                    catch (CloseVetoException closeVetoException)
+                    {
+                        // whoever raised the veto should close the document
+                    }
+                }
+                else
+                {
+                    document.dispose();
+                }
+            }
+        }
+    }
+
+    private XComponent loadDocument(OfficeContext context) throws Exception
+    {
+        Map<String, Object> loadProperties = new HashMap<>();
+        loadProperties.put("Hidden", true);
+        loadProperties.put("ReadOnly", true);
+        loadProperties.put("UpdateDocMode", QUIET_UPDATE);
+        if (sourceFormat.getLoadProperties() != null)
+        {
+            loadProperties.putAll(sourceFormat.getLoadProperties());
+        }
+        loadProperties.put("InputStream", new ByteArrayToXInputStreamAdapter(source));
+
+        XComponentLoader loader = cast(XComponentLoader.class, context.getService(SERVICE_DESKTOP));
+        XComponent document;
+        try
+        {
+            document = loader.loadComponentFromURL(STREAM_URL, "_blank", 0, toUnoProperties(loadProperties));
+        }
+        catch (ErrorCodeIOException errorCodeIOException)
+        {
+            throw new DocumentException("could not load document from stream; errorCode: " +
+                                      errorCodeIOException.ErrCode, errorCodeIOException);
+        }
+        if (document == null)
+        {
+            throw new DocumentException("could not load document from stream");
+        }
+        XRefreshable refreshable = cast(XRefreshable.class, document);
+        if (refreshable != null)
+        {
+            refreshable.refresh();
+        }
+        return document;
+    }
+
+    private void store(XComponent document) throws Exception
+    {
+        DocumentFamily family = getDocumentFamily(document);
+        Map<String, ?> storeProperties = family == null ? null : targetFormat.getStoreProperties(family);
+        if (storeProperties == null)
+        {
+            throw new DocumentException("unsupported conversion: " + family + " to " + targetFormat.getName());
+        }
+        Map<String, Object> properties = new HashMap<>(storeProperties);
+        properties.put("OutputStream",
+            new OutputStreamToXOutputStreamAdapter(new NonClosingOutputStream(outputStream)));
+        cast(XStorable.class, document).storeToURL(STREAM_URL, toUnoProperties(properties));
+    }
+
+    private static DocumentFamily getDocumentFamily(XComponent document)
+    {
+        XServiceInfo serviceInfo = cast(XServiceInfo.class, document);
+        if (serviceInfo.supportsService("com.sun.star.text.GenericTextDocument"))
+        {
+            // also covers com.sun.star.text.WebDocument and com.sun.star.text.GlobalDocument
+            return DocumentFamily.TEXT;
+        }
+        if (serviceInfo.supportsService("com.sun.star.sheet.SpreadsheetDocument"))
+        {
+            return DocumentFamily.SPREADSHEET;
+        }
+        if (serviceInfo.supportsService("com.sun.star.presentation.PresentationDocument"))
+        {
+            return DocumentFamily.PRESENTATION;
+        }
+        if (serviceInfo.supportsService("com.sun.star.drawing.DrawingDocument"))
+        {
+            return DocumentFamily.DRAWING;
+        }
+        return null;
+    }
+
+    /**
+     * LibreOffice was unable to load or store the document.
+     */
+    public static class DocumentException extends OfficeException
+    {
+        public DocumentException(String message)
+        {
+            super(message);
+        }
+
+        public DocumentException(String message, Throwable cause)
+        {
+            super(message, cause);
+        }
+    }
+
+    // LibreOffice closes the stream once the document has been stored, but the caller still owns it
+    private static class NonClosingOutputStream extends FilterOutputStream
+    {
+        private NonClosingOutputStream(OutputStream outputStream)
+        {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            flush();
+        }
+    }
+}
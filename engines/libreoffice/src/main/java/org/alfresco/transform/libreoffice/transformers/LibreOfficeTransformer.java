@@ -28,6 +28,7 @@ package org.alfresco.transform.libreoffice.transformers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sun.star.task.ErrorCodeIOException;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.alfresco.transform.base.TransformManager;
 import org.alfresco.transform.base.executors.JavaExecutor;
 import org.alfresco.transform.base.util.CustomTransformerFileAdaptor;
@@ -37,19 +38,34 @@ import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
 import org.artofsolving.jodconverter.OfficeDocumentConverter;
+import org.artofsolving.jodconverter.document.DefaultDocumentFormatRegistry;
+import org.artofsolving.jodconverter.document.DocumentFamily;
+import org.artofsolving.jodconverter.document.DocumentFormat;
+import org.artofsolving.jodconverter.document.DocumentFormatRegistry;
 import org.artofsolving.jodconverter.office.OfficeException;
 import org.artofsolving.jodconverter.office.OfficeManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
+import static org.alfresco.transform.base.fs.FileManager.TempFileProvider.createTempFile;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_HTML;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_PDF;
+import static org.alfresco.transform.common.RequestParamMap.PAGE_RANGE;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 
@@ -63,6 +79,8 @@ public class LibreOfficeTransformer implements JavaExecutor, CustomTransformerFi
     private static final Logger logger = LoggerFactory.getLogger(LibreOfficeTransformer.class);
 
     private static final int JODCONVERTER_TRANSFORMATION_ERROR_CODE = 3088;
+    private static final String PAGE_OR_RANGE = "[1-9]\\d*(-([1-9]\\d*)?)?";
+    private static final Pattern PAGE_RANGE_PATTERN = Pattern.compile(PAGE_OR_RANGE + "(," + PAGE_OR_RANGE + ")*");
 
     @Value("${transform.core.libreoffice.path}")
     private String path;
@@ -76,6 +94,28 @@ public class LibreOfficeTransformer implements JavaExecutor, CustomTransformerFi
     private String templateProfileDir;
     @Value("${transform.core.libreoffice.isEnabled}")
     private String isEnabled;
+    @Value("${transform.core.libreoffice.pool.enabled:false}")
+    private String poolEnabled;
+    @Value("${transform.core.libreoffice.pool.minProcesses:1}")
+    private String poolMinProcesses;
+    @Value("${transform.core.libreoffice.pool.maxProcesses:1}")
+    private String poolMaxProcesses;
+    @Value("${transform.core.libreoffice.pool.ports:8100-8199}")
+    private String poolPorts;
+    @Value("${transform.core.libreoffice.pool.idleTimeout:300000}")
+    private String poolIdleTimeout;
+    @Value("${transform.core.libreoffice.pool.prestartReplacement:true}")
+    private String poolPrestartReplacement;
+
+    @Value("${transform.core.libreoffice.streaming.enabled:false}")
+    private boolean streamingEnabled;
+    @Value("${transform.core.libreoffice.streaming.maxSourceSize:4194304}")
+    private long streamingMaxSourceSize;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    private final DocumentFormatRegistry formatRegistry = new DefaultDocumentFormatRegistry();
 
     private JodConverter jodconverter;
 
@@ -120,6 +160,13 @@ public class LibreOfficeTransformer implements JavaExecutor, CustomTransformerFi
         sharedInstance.setPortNumbers(portNumbers);
         sharedInstance.setTemplateProfileDir(templateProfileDir);
         sharedInstance.setEnabled(isEnabled);
+        sharedInstance.setPoolEnabled(poolEnabled);
+        sharedInstance.setMinProcesses(poolMinProcesses);
+        sharedInstance.setMaxProcesses(poolMaxProcesses);
+        sharedInstance.setPoolPorts(poolPorts);
+        sharedInstance.setIdleTimeout(poolIdleTimeout);
+        sharedInstance.setPrestartReplacement(poolPrestartReplacement);
+        sharedInstance.setMeterRegistry(meterRegistry);
         sharedInstance.afterPropertiesSet();
     }
 
@@ -129,26 +176,160 @@ public class LibreOfficeTransformer implements JavaExecutor, CustomTransformerFi
         return "libreoffice";
     }
 
+    /**
+     * Converts using UNO streams rather than files when streaming is enabled, the source and target formats allow it
+     * and the source is small enough to be held in memory. Otherwise, source and target files are used. Empty
+     * spreadsheets and missing output are handled in the same way as when files are used.
+     */
+    @Override
+    public void transform(String sourceMimetype, InputStream inputStream, String targetMimetype,
+                          OutputStream outputStream, Map<String, String> transformOptions,
+                          TransformManager transformManager) throws Exception
+    {
+        DocumentFormat sourceFormat = streamingEnabled ? formatRegistry.getFormatByMediaType(sourceMimetype) : null;
+        DocumentFormat targetFormat = sourceFormat == null ? null : getStreamTargetFormat(targetMimetype,
+            getPageRange(targetMimetype, transformOptions));
+        if (targetFormat == null)
+        {
+            CustomTransformerFileAdaptor.super.transform(sourceMimetype, inputStream, targetMimetype, outputStream,
+                transformOptions, transformManager);
+            return;
+        }
+
+        byte[] source = inputStream.readNBytes((int) Math.min(streamingMaxSourceSize + 1, Integer.MAX_VALUE - 8));
+        if (source.length > streamingMaxSourceSize)
+        {
+            logger.debug("Using files as the source is larger than {} bytes", streamingMaxSourceSize);
+            File sourceFile = createTempFile("source_", "." + sourceFormat.getExtension());
+            try
+            {
+                try (OutputStream sourceOutputStream = new FileOutputStream(sourceFile))
+                {
+                    sourceOutputStream.write(source);
+                    inputStream.transferTo(sourceOutputStream);
+                }
+                transform(sourceMimetype, targetMimetype, transformOptions, sourceFile,
+                    transformManager.createTargetFile(), transformManager);
+            }
+            finally
+            {
+                if (!sourceFile.delete())
+                {
+                    logger.error("Failed to delete temporary source file {}", sourceFile.getPath());
+                }
+            }
+            return;
+        }
+
+        CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+        try
+        {
+            convert(source, sourceFormat, targetFormat, countingOutputStream);
+        }
+        catch (OfficeException e)
+        {
+            // As with files, an empty pdf is produced because of the known bug with empty Spreadsheets
+            if (isErrorCode(e, JODCONVERTER_TRANSFORMATION_ERROR_CODE) && countingOutputStream.getCount() == 0)
+            {
+                logger.warn("Transformation from {} to {} failed as the source has no content", sourceMimetype,
+                    targetMimetype);
+                produceEmptyPdf(countingOutputStream);
+            }
+            else
+            {
+                throw conversionFailed(e, "from: " + sourceMimetype, "to: " + targetMimetype);
+            }
+        }
+
+        if (countingOutputStream.getCount() == 0)
+        {
+            throw new TransformException(INTERNAL_SERVER_ERROR, "Transformer failed to create an output file");
+        }
+    }
+
+    private static boolean isErrorCode(Throwable throwable, int errorCode)
+    {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause())
+        {
+            if (cause instanceof ErrorCodeIOException && ((ErrorCodeIOException) cause).ErrCode == errorCode)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Used whether streams or files are converted, so that a failure has the same status either way
+    private static TransformException conversionFailed(OfficeException e, String from, String to)
+    {
+        return new TransformException(BAD_REQUEST,
+            "LibreOffice server conversion failed: \n" +
+            "   " + from + "\n" +
+            "   " + to, e);
+    }
+
+    // Targets such as HTML may be written as several files, so need to be converted using files
+    private DocumentFormat getStreamTargetFormat(String targetMimetype, String pageRange)
+    {
+        if (MIMETYPE_HTML.equals(targetMimetype))
+        {
+            return null;
+        }
+        DocumentFormat targetFormat = formatRegistry.getFormatByMediaType(targetMimetype);
+        return targetFormat == null || pageRange == null ? targetFormat : withPageRange(targetFormat, pageRange);
+    }
+
     @Override
     public void transform(String sourceMimetype, String targetMimetype, Map<String, String> transformOptions,
                           File sourceFile, File targetFile, TransformManager transformManager)
     {
-        call(sourceFile, targetFile);
+        convertAndCheck(sourceFile, targetFile, getPageRange(targetMimetype, transformOptions));
     }
 
     @Override
     public void call(File sourceFile, File targetFile, String... args)
+    {
+        convertAndCheck(sourceFile, targetFile, null);
+    }
+
+    // The PDF export filter's page range, such as "1" or "1-3,5". It is ignored for other target types.
+    static String getPageRange(String targetMimetype, Map<String, String> transformOptions)
+    {
+        String pageRange = transformOptions.get(PAGE_RANGE);
+        if (pageRange == null || pageRange.isBlank())
+        {
+            return null;
+        }
+        if (!MIMETYPE_PDF.equals(targetMimetype))
+        {
+            logger.debug("Ignoring {} as the target is {}", PAGE_RANGE, targetMimetype);
+            return null;
+        }
+        String value = pageRange.replace(" ", "");
+        if (!PAGE_RANGE_PATTERN.matcher(value).matches())
+        {
+            throw new TransformException(BAD_REQUEST, "Invalid " + PAGE_RANGE + " '" + pageRange +
+                                                      "'. Expected pages numbered from 1, such as 1 or 1-3,5");
+        }
+        return value;
+    }
+
+    private void convertAndCheck(File sourceFile, File targetFile, String pageRange)
     {
         try
         {
-            convert(sourceFile, targetFile);
+            if (pageRange == null)
+            {
+                convert(sourceFile, targetFile);
+            }
+            else
+            {
+                convert(sourceFile, targetFile, pageRange);
+            }
         }
         catch (OfficeException e)
         {
-            throw new TransformException(BAD_REQUEST,
-                "LibreOffice server conversion failed: \n" +
-                "   from file: " + sourceFile + "\n" +
-                "   to file: " + targetFile, e);
+            throw conversionFailed(e, "from file: " + sourceFile, "to file: " + targetFile);
         }
         catch (Throwable throwable)
         {
@@ -181,11 +362,63 @@ public class LibreOfficeTransformer implements JavaExecutor, CustomTransformerFi
         converter.convert(sourceFile, targetFile);
     }
 
+    /**
+     * Converts to PDF, only exporting the pages in the page range, which uses the syntax of the PDF export filter's
+     * {@code PageRange}.
+     */
+    public void convert(File sourceFile, File targetFile, String pageRange)
+    {
+        OfficeManager officeManager = jodconverter.getOfficeManager();
+        OfficeDocumentConverter converter = new OfficeDocumentConverter(officeManager);
+        DocumentFormat pdf = converter.getFormatRegistry().getFormatByExtension("pdf");
+        converter.convert(sourceFile, targetFile, withPageRange(pdf, pageRange));
+    }
+
+    /**
+     * Converts a source held in memory, writing the result to the output stream.
+     */
+    public void convert(byte[] source, DocumentFormat sourceFormat, DocumentFormat targetFormat,
+                        OutputStream outputStream)
+    {
+        OfficeManager officeManager = jodconverter.getOfficeManager();
+        officeManager.execute(new LibreOfficeStreamConversionTask(source, sourceFormat, targetFormat, outputStream));
+    }
+
+    // A copy of a registered format, as that instance is shared, with FilterData added to its store properties
+    private static DocumentFormat withPageRange(DocumentFormat registered, String pageRange)
+    {
+        DocumentFormat format = new DocumentFormat(registered.getName(), registered.getExtension(),
+            registered.getMediaType());
+        for (DocumentFamily family : DocumentFamily.values())
+        {
+            Map<String, ?> storeProperties = registered.getStoreProperties(family);
+            if (storeProperties != null)
+            {
+                Map<String, Object> properties = new HashMap<>(storeProperties);
+                properties.put("FilterData", Map.of("PageRange", pageRange));
+                format.setStoreProperties(family, properties);
+            }
+        }
+        return format;
+    }
+
     /**
      * This method produces an empty PDF file at the specified File location.
      * Apache's PDFBox is used to create the PDF file.
      */
     private static void produceEmptyPdfFile(File targetFile)
+    {
+        try (OutputStream outputStream = new FileOutputStream(targetFile))
+        {
+            produceEmptyPdf(outputStream);
+        }
+        catch (IOException iox)
+        {
+            throw new TransformException(INTERNAL_SERVER_ERROR, "Error creating empty PDF file", iox);
+        }
+    }
+
+    private static void produceEmptyPdf(OutputStream outputStream)
     {
         // If improvement PDFBOX-914 is incorporated, we can do this with a straight call to
         // org.apache.pdfbox.TextToPdf.createPDFFromText(new StringReader(""));
@@ -199,8 +432,8 @@ public class LibreOfficeTransformer implements JavaExecutor, CustomTransformerFi
             // that have literally nothing in them. So we'll put a content stream in it.
             pdfDoc.addPage(pdfPage);
 
-            // Now write the in-memory PDF document into the temporary file.
-            pdfDoc.save(targetFile.getAbsolutePath());
+            // Now write the in-memory PDF document into the temporary file or stream.
+            pdfDoc.save(outputStream);
         }
         catch (IOException iox)
         {
@@ -250,4 +483,41 @@ public class LibreOfficeTransformer implements JavaExecutor, CustomTransformerFi
             throw new TransformException(INTERNAL_SERVER_ERROR, "Failed to write metadata to targetFile", e);
         }
     }
+
+    // Records whether anything was written, as there is no target file to check when streaming. PDFBox closes the
+    // stream it saves to, but the caller still owns the underlying stream, so it is only flushed.
+    private static class CountingOutputStream extends FilterOutputStream
+    {
+        private long count;
+
+        private CountingOutputStream(OutputStream outputStream)
+        {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            flush();
+        }
+
+        private long getCount()
+        {
+            return count;
+        }
+    }
 }
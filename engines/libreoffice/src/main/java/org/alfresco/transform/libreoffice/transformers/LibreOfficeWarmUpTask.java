@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.libreoffice.transformers;
+
+import com.sun.star.beans.PropertyValue;
+import com.sun.star.frame.XComponentLoader;
+import com.sun.star.lang.XComponent;
+import com.sun.star.util.CloseVetoException;
+import com.sun.star.util.XCloseable;
+import org.artofsolving.jodconverter.office.OfficeContext;
+import org.artofsolving.jodconverter.office.OfficeException;
+import org.artofsolving.jodconverter.office.OfficeTask;
+
+import static org.artofsolving.jodconverter.office.OfficeUtils.SERVICE_DESKTOP;
+import static org.artofsolving.jodconverter.office.OfficeUtils.cast;
+
+/**
+ * Creates and closes a hidden, empty Writer document, so that a newly started LibreOffice instance has loaded the
+ * document modules and initialised its profile before it is given a real conversion.
+ */
+public class LibreOfficeWarmUpTask implements OfficeTask
+{
+    private static final String NEW_WRITER_DOCUMENT = "private:factory/swriter";
+
+    @Override
+    public void execute(OfficeContext context)
+    {
+        XComponent document = null;
+        try
+        {
+            XComponentLoader loader = cast(XComponentLoader.class, context.getService(SERVICE_DESKTOP));
+
+            PropertyValue hidden = new PropertyValue();
+            hidden.Name = "Hidden";
+            hidden.Value = Boolean.TRUE;
+
+            document = loader.loadComponentFromURL(NEW_WRITER_DOCUMENT, "_blank", 0, new PropertyValue[]{hidden});
+        }
+        catch (Exception exception)
+        {
+            throw new OfficeException("warm up failed", exception);
+        }
+        finally
+        {
+            if (document != null)
+            {
+                XCloseable closeable = cast(XCloseable.class, document);
+                if (closeable != null)
+                {
+                    try
+                    {
+                        closeable.close(true);
+                    }
+                    catch (CloseVetoException closeVetoException)
+                    {
+                        // whoever raised the veto should close the document
+                    }
+                }
+                else
+                {
+                    document.dispose();
+                }
+            }
+        }
+    }
+}
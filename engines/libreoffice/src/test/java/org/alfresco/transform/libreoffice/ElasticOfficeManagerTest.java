@@ -0,0 +1,371 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.libreoffice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.alfresco.transform.libreoffice.transformers.ElasticOfficeManager;
+import org.artofsolving.jodconverter.office.OfficeException;
+import org.artofsolving.jodconverter.office.OfficeManager;
+import org.artofsolving.jodconverter.office.OfficeTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests {@link ElasticOfficeManager} using office managers that do not start LibreOffice.
+ */
+public class ElasticOfficeManagerTest
+{
+    private static final int FIRST_PORT = 18100;
+    private static final int LAST_PORT = 18199;
+
+    private final List<FakeOfficeManager> started = new CopyOnWriteArrayList<>();
+    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private ElasticOfficeManager pool;
+
+    private static class FakeOfficeManager implements OfficeManager
+    {
+        private final int port;
+        private final List<OfficeTask> tasks = new CopyOnWriteArrayList<>();
+        private volatile long startDelay;
+        private volatile boolean running;
+
+        private FakeOfficeManager(int port)
+        {
+            this.port = port;
+        }
+
+        @Override
+        public void execute(OfficeTask task) throws OfficeException
+        {
+            tasks.add(task);
+            task.execute(null);
+        }
+
+        @Override
+        public void start() throws OfficeException
+        {
+            try
+            {
+                Thread.sleep(startDelay);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            running = true;
+        }
+
+        @Override
+        public void stop() throws OfficeException
+        {
+            running = false;
+        }
+
+        @Override
+        public boolean isRunning()
+        {
+            return running;
+        }
+    }
+
+    private volatile long startDelay;
+
+    private ElasticOfficeManager createPool(int min, int max, long idleTimeout)
+    {
+        pool = new ElasticOfficeManager(min, max, FIRST_PORT, LAST_PORT, idleTimeout, 10000, port -> {
+            FakeOfficeManager officeManager = new FakeOfficeManager(port);
+            officeManager.startDelay = startDelay;
+            started.add(officeManager);
+            return officeManager;
+        });
+        return pool;
+    }
+
+    @AfterEach
+    public void after()
+    {
+        if (pool != null)
+        {
+            pool.stop();
+        }
+        executorService.shutdownNow();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException
+    {
+        long end = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < end)
+        {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void testStartsMinProcesses()
+    {
+        createPool(2, 4, 60000).start();
+
+        assertEquals(2, pool.getSize());
+        assertEquals(2, pool.getIdleCount());
+        assertEquals(2, started.size());
+        assertTrue(started.stream().allMatch(FakeOfficeManager::isRunning));
+    }
+
+    @Test
+    public void testScalesUpWhenTasksWait() throws Exception
+    {
+        createPool(1, 3, 60000).start();
+        CountDownLatch release = new CountDownLatch(1);
+        Set<Integer> ports = ConcurrentHashMap.newKeySet();
+        CountDownLatch running = new CountDownLatch(3);
+
+        List<Future<?>> futures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            futures.add(executorService.submit(() -> pool.execute(context -> {
+                running.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            })));
+        }
+
+        assertTrue(running.await(10, SECONDS), "All three tasks should run at the same time");
+        assertEquals(3, pool.getSize());
+        release.countDown();
+        for (Future<?> future : futures)
+        {
+            future.get(10, SECONDS);
+        }
+        started.forEach(officeManager -> ports.add(officeManager.port));
+        assertEquals(3, ports.size(), "Each instance should have its own port");
+        assertTrue(ports.stream().allMatch(port -> port >= FIRST_PORT && port <= LAST_PORT));
+    }
+
+    @Test
+    public void testDoesNotExceedMaxProcesses() throws Exception
+    {
+        createPool(0, 2, 60000).start();
+        assertEquals(0, pool.getSize());
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<?>> futures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            futures.add(executorService.submit(() -> pool.execute(context -> {
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            })));
+        }
+
+        awaitUntil(() -> pool.getSize() == 2);
+        Thread.sleep(200);
+        assertEquals(2, pool.getSize());
+        release.countDown();
+        for (Future<?> future : futures)
+        {
+            future.get(10, SECONDS);
+        }
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void testScalesDownWhenIdle() throws Exception
+    {
+        createPool(1, 3, 100).start();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch running = new CountDownLatch(3);
+        List<Future<?>> futures = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++)
+        {
+            futures.add(executorService.submit(() -> pool.execute(context -> {
+                running.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            })));
+        }
+        assertTrue(running.await(10, SECONDS));
+        release.countDown();
+        for (Future<?> future : futures)
+        {
+            future.get(10, SECONDS);
+        }
+
+        awaitUntil(() -> pool.getSize() == 1);
+        assertEquals(2, started.stream().filter(officeManager -> !officeManager.isRunning()).count());
+    }
+
+    @Test
+    public void testMetrics() throws Exception
+    {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        createPool(1, 2, 60000);
+        pool.setMeterRegistry(meterRegistry);
+        pool.start();
+
+        pool.execute(context -> {});
+
+        assertEquals(1.0, meterRegistry.get("transform.libreoffice.pool.size").gauge().value());
+        assertEquals(1.0, meterRegistry.get("transform.libreoffice.pool.idle").gauge().value());
+        assertEquals(1, meterRegistry.get("transform.libreoffice.queue.wait").timer().count());
+        assertEquals(1, meterRegistry.get("transform.libreoffice.task.duration").timer().count());
+        assertNotNull(meterRegistry.get("transform.libreoffice.instance.utilisation")
+                                   .tag("port", Integer.toString(started.get(0).port)).gauge());
+    }
+
+    @Test
+    public void testReplacesInstanceAfterMaxTasks() throws Exception
+    {
+        OfficeTask warmUpTask = context -> {};
+        createPool(1, 1, 60000);
+        pool.setMaxTasksPerProcess(3);
+        pool.setWarmUpTask(warmUpTask);
+        pool.start();
+        FakeOfficeManager first = started.get(0);
+        assertEquals(List.of(warmUpTask), first.tasks);
+
+        for (int i = 0; i < 3; i++)
+        {
+            pool.execute(context -> {});
+        }
+
+        awaitUntil(() -> started.size() == 2 && !first.isRunning());
+        FakeOfficeManager second = started.get(1);
+        assertEquals(4, first.tasks.size());
+        assertEquals(warmUpTask, second.tasks.get(0));
+        assertEquals(1, pool.getSize());
+
+        pool.execute(context -> {});
+        assertEquals(2, second.tasks.size());
+    }
+
+    @Test
+    public void testOldInstanceServesTasksWhileReplacementStarts() throws Exception
+    {
+        createPool(1, 1, 60000);
+        pool.setMaxTasksPerProcess(1);
+        pool.start();
+        FakeOfficeManager first = started.get(0);
+        startDelay = 500;
+
+        pool.execute(context -> {});
+        pool.execute(context -> {});
+        pool.execute(context -> {});
+
+        assertEquals(3, first.tasks.size(), "Tasks should not wait for the replacement to start");
+        awaitUntil(() -> started.size() == 2 && !first.isRunning());
+        assertEquals(1, pool.getSize());
+        assertTrue(started.get(1).isRunning());
+    }
+
+    @Test
+    public void testKeepsOldInstanceIfWarmUpFails() throws Exception
+    {
+        createPool(1, 1, 60000);
+        pool.setMaxTasksPerProcess(1);
+        pool.start();
+        FakeOfficeManager first = started.get(0);
+        pool.setWarmUpTask(context -> {
+            throw new OfficeException("warm up failed");
+        });
+
+        pool.execute(context -> {});
+
+        awaitUntil(() -> started.size() == 2 && !started.get(1).isRunning());
+        assertTrue(first.isRunning());
+        assertEquals(1, pool.getSize());
+        pool.execute(context -> {});
+        assertEquals(2, first.tasks.size());
+    }
+
+    @Test
+    public void testStop()
+    {
+        createPool(2, 2, 60000).start();
+        pool.stop();
+
+        assertFalse(pool.isRunning());
+        assertEquals(0, pool.getSize());
+        assertTrue(started.stream().noneMatch(FakeOfficeManager::isRunning));
+        assertThrows(OfficeException.class, () -> pool.execute(context -> {}));
+    }
+
+    @Test
+    public void testInvalidSettings()
+    {
+        assertThrows(IllegalArgumentException.class, () -> createPool(3, 2, 60000));
+        assertThrows(IllegalArgumentException.class, () -> createPool(0, 0, 60000));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ElasticOfficeManager(1, 3, 8100, 8101, 60000, 10000, FakeOfficeManager::new));
+    }
+
+    @Test
+    public void testReplacementNeedsASparePort()
+    {
+        ElasticOfficeManager noSparePort = new ElasticOfficeManager(1, 2, 8100, 8101, 60000, 10000,
+            FakeOfficeManager::new);
+        noSparePort.setMaxTasksPerProcess(0);
+        assertThrows(IllegalArgumentException.class, () -> noSparePort.setMaxTasksPerProcess(10));
+
+        new ElasticOfficeManager(1, 2, 8100, 8102, 60000, 10000, FakeOfficeManager::new).setMaxTasksPerProcess(10);
+    }
+}
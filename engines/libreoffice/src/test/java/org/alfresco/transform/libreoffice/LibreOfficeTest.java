@@ -28,6 +28,7 @@ package org.alfresco.transform.libreoffice;
 
 import static org.alfresco.transform.common.Mimetype.MIMETYPE_PDF;
 import static org.alfresco.transform.common.RequestParamMap.ENDPOINT_TRANSFORM;
+import static org.alfresco.transform.common.RequestParamMap.PAGE_RANGE;
 import static org.alfresco.transform.common.RequestParamMap.SOURCE_MIMETYPE;
 import static org.alfresco.transform.common.RequestParamMap.TARGET_MIMETYPE;
 import static org.alfresco.transform.common.RequestParamMap.TARGET_EXTENSION;
@@ -36,13 +37,19 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpHeaders.ACCEPT;
 import static org.springframework.http.HttpHeaders.CONTENT_DISPOSITION;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -50,18 +57,23 @@ import static org.springframework.util.StringUtils.getFilenameExtension;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.UUID;
 
+import com.sun.star.task.ErrorCodeIOException;
 import org.alfresco.transform.base.registry.CustomTransformers;
 import org.alfresco.transform.client.model.TransformReply;
 import org.alfresco.transform.client.model.TransformRequest;
+import org.alfresco.transform.libreoffice.transformers.LibreOfficeStreamConversionTask;
 import org.alfresco.transform.libreoffice.transformers.LibreOfficeTransformer;
 import org.alfresco.transform.base.AbstractBaseTest;
 import org.alfresco.transform.base.executors.RuntimeExec.ExecutionResult;
 import org.alfresco.transform.base.model.FileRefEntity;
 import org.alfresco.transform.base.model.FileRefResponse;
+import org.artofsolving.jodconverter.document.DocumentFormat;
 import org.artofsolving.jodconverter.office.OfficeException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -76,6 +88,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
@@ -186,6 +199,158 @@ public class LibreOfficeTest extends AbstractBaseTest
                 containsString("LibreOffice server conversion failed:")));
     }
 
+    @Test
+    public void pageRangeTest() throws Exception
+    {
+        doThrow(OfficeException.class).when(spyLibreOfficeTransformer).convert(any(), any(), eq("1-2,4"));
+
+        mockMvc
+            .perform(MockMvcRequestBuilders
+                .multipart(ENDPOINT_TRANSFORM)
+                .file(sourceFile)
+                .param(TARGET_EXTENSION, "pdf")
+                .param(SOURCE_MIMETYPE, sourceMimetype)
+                .param(TARGET_MIMETYPE, MIMETYPE_PDF)
+                .param(PAGE_RANGE, "1-2, 4"))
+            .andExpect(status().is(400))
+            .andExpect(status().reason(
+                containsString("LibreOffice server conversion failed:")));
+
+        verify(spyLibreOfficeTransformer).convert(any(), any(), eq("1-2,4"));
+    }
+
+    @Test
+    public void invalidPageRangeTest() throws Exception
+    {
+        mockMvc
+            .perform(MockMvcRequestBuilders
+                .multipart(ENDPOINT_TRANSFORM)
+                .file(sourceFile)
+                .param(TARGET_EXTENSION, "pdf")
+                .param(SOURCE_MIMETYPE, sourceMimetype)
+                .param(TARGET_MIMETYPE, MIMETYPE_PDF)
+                .param(PAGE_RANGE, "0-2"))
+            .andExpect(status().is(400))
+            .andExpect(status().reason(containsString("Invalid pageRange '0-2'")));
+    }
+
+    @Test
+    public void streamingTest() throws Exception
+    {
+        enableStreaming(1024 * 1024L);
+        doAnswer(invocation ->
+        {
+            byte[] source = invocation.getArgument(0);
+            DocumentFormat sourceFormat = invocation.getArgument(1);
+            DocumentFormat targetFormat = invocation.getArgument(2);
+            OutputStream outputStream = invocation.getArgument(3);
+            assertTrue(Arrays.equals(sourceFileBytes, source), "Source is not the same");
+            assertEquals("doc", sourceFormat.getExtension());
+            assertEquals("pdf", targetFormat.getExtension());
+            outputStream.write(expectedTargetFileBytes);
+            return null;
+        }).when(spyLibreOfficeTransformer).convert(any(byte[].class), any(), any(), any());
+
+        MvcResult result = mockMvc
+            .perform(mockMvcRequest(ENDPOINT_TRANSFORM, sourceFile, TARGET_EXTENSION, "pdf"))
+            .andExpect(status().is(OK.value()))
+            .andReturn();
+
+        assertTrue(Arrays.equals(expectedTargetFileBytes, result.getResponse().getContentAsByteArray()));
+        verify(spyLibreOfficeTransformer, never()).convert(any(File.class), any(File.class));
+    }
+
+    @Test
+    public void streamingFallsBackToFilesForLargeSourcesTest() throws Exception
+    {
+        enableStreaming(10L);
+
+        mockMvc
+            .perform(mockMvcRequest(ENDPOINT_TRANSFORM, sourceFile, TARGET_EXTENSION, "pdf"))
+            .andExpect(status().is(OK.value()));
+
+        verify(spyLibreOfficeTransformer).convert(any(File.class), any(File.class));
+        verify(spyLibreOfficeTransformer, never()).convert(any(byte[].class), any(), any(), any());
+    }
+
+    private void enableStreaming()
+    {
+        enableStreaming(1024 * 1024L);
+    }
+
+    private void enableStreaming(long maxSourceSize)
+    {
+        ReflectionTestUtils.setField(spyLibreOfficeTransformer, "streamingEnabled", true);
+        ReflectionTestUtils.setField(spyLibreOfficeTransformer, "streamingMaxSourceSize", maxSourceSize);
+    }
+
+    @Test
+    public void streamingEmptySpreadsheetTest() throws Exception
+    {
+        enableStreaming();
+        ErrorCodeIOException emptySpreadsheet = new ErrorCodeIOException();
+        emptySpreadsheet.ErrCode = 3088;
+        doThrow(new LibreOfficeStreamConversionTask.DocumentException("conversion failed", emptySpreadsheet))
+            .when(spyLibreOfficeTransformer).convert(any(byte[].class), any(), any(), any());
+
+        MvcResult result = mockMvc
+            .perform(mockMvcRequest(ENDPOINT_TRANSFORM, sourceFile, TARGET_EXTENSION, "pdf"))
+            .andExpect(status().is(OK.value()))
+            .andReturn();
+
+        String content = new String(result.getResponse().getContentAsByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(content.startsWith("%PDF"), "An empty PDF should have been returned");
+    }
+
+    @Test
+    public void streamingWithoutOutputTest() throws Exception
+    {
+        enableStreaming();
+        doNothing().when(spyLibreOfficeTransformer).convert(any(byte[].class), any(), any(), any());
+
+        mockMvc
+            .perform(mockMvcRequest(ENDPOINT_TRANSFORM, sourceFile, TARGET_EXTENSION, "pdf"))
+            .andExpect(status().is(INTERNAL_SERVER_ERROR.value()))
+            .andExpect(status().reason(containsString("Transformer failed to create an output file")));
+    }
+
+    @Test
+    public void streamingDocumentFailureTest() throws Exception
+    {
+        enableStreaming();
+        doThrow(new LibreOfficeStreamConversionTask.DocumentException("could not load document from stream"))
+            .when(spyLibreOfficeTransformer).convert(any(byte[].class), any(), any(), any());
+
+        mockMvc
+            .perform(mockMvcRequest(ENDPOINT_TRANSFORM, sourceFile, TARGET_EXTENSION, "pdf"))
+            .andExpect(status().is(BAD_REQUEST.value()))
+            .andExpect(status().reason(containsString("LibreOffice server conversion failed:")));
+    }
+
+    @Test
+    public void streamingAndFilesFailureStatusTest() throws Exception
+    {
+        OfficeException failure = new OfficeException("task did not complete within timeout");
+        doThrow(failure).when(spyLibreOfficeTransformer).convert(any(File.class), any(File.class));
+        doThrow(failure).when(spyLibreOfficeTransformer).convert(any(byte[].class), any(), any(), any());
+
+        int filesStatus = mockMvc
+            .perform(mockMvcRequest(ENDPOINT_TRANSFORM, sourceFile, TARGET_EXTENSION, "pdf"))
+            .andExpect(status().reason(containsString("LibreOffice server conversion failed:")))
+            .andReturn().getResponse().getStatus();
+
+        enableStreaming();
+        int streamingStatus = mockMvc
+            .perform(mockMvcRequest(ENDPOINT_TRANSFORM, sourceFile, TARGET_EXTENSION, "pdf"))
+            .andExpect(status().reason(containsString("LibreOffice server conversion failed:")))
+            .andReturn().getResponse().getStatus();
+
+        assertEquals(BAD_REQUEST.value(), filesStatus);
+        assertEquals(filesStatus, streamingStatus);
+        verify(spyLibreOfficeTransformer).convert(any(File.class), any(File.class));
+        verify(spyLibreOfficeTransformer).convert(any(byte[].class), any(), any(), any());
+    }
+
     @Override
     protected void updateTransformRequestWithSpecificOptions(TransformRequest transformRequest)
     {
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.libreoffice.transformers;
+
+import org.artofsolving.jodconverter.OfficeDocumentConverter;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Measures the tail latency of LibreOffice conversions when processes are recycled after
+ * {@code maxTasksPerProcess} tasks, first with JodConverter restarting them in line and then with the pool starting
+ * a warmed up replacement in advance. Not run as part of the build, as it needs LibreOffice. Run the {@link #main}
+ * method from the test classpath with the arguments:
+ * <pre>
+ *     officeHome sourceFile [tasks [maxTasksPerProcess]]
+ * </pre>
+ * for example {@code /opt/libreoffice7.2 quick.docx 500 50}.
+ */
+public class LibreOfficeRecycleLatency
+{
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: LibreOfficeRecycleLatency officeHome sourceFile [tasks [maxTasksPerProcess]]");
+            System.exit(1);
+        }
+        String officeHome = args[0];
+        File sourceFile = new File(args[1]);
+        int tasks = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        String maxTasksPerProcess = args.length > 3 ? args[3] : "50";
+
+        for (String prestartReplacement : new String[]{"false", "true"})
+        {
+            long[] millis = run(officeHome, sourceFile, tasks, maxTasksPerProcess, prestartReplacement);
+            Arrays.sort(millis);
+            System.out.printf("prestartReplacement=%s tasks=%d maxTasksPerProcess=%s " +
+                              "p50=%dms p95=%dms p99=%dms max=%dms%n",
+                prestartReplacement, tasks, maxTasksPerProcess,
+                percentile(millis, 50), percentile(millis, 95), percentile(millis, 99), millis[millis.length - 1]);
+        }
+    }
+
+    private static long[] run(String officeHome, File sourceFile, int tasks, String maxTasksPerProcess,
+        String prestartReplacement) throws Exception
+    {
+        JodConverterSharedInstance sharedInstance = new JodConverterSharedInstance();
+        sharedInstance.setOfficeHome(officeHome);
+        sharedInstance.setMaxTasksPerProcess(maxTasksPerProcess);
+        sharedInstance.setTaskExecutionTimeout("120000");
+        sharedInstance.setTaskQueueTimeout("120000");
+        sharedInstance.setConnectTimeout("120000");
+        sharedInstance.setPortNumbers("8100");
+        sharedInstance.setTemplateProfileDir("");
+        sharedInstance.setEnabled("true");
+        sharedInstance.setPoolEnabled("true");
+        sharedInstance.setMinProcesses("1");
+        sharedInstance.setMaxProcesses("1");
+        sharedInstance.setPoolPorts("8100-8199");
+        sharedInstance.setIdleTimeout("300000");
+        sharedInstance.setPrestartReplacement(prestartReplacement);
+        sharedInstance.afterPropertiesSet();
+
+        File targetFile = Files.createTempFile("LibreOfficeRecycleLatency", ".pdf").toFile();
+        long[] millis = new long[tasks];
+        try
+        {
+            OfficeDocumentConverter converter = new OfficeDocumentConverter(sharedInstance.getOfficeManager());
+            for (int i = 0; i < tasks; i++)
+            {
+                long start = System.nanoTime();
+                converter.convert(sourceFile, targetFile);
+                millis[i] = (System.nanoTime() - start) / 1_000_000;
+            }
+        }
+        finally
+        {
+            sharedInstance.destroy();
+            targetFile.delete();
+        }
+        return millis;
+    }
+
+    private static long percentile(long[] sorted, int percentile)
+    {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -45,6 +45,7 @@ import java.util.stream.Stream;
 
 import org.alfresco.transform.base.TransformManager;
 import org.alfresco.transform.base.util.CustomTransformerFileAdaptor;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
@@ -53,6 +54,7 @@ import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
 import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 /**
@@ -64,6 +66,8 @@ import org.springframework.stereotype.Component;
  * - endPage - page number of image (for multi-page images) up to which transformation should be performed. Default: last page of the image.
  * - pdfFormat - output PDF file format. Available formats: DEFAULT, A0, A1, A2, A3, A4, A5, A6, LETTER, LEGAL. Default: original image size.
  * - pdfOrientation - output PDF file orientation. Available options: DEFAULT, PORTRAIT, LANDSCAPE. Default: original image orientation.
+ * The PDF being built is held on the heap, unless transform.core.misc.pdfBox.maxMainMemory is set, in which case only
+ * that many bytes are and the rest is held in temporary files.
  */
 @Component
 public class ImageToPdfTransformer implements CustomTransformerFileAdaptor
@@ -78,6 +82,9 @@ public class ImageToPdfTransformer implements CustomTransformerFileAdaptor
     private static final String DEFAULT_PDF_FORMAT_STRING = "DEFAULT";
     private static final String DEFAULT_PDF_ORIENTATION_STRING = "DEFAULT";
 
+    @Value("${transform.core.misc.pdfBox.maxMainMemory:-1}")
+    private long maxMainMemory = -1;
+
     @Override
     public String getTransformerName()
     {
@@ -91,7 +98,7 @@ public class ImageToPdfTransformer implements CustomTransformerFileAdaptor
     ) throws Exception {
         try (
             ImageInputStream imageInputStream = ImageIO.createImageInputStream(imageFile);
-            PDDocument pdfDocument = new PDDocument()
+            PDDocument pdfDocument = new PDDocument(getMemoryUsageSetting())
         ) {
             final Integer startPage = parseOptionIfPresent(transformOptions, START_PAGE, Integer.class).orElse(null);
             final Integer endPage = parseOptionIfPresent(transformOptions, END_PAGE, Integer.class).orElse(null);
@@ -118,6 +125,11 @@ public class ImageToPdfTransformer implements CustomTransformerFileAdaptor
         }
     }
 
+    private MemoryUsageSetting getMemoryUsageSetting()
+    {
+        return maxMainMemory < 0 ? MemoryUsageSetting.setupMainMemoryOnly() : MemoryUsageSetting.setupMixed(maxMainMemory);
+    }
+
     private ImageReader findImageReader(final ImageInputStream imageInputStream, final String imageName, final String mimetype) throws IOException
     {
         final Iterator<ImageReader> imageReaders = ImageIO.getImageReaders(imageInputStream);
@@ -40,12 +40,10 @@ import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
-import static org.alfresco.transform.base.util.Util.stringToLong;
 import static org.alfresco.transform.common.RequestParamMap.ALLOW_PDF_ENLARGEMENT;
 import static org.alfresco.transform.common.RequestParamMap.HEIGHT_REQUEST_PARAM;
 import static org.alfresco.transform.common.RequestParamMap.MAINTAIN_PDF_ASPECT_RATIO;
 import static org.alfresco.transform.common.RequestParamMap.PAGE_REQUEST_PARAM;
-import static org.alfresco.transform.common.RequestParamMap.TIMEOUT;
 import static org.alfresco.transform.common.RequestParamMap.WIDTH_REQUEST_PARAM;
 
 /**
@@ -114,7 +112,7 @@ public class PdfRendererTransformer extends AbstractCommandExecutor implements C
                 .withMaintainPdfAspectRatio(transformOptions.get(MAINTAIN_PDF_ASPECT_RATIO))
                 .build();
 
-        Long timeout = stringToLong(transformOptions.get(TIMEOUT));
+        Long timeout = transformManager.getRemainingTime();
 
         run(options, sourceFile, targetFile, timeout);
     }
@@ -28,6 +28,8 @@ package org.alfresco.transform.tika.metadata;
 
 import org.alfresco.transform.base.TransformManager;
 import org.alfresco.transform.base.metadata.AbstractMetadataExtractorEmbedder;
+import org.alfresco.transform.exceptions.TransformException;
+import org.alfresco.transform.tika.parsers.ForkedParsers;
 import org.apache.tika.embedder.Embedder;
 import org.apache.tika.extractor.DocumentSelector;
 import org.apache.tika.metadata.DublinCore;
@@ -36,7 +38,9 @@ import org.apache.tika.metadata.Property;
 import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
 import org.apache.tika.sax.ContentHandlerDecorator;
+import org.apache.tika.sax.TeeContentHandler;
 import org.apache.tika.sax.XHTMLContentHandler;
 import org.apache.tika.sax.xpath.Matcher;
 import org.apache.tika.sax.xpath.MatchingContentHandler;
@@ -49,11 +53,15 @@ import org.joda.time.format.DateTimeParser;
 import org.slf4j.Logger;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.xml.sax.Locator;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
@@ -65,6 +73,11 @@ import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static java.lang.Boolean.parseBoolean;
+import static org.alfresco.transform.common.RequestParamMap.INCLUDE_TEXT;
+import static org.alfresco.transform.common.RequestParamMap.MAX_CHARS;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
 /**
  * The parent of all Metadata Extractors which use Apache Tika under the hood. This handles all the
  * common parts of processing the files, and the common mappings.
@@ -91,9 +104,17 @@ public abstract class AbstractTikaMetadataExtractorEmbeddor extends AbstractMeta
     protected static final String KEY_TAGS = DublinCore.SUBJECT.getName();
 
     private static final String METADATA_SEPARATOR = ",";
+    // The same default as the write limit of Tika's BodyContentHandler
+    private static final int DEFAULT_MAX_TEXT_CHARS = 100000;
 
     private final DateTimeFormatter tikaUTCDateFormater;
     private final DateTimeFormatter tikaDateFormater;
+    private volatile Parser sharedParser;
+    @Autowired(required = false)
+    private ForkedParsers forkedParsers;
+    // Limits the includeText text if there is no maxChars transform option, so a large document is not all held
+    @Value("${transform.core.tika.metadata.maxTextChars:" + DEFAULT_MAX_TEXT_CHARS + "}")
+    private int defaultMaxTextChars = DEFAULT_MAX_TEXT_CHARS;
 
     protected AbstractTikaMetadataExtractorEmbeddor(Type type, Logger logger)
     {
@@ -152,8 +173,33 @@ public abstract class AbstractTikaMetadataExtractorEmbeddor extends AbstractMeta
         return dateStr;
     }
 
+    /**
+     * Returns the Tika Parser used to extract metadata. It is only called once, as the result is shared by all
+     * extractions, so must be thread safe, as Tika parsers are.
+     */
     protected abstract Parser getParser();
 
+    private Parser getSharedParser()
+    {
+        Parser parser = sharedParser;
+        if (parser == null)
+        {
+            parser = forkedParsers == null ? getParser() : forkedParsers.getParser(getTransformerName(), getParser());
+            sharedParser = parser;
+        }
+        return parser;
+    }
+
+    /**
+     * Allows an extractor to read the source from somewhere other than the supplied {@code inputStream}, such as the
+     * source file. A stream other than {@code inputStream} is closed after the extraction.
+     */
+    protected InputStream getInputStream(InputStream inputStream, TransformManager transformManager)
+        throws IOException
+    {
+        return inputStream;
+    }
+
     /**
      * Returns the Tika Embedder to modify
      * the document.
@@ -213,7 +259,7 @@ public abstract class AbstractTikaMetadataExtractorEmbeddor extends AbstractMeta
     {
         Map<String, Serializable> rawProperties = new HashMap<>();
 
-        Parser parser = getParser();
+        Parser parser = getSharedParser();
 
         Metadata metadata = new Metadata();
         metadata.add(Metadata.CONTENT_TYPE, sourceMimetype);
@@ -234,7 +280,27 @@ public abstract class AbstractTikaMetadataExtractorEmbeddor extends AbstractMeta
             handler = new NullContentHandler();
         }
 
-        parser.parse(inputStream, handler, metadata, context);
+        // The text is captured by the same parse as the metadata, rather than by a separate transform to text/plain
+        TextWriter text = parseBoolean(transformOptions.getOrDefault(INCLUDE_TEXT, "false"))
+            ? new TextWriter(getMaxChars(transformOptions))
+            : null;
+        if (text != null)
+        {
+            handler = new TeeContentHandler(handler, new BodyContentHandler(text));
+        }
+
+        InputStream sourceStream = getInputStream(inputStream, transformManager);
+        try
+        {
+            parser.parse(sourceStream, handler, metadata, context);
+        }
+        finally
+        {
+            if (sourceStream != inputStream)
+            {
+                sourceStream.close();
+            }
+        }
 
         // First up, copy all the Tika metadata over
         // This allows people to map any of the Tika
@@ -295,9 +361,39 @@ public abstract class AbstractTikaMetadataExtractorEmbeddor extends AbstractMeta
         //  files continue to map correctly
         rawProperties = extractSpecific(metadata, rawProperties, headers);
 
+        if (text != null)
+        {
+            rawProperties.put(SYS_TEXT, text.toString());
+            if (text.truncated && transformManager != null)
+            {
+                transformManager.setTargetTruncated();
+            }
+        }
+
         return rawProperties;
     }
 
+    private int getMaxChars(Map<String, String> transformOptions)
+    {
+        String value = transformOptions.get(MAX_CHARS);
+        if (value == null)
+        {
+            return defaultMaxTextChars;
+        }
+        try
+        {
+            int maxChars = Integer.parseInt(value);
+            if (maxChars > 0)
+            {
+                return maxChars;
+            }
+        }
+        catch (NumberFormatException ignore)
+        {
+        }
+        throw new TransformException(BAD_REQUEST, MAX_CHARS + " must be a positive integer");
+    }
+
     /**
      * @deprecated The content repository's TikaPoweredMetadataExtracter provides no non test implementations.
      *             This code exists in case there are custom implementations, that need to be converted to T-Engines.
@@ -478,6 +574,46 @@ public abstract class AbstractTikaMetadataExtractorEmbeddor extends AbstractMeta
         public void startPrefixMapping(String paramString1, String paramString2) {}
     }
 
+    /**
+     * Keeps the first {@code maxChars} of the text and ignores the rest, rather than stopping the parse as the
+     * {@code maxChars} limit of a text transform does, so that all the metadata is still extracted.
+     */
+    private static class TextWriter extends Writer
+    {
+        private final StringBuilder text = new StringBuilder();
+        private final int maxChars;
+        private boolean truncated;
+
+        private TextWriter(int maxChars)
+        {
+            this.maxChars = maxChars;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len)
+        {
+            int length = Math.min(len, maxChars - text.length());
+            text.append(cbuf, off, length);
+            truncated |= length < len;
+        }
+
+        @Override
+        public void flush()
+        {
+        }
+
+        @Override
+        public void close()
+        {
+        }
+
+        @Override
+        public String toString()
+        {
+            return text.toString();
+        }
+    }
+
     /**
      * A content handler that ignores all the content it finds.
      * Normally used when we only want the metadata, and don't
@@ -29,11 +29,13 @@ package org.alfresco.transform.tika.metadata.extractors;
 import org.alfresco.transform.base.executors.RuntimeExec;
 import org.alfresco.transform.tika.metadata.AbstractTikaMetadataExtractorEmbeddor;
 import org.alfresco.transform.tika.parsers.ExifToolParser;
+import org.alfresco.transform.tika.parsers.ExifToolSessionPool;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.Parser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.Serializable;
@@ -57,17 +59,26 @@ public class IPTCMetadataExtractor extends AbstractTikaMetadataExtractorEmbeddor
 
     private ExifToolParser parser;
     private RuntimeExec exifRuntimeExec;
+    private ExifToolSessionPool exifToolSessionPool;
+    // Only used for its extractSpecific method, so is created once rather than reading the Tika config per call
+    private final TikaAutoMetadataExtractor tikaAutoMetadataExtractor = new TikaAutoMetadataExtractor();
 
     public IPTCMetadataExtractor(RuntimeExec exifRuntimeExec) {
+        this(exifRuntimeExec, null);
+    }
+
+    @Autowired
+    public IPTCMetadataExtractor(RuntimeExec exifRuntimeExec, ExifToolSessionPool exifToolSessionPool) {
         super(EXTRACTOR, logger);
         this.exifRuntimeExec = exifRuntimeExec;
+        this.exifToolSessionPool = exifToolSessionPool;
     }
 
     @Override
     protected Parser getParser() 
     {
         if (this.parser == null) {
-            this.parser = new ExifToolParser(exifRuntimeExec);
+            this.parser = new ExifToolParser(exifRuntimeExec, exifToolSessionPool);
         }
         return this.parser;  
     }
@@ -81,7 +92,7 @@ public class IPTCMetadataExtractor extends AbstractTikaMetadataExtractorEmbeddor
     protected Map<String, Serializable> extractSpecific(Metadata metadata, Map<String, Serializable> properties,
             Map<String, String> headers) 
     {
-        properties = new TikaAutoMetadataExtractor().extractSpecific(metadata, properties, headers);
+        properties = tikaAutoMetadataExtractor.extractSpecific(metadata, properties, headers);
         ExifToolParser etParser = (ExifToolParser)this.getParser();
         if (etParser.getSeparator()!=null)
         {
@@ -26,7 +26,9 @@
  */
 package org.alfresco.transform.tika.metadata.extractors;
 
+import org.alfresco.transform.base.TransformManager;
 import org.alfresco.transform.tika.metadata.AbstractTikaMetadataExtractorEmbeddor;
+import org.alfresco.transform.tika.parsers.PdfBoxMemoryPolicy;
 import org.alfresco.transform.tika.transformers.Tika;
 import org.apache.tika.extractor.DocumentSelector;
 import org.apache.tika.metadata.Metadata;
@@ -34,8 +36,12 @@ import org.apache.tika.parser.Parser;
 import org.apache.tika.parser.pdf.PDFParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 import static org.alfresco.transform.base.metadata.AbstractMetadataExtractorEmbedder.Type.EXTRACTOR;
 
 /**
@@ -61,6 +67,9 @@ public class PdfBoxMetadataExtractor extends AbstractTikaMetadataExtractorEmbedd
 {
     private static final Logger logger = LoggerFactory.getLogger(PdfBoxMetadataExtractor.class);
 
+    @Autowired(required = false)
+    private PdfBoxMemoryPolicy pdfBoxMemoryPolicy;
+
     public PdfBoxMetadataExtractor()
     {
         super(EXTRACTOR, logger);
@@ -75,6 +84,14 @@ public class PdfBoxMetadataExtractor extends AbstractTikaMetadataExtractorEmbedd
     @Override
     protected Parser getParser()
     {
-        return new PDFParser();
+        return pdfBoxMemoryPolicy == null ? new PDFParser() : pdfBoxMemoryPolicy.getPdfParser();
+    }
+
+    @Override
+    protected InputStream getInputStream(InputStream inputStream, TransformManager transformManager)
+        throws IOException
+    {
+        return pdfBoxMemoryPolicy == null ? inputStream
+                                          : pdfBoxMemoryPolicy.getInputStream(inputStream, transformManager);
     }
 }
@@ -27,6 +27,7 @@
 package org.alfresco.transform.tika.metadata.extractors;
 
 import org.alfresco.transform.tika.metadata.AbstractTikaMetadataExtractorEmbeddor;
+import org.alfresco.transform.tika.parsers.AutoDetection;
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.metadata.TIFF;
@@ -34,6 +35,7 @@ import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.Parser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.Serializable;
@@ -75,6 +77,8 @@ public class TikaAutoMetadataExtractor extends AbstractTikaMetadataExtractorEmbe
     private static final String COMPRESSION_TAG = "Compression";
 
     protected final TikaConfig tikaConfig;
+    @Autowired(required = false)
+    private AutoDetection autoDetection;
 
     public TikaAutoMetadataExtractor()
     {
@@ -83,12 +87,13 @@ public class TikaAutoMetadataExtractor extends AbstractTikaMetadataExtractorEmbe
     }
 
     /**
-     * Does auto-detection to select the best Tika Parser.
+     * Does auto-detection to select the best Tika Parser, which may use the source mimetype rather than detecting the
+     * type (see {@link AutoDetection}).
      */
     @Override
     protected Parser getParser()
     {
-        return new AutoDetectParser(tikaConfig);
+        return autoDetection == null ? new AutoDetectParser(tikaConfig) : autoDetection.getAutoDetectParser();
     }
 
     /**
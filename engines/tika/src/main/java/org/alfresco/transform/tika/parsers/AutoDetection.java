@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import jakarta.annotation.PostConstruct;
+import java.util.Locale;
+
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import static org.alfresco.transform.tika.transformers.Tika.readTikaConfig;
+
+/**
+ * Provides the {@link AutoDetectParser} shared by the {@code TikaAuto} transformer and the
+ * {@code TikaAutoMetadataExtractor}, with a {@link DeclaredTypeDetector} that may use the source mimetype supplied
+ * by the repository rather than detecting the type of the content. Set by
+ * {@code transform.core.tika.autoDetect.declaredType}:
+ * <ul>
+ *     <li>{@code detect} - the type is always detected from the content. The default.</li>
+ *     <li>{@code verify} - the source mimetype is used if the magic bytes at the start of the content agree with
+ *         it, skipping the detection of the contents of ZIP and OLE2 containers.</li>
+ *     <li>{@code trust} - the source mimetype is used without looking at the content.</li>
+ * </ul>
+ * {@code transform.core.tika.autoDetect.cacheSize} magic bytes results are cached.
+ */
+@Component
+public class AutoDetection
+{
+    private static final Logger logger = LoggerFactory.getLogger(AutoDetection.class);
+
+    @Value("${transform.core.tika.autoDetect.declaredType:detect}")
+    private String declaredType;
+    @Value("${transform.core.tika.autoDetect.cacheSize:1000}")
+    private int cacheSize;
+
+    private DeclaredTypeDetector.Mode mode;
+    private AutoDetectParser autoDetectParser;
+
+    @PostConstruct
+    void init()
+    {
+        mode = DeclaredTypeDetector.Mode.valueOf(declaredType.trim().toUpperCase(Locale.ROOT));
+        TikaConfig tikaConfig = readTikaConfig(logger);
+        autoDetectParser = new AutoDetectParser(tikaConfig);
+        autoDetectParser.setDetector(new DeclaredTypeDetector(mode, tikaConfig.getDetector(),
+            tikaConfig.getMimeRepository(), autoDetectParser.getSupportedTypes(new ParseContext()), cacheSize));
+        logger.debug("Tika auto detection of the declared type {} with cacheSize {}", mode, cacheSize);
+    }
+
+    /**
+     * @return {@code true} if the source mimetype should be supplied to the parser as the
+     *         {@code Metadata.CONTENT_TYPE}, because it may be used rather than detecting the type.
+     */
+    public boolean isDeclaredTypeUsed()
+    {
+        return mode != DeclaredTypeDetector.Mode.DETECT;
+    }
+
+    public Parser getAutoDetectParser()
+    {
+        return autoDetectParser;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+import org.apache.tika.detect.CompositeDetector;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MediaTypeRegistry;
+import org.apache.tika.mime.MimeTypes;
+
+/**
+ * A Tika {@link Detector} for the {@code AutoDetectParser} that may use the type declared by the caller (the
+ * repository's {@code sourceMimetype}, supplied as the {@link Metadata#CONTENT_TYPE} hint) rather than running full
+ * detection, which opens ZIP and OLE2 containers to tell one Office format from another.
+ * <ul>
+ *     <li>{@link Mode#DETECT} - full detection, as Tika does by default.</li>
+ *     <li>{@link Mode#VERIFY} - the declared type is used if the magic bytes at the start of the content do not
+ *         contradict it, that is if it is the detected type or a specialisation of it, so a declared {@code docx}
+ *         is accepted for content that starts like a ZIP, but not for a PDF.</li>
+ *     <li>{@link Mode#TRUST} - the declared type is used without looking at the content.</li>
+ * </ul>
+ * In all modes full detection is used if the declared type is missing, {@code application/octet-stream} or not
+ * one the parser supports.
+ * <p>
+ * The magic bytes detection (Tika's {@link MimeTypes}) reads the first 64 KB of the content. Its result is cached
+ * against a fingerprint of those bytes (their length and two independent 32 bit hashes) and the name and type hints
+ * it also looks at, so repeated headers, such as those of documents created from the same template, are only
+ * matched once. The cache is used both by {@link Mode#VERIFY} and as part of full detection.
+ */
+public class DeclaredTypeDetector implements Detector
+{
+    private static final long serialVersionUID = 1L;
+
+    public enum Mode
+    {
+        DETECT, VERIFY, TRUST
+    }
+
+    private final Mode mode;
+    private final MediaTypeRegistry registry;
+    private final Set<MediaType> supportedTypes;
+    private final CachingMagicDetector magicDetector;
+    private final Detector detector;
+
+    /**
+     * @param mode how the declared type is used.
+     * @param detector the full detector, normally {@code TikaConfig.getDetector()}.
+     * @param mimeTypes the magic bytes detector, normally {@code TikaConfig.getMimeRepository()}. If it is one of the
+     *                  detectors of a composite {@code detector}, it is replaced by its cached version.
+     * @param supportedTypes the types supported by the parser.
+     * @param cacheSize the maximum number of magic bytes results cached. 0 disables the cache.
+     */
+    public DeclaredTypeDetector(Mode mode, Detector detector, MimeTypes mimeTypes, Set<MediaType> supportedTypes,
+        int cacheSize)
+    {
+        this.mode = mode;
+        this.registry = mimeTypes.getMediaTypeRegistry();
+        this.supportedTypes = supportedTypes;
+        this.magicDetector = new CachingMagicDetector(mimeTypes, cacheSize);
+        this.detector = withCachedMagic(detector, mimeTypes);
+    }
+
+    private Detector withCachedMagic(Detector detector, MimeTypes mimeTypes)
+    {
+        if (detector == mimeTypes)
+        {
+            return magicDetector;
+        }
+        if (detector instanceof CompositeDetector)
+        {
+            List<Detector> detectors = new ArrayList<>(((CompositeDetector) detector).getDetectors());
+            int i = detectors.indexOf(mimeTypes);
+            if (i >= 0)
+            {
+                detectors.set(i, magicDetector);
+                return new CompositeDetector(registry, detectors);
+            }
+        }
+        return detector;
+    }
+
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    @Override
+    public MediaType detect(InputStream input, Metadata metadata) throws IOException
+    {
+        MediaType declaredType = getDeclaredType(metadata);
+        if (declaredType != null && input != null)
+        {
+            if (mode == Mode.TRUST)
+            {
+                return declaredType;
+            }
+            if (mode == Mode.VERIFY)
+            {
+                MediaType magicType = magicDetector.detect(input, new Metadata());
+                if (declaredType.equals(magicType) || registry.isSpecializationOf(declaredType, magicType))
+                {
+                    return declaredType;
+                }
+            }
+        }
+        return detector.detect(input, metadata);
+    }
+
+    private MediaType getDeclaredType(Metadata metadata)
+    {
+        if (mode == Mode.DETECT)
+        {
+            return null;
+        }
+        MediaType type = MediaType.parse(metadata.get(Metadata.CONTENT_TYPE));
+        if (type == null)
+        {
+            return null;
+        }
+        type = registry.normalize(type.getBaseType());
+        return MediaType.OCTET_STREAM.equals(type) || !supportedTypes.contains(type) ? null : type;
+    }
+
+    int getCacheSize()
+    {
+        return magicDetector.cache == null ? 0 : magicDetector.cache.size();
+    }
+
+    /**
+     * Caches the results of the magic bytes detection against a fingerprint of the bytes it reads.
+     */
+    private static class CachingMagicDetector implements Detector
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final MimeTypes mimeTypes;
+        private final Map<Fingerprint, MediaType> cache;
+
+        private CachingMagicDetector(MimeTypes mimeTypes, int cacheSize)
+        {
+            this.mimeTypes = mimeTypes;
+            this.cache = cacheSize > 0 ? Collections.synchronizedMap(new LruMap(cacheSize)) : null;
+        }
+
+        @Override
+        public MediaType detect(InputStream input, Metadata metadata) throws IOException
+        {
+            if (input == null || cache == null)
+            {
+                return mimeTypes.detect(input, metadata);
+            }
+
+            byte[] header = readHeader(input, mimeTypes.getMinLength());
+            Fingerprint fingerprint = new Fingerprint(header, metadata.get(TikaCoreProperties.RESOURCE_NAME_KEY),
+                metadata.get(Metadata.CONTENT_TYPE));
+            MediaType type = cache.get(fingerprint);
+            if (type == null)
+            {
+                type = mimeTypes.detect(input, metadata);
+                cache.put(fingerprint, type);
+            }
+            return type;
+        }
+
+        // Reads the same bytes as MimeTypes and resets the stream
+        private static byte[] readHeader(InputStream input, int length) throws IOException
+        {
+            input.mark(length);
+            try
+            {
+                return input.readNBytes(length);
+            }
+            finally
+            {
+                input.reset();
+            }
+        }
+    }
+
+    private static class Fingerprint implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int length;
+        private final int crc;
+        private final int hash;
+        private final String resourceName;
+        private final String contentType;
+
+        private Fingerprint(byte[] header, String resourceName, String contentType)
+        {
+            CRC32C crc32c = new CRC32C();
+            crc32c.update(header);
+            this.length = header.length;
+            this.crc = (int) crc32c.getValue();
+            this.hash = Arrays.hashCode(header);
+            this.resourceName = resourceName;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Fingerprint))
+            {
+                return false;
+            }
+            Fingerprint that = (Fingerprint) o;
+            return length == that.length && crc == that.crc && hash == that.hash &&
+                   Objects.equals(resourceName, that.resourceName) && Objects.equals(contentType, that.contentType);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(length, crc, hash, resourceName, contentType);
+        }
+    }
+
+    private static class LruMap extends LinkedHashMap<Fingerprint, MediaType>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private LruMap(int maxSize)
+        {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Fingerprint, MediaType> eldest)
+        {
+            return size() > maxSize;
+        }
+    }
+}
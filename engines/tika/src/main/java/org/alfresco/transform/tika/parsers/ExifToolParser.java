@@ -39,6 +39,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -75,13 +76,23 @@ public class ExifToolParser extends ExternalParser {
     protected static final String SEPARATOR_SETTING = "-sep";
 
     private String separator;
+    private final ExifToolSessionPool sessionPool;
 
     public ExifToolParser() {
         this(null);
     }
 
     public ExifToolParser(RuntimeExec exifRuntimeExec) {
+        this(exifRuntimeExec, null);
+    }
+
+    /**
+     * @param sessionPool if supplied and enabled, used to run ExifTool rather than starting a new process for each
+     *                    parse.
+     */
+    public ExifToolParser(RuntimeExec exifRuntimeExec, ExifToolSessionPool sessionPool) {
         super();
+        this.sessionPool = sessionPool;
         try {
             List<ExternalParser> eParsers = ExternalParsersFactory.create(getExternalParserConfigURL());
             // if ExifTool is not installed then no parsers are returned
@@ -203,6 +214,15 @@ public class ExifToolParser extends ExternalParser {
 
     private void parse(TikaInputStream stream, XHTMLContentHandler xhtml, Metadata metadata, TemporaryResources tmp)
             throws IOException, SAXException, TikaException {
+        if (sessionPool != null && sessionPool.isEnabled()) {
+            List<String> sessionExecutable = getSessionExecutable();
+            List<String> sessionArguments = getSessionArguments(stream.getFile().getPath());
+            if (sessionExecutable != null && sessionArguments != null) {
+                parseUsingSession(sessionExecutable, sessionArguments, xhtml, metadata);
+                return;
+            }
+        }
+
         boolean inputToStdIn = true;
         boolean outputFromStdOut = true;
         boolean hasPatterns = (getMetadataExtractionPatterns() != null && !getMetadataExtractionPatterns().isEmpty());
@@ -280,6 +300,100 @@ public class ExifToolParser extends ExternalParser {
         }
     }
 
+    /**
+     * Runs ExifTool using a long running process from the {@link ExifToolSessionPool}. The configured command's
+     * executable and arguments are used, so the output and metadata are the same as when a new process is started,
+     * but no temporary output file is needed.
+     */
+    private void parseUsingSession(List<String> sessionExecutable, List<String> sessionArguments,
+            XHTMLContentHandler xhtml, Metadata metadata) throws IOException, SAXException {
+        List<String> lines = sessionPool.execute(sessionExecutable, sessionArguments);
+        if (getMetadataExtractionPatterns() != null && !getMetadataExtractionPatterns().isEmpty()) {
+            for (String line : lines) {
+                extractMetadata(line, metadata);
+            }
+        }
+        extractOutput(InputStream.nullInputStream(), xhtml);
+    }
+
+    private String[] getSplitCommand() {
+        return getCommand().length == 1 ? getCommand()[0].split(" ") : getCommand();
+    }
+
+    /**
+     * @return the number of leading elements of the command that are {@code env} and environment variables.
+     */
+    private static int getExecutableIndex(String[] cmd) {
+        int i = 0;
+        while (i < cmd.length && ("env".equals(cmd[i]) || cmd[i].contains("="))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Only commands that refer to an output file are run in a session. Their standard output is matched against
+     * the metadata extraction patterns. The standard output of other commands, such as the default Windows one,
+     * becomes the text of the document, so they still start a new process.
+     *
+     * @return {@code true} if the configured command can be run in a session.
+     */
+    private boolean isSessionCommand(String[] cmd) {
+        int executableIndex = getExecutableIndex(cmd);
+        if (executableIndex >= cmd.length || cmd[executableIndex].contains(INPUT_FILE_TOKEN)
+                || cmd[executableIndex].contains(OUTPUT_FILE_TOKEN)) {
+            return false;
+        }
+        boolean input = false;
+        boolean output = false;
+        for (String arg : cmd) {
+            input |= arg.contains(INPUT_FILE_TOKEN);
+            output |= arg.contains(OUTPUT_FILE_TOKEN);
+        }
+        return input && output;
+    }
+
+    /**
+     * @return the executable of the configured command, preceded by any {@code env} and environment variables that
+     *         do not refer to the output file, or {@code null} if the command cannot be run in a session.
+     */
+    protected List<String> getSessionExecutable() {
+        String[] cmd = getSplitCommand();
+        if (!isSessionCommand(cmd)) {
+            return null;
+        }
+        int executableIndex = getExecutableIndex(cmd);
+        List<String> executable = new ArrayList<>();
+        for (int i = 0; i < executableIndex; i++) {
+            if (!cmd[i].contains(OUTPUT_FILE_TOKEN)) {
+                executable.add(cmd[i]);
+            }
+        }
+        if (executable.size() == 1 && "env".equals(executable.get(0))) {
+            executable.clear();
+        }
+        executable.add(cmd[executableIndex]);
+        return executable;
+    }
+
+    /**
+     * @return the arguments that follow the executable of the configured command, without any that refer to the
+     *         output file, or {@code null} if the command cannot be run in a session.
+     */
+    protected List<String> getSessionArguments(String input) {
+        String[] cmd = getSplitCommand();
+        if (!isSessionCommand(cmd)) {
+            return null;
+        }
+        List<String> args = new ArrayList<>();
+        for (int i = getExecutableIndex(cmd) + 1; i < cmd.length; i++) {
+            if (!cmd[i].contains(OUTPUT_FILE_TOKEN)) {
+                args.add(cmd[i].replace(INPUT_FILE_TOKEN, input));
+            }
+        }
+        return args;
+    }
+
     /**
      * Adapted from {@link org.apache.tika.parser.external.ExternalParser}<p>
      * Starts a thread that extracts the contents of the standard output
@@ -368,17 +482,7 @@ public class ExifToolParser extends ExternalParser {
                 try {
                     String line;
                     while ((line = reader.readLine()) != null) {
-                        for (Pattern p : getMetadataExtractionPatterns().keySet()) {
-                            Matcher m = p.matcher(line);
-                            if (m.find()) {
-                                if (getMetadataExtractionPatterns().get(p) != null
-                                        && !getMetadataExtractionPatterns().get(p).equals("")) {
-                                    metadata.add(getMetadataExtractionPatterns().get(p), m.group(1));
-                                } else {
-                                    metadata.add(m.group(1), m.group(2));
-                                }
-                            }
-                        }
+                        extractMetadata(line, metadata);
                     }
                 } catch (IOException e) {
                     // Ignore
@@ -394,4 +498,18 @@ public class ExifToolParser extends ExternalParser {
         } catch (InterruptedException ignore) {
         }
     }
+
+    private void extractMetadata(String line, Metadata metadata) {
+        for (Pattern p : getMetadataExtractionPatterns().keySet()) {
+            Matcher m = p.matcher(line);
+            if (m.find()) {
+                if (getMetadataExtractionPatterns().get(p) != null
+                        && !getMetadataExtractionPatterns().get(p).equals("")) {
+                    metadata.add(getMetadataExtractionPatterns().get(p), m.group(1));
+                } else {
+                    metadata.add(m.group(1), m.group(2));
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alfresco.transform.base.executors.PersistentProcess;
+import org.alfresco.transform.base.executors.PersistentProcessPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Long running {@code exiftool -stay_open True -@ -} processes, so that the cost of starting Perl and loading
+ * ExifTool is not paid for every image. Arguments are sent one per line on standard input, followed by
+ * {@code -executeN}. ExifTool then writes its output followed by {@code {readyN}}.
+ * <p>
+ * The executable comes from the configured {@code transform.core.tika.exifTool} command, so there is a separate pool
+ * of processes for each executable used. Off by default.
+ * <p>
+ * Processes are replaced after a number of requests, if a request fails or times out, or if a process that has been
+ * idle for a while does not reply to {@code -ver}.
+ */
+@Component
+public class ExifToolSessionPool
+{
+    private static final Logger logger = LoggerFactory.getLogger(ExifToolSessionPool.class);
+
+    private static final long HEALTH_CHECK_TIMEOUT_MS = 5000;
+
+    @Value("${transform.core.tika.exifTool.pool.enabled:false}")
+    private boolean enabled;
+    @Value("${transform.core.tika.exifTool.pool.maxProcesses:4}")
+    private int maxProcesses;
+    @Value("${transform.core.tika.exifTool.pool.maxJobsPerProcess:1000}")
+    private int maxJobsPerProcess;
+    @Value("${transform.core.tika.exifTool.pool.timeout:60000}")
+    private long timeoutMs;
+    @Value("${transform.core.tika.exifTool.pool.healthCheckAfterIdle:30000}")
+    private long healthCheckAfterIdleMs;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final Map<List<String>, PersistentProcessPool> pools = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    @PreDestroy
+    void close()
+    {
+        closed = true;
+        pools.values().forEach(PersistentProcessPool::close);
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled && !closed;
+    }
+
+    /**
+     * Runs ExifTool with the supplied arguments.
+     *
+     * @param executable the ExifTool executable, optionally preceded by {@code env} and environment variables
+     * @param args the arguments, which may not contain new lines
+     * @return the lines of output.
+     * @throws IOException if ExifTool could not be started, exited or did not reply in time.
+     */
+    public List<String> execute(List<String> executable, List<String> args) throws IOException
+    {
+        return pools.computeIfAbsent(List.copyOf(executable), this::createPool)
+                    .execute(process -> execute(process, args, timeoutMs));
+    }
+
+    private PersistentProcessPool createPool(List<String> executable)
+    {
+        List<String> command = new ArrayList<>(executable);
+        command.addAll(List.of("-stay_open", "True", "-@", "-"));
+        logger.debug("ExifTool session command: {}", command);
+        PersistentProcessPool pool = new PersistentProcessPool(command.toArray(new String[0]), null, UTF_8,
+            maxProcesses, maxJobsPerProcess);
+        pool.setHealthCheck(this::isHealthy);
+        return pool;
+    }
+
+    private List<String> execute(PersistentProcess process, List<String> args, long timeoutMs) throws IOException
+    {
+        long id = requestCount.incrementAndGet();
+        StringBuilder request = new StringBuilder();
+        for (String arg : args)
+        {
+            request.append(arg).append('\n');
+        }
+        request.append("-execute").append(id).append('\n');
+        List<String> lines = process.execute(request.toString(), "{ready" + id + "}", timeoutMs);
+        String stdErr = process.getStdErr();
+        if (!stdErr.isEmpty())
+        {
+            logger.debug("ExifTool {}", stdErr);
+        }
+        return lines;
+    }
+
+    private boolean isHealthy(PersistentProcess process)
+    {
+        if (process.getIdleMillis() < healthCheckAfterIdleMs)
+        {
+            return true;
+        }
+        try
+        {
+            return !execute(process, List.of("-ver"), HEALTH_CHECK_TIMEOUT_MS).isEmpty();
+        }
+        catch (IOException e)
+        {
+            logger.debug("ExifTool process {} failed its health check: {}", process.pid(), e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.apache.tika.fork.ForkParser;
+import org.apache.tika.parser.Parser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the Tika parsers of selected transformers and metadata extractors in pools of child JVMs, using Tika's
+ * {@link ForkParser}, so that a malformed document that makes a parser spin or run out of heap only takes down a
+ * child rather than the t-engine and every other transform running in it.
+ * <p>
+ * The transformers are selected by name (for example {@code PdfBox} or {@code TikaAutoMetadataExtractor}) in
+ * {@code transform.core.tika.fork.transformers}, or {@code *} for all of them. Each has its own pool of warm
+ * children, which are sent the document and return SAX events and metadata over their standard input and output.
+ * A child exits if a parse takes longer than {@code parseTimeout} or if it runs out of its {@code maxHeap}, and is
+ * replaced after {@code maxFilesPerProcess} documents. A replacement is started when the next request needs one.
+ */
+@Component
+public class ForkedParsers
+{
+    private static final Logger logger = LoggerFactory.getLogger(ForkedParsers.class);
+
+    private static final String ALL = "*";
+
+    @Value("${transform.core.tika.fork.transformers:}")
+    private String transformers;
+    @Value("${transform.core.tika.fork.poolSize:2}")
+    private int poolSize;
+    @Value("${transform.core.tika.fork.java:}")
+    private String java;
+    @Value("${transform.core.tika.fork.maxHeap:512m}")
+    private String maxHeap;
+    @Value("${transform.core.tika.fork.parseTimeout:60000}")
+    private long parseTimeoutMs;
+    @Value("${transform.core.tika.fork.maxFilesPerProcess:1000}")
+    private int maxFilesPerProcess;
+
+    private Set<String> transformerNames = Set.of();
+    private final Map<String, ForkParser> forkParsers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init()
+    {
+        transformerNames = Arrays.stream(transformers.split(","))
+                                 .map(String::trim)
+                                 .filter(name -> !name.isEmpty())
+                                 .collect(Collectors.toUnmodifiableSet());
+        if (!transformerNames.isEmpty())
+        {
+            logger.info("Tika parsers run in child JVMs for: {}", transformerNames);
+        }
+    }
+
+    @PreDestroy
+    void close()
+    {
+        forkParsers.values().forEach(ForkParser::close);
+        forkParsers.clear();
+    }
+
+    public boolean isForked(String transformerName)
+    {
+        return transformerNames.contains(ALL) || transformerNames.contains(transformerName);
+    }
+
+    /**
+     * @param transformerName the name of the transformer or metadata extractor using the parser.
+     * @param parser the parser to run. It is serialized and sent to each child, so must not refer to anything that
+     *               only exists in the t-engine, such as Spring beans.
+     * @return a parser that runs {@code parser} in a child JVM if the transformer has been selected, otherwise
+     *         {@code parser} itself. The same parser is returned for later calls with the same name.
+     */
+    public Parser getParser(String transformerName, Parser parser)
+    {
+        return isForked(transformerName)
+               ? forkParsers.computeIfAbsent(transformerName, name -> createForkParser(name, parser))
+               : parser;
+    }
+
+    private ForkParser createForkParser(String transformerName, Parser parser)
+    {
+        ForkParser forkParser = new ForkParser(ForkedParsers.class.getClassLoader(), parser);
+        forkParser.setJavaCommand(getJavaCommand());
+        forkParser.setPoolSize(poolSize);
+        forkParser.setServerParseTimeoutMillis(parseTimeoutMs);
+        forkParser.setMaxFilesProcessedPerServer(maxFilesPerProcess);
+        logger.debug("Created a pool of {} child JVMs for {}", poolSize, transformerName);
+        return forkParser;
+    }
+
+    List<String> getJavaCommand()
+    {
+        String exe = java == null || java.isBlank()
+                     ? Path.of(System.getProperty("java.home"), "bin", "java").toString()
+                     : java;
+        return List.of(exe,
+            "-Xmx" + maxHeap,
+            "-XX:+ExitOnOutOfMemoryError",
+            "-Djava.awt.headless=true",
+            // Classes are loaded from the t-engine, but its logging configuration is not, so logging is turned off.
+            "-Dslf4j.provider=org.slf4j.helpers.NOP_FallbackServiceProvider",
+            "-Dslf4j.internal.verbosity=WARN");
+    }
+}
@@ -0,0 +1,547 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.tika.exception.WriteLimitReachedException;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.extractor.ParsingEmbeddedDocumentExtractor;
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parses the documents embedded in an archive or email in parallel, while still writing their text out in the order
+ * of the entries, as a {@link ParsingEmbeddedDocumentExtractor} would.
+ * <p>
+ * Each embedded document is spooled to a temporary file and parsed by a task on the executor, which records the SAX
+ * events it produces. The container's own events are passed on through {@link #getContentHandler()}, which holds
+ * them back while an earlier embedded document is still being parsed. Recorded events are replayed on the thread
+ * parsing the container, so the target is only ever written by one thread. No more than {@code maxPending} embedded
+ * documents are spooled or held in memory at a time, after which the container waits for the oldest one.
+ * <p>
+ * Documents embedded in an embedded document are parsed one after another by the task. Embedded documents that are
+ * still part of an open container (such as an OLE object in an Outlook message) cannot be spooled, so are parsed in
+ * the calling thread.
+ * <p>
+ * When the target is limited, no more than {@code maxRecordedChars} characters are recorded for each embedded
+ * document (or run of the container's events). Anything after that could never be written, so is dropped, and the
+ * parse is stopped with a {@link WriteLimitReachedException} when the recording is replayed.
+ */
+public class ParallelEmbeddedDocumentExtractor implements EmbeddedDocumentExtractor
+{
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final long maxRecordedChars;
+    private final Supplier<ParseContext> embeddedParseContexts;
+    private final ParsingEmbeddedDocumentExtractor extractor;
+    private final OrderedContentHandler orderedContentHandler;
+    private final Deque<PendingDocument> pendingDocuments = new ArrayDeque<>();
+    private boolean replaying;
+
+    /**
+     * @param handler the handler that the container's output should end up in.
+     * @param context the ParseContext of the container.
+     * @param embeddedParseContexts supplies a new ParseContext for each embedded document, as they are not thread
+     *                              safe.
+     * @param maxRecordedChars the number of characters after which the target is known to be truncated, or
+     *                         {@code Long.MAX_VALUE} if it is not limited.
+     */
+    public ParallelEmbeddedDocumentExtractor(ExecutorService executor, int maxPending, ContentHandler handler,
+        ParseContext context, Supplier<ParseContext> embeddedParseContexts, long maxRecordedChars)
+    {
+        this.executor = executor;
+        this.maxPending = maxPending;
+        this.maxRecordedChars = maxRecordedChars;
+        this.embeddedParseContexts = embeddedParseContexts;
+        this.extractor = new ParsingEmbeddedDocumentExtractor(context);
+        this.orderedContentHandler = new OrderedContentHandler(handler);
+    }
+
+    /**
+     * @return the handler to pass to the container's parser.
+     */
+    public ContentHandler getContentHandler()
+    {
+        return orderedContentHandler;
+    }
+
+    @Override
+    public boolean shouldParseEmbedded(Metadata metadata)
+    {
+        return extractor.shouldParseEmbedded(metadata);
+    }
+
+    @Override
+    public void parseEmbedded(InputStream stream, ContentHandler handler, Metadata metadata, boolean outputHtml)
+        throws SAXException, IOException
+    {
+        if (stream instanceof TikaInputStream && ((TikaInputStream) stream).getOpenContainer() != null)
+        {
+            ParsingEmbeddedDocumentExtractor embeddedExtractor =
+                new ParsingEmbeddedDocumentExtractor(embeddedParseContexts.get());
+            if (pendingDocuments.isEmpty())
+            {
+                embeddedExtractor.parseEmbedded(stream, handler, metadata, outputHtml);
+            }
+            else
+            {
+                RecordedEvents events = new RecordedEvents(maxRecordedChars);
+                embeddedExtractor.parseEmbedded(stream, events, metadata, outputHtml);
+                pendingDocuments.add(new PendingDocument(handler, events));
+            }
+            return;
+        }
+
+        while (pendingDocuments.size() >= maxPending)
+        {
+            writeFirstPendingDocument();
+        }
+
+        TemporaryResources tmp = new TemporaryResources();
+        try
+        {
+            Path path = TikaInputStream.get(CloseShieldInputStream.wrap(stream), tmp, metadata).getPath();
+            PendingDocument pendingDocument = new PendingDocument(handler, tmp);
+            Metadata embeddedMetadata = copy(metadata);
+            pendingDocument.future = executor.submit(() -> pendingDocument.parse(path, embeddedMetadata, outputHtml));
+            pendingDocuments.add(pendingDocument);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            tmp.close();
+            throw e;
+        }
+
+        writeCompletedPendingDocuments();
+    }
+
+    /**
+     * Waits for the remaining embedded documents and writes them out. Called once the container has been parsed.
+     */
+    public void finish() throws SAXException, IOException
+    {
+        while (!pendingDocuments.isEmpty())
+        {
+            writeFirstPendingDocument();
+        }
+    }
+
+    /**
+     * Abandons any embedded documents that have not been written and removes their temporary files. Called after
+     * {@link #finish()} or if the parse of the container failed.
+     */
+    public void close()
+    {
+        pendingDocuments.forEach(PendingDocument::cancel);
+        pendingDocuments.clear();
+    }
+
+    private void writeCompletedPendingDocuments() throws SAXException, IOException
+    {
+        while (!pendingDocuments.isEmpty() && pendingDocuments.peekFirst().isDone())
+        {
+            writeFirstPendingDocument();
+        }
+    }
+
+    private void writeFirstPendingDocument() throws SAXException, IOException
+    {
+        PendingDocument pendingDocument = pendingDocuments.peekFirst();
+        RecordedEvents events = pendingDocument.getEvents();
+        replaying = true;
+        try
+        {
+            events.replay(pendingDocument.handler);
+        }
+        finally
+        {
+            replaying = false;
+        }
+        pendingDocuments.removeFirst();
+        pendingDocument.following.replay(orderedContentHandler.handler);
+    }
+
+    private static Metadata copy(Metadata metadata)
+    {
+        Metadata copy = new Metadata();
+        for (String name : metadata.names())
+        {
+            for (String value : metadata.getValues(name))
+            {
+                copy.add(name, value);
+            }
+        }
+        return copy;
+    }
+
+    private class PendingDocument
+    {
+        private final ContentHandler handler;
+        private final TemporaryResources tmp;
+        // Set by whichever of the task or cancel() gets there first. It then closes tmp.
+        private final AtomicBoolean started = new AtomicBoolean();
+        // The container's events that follow this document
+        private final RecordedEvents following = new RecordedEvents(maxRecordedChars);
+        private Future<RecordedEvents> future;
+        private RecordedEvents events;
+
+        private PendingDocument(ContentHandler handler, TemporaryResources tmp)
+        {
+            this.handler = handler;
+            this.tmp = tmp;
+        }
+
+        private PendingDocument(ContentHandler handler, RecordedEvents events)
+        {
+            this(handler, (TemporaryResources) null);
+            this.events = events;
+        }
+
+        private RecordedEvents parse(Path path, Metadata metadata, boolean outputHtml)
+            throws SAXException, IOException
+        {
+            if (!started.compareAndSet(false, true))
+            {
+                return null;
+            }
+            try (TikaInputStream stream = TikaInputStream.get(path))
+            {
+                RecordedEvents events = new RecordedEvents(maxRecordedChars);
+                new ParsingEmbeddedDocumentExtractor(embeddedParseContexts.get())
+                    .parseEmbedded(stream, events, metadata, outputHtml);
+                return events;
+            }
+            finally
+            {
+                tmp.close();
+            }
+        }
+
+        private boolean isDone()
+        {
+            return events != null || future.isDone();
+        }
+
+        private RecordedEvents getEvents() throws SAXException, IOException
+        {
+            if (events == null)
+            {
+                try
+                {
+                    events = future.get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for an embedded document");
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof SAXException)
+                    {
+                        throw (SAXException) cause;
+                    }
+                    if (cause instanceof IOException)
+                    {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof RuntimeException)
+                    {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error)
+                    {
+                        throw (Error) cause;
+                    }
+                    throw new IOException(cause);
+                }
+            }
+            return events;
+        }
+
+        private void cancel()
+        {
+            if (future != null)
+            {
+                future.cancel(false);
+            }
+            if (tmp != null && started.compareAndSet(false, true))
+            {
+                try
+                {
+                    tmp.close();
+                }
+                catch (IOException ignore)
+                {
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the container's events on, unless there are embedded documents that have not yet been written, in which
+     * case they are recorded until those documents have been written.
+     */
+    private class OrderedContentHandler implements ContentHandler
+    {
+        private final ContentHandler handler;
+
+        private OrderedContentHandler(ContentHandler handler)
+        {
+            this.handler = handler;
+        }
+
+        private ContentHandler out()
+        {
+            return replaying || pendingDocuments.isEmpty() ? handler : pendingDocuments.peekLast().following;
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator)
+        {
+            handler.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startDocument() throws SAXException
+        {
+            out().startDocument();
+        }
+
+        @Override
+        public void endDocument() throws SAXException
+        {
+            out().endDocument();
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException
+        {
+            out().startPrefixMapping(prefix, uri);
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException
+        {
+            out().endPrefixMapping(prefix);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+        {
+            out().startElement(uri, localName, qName, atts);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException
+        {
+            out().endElement(uri, localName, qName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException
+        {
+            out().characters(ch, start, length);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+        {
+            out().ignorableWhitespace(ch, start, length);
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException
+        {
+            out().processingInstruction(target, data);
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException
+        {
+            out().skippedEntity(name);
+        }
+    }
+
+    /**
+     * SAX events, recorded so that they may be replayed later. Once {@code maxChars} characters have been recorded,
+     * the rest are dropped and replaying them stops the parse.
+     */
+    static class RecordedEvents extends DefaultHandler
+    {
+        private interface Event
+        {
+            void replay(ContentHandler handler) throws SAXException;
+        }
+
+        private final List<Event> events = new ArrayList<>();
+        private final long maxChars;
+        private long chars;
+        private boolean truncated;
+
+        RecordedEvents(long maxChars)
+        {
+            this.maxChars = maxChars;
+        }
+
+        void replay(ContentHandler handler) throws SAXException
+        {
+            for (Event event : events)
+            {
+                event.replay(handler);
+            }
+            if (truncated)
+            {
+                throw new SAXException(new WriteLimitReachedException((int) Math.min(maxChars, Integer.MAX_VALUE)));
+            }
+        }
+
+        long getRecordedChars()
+        {
+            return chars;
+        }
+
+        boolean isTruncated()
+        {
+            return truncated;
+        }
+
+        private void add(Event event)
+        {
+            if (!truncated)
+            {
+                events.add(event);
+            }
+        }
+
+        @Override
+        public void startDocument()
+        {
+            add(ContentHandler::startDocument);
+        }
+
+        @Override
+        public void endDocument()
+        {
+            add(ContentHandler::endDocument);
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri)
+        {
+            add(handler -> handler.startPrefixMapping(prefix, uri));
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix)
+        {
+            add(handler -> handler.endPrefixMapping(prefix));
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts)
+        {
+            Attributes copy = new AttributesImpl(atts);
+            add(handler -> handler.startElement(uri, localName, qName, copy));
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName)
+        {
+            add(handler -> handler.endElement(uri, localName, qName));
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length)
+        {
+            if (!truncated)
+            {
+                char[] copy = copy(ch, start, length);
+                events.add(handler -> handler.characters(copy, 0, copy.length));
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length)
+        {
+            if (!truncated)
+            {
+                char[] copy = copy(ch, start, length);
+                events.add(handler -> handler.ignorableWhitespace(copy, 0, copy.length));
+            }
+        }
+
+        @Override
+        public void processingInstruction(String target, String data)
+        {
+            add(handler -> handler.processingInstruction(target, data));
+        }
+
+        @Override
+        public void skippedEntity(String name)
+        {
+            add(handler -> handler.skippedEntity(name));
+        }
+
+        // Copies the characters, up to maxChars in all
+        private char[] copy(char[] ch, int start, int length)
+        {
+            if (length > maxChars - chars)
+            {
+                length = (int) (maxChars - chars);
+                truncated = true;
+            }
+            chars += length;
+            char[] copy = new char[length];
+            System.arraycopy(ch, start, copy, 0, length);
+            return copy;
+        }
+    }
+}
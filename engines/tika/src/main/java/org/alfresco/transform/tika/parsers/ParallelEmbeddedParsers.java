@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.apache.tika.parser.ParseContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.xml.sax.ContentHandler;
+
+/**
+ * Parses the documents embedded in archives and emails in parallel, for the transformers named in
+ * {@code transform.core.tika.parallelEmbedded.transformers} (such as {@code Archive} and {@code OutlookMsg}), when
+ * their contents are included. The embedded documents of all transforms share one fork-join pool of
+ * {@code parallelism} threads, which defaults to the number of processors. See
+ * {@link ParallelEmbeddedDocumentExtractor}.
+ */
+@Component
+public class ParallelEmbeddedParsers
+{
+    private static final Logger logger = LoggerFactory.getLogger(ParallelEmbeddedParsers.class);
+
+    @Value("${transform.core.tika.parallelEmbedded.transformers:}")
+    private String transformers;
+    @Value("${transform.core.tika.parallelEmbedded.parallelism:0}")
+    private int parallelism;
+    @Value("${transform.core.tika.parallelEmbedded.maxPending:0}")
+    private int maxPending;
+
+    private Set<String> transformerNames = Set.of();
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    void init()
+    {
+        transformerNames = Arrays.stream(transformers.split(","))
+                                 .map(String::trim)
+                                 .filter(name -> !name.isEmpty())
+                                 .collect(Collectors.toUnmodifiableSet());
+        if (!transformerNames.isEmpty())
+        {
+            if (parallelism <= 0)
+            {
+                parallelism = Runtime.getRuntime().availableProcessors();
+            }
+            if (maxPending <= 0)
+            {
+                maxPending = 4 * parallelism;
+            }
+            pool = new ForkJoinPool(parallelism);
+            logger.info("Embedded documents are parsed by {} threads for: {}", parallelism, transformerNames);
+        }
+    }
+
+    @PreDestroy
+    void close()
+    {
+        if (pool != null)
+        {
+            pool.shutdownNow();
+        }
+    }
+
+    public boolean isParallel(String transformerName)
+    {
+        return transformerNames.contains(transformerName);
+    }
+
+    /**
+     * @param handler the handler that the output of the container should end up in.
+     * @param context the ParseContext of the container, to which the returned extractor should be added.
+     * @param embeddedParseContexts supplies a new ParseContext for each embedded document.
+     * @param maxRecordedChars the most characters to hold in memory for each embedded document, as the target would be
+     *                         truncated after that many, or {@code Long.MAX_VALUE} if it is not limited.
+     */
+    public ParallelEmbeddedDocumentExtractor newExtractor(ContentHandler handler, ParseContext context,
+        Supplier<ParseContext> embeddedParseContexts, long maxRecordedChars)
+    {
+        return new ParallelEmbeddedDocumentExtractor(pool, maxPending, handler, context, embeddedParseContexts,
+            maxRecordedChars);
+    }
+}
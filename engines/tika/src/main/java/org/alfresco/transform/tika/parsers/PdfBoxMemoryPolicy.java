@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+import org.alfresco.transform.base.TransformManager;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.parser.pdf.PDFParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Controls how much of a PDF is held on the heap while PDFBox parses it for the {@code PdfBox} transformer and the
+ * {@code PdfBoxMetadataExtractor}. Set by {@code transform.core.tika.pdfBox.memoryPolicy}:
+ * <ul>
+ *     <li>{@code memory} - the whole PDF and everything PDFBox decodes from it is buffered on the heap.</li>
+ *     <li>{@code mixed} - up to {@code maxMainMemory} bytes of each PDF are buffered on the heap and the rest in
+ *         temporary files. The default, with Tika's default of 512 MB, so a few large PDFs may still fill the heap
+ *         unless it is reduced.</li>
+ *     <li>{@code file} - as {@code mixed}, but the PDF is also read with random access from the source file (written
+ *         by the t-engine if it does not already have one) rather than being copied.</li>
+ * </ul>
+ */
+@Component
+public class PdfBoxMemoryPolicy
+{
+    private static final Logger logger = LoggerFactory.getLogger(PdfBoxMemoryPolicy.class);
+
+    public enum Policy
+    {
+        MEMORY, MIXED, FILE
+    }
+
+    @Value("${transform.core.tika.pdfBox.memoryPolicy:mixed}")
+    private String memoryPolicy;
+    @Value("${transform.core.tika.pdfBox.maxMainMemory:536870912}")
+    private long maxMainMemory;
+
+    private Policy policy;
+    private PDFParser pdfParser;
+
+    @PostConstruct
+    void init()
+    {
+        policy = Policy.valueOf(memoryPolicy.trim().toUpperCase(Locale.ROOT));
+        pdfParser = new PDFParser();
+        pdfParser.setMaxMainMemoryBytes(policy == Policy.MEMORY ? -1 : maxMainMemory);
+        logger.debug("PDFBox memory policy {} with maxMainMemory {}", policy, maxMainMemory);
+    }
+
+    public Policy getPolicy()
+    {
+        return policy;
+    }
+
+    /**
+     * @return a parser, shared by all PDFBox transforms, that buffers PDFs according to the policy.
+     */
+    public PDFParser getPdfParser()
+    {
+        return pdfParser;
+    }
+
+    /**
+     * @return a stream backed by the source file if the policy is {@code file}, so that PDFBox reads the PDF from
+     *         the file, otherwise the supplied {@code inputStream}. The caller should close it.
+     */
+    public InputStream getInputStream(InputStream inputStream, TransformManager transformManager) throws IOException
+    {
+        return policy == Policy.FILE && transformManager != null
+               ? TikaInputStream.get(transformManager.createSourceFile().toPath())
+               : inputStream;
+    }
+}
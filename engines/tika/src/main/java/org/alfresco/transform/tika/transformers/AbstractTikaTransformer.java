@@ -31,6 +31,9 @@ import org.alfresco.transform.base.TransformManager;
 import org.alfresco.transform.base.executors.RuntimeExec;
 import org.alfresco.transform.base.logging.LogEntry;
 import org.alfresco.transform.common.RequestParamMap;
+import org.alfresco.transform.exceptions.TransformException;
+import org.alfresco.transform.tika.parsers.ForkedParsers;
+import org.alfresco.transform.tika.parsers.ParallelEmbeddedParsers;
 import org.apache.tika.extractor.DocumentSelector;
 import org.apache.tika.parser.Parser;
 import org.slf4j.Logger;
@@ -39,15 +42,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.StringJoiner;
 
 import static java.lang.Boolean.parseBoolean;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
 
 public abstract class AbstractTikaTransformer implements CustomTransformer
 {
@@ -61,6 +68,10 @@ public abstract class AbstractTikaTransformer implements CustomTransformer
     private String exifToolCommandOnUnix;
     @Autowired
     protected Tika tika;
+    @Autowired(required = false)
+    private ForkedParsers forkedParsers;
+    @Autowired(required = false)
+    private ParallelEmbeddedParsers parallelEmbeddedParsers;
 
     protected abstract Parser getParser();
 
@@ -102,18 +113,113 @@ public abstract class AbstractTikaTransformer implements CustomTransformer
         {
             logger.trace("notExtractBookmarksText default value has been overridden to {}", notExtractBookmarksTextDefault);
         }
-        call(inputStream, outputStream,
+        List<String> args = new ArrayList<>(Arrays.asList(
                 includeContents ? Tika.INCLUDE_CONTENTS : null,
                 notExtractBookmarksText ? Tika.NOT_EXTRACT_BOOKMARKS_TEXT : null,
-                Tika.TARGET_MIMETYPE + targetMimetype, Tika.TARGET_ENCODING + targetEncoding);
+                Tika.TARGET_MIMETYPE + targetMimetype, Tika.TARGET_ENCODING + targetEncoding));
+        addLimit(args, transformOptions, RequestParamMap.MAX_CHARS, Tika.MAX_CHARS);
+        addLimit(args, transformOptions, RequestParamMap.MAX_BYTES, Tika.MAX_BYTES);
+        Integer fragmentSize = getPositiveInteger(transformOptions, RequestParamMap.FRAGMENT_SIZE);
+        if (fragmentSize != null && !transformManager.canRespondWithFragments())
+        {
+            // Rejected before parsing, rather than failing once the first fragment is full
+            throw new TransformException(BAD_REQUEST, "The " + RequestParamMap.FRAGMENT_SIZE +
+                                                      " transform option is only supported for requests on queues");
+        }
+        if (isSourceMimetypeUsed() && sourceMimetype != null)
+        {
+            args.add(Tika.SOURCE_MIMETYPE + sourceMimetype);
+        }
+        // Fragments of the target are sent as they are written, rather than as one response at the end
+        Tika.FragmentedOutputStream fragmentedOutputStream = fragmentSize == null ? null
+            : new Tika.FragmentedOutputStream(outputStream, transformManager::respondWithFragment, fragmentSize,
+                Tika.isUtf8(targetEncoding));
+        InputStream sourceStream = getInputStream(inputStream, transformManager);
+        try
+        {
+            if (call(sourceStream, fragmentedOutputStream == null ? outputStream : fragmentedOutputStream,
+                args.toArray(new String[0])))
+            {
+                transformManager.setTargetTruncated();
+            }
+            if (fragmentedOutputStream != null)
+            {
+                int fragments = fragmentedOutputStream.finish();
+                logger.debug("Sent the target as {} fragments", fragments);
+            }
+        }
+        finally
+        {
+            if (sourceStream != inputStream)
+            {
+                sourceStream.close();
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the source mimetype should be passed to the parser, because its detector may use it
+     * rather than detecting the type of the content.
+     */
+    protected boolean isSourceMimetypeUsed()
+    {
+        return false;
+    }
+
+    /**
+     * Allows a transformer to read the source from somewhere other than the supplied {@code inputStream}, such as the
+     * source file. A stream other than {@code inputStream} is closed after the transform.
+     */
+    protected InputStream getInputStream(InputStream inputStream, TransformManager transformManager)
+        throws IOException
+    {
+        return inputStream;
+    }
+
+    private void addLimit(List<String> args, Map<String, String> transformOptions, String optionName, String arg)
+    {
+        Integer value = getPositiveInteger(transformOptions, optionName);
+        if (value != null)
+        {
+            args.add(arg + value);
+        }
+    }
+
+    private Integer getPositiveInteger(Map<String, String> transformOptions, String optionName)
+    {
+        String value = transformOptions.get(optionName);
+        if (value == null)
+        {
+            return null;
+        }
+        try
+        {
+            int intValue = Integer.parseInt(value);
+            if (intValue > 0)
+            {
+                return intValue;
+            }
+        }
+        catch (NumberFormatException ignore)
+        {
+        }
+        throw new TransformException(BAD_REQUEST, optionName + " must be a positive integer");
     }
 
-    void call(InputStream inputStream, OutputStream outputStream, String... args)
+    /**
+     * @return {@code true} if the output was truncated because of a maxChars or maxBytes limit.
+     */
+    boolean call(InputStream inputStream, OutputStream outputStream, String... args)
     {
-        Parser parser = getParser();
+        String transformerName = getTransformerName();
+        Parser parser = forkedParsers == null ? getParser() : forkedParsers.getParser(transformerName, getParser());
         DocumentSelector documentSelector = getDocumentSelector();
         logArgs(args);
-        tika.transform(parser, documentSelector, inputStream, outputStream, args);
+        // Embedded documents are parsed in the child JVM if the parser has been forked
+        boolean parallel = parallelEmbeddedParsers != null && parallelEmbeddedParsers.isParallel(transformerName) &&
+                           (forkedParsers == null || !forkedParsers.isForked(transformerName));
+        return tika.transform(parser, documentSelector, parallel ? parallelEmbeddedParsers : null, inputStream,
+            outputStream, args);
     }
 
     private void logArgs(String[] args)
@@ -26,17 +26,34 @@
  */
 package org.alfresco.transform.tika.transformers;
 
+import org.alfresco.transform.base.TransformManager;
+import org.alfresco.transform.tika.parsers.PdfBoxMemoryPolicy;
 import org.apache.tika.extractor.DocumentSelector;
 import org.apache.tika.parser.Parser;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @Component
 public class PdfBoxTransformer extends AbstractTikaTransformer
 {
+    @Autowired(required = false)
+    private PdfBoxMemoryPolicy pdfBoxMemoryPolicy;
+
     @Override
     protected Parser getParser()
     {
-        return Tika.pdfParser;
+        return pdfBoxMemoryPolicy == null ? Tika.pdfParser : pdfBoxMemoryPolicy.getPdfParser();
+    }
+
+    @Override
+    protected InputStream getInputStream(InputStream inputStream, TransformManager transformManager)
+        throws IOException
+    {
+        return pdfBoxMemoryPolicy == null ? inputStream
+                                          : pdfBoxMemoryPolicy.getInputStream(inputStream, transformManager);
     }
 
     @Override
@@ -27,10 +27,15 @@
 package org.alfresco.transform.tika.transformers;
 
 import com.google.common.collect.ImmutableList;
+import org.alfresco.transform.tika.parsers.ParallelEmbeddedDocumentExtractor;
+import org.alfresco.transform.tika.parsers.ParallelEmbeddedParsers;
 import org.alfresco.transform.tika.parsers.TikaOfficeDetectParser;
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.exception.TikaException;
+import org.apache.tika.exception.WriteLimitReachedException;
 import org.apache.tika.extractor.DocumentSelector;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.fork.ForkParser;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.AutoDetectParser;
 import org.apache.tika.parser.EmptyParser;
@@ -55,17 +60,24 @@ import javax.xml.transform.sax.SAXTransformerFactory;
 import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.alfresco.transform.common.Mimetype.MIMETYPE_HTML;
 import static org.alfresco.transform.common.Mimetype.MIMETYPE_IMAGE_JPEG;
 import static org.alfresco.transform.common.Mimetype.MIMETYPE_IMAGE_PNG;
@@ -87,10 +99,13 @@ public class Tika
     public static final String TIKA_AUTO = "TikaAuto";
     public static final String TEXT_MINING = "TextMining";
 
+    public static final String SOURCE_MIMETYPE = "--sourceMimetype=";
     public static final String TARGET_MIMETYPE = "--targetMimetype=";
     public static final String TARGET_ENCODING = "--targetEncoding=";
     public static final String INCLUDE_CONTENTS = "--includeContents";
     public static final String NOT_EXTRACT_BOOKMARKS_TEXT = "--notExtractBookmarksText";
+    public static final String MAX_CHARS = "--maxChars=";
+    public static final String MAX_BYTES = "--maxBytes=";
 
     public static final String CSV = "csv";
     public static final String DOC = "doc";
@@ -112,9 +127,17 @@ public class Tika
     public static final Parser ooXmlParser = new OOXMLParser();
     public static final Parser tikaOfficeDetectParser = new TikaOfficeDetectParser();
     public final PDFParserConfig pdfParserConfig = new PDFParserConfig();
+    // Only used in ParseContexts and never changed, as PDFParserConfig is not thread safe
+    private final PDFParserConfig noBookmarksTextPdfParserConfig = new PDFParserConfig();
+    private final Map<ParseContextKey, ParseContextTemplate> parseContextTemplates = new ConcurrentHashMap<>();
 
-    public static final DocumentSelector pdfBoxEmbededDocumentSelector = new DocumentSelector()
+    public static final DocumentSelector pdfBoxEmbededDocumentSelector = new PdfBoxEmbeddedDocumentSelector();
+
+    // Serializable, as ParseContexts are sent to child JVMs by ForkedParsers
+    private static class PdfBoxEmbeddedDocumentSelector implements DocumentSelector, Serializable
     {
+        private static final long serialVersionUID = 1L;
+
         private final List<String> disabledMediaTypes = ImmutableList.of(MIMETYPE_IMAGE_JPEG,
             MIMETYPE_IMAGE_TIFF, MIMETYPE_IMAGE_PNG);
 
@@ -128,12 +151,13 @@ public class Tika
             }
             return !disabledMediaTypes.contains(contentType);
         }
-    };
+    }
 
     public Tika() throws TikaException, IOException, SAXException
     {
         TikaConfig tikaConfig = readTikaConfig();
         autoDetectParser = new AutoDetectParser(tikaConfig);
+        noBookmarksTextPdfParserConfig.setExtractBookmarksText(false);
     }
 
     public static TikaConfig readTikaConfig(Logger logger)
@@ -156,14 +180,25 @@ public class Tika
         return new TikaConfig(tikaConfigXml);
     }
 
-    // Extracts parameters form args
-    void transform(Parser parser, DocumentSelector documentSelector, InputStream inputStream,
+    // Extracts parameters form args. Returns true if the output was truncated because of maxChars or maxBytes.
+    boolean transform(Parser parser, DocumentSelector documentSelector, InputStream inputStream,
+            OutputStream outputStream, String[] args)
+    {
+        return transform(parser, documentSelector, null, inputStream, outputStream, args);
+    }
+
+    // As above, but if parallelEmbeddedParsers is supplied, included contents are parsed in parallel.
+    boolean transform(Parser parser, DocumentSelector documentSelector,
+            ParallelEmbeddedParsers parallelEmbeddedParsers, InputStream inputStream,
             OutputStream outputStream, String[] args)
     {
+        String sourceMimetype = null;
         String targetMimetype = null;
         String targetEncoding = null;
         Boolean includeContents = null;
         Boolean notExtractBookmarksText = null;
+        String maxChars = null;
+        String maxBytes = null;
 
         for (String arg : args)
         {
@@ -180,6 +215,10 @@ public class Tika
             {
                 targetEncoding = getValue(arg, true, targetEncoding, TARGET_ENCODING);
             }
+            else if (arg.startsWith(SOURCE_MIMETYPE))
+            {
+                sourceMimetype = getValue(arg, true, sourceMimetype, SOURCE_MIMETYPE);
+            }
             else if (arg.startsWith(TARGET_MIMETYPE))
             {
                 targetMimetype = getValue(arg, true, targetMimetype, TARGET_MIMETYPE);
@@ -189,6 +228,14 @@ public class Tika
                 getValue(arg, false, notExtractBookmarksText, NOT_EXTRACT_BOOKMARKS_TEXT);
                 notExtractBookmarksText = true;
             }
+            else if (arg.startsWith(MAX_CHARS))
+            {
+                maxChars = getValue(arg, true, maxChars, MAX_CHARS);
+            }
+            else if (arg.startsWith(MAX_BYTES))
+            {
+                maxBytes = getValue(arg, true, maxBytes, MAX_BYTES);
+            }
             else
             {
                 throw new IllegalArgumentException("Unexpected argument " + arg);
@@ -197,8 +244,8 @@ public class Tika
         includeContents = includeContents == null ? false : includeContents;
         notExtractBookmarksText = notExtractBookmarksText == null ? false : notExtractBookmarksText;
 
-        transform(parser, documentSelector, includeContents, notExtractBookmarksText, inputStream,
-            outputStream, targetMimetype, targetEncoding);
+        return transform(parser, documentSelector, parallelEmbeddedParsers, includeContents, notExtractBookmarksText,
+            inputStream, outputStream, sourceMimetype, targetMimetype, targetEncoding, getLimit(maxChars, MAX_CHARS), getLimit(maxBytes, MAX_BYTES));
     }
 
     private String getValue(String arg, boolean valueExpected, Object value, String optionName)
@@ -219,20 +266,76 @@ public class Tika
         return stringValue;
     }
 
-    private void transform(Parser parser, DocumentSelector documentSelector,
+    private Integer getLimit(String value, String optionName)
+    {
+        if (value == null)
+        {
+            return null;
+        }
+        try
+        {
+            int limit = Integer.parseInt(value);
+            if (limit > 0)
+            {
+                return limit;
+            }
+        }
+        catch (NumberFormatException ignore)
+        {
+        }
+        throw new IllegalArgumentException("Expected a positive integer with " + optionName);
+    }
+
+    private boolean transform(Parser parser, DocumentSelector documentSelector,
+        ParallelEmbeddedParsers parallelEmbeddedParsers,
         Boolean includeContents,
         Boolean notExtractBookmarksText,
         InputStream inputStream,
-        OutputStream outputStream, String targetMimetype, String targetEncoding)
+        OutputStream outputStream, String sourceMimetype, String targetMimetype, String targetEncoding,
+        Integer maxChars, Integer maxBytes)
     {
-        try (Writer ow = new BufferedWriter(new OutputStreamWriter(outputStream, targetEncoding)))
+        LimitedOutputStream limitedOutputStream = maxBytes == null ? null
+            : new LimitedOutputStream(outputStream, maxBytes, isUtf8(targetEncoding));
+        LimitedWriter limitedWriter = null;
+        try (Writer bw = new BufferedWriter(new OutputStreamWriter(
+            limitedOutputStream == null ? outputStream : limitedOutputStream, targetEncoding)))
         {
+            Writer ow = bw;
+            if (maxChars != null)
+            {
+                limitedWriter = new LimitedWriter(bw, maxChars);
+                ow = limitedWriter;
+            }
             Metadata metadata = new Metadata();
+            if (sourceMimetype != null)
+            {
+                // Only supplied if the parser's detector may use it
+                metadata.set(Metadata.CONTENT_TYPE, sourceMimetype);
+            }
             ParseContext context = buildParseContext(documentSelector, includeContents,
                 notExtractBookmarksText);
-            ContentHandler handler = getContentHandler(targetMimetype, ow);
+            ContentHandler handler = getContentHandler(targetMimetype, ow, parser instanceof ForkParser);
 
-            parser.parse(inputStream, handler, metadata, context);
+            if (parallelEmbeddedParsers != null && includeContents)
+            {
+                ParallelEmbeddedDocumentExtractor extractor = parallelEmbeddedParsers.newExtractor(handler, context,
+                    () -> buildParseContext(documentSelector, includeContents, notExtractBookmarksText),
+                    getMaxRecordedChars(maxChars, maxBytes));
+                context.set(EmbeddedDocumentExtractor.class, extractor);
+                try
+                {
+                    parser.parse(inputStream, extractor.getContentHandler(), metadata, context);
+                    extractor.finish();
+                }
+                finally
+                {
+                    extractor.close();
+                }
+            }
+            else
+            {
+                parser.parse(inputStream, handler, metadata, context);
+            }
         }
         catch (UnsupportedEncodingException e)
         {
@@ -240,11 +343,39 @@ public class Tika
         }
         catch (SAXException | TikaException | IOException e)
         {
+            // The limits throw a WriteLimitReachedException (possibly wrapped) to stop the parser early
+            if (WriteLimitReachedException.isWriteLimitReached(e))
+            {
+                return true;
+            }
             throw new IllegalStateException(e.getMessage(), e);
         }
+        // A ForkParser does not pass on exceptions from the ContentHandler, so the limits also record being reached
+        return (limitedWriter != null && limitedWriter.limitReached) ||
+               (limitedOutputStream != null && limitedOutputStream.limitReached);
     }
 
-    private ContentHandler getContentHandler(String targetMimetype, Writer output)
+    // The target is truncated once this many characters have been written. Every character is at least one byte,
+    // apart from a surrogate pair that is replaced by a single byte, hence the 2 x maxBytes.
+    static long getMaxRecordedChars(Integer maxChars, Integer maxBytes)
+    {
+        long maxRecordedChars = maxChars == null ? Long.MAX_VALUE : maxChars;
+        return maxBytes == null ? maxRecordedChars : Math.min(maxRecordedChars, 2L * maxBytes);
+    }
+
+    static boolean isUtf8(String encoding)
+    {
+        try
+        {
+            return UTF_8.equals(Charset.forName(encoding));
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false; // Reported by the OutputStreamWriter
+        }
+    }
+
+    private ContentHandler getContentHandler(String targetMimetype, Writer output, boolean forked)
     {
         try
         {
@@ -274,7 +405,7 @@ public class Tika
                 }
                 else if (MIMETYPE_TEXT_CSV.equals(targetMimetype))
                 {
-                    handler = new CsvContentHandler(output);
+                    handler = new CsvContentHandler(output, forked);
                 }
                 else
                 {
@@ -290,26 +421,40 @@ public class Tika
     }
 
     /**
-     * A wrapper around the normal Tika BodyContentHandler for CSV rather encoding than tab separated.
+     * A wrapper around the normal Tika BodyContentHandler for CSV rather encoding than tab separated. Cells are
+     * written straight to the Writer, quoted unless they only contain digits, '.', '-' or '+', without creating any
+     * objects for each cell, as a large spreadsheet may have millions of them.
      */
     protected static class CsvContentHandler extends BodyContentHandler
     {
         private static final char[] comma = new char[]{','};
-        private static final Pattern all_nums = Pattern.compile("[\\d\\.\\-\\+]+");
+        private static final char QUOTE = '"';
 
+        private final Writer output;
+        // Parsers run by a ForkParser pass ignorable whitespace on as characters
+        private final boolean forked;
+        // Reused for each quoted cell
+        private char[] buffer = new char[64];
         private boolean inCell = false;
         private boolean needsComma = false;
 
         protected CsvContentHandler(Writer output)
+        {
+            this(output, false);
+        }
+
+        protected CsvContentHandler(Writer output, boolean forked)
         {
             super(output);
+            this.output = output;
+            this.forked = forked;
         }
 
         @Override
         public void ignorableWhitespace(char[] ch, int start, int length)
             throws SAXException
         {
-            if (length == 1 && ch[0] == '\t')
+            if (isTab(ch, start, length))
             {
                 // Ignore tabs, as they mess up the CSV output
             }
@@ -319,34 +464,29 @@ public class Tika
             }
         }
 
+        private boolean isTab(char[] ch, int start, int length)
+        {
+            return length == 1 && ch[start] == '\t';
+        }
+
         @Override
         public void characters(char[] ch, int start, int length)
             throws SAXException
         {
-            if (inCell)
+            if (forked && !inCell && isTab(ch, start, length))
+            {
+                // Ignorable whitespace that the ForkParser has passed on as characters
+            }
+            else if (inCell)
             {
-                StringBuffer t = new StringBuffer(new String(ch, start, length));
-
                 // Quote if not all numbers
-                if (all_nums.matcher(t).matches())
+                if (isNumber(ch, start, length))
                 {
-                    super.characters(ch, start, length);
+                    write(ch, start, length);
                 }
                 else
                 {
-                    for (int i = t.length() - 1; i >= 0; i--)
-                    {
-                        if (t.charAt(i) == '\"')
-                        {
-                            // Double up double quotes
-                            t.insert(i, '\"');
-                            i--;
-                        }
-                    }
-                    t.insert(0, '\"');
-                    t.append('\"');
-                    char[] c = t.toString().toCharArray();
-                    super.characters(c, 0, c.length);
+                    writeQuoted(ch, start, length);
                 }
             }
             else
@@ -355,6 +495,59 @@ public class Tika
             }
         }
 
+        private static boolean isNumber(char[] ch, int start, int length)
+        {
+            if (length == 0)
+            {
+                return false;
+            }
+            for (int i = start; i < start + length; i++)
+            {
+                char c = ch[i];
+                if ((c < '0' || c > '9') && c != '.' && c != '-' && c != '+')
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void writeQuoted(char[] ch, int start, int length) throws SAXException
+        {
+            // Enough for every character to be a double quote, which is doubled up, and the surrounding quotes
+            int maxLength = 2 * length + 2;
+            if (buffer.length < maxLength)
+            {
+                buffer = new char[Math.max(maxLength, 2 * buffer.length)];
+            }
+            int end = 0;
+            buffer[end++] = QUOTE;
+            for (int i = start; i < start + length; i++)
+            {
+                char c = ch[i];
+                if (c == QUOTE)
+                {
+                    buffer[end++] = QUOTE;
+                }
+                buffer[end++] = c;
+            }
+            buffer[end++] = QUOTE;
+            write(buffer, 0, end);
+        }
+
+        // Cells are only found in the body, so there is no need to pass them through the BodyContentHandler
+        private void write(char[] ch, int start, int length) throws SAXException
+        {
+            try
+            {
+                output.write(ch, start, length);
+            }
+            catch (IOException e)
+            {
+                throw new SAXException("Error writing CSV", e);
+            }
+        }
+
         @Override
         public void startElement(String uri, String localName, String name,
             Attributes atts) throws SAXException
@@ -364,7 +557,7 @@ public class Tika
                 inCell = true;
                 if (needsComma)
                 {
-                    super.characters(comma, 0, 1);
+                    write(comma, 0, 1);
                     needsComma = true;
                 }
             }
@@ -394,29 +587,306 @@ public class Tika
         }
     }
 
+    /**
+     * Stops the parse once {@code maxChars} have been written to the target, by throwing an exception that wraps a
+     * {@link WriteLimitReachedException}. Parsers pass these on rather than ignoring them, as they do with other
+     * exceptions from embedded documents.
+     */
+    static class LimitedWriter extends FilterWriter
+    {
+        private final int maxChars;
+        private long count;
+        private boolean limitReached;
+
+        LimitedWriter(Writer writer, int maxChars)
+        {
+            super(writer);
+            this.maxChars = maxChars;
+        }
+
+        @Override
+        public void write(int c) throws IOException
+        {
+            write(new char[]{(char) c}, 0, 1);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException
+        {
+            long remaining = maxChars - count;
+            if (len <= remaining)
+            {
+                out.write(cbuf, off, len);
+                count += len;
+                return;
+            }
+            out.write(cbuf, off, (int) remaining);
+            limitReached();
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException
+        {
+            long remaining = maxChars - count;
+            if (len <= remaining)
+            {
+                out.write(str, off, len);
+                count += len;
+                return;
+            }
+            out.write(str, off, (int) remaining);
+            limitReached();
+        }
+
+        private void limitReached() throws IOException
+        {
+            count = maxChars;
+            limitReached = true;
+            throw new IOException(new WriteLimitReachedException(maxChars));
+        }
+    }
+
+    /**
+     * Stops the parse once {@code maxBytes} have been written, in the same way as {@link LimitedWriter}. UTF-8 output
+     * is cut at the start of a character.
+     */
+    static class LimitedOutputStream extends FilterOutputStream
+    {
+        private final int maxBytes;
+        private final boolean utf8;
+        private long count;
+        private boolean limitReached;
+
+        LimitedOutputStream(OutputStream outputStream, int maxBytes, boolean utf8)
+        {
+            super(outputStream);
+            this.maxBytes = maxBytes;
+            this.utf8 = utf8;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            long remaining = maxBytes - count;
+            if (len <= remaining)
+            {
+                out.write(b, off, len);
+                count += len;
+                return;
+            }
+
+            int length = (int) remaining;
+            while (utf8 && length > 0 && (b[off + length] & 0xC0) == 0x80)
+            {
+                length--;
+            }
+            out.write(b, off, length);
+            count = maxBytes;
+            limitReached = true;
+            throw new IOException(new WriteLimitReachedException(maxBytes));
+        }
+    }
+
+    /**
+     * Sends the target written so far as a fragment and returns the {@code OutputStream} for the next one. Matches
+     * {@code TransformManager.respondWithFragment}.
+     */
+    @FunctionalInterface
+    interface FragmentResponder
+    {
+        OutputStream respondWithFragment(Integer index, boolean finished) throws IOException;
+    }
+
+    /**
+     * Splits the target into fragments of {@code fragmentSize} bytes, each sent as a separate response, so that the
+     * first may be processed while later ones are still being extracted. A fragment is only sent once there is more
+     * output, so the final one is not empty unless there was no output at all. UTF-8 output is split at the start of
+     * a character. The final fragment is sent by {@link #finish()} rather than {@link #close()}, as the stream is
+     * also closed when the transform fails.
+     */
+    static class FragmentedOutputStream extends OutputStream
+    {
+        private final FragmentResponder fragmentResponder;
+        private final int fragmentSize;
+        private final boolean utf8;
+        private OutputStream out;
+        private int index;
+        private long count;
+
+        FragmentedOutputStream(OutputStream outputStream, FragmentResponder fragmentResponder, int fragmentSize,
+            boolean utf8)
+        {
+            this.out = outputStream;
+            this.fragmentResponder = fragmentResponder;
+            this.fragmentSize = fragmentSize;
+            this.utf8 = utf8;
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            while (len > 0)
+            {
+                if (count >= fragmentSize)
+                {
+                    out = fragmentResponder.respondWithFragment(index++, false);
+                    count = 0;
+                }
+
+                int length = (int) Math.min(len, fragmentSize - count);
+                if (utf8 && length < len)
+                {
+                    // Split at the start of a character, unless that would leave the fragment empty
+                    int split = length;
+                    while (split > 0 && (b[off + split] & 0xC0) == 0x80)
+                    {
+                        split--;
+                    }
+                    if (split == 0 && count == 0)
+                    {
+                        split = length;
+                        while (split < len && (b[off + split] & 0xC0) == 0x80)
+                        {
+                            split++;
+                        }
+                    }
+                    length = split;
+                }
+                out.write(b, off, length);
+                count = length < len ? fragmentSize : count + length;
+                off += length;
+                len -= length;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            if (out != null)
+            {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            flush();
+        }
+
+        /**
+         * Sends the final fragment.
+         * @return the number of fragments.
+         */
+        int finish() throws IOException
+        {
+            out = fragmentResponder.respondWithFragment(index, true);
+            return index + 1;
+        }
+    }
+
+    // Parsers may add to a ParseContext while parsing, so each parse gets a new one, copied from a template that is
+    // built once for each combination of options.
     private ParseContext buildParseContext(DocumentSelector documentSelector,
         Boolean includeContents, Boolean notExtractBookmarksText)
     {
-        ParseContext context = new ParseContext();
+        ParseContextKey key = new ParseContextKey(documentSelector, includeContents, notExtractBookmarksText);
+        return parseContextTemplates.computeIfAbsent(key, this::buildParseContextTemplate).newParseContext();
+    }
+
+    private ParseContextTemplate buildParseContextTemplate(ParseContextKey key)
+    {
+        Map<Class<?>, Object> entries = new HashMap<>();
 
-        if (documentSelector != null)
+        if (key.documentSelector != null)
         {
-            context.set(DocumentSelector.class, documentSelector);
+            entries.put(DocumentSelector.class, key.documentSelector);
         }
 
-        if (notExtractBookmarksText.equals(true))
+        if (key.notExtractBookmarksText.equals(true))
         {
-            pdfParserConfig.setExtractBookmarksText(false);
             // pdfParserConfig is set to override default settings
-            context.set(PDFParserConfig.class, pdfParserConfig);
+            entries.put(PDFParserConfig.class, noBookmarksTextPdfParserConfig);
         }
 
         // If Archive transform
-        if (includeContents != null)
+        if (key.includeContents != null)
+        {
+            entries.put(Parser.class, key.includeContents ? autoDetectParser : EmptyParser.INSTANCE);
+        }
+
+        return new ParseContextTemplate(entries);
+    }
+
+    private static class ParseContextKey
+    {
+        private final DocumentSelector documentSelector;
+        private final Boolean includeContents;
+        private final Boolean notExtractBookmarksText;
+
+        private ParseContextKey(DocumentSelector documentSelector, Boolean includeContents,
+            Boolean notExtractBookmarksText)
+        {
+            this.documentSelector = documentSelector;
+            this.includeContents = includeContents;
+            this.notExtractBookmarksText = notExtractBookmarksText;
+        }
+
+        @Override
+        public boolean equals(Object o)
         {
-            context.set(Parser.class, includeContents ? autoDetectParser : new EmptyParser());
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof ParseContextKey))
+            {
+                return false;
+            }
+            ParseContextKey that = (ParseContextKey) o;
+            return documentSelector == that.documentSelector &&
+                   Objects.equals(includeContents, that.includeContents) &&
+                   Objects.equals(notExtractBookmarksText, that.notExtractBookmarksText);
         }
 
-        return context;
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(System.identityHashCode(documentSelector), includeContents, notExtractBookmarksText);
+        }
+    }
+
+    /**
+     * The entries to be set in a {@link ParseContext}. Unlike a ParseContext, it is not changed once built, so may be
+     * shared between threads.
+     */
+    static class ParseContextTemplate
+    {
+        private final Map<Class<?>, Object> entries;
+
+        ParseContextTemplate(Map<Class<?>, Object> entries)
+        {
+            this.entries = Map.copyOf(entries);
+        }
+
+        @SuppressWarnings("unchecked")
+        ParseContext newParseContext()
+        {
+            ParseContext context = new ParseContext();
+            entries.forEach((type, value) -> context.set((Class<Object>) type, value));
+            return context;
+        }
     }
 }
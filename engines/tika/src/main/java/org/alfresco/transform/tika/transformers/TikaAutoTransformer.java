@@ -26,15 +26,26 @@
  */
 package org.alfresco.transform.tika.transformers;
 
+import org.alfresco.transform.tika.parsers.AutoDetection;
 import org.apache.tika.parser.Parser;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Component
 public class TikaAutoTransformer extends AbstractTikaTransformer
 {
+    @Autowired(required = false)
+    private AutoDetection autoDetection;
+
     @Override
     protected Parser getParser()
     {
-        return tika.autoDetectParser;
+        return autoDetection == null ? tika.autoDetectParser : autoDetection.getAutoDetectParser();
+    }
+
+    @Override
+    protected boolean isSourceMimetypeUsed()
+    {
+        return autoDetection != null && autoDetection.isDeclaredTypeUsed();
     }
 }
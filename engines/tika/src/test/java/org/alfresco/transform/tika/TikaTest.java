@@ -68,7 +68,10 @@ import static org.alfresco.transform.common.Mimetype.MIMETYPE_XML;
 import static org.alfresco.transform.common.Mimetype.MIMETYPE_ZIP;
 import static org.alfresco.transform.common.RequestParamMap.ENDPOINT_TRANSFORM;
 import static org.alfresco.transform.common.RequestParamMap.INCLUDE_CONTENTS;
+import static org.alfresco.transform.common.RequestParamMap.MAX_BYTES;
+import static org.alfresco.transform.common.RequestParamMap.MAX_CHARS;
 import static org.alfresco.transform.common.RequestParamMap.NOT_EXTRACT_BOOKMARKS_TEXT;
+import static org.alfresco.transform.common.RequestParamMap.TARGET_TRUNCATED_HEADER;
 import static org.alfresco.transform.tika.transformers.Tika.ARCHIVE;
 import static org.alfresco.transform.tika.transformers.Tika.CSV;
 import static org.alfresco.transform.tika.transformers.Tika.DOC;
@@ -96,6 +99,7 @@ import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpHeaders.ACCEPT;
 import static org.springframework.http.HttpHeaders.CONTENT_DISPOSITION;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.OK;
@@ -299,6 +303,50 @@ public class TikaTest extends AbstractBaseTest
             EXPECTED_XHTML_CONTENT_CONTAINS);
     }
 
+    @Test
+    public void maxCharsTest() throws Exception
+    {
+        MvcResult result = mockMvc.perform(
+                mockMvcRequest(ENDPOINT_TRANSFORM, sourceFile, "targetExtension", targetExtension, MAX_CHARS, "15"))
+            .andExpect(status().is(OK.value()))
+            .andExpect(header().string(TARGET_TRUNCATED_HEADER, "true"))
+            .andReturn();
+        String content = result.getResponse().getContentAsString();
+        assertEquals(15, content.length());
+        assertTrue(EXPECTED_TEXT_CONTENT_CONTAINS.startsWith(content.strip()),
+            "Expected the start of the text, but was \"" + content + "\"");
+    }
+
+    @Test
+    public void maxCharsNotReachedTest() throws Exception
+    {
+        MvcResult result = mockMvc.perform(
+                mockMvcRequest(ENDPOINT_TRANSFORM, sourceFile, "targetExtension", targetExtension, MAX_CHARS, "100000"))
+            .andExpect(status().is(OK.value()))
+            .andExpect(header().doesNotExist(TARGET_TRUNCATED_HEADER))
+            .andReturn();
+        assertTrue(result.getResponse().getContentAsString().contains(EXPECTED_TEXT_CONTENT_CONTAINS));
+    }
+
+    @Test
+    public void maxBytesTest() throws Exception
+    {
+        MvcResult result = mockMvc.perform(
+                mockMvcRequest(ENDPOINT_TRANSFORM, sourceFile, "targetExtension", targetExtension, MAX_BYTES, "20"))
+            .andExpect(status().is(OK.value()))
+            .andExpect(header().string(TARGET_TRUNCATED_HEADER, "true"))
+            .andReturn();
+        assertEquals(20, result.getResponse().getContentAsByteArray().length);
+    }
+
+    @Test
+    public void invalidMaxCharsTest() throws Exception
+    {
+        mockMvc.perform(
+                mockMvcRequest(ENDPOINT_TRANSFORM, sourceFile, "targetExtension", targetExtension, MAX_CHARS, "0"))
+            .andExpect(status().is(BAD_REQUEST.value()));
+    }
+
     @Test
     public void pdfToHtmlPdfBoxTest() throws Exception
     {
@@ -489,6 +537,10 @@ public class TikaTest extends AbstractBaseTest
         assertEquals(ImmutableSet.of(
                 "includeContents",
                 "targetEncoding",
+                "maxChars",
+                "maxBytes",
+                "fragmentSize",
+                "includeText",
                 "extractMapping",
                 "notExtractBookmarksText",
                 "metadata"),
@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.metadata.extractors;
+
+import org.apache.tika.config.TikaConfig;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_EXCEL;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_OPENDOCUMENT_TEXT;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_OPENXML_PRESENTATION;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_OPENXML_SPREADSHEET;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_OPENXML_WORDPROCESSING;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_PDF;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_PPT;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_WORD;
+
+/**
+ * Metadata extract throughput over a corpus of small Office and PDF files, comparing the shared parser and
+ * ParseContext templates used by {@link TikaAutoMetadataExtractor} with creating a new parser and context for each
+ * extraction. Each operation extracts every file in the corpus once. Not run as part of the build. Run the
+ * {@link #main} method from the test classpath (for example from an IDE).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class MetadataExtractBenchmark
+{
+    private static final String[][] CORPUS = {
+        {"quick.doc", MIMETYPE_WORD},
+        {"quick.docx", MIMETYPE_OPENXML_WORDPROCESSING},
+        {"quick.xls", MIMETYPE_EXCEL},
+        {"quick.xlsx", MIMETYPE_OPENXML_SPREADSHEET},
+        {"quick.ppt", MIMETYPE_PPT},
+        {"quick.pptx", MIMETYPE_OPENXML_PRESENTATION},
+        {"quick.odt", MIMETYPE_OPENDOCUMENT_TEXT},
+        {"quick.pdf", MIMETYPE_PDF}
+    };
+
+    private byte[][] content;
+    private TikaAutoMetadataExtractor extractor;
+    private TikaConfig tikaConfig;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        content = new byte[CORPUS.length][];
+        for (int i = 0; i < CORPUS.length; i++)
+        {
+            try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(CORPUS[i][0]))
+            {
+                content[i] = inputStream.readAllBytes();
+            }
+        }
+        extractor = new TikaAutoMetadataExtractor();
+        tikaConfig = extractor.tikaConfig;
+    }
+
+    @Benchmark
+    public void sharedParser(Blackhole blackhole) throws Exception
+    {
+        for (int i = 0; i < CORPUS.length; i++)
+        {
+            blackhole.consume(extractor.extractMetadata(CORPUS[i][1], new ByteArrayInputStream(content[i]),
+                null, null, Collections.emptyMap(), null));
+        }
+    }
+
+    @Benchmark
+    public void parserPerExtraction(Blackhole blackhole) throws Exception
+    {
+        for (int i = 0; i < CORPUS.length; i++)
+        {
+            Metadata metadata = new Metadata();
+            metadata.add(Metadata.CONTENT_TYPE, CORPUS[i][1]);
+            new AutoDetectParser(tikaConfig).parse(new ByteArrayInputStream(content[i]), new DefaultHandler(),
+                metadata, new ParseContext());
+            blackhole.consume(metadata);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+            .include(MetadataExtractBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
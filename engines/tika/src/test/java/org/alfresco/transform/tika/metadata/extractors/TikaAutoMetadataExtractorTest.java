@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.metadata.extractors;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.alfresco.transform.base.TransformManager;
+import org.alfresco.transform.exceptions.TransformException;
+import org.alfresco.transform.tika.transformers.Tika;
+import org.alfresco.transform.tika.transformers.TikaAutoTransformer;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.alfresco.transform.base.metadata.AbstractMetadataExtractorEmbedder.SYS_TEXT;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_METADATA_EXTRACT;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_OPENXML_WORDPROCESSING;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_TEXT_PLAIN;
+import static org.alfresco.transform.common.RequestParamMap.INCLUDE_TEXT;
+import static org.alfresco.transform.common.RequestParamMap.MAX_CHARS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests extracting the text of a document in the same parse as its metadata, with the {@code includeText} transform
+ * option.
+ */
+public class TikaAutoMetadataExtractorTest
+{
+    private static final String CM_AUTHOR = "{http://www.alfresco.org/model/content/1.0}author";
+
+    private final TikaAutoMetadataExtractor extractor = new TikaAutoMetadataExtractor();
+
+    private Map<String, Serializable> extract(Map<String, String> transformOptions, TransformManager transformManager)
+        throws Exception
+    {
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("quick.docx"))
+        {
+            return extractor.extractMetadata(MIMETYPE_OPENXML_WORDPROCESSING, inputStream, MIMETYPE_METADATA_EXTRACT,
+                null, transformOptions, transformManager);
+        }
+    }
+
+    private String transformToText() throws Exception
+    {
+        TikaAutoTransformer transformer = new TikaAutoTransformer();
+        ReflectionTestUtils.setField(transformer, "tika", new Tika());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("quick.docx"))
+        {
+            transformer.transform(MIMETYPE_OPENXML_WORDPROCESSING, inputStream, MIMETYPE_TEXT_PLAIN, outputStream,
+                Map.of(), mock(TransformManager.class));
+        }
+        return outputStream.toString(UTF_8);
+    }
+
+    @Test
+    public void testNoText() throws Exception
+    {
+        Map<String, Serializable> metadata = extract(Map.of(), mock(TransformManager.class));
+
+        assertFalse(metadata.containsKey(SYS_TEXT));
+        assertEquals("Nevin Nollop", metadata.get("author"));
+    }
+
+    @Test
+    public void testSameTextAsTransform() throws Exception
+    {
+        Map<String, Serializable> metadata = extract(Map.of(INCLUDE_TEXT, "true"), mock(TransformManager.class));
+
+        assertEquals(transformToText(), metadata.get(SYS_TEXT));
+        assertEquals("Nevin Nollop", metadata.get("author"));
+    }
+
+    @Test
+    public void testMaxChars() throws Exception
+    {
+        TransformManager transformManager = mock(TransformManager.class);
+        Map<String, Serializable> metadata = extract(Map.of(INCLUDE_TEXT, "true", MAX_CHARS, "10"),
+            transformManager);
+
+        assertEquals(transformToText().substring(0, 10), metadata.get(SYS_TEXT));
+        // The parse is not stopped by the limit, so the metadata is all extracted
+        assertEquals(extract(Map.of(), mock(TransformManager.class)).size() + 1, metadata.size());
+        verify(transformManager).setTargetTruncated();
+    }
+
+    @Test
+    public void testDefaultMaxChars() throws Exception
+    {
+        ReflectionTestUtils.setField(extractor, "defaultMaxTextChars", 10);
+        TransformManager transformManager = mock(TransformManager.class);
+        Map<String, Serializable> metadata = extract(Map.of(INCLUDE_TEXT, "true"), transformManager);
+
+        assertEquals(transformToText().substring(0, 10), metadata.get(SYS_TEXT));
+        verify(transformManager).setTargetTruncated();
+    }
+
+    @Test
+    public void testMaxCharsNotReached() throws Exception
+    {
+        TransformManager transformManager = mock(TransformManager.class);
+        extract(Map.of(INCLUDE_TEXT, "true", MAX_CHARS, "100000"), transformManager);
+
+        verify(transformManager, never()).setTargetTruncated();
+    }
+
+    @Test
+    public void testInvalidMaxChars()
+    {
+        assertThrows(TransformException.class,
+            () -> extract(Map.of(INCLUDE_TEXT, "true", MAX_CHARS, "-1"), mock(TransformManager.class)));
+    }
+
+    @Test
+    public void testTextIsNotMapped() throws Exception
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("quick.docx"))
+        {
+            extractor.transform(MIMETYPE_OPENXML_WORDPROCESSING, inputStream, MIMETYPE_METADATA_EXTRACT,
+                outputStream, Map.of(INCLUDE_TEXT, "true"), mock(TransformManager.class));
+        }
+        Map<String, Serializable> metadata = new ObjectMapper().readValue(outputStream.toByteArray(),
+            new TypeReference<>() {});
+
+        assertEquals(transformToText(), metadata.get(SYS_TEXT));
+        assertEquals("Nevin Nollop", metadata.get(CM_AUTHOR));
+        assertTrue(metadata.keySet().stream().allMatch(key -> key.startsWith("{") || key.startsWith("sys:")),
+            "Unexpected keys " + metadata.keySet());
+    }
+}
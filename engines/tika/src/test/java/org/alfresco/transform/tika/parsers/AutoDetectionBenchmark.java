@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_OPENXML_WORDPROCESSING;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tika.detect.Detector;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.AutoDetectParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * The time taken by the {@link DeclaredTypeDetector} to work out the type of a docx declared as a docx, in each mode
+ * with and without the magic bytes cache. Not run as part of the build. Run the {@link #main} method from the test
+ * classpath (for example from an IDE).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AutoDetectionBenchmark
+{
+    @Param({"detect", "verify", "trust"})
+    public String declaredType;
+
+    @Param({"0", "1000"})
+    public int cacheSize;
+
+    private Detector detector;
+    private byte[] docx;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        AutoDetection autoDetection = new AutoDetection();
+        ReflectionTestUtils.setField(autoDetection, "declaredType", declaredType);
+        ReflectionTestUtils.setField(autoDetection, "cacheSize", cacheSize);
+        autoDetection.init();
+        detector = ((AutoDetectParser) autoDetection.getAutoDetectParser()).getDetector();
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("quick.docx"))
+        {
+            docx = inputStream.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public MediaType detect() throws IOException
+    {
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, MIMETYPE_OPENXML_WORDPROCESSING);
+        try (InputStream inputStream = TikaInputStream.get(docx))
+        {
+            return detector.detect(inputStream, metadata);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+            .include(AutoDetectionBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
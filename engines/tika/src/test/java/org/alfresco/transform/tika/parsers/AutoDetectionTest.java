@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_OPENXML_SPREADSHEET;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_OPENXML_WORDPROCESSING;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_PDF;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests the use of the declared type by the {@link AutoDetection} parser and its {@link DeclaredTypeDetector}.
+ */
+public class AutoDetectionTest
+{
+    private static AutoDetection createAutoDetection(String declaredType, int cacheSize)
+    {
+        AutoDetection autoDetection = new AutoDetection();
+        ReflectionTestUtils.setField(autoDetection, "declaredType", declaredType);
+        ReflectionTestUtils.setField(autoDetection, "cacheSize", cacheSize);
+        autoDetection.init();
+        return autoDetection;
+    }
+
+    private static DeclaredTypeDetector getDetector(AutoDetection autoDetection)
+    {
+        return (DeclaredTypeDetector) ((AutoDetectParser) autoDetection.getAutoDetectParser()).getDetector();
+    }
+
+    private String detect(AutoDetection autoDetection, String filename, String declaredType) throws Exception
+    {
+        Metadata metadata = new Metadata();
+        if (declaredType != null)
+        {
+            metadata.set(Metadata.CONTENT_TYPE, declaredType);
+        }
+        try (InputStream inputStream = TikaInputStream.get(getClass().getClassLoader().getResourceAsStream(filename)))
+        {
+            return getDetector(autoDetection).detect(inputStream, metadata).toString();
+        }
+    }
+
+    @Test
+    public void testDetect() throws Exception
+    {
+        AutoDetection autoDetection = createAutoDetection("detect", 1000);
+
+        assertFalse(autoDetection.isDeclaredTypeUsed());
+        assertEquals(MIMETYPE_OPENXML_WORDPROCESSING, detect(autoDetection, "quick.docx", null));
+        assertEquals(MIMETYPE_OPENXML_WORDPROCESSING, detect(autoDetection, "quick.docx", MIMETYPE_OPENXML_SPREADSHEET));
+        assertEquals(MIMETYPE_PDF, detect(autoDetection, "quick.pdf", MIMETYPE_OPENXML_WORDPROCESSING));
+    }
+
+    @Test
+    public void testVerify() throws Exception
+    {
+        AutoDetection autoDetection = createAutoDetection(" Verify ", 1000);
+
+        assertTrue(autoDetection.isDeclaredTypeUsed());
+        // The magic bytes only show it is OOXML, so the declared type is used, even though it is wrong
+        assertEquals(MIMETYPE_OPENXML_SPREADSHEET, detect(autoDetection, "quick.docx", MIMETYPE_OPENXML_SPREADSHEET));
+        // The magic bytes contradict the declared type
+        assertEquals(MIMETYPE_PDF, detect(autoDetection, "quick.pdf", MIMETYPE_OPENXML_WORDPROCESSING));
+        // No declared type
+        assertEquals(MIMETYPE_OPENXML_WORDPROCESSING, detect(autoDetection, "quick.docx", null));
+    }
+
+    @Test
+    public void testTrust() throws Exception
+    {
+        AutoDetection autoDetection = createAutoDetection("trust", 1000);
+
+        assertTrue(autoDetection.isDeclaredTypeUsed());
+        assertEquals(MIMETYPE_OPENXML_WORDPROCESSING, detect(autoDetection, "quick.pdf", MIMETYPE_OPENXML_WORDPROCESSING));
+        // Not useful declared types
+        assertEquals(MIMETYPE_PDF, detect(autoDetection, "quick.pdf", "application/octet-stream"));
+        assertEquals(MIMETYPE_PDF, detect(autoDetection, "quick.pdf", "application/x-not-a-real-type"));
+    }
+
+    @Test
+    public void testParseWithDeclaredType() throws Exception
+    {
+        AutoDetection autoDetection = createAutoDetection("verify", 1000);
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.CONTENT_TYPE, MIMETYPE_OPENXML_WORDPROCESSING);
+        BodyContentHandler handler = new BodyContentHandler();
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("quick.docx"))
+        {
+            autoDetection.getAutoDetectParser().parse(inputStream, handler, metadata, new ParseContext());
+        }
+
+        assertEquals(MIMETYPE_OPENXML_WORDPROCESSING, metadata.get(Metadata.CONTENT_TYPE));
+        assertTrue(handler.toString().contains("The quick brown fox jumps over the lazy dog"));
+    }
+
+    @Test
+    public void testCache() throws Exception
+    {
+        AutoDetection autoDetection = createAutoDetection("verify", 2);
+        DeclaredTypeDetector detector = getDetector(autoDetection);
+
+        detect(autoDetection, "quick.docx", MIMETYPE_OPENXML_WORDPROCESSING);
+        detect(autoDetection, "quick.docx", MIMETYPE_OPENXML_SPREADSHEET);
+        assertEquals(1, detector.getCacheSize());
+        detect(autoDetection, "quick.pdf", MIMETYPE_PDF);
+        detect(autoDetection, "quick.pdf", null); // full detection uses the same cache
+        assertEquals(2, detector.getCacheSize());
+        assertEquals(MIMETYPE_OPENXML_WORDPROCESSING, detect(autoDetection, "quick.docx", null));
+        assertEquals(2, detector.getCacheSize());
+    }
+
+    @Test
+    public void testNoCache() throws Exception
+    {
+        AutoDetection autoDetection = createAutoDetection("detect", 0);
+
+        assertEquals(MIMETYPE_OPENXML_WORDPROCESSING, detect(autoDetection, "quick.docx", null));
+        assertEquals(0, getDetector(autoDetection).getCacheSize());
+    }
+
+    @Test
+    public void testInvalidMode()
+    {
+        assertThrows(IllegalArgumentException.class, () -> createAutoDetection("guess", 1000));
+    }
+}
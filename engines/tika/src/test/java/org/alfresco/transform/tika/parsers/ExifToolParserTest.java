@@ -27,6 +27,9 @@
 package org.alfresco.transform.tika.parsers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
@@ -56,4 +59,27 @@ public class ExifToolParserTest {
 
     }
 
+    @Test
+    public void testGetSessionArguments() {
+        exifToolParser.setCommand("env FOO=${OUTPUT} exiftool -args -G1 -sep \"|||\" ${INPUT}");
+        assertEquals(List.of("exiftool"), exifToolParser.getSessionExecutable());
+        assertEquals(List.of("-args", "-G1", "-sep", "\"|||\"", "/tmp/quick.jpg"),
+            exifToolParser.getSessionArguments("/tmp/quick.jpg"));
+
+        exifToolParser.setCommand("env", "LANG=C", "FOO=${OUTPUT}", "/opt/exiftool/exiftool", "-args", "${INPUT}");
+        assertEquals(List.of("env", "LANG=C", "/opt/exiftool/exiftool"), exifToolParser.getSessionExecutable());
+        assertEquals(List.of("-args", "/tmp/quick.jpg"), exifToolParser.getSessionArguments("/tmp/quick.jpg"));
+    }
+
+    @Test
+    public void testCommandWithoutOutputIsNotRunInSession() {
+        // The standard output of such commands is the text of the document rather than metadata
+        exifToolParser.setCommand("exiftool -args -G1 -sep \"|||\" ${INPUT}");
+        assertNull(exifToolParser.getSessionExecutable());
+        assertNull(exifToolParser.getSessionArguments("/tmp/quick.jpg"));
+
+        // Input from standard input
+        exifToolParser.setCommand("env FOO=${OUTPUT} exiftool -args -");
+        assertNull(exifToolParser.getSessionExecutable());
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests {@link ExifToolSessionPool} using a script that follows the ExifTool {@code -stay_open} protocol. It replies
+ * to each request with the arguments it was sent, its process id and the value of {@code FOO}.
+ */
+public class ExifToolSessionPoolTest
+{
+    private static final String FAKE_EXIFTOOL =
+        "#!/bin/sh\n" +
+        "[ \"$*\" = \"-stay_open True -@ -\" ] || exit 2\n" +
+        "while read arg; do\n" +
+        "  case \"$arg\" in\n" +
+        "    -execute*) echo \"-pid=$$\"; echo \"-foo=$FOO\"; echo \"{ready${arg#-execute}}\" ;;\n" +
+        "    crash) exit 1 ;;\n" +
+        "    *) echo \"-arg=$arg\" ;;\n" +
+        "  esac\n" +
+        "done\n";
+
+    @TempDir
+    Path tempDir;
+
+    private ExifToolSessionPool sessionPool;
+    private List<String> executable;
+
+    @BeforeEach
+    public void before() throws IOException
+    {
+        File exe = tempDir.resolve("exiftool").toFile();
+        Files.writeString(exe.toPath(), FAKE_EXIFTOOL);
+        assertTrue(exe.setExecutable(true));
+
+        sessionPool = new ExifToolSessionPool();
+        ReflectionTestUtils.setField(sessionPool, "enabled", true);
+        ReflectionTestUtils.setField(sessionPool, "maxProcesses", 1);
+        ReflectionTestUtils.setField(sessionPool, "maxJobsPerProcess", 0);
+        ReflectionTestUtils.setField(sessionPool, "timeoutMs", 5000L);
+        ReflectionTestUtils.setField(sessionPool, "healthCheckAfterIdleMs", 30000L);
+        executable = List.of(exe.getAbsolutePath());
+    }
+
+    @AfterEach
+    public void after()
+    {
+        sessionPool.close();
+    }
+
+    @Test
+    public void testProcessIsReused() throws IOException
+    {
+        List<String> first = sessionPool.execute(executable, List.of("-args", "-G1", "/tmp/one.jpg"));
+        List<String> second = sessionPool.execute(executable, List.of("/tmp/two.jpg"));
+
+        assertEquals(List.of("-arg=-args", "-arg=-G1", "-arg=/tmp/one.jpg"), first.subList(0, 3));
+        assertEquals("-arg=/tmp/two.jpg", second.get(0));
+        assertEquals(first.get(3), second.get(1));
+    }
+
+    @Test
+    public void testProcessIsRestartedAfterFailure() throws IOException
+    {
+        String pid = sessionPool.execute(executable, List.of()).get(0);
+
+        assertThrows(IOException.class, () -> sessionPool.execute(executable, List.of("crash")));
+
+        assertNotEquals(pid, sessionPool.execute(executable, List.of()).get(0));
+    }
+
+    @Test
+    public void testIdleProcessIsHealthChecked() throws IOException
+    {
+        String pid = sessionPool.execute(executable, List.of()).get(0);
+        ReflectionTestUtils.setField(sessionPool, "healthCheckAfterIdleMs", 0L);
+
+        // The fake replies to -ver, so the process is healthy and reused
+        assertEquals(pid, sessionPool.execute(executable, List.of()).get(0));
+    }
+
+    @Test
+    public void testExecutableWithEnvironment() throws IOException
+    {
+        String pid = sessionPool.execute(executable, List.of()).get(0);
+        List<String> envExecutable = List.of("env", "FOO=bar", executable.get(0));
+
+        List<String> lines = sessionPool.execute(envExecutable, List.of());
+
+        assertEquals("-foo=bar", lines.get(1));
+        assertNotEquals(pid, lines.get(0));
+        assertEquals(lines.get(0), sessionPool.execute(envExecutable, List.of()).get(0));
+    }
+
+    @Test
+    public void testNotEnabledByDefault()
+    {
+        assertFalse(new ExifToolSessionPool().isEnabled());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import static org.alfresco.transform.tika.transformers.Tika.pdfBoxEmbededDocumentSelector;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Set;
+
+import org.alfresco.transform.tika.transformers.Tika;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.extractor.DocumentSelector;
+import org.apache.tika.fork.ForkParser;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.AbstractParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.xml.sax.ContentHandler;
+
+/**
+ * Tests {@link ForkedParsers} with real child JVMs.
+ */
+public class ForkedParsersTest
+{
+    private ForkedParsers forkedParsers;
+
+    @BeforeEach
+    public void before()
+    {
+        forkedParsers = new ForkedParsers();
+        ReflectionTestUtils.setField(forkedParsers, "transformers", "PdfBox, Hang");
+        ReflectionTestUtils.setField(forkedParsers, "poolSize", 1);
+        ReflectionTestUtils.setField(forkedParsers, "java", "");
+        ReflectionTestUtils.setField(forkedParsers, "maxHeap", "256m");
+        ReflectionTestUtils.setField(forkedParsers, "parseTimeoutMs", 60000L);
+        ReflectionTestUtils.setField(forkedParsers, "maxFilesPerProcess", 100);
+        forkedParsers.init();
+    }
+
+    @AfterEach
+    public void after()
+    {
+        forkedParsers.close();
+    }
+
+    @Test
+    public void testNotForked()
+    {
+        assertFalse(forkedParsers.isForked("Office"));
+        assertSame(Tika.officeParser, forkedParsers.getParser("Office", Tika.officeParser));
+    }
+
+    @Test
+    public void testAllForked()
+    {
+        ReflectionTestUtils.setField(forkedParsers, "transformers", "*");
+        forkedParsers.init();
+
+        assertTrue(forkedParsers.isForked("Office"));
+    }
+
+    @Test
+    public void testParseInChild() throws Exception
+    {
+        Parser parser = forkedParsers.getParser("PdfBox", Tika.pdfParser);
+        assertInstanceOf(ForkParser.class, parser);
+        assertSame(parser, forkedParsers.getParser("PdfBox", Tika.pdfParser));
+
+        for (int i = 0; i < 2; i++)
+        {
+            BodyContentHandler handler = new BodyContentHandler();
+            Metadata metadata = new Metadata();
+            ParseContext context = new ParseContext();
+            context.set(DocumentSelector.class, pdfBoxEmbededDocumentSelector);
+            try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("quick.pdf"))
+            {
+                parser.parse(inputStream, handler, metadata, context);
+            }
+
+            assertTrue(handler.toString().contains("The quick brown fox jumps over the lazy dog"));
+            assertTrue(metadata.size() > 0, "The child's metadata should be returned");
+        }
+    }
+
+    @Test
+    public void testParseTimeout()
+    {
+        // The first parse in a child includes loading classes from the t-engine, so this is only short enough here
+        ReflectionTestUtils.setField(forkedParsers, "parseTimeoutMs", 2000L);
+        Parser parser = forkedParsers.getParser("Hang", new HangingParser());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+            assertThrows(TikaException.class, () ->
+                parser.parse(new ByteArrayInputStream(new byte[1]), new BodyContentHandler(), new Metadata(),
+                    new ParseContext())));
+    }
+
+    public static class HangingParser extends AbstractParser
+    {
+        @Override
+        public Set<MediaType> getSupportedTypes(ParseContext context)
+        {
+            return Set.of(MediaType.OCTET_STREAM);
+        }
+
+        @Override
+        public void parse(InputStream stream, ContentHandler handler, Metadata metadata, ParseContext context)
+        {
+            while (true)
+            {
+                // spin, like a parser stuck on a malformed document
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.alfresco.transform.tika.parsers.ParallelEmbeddedDocumentExtractor.RecordedEvents;
+import org.apache.tika.exception.WriteLimitReachedException;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.pkg.PackageParser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests {@link ParallelEmbeddedDocumentExtractor} with a limited target.
+ */
+public class ParallelEmbeddedDocumentExtractorTest
+{
+    private static final String LINE = "The quick brown fox jumps over the lazy dog\n";
+
+    // Keeps what each task recorded
+    private final List<RecordedEvents> recorded = new CopyOnWriteArrayList<>();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>())
+    {
+        @Override
+        protected void afterExecute(Runnable runnable, Throwable throwable)
+        {
+            try
+            {
+                RecordedEvents events = (RecordedEvents) ((Future<?>) runnable).get();
+                if (events != null)
+                {
+                    recorded.add(events);
+                }
+            }
+            catch (InterruptedException | ExecutionException ignore)
+            {
+            }
+        }
+    };
+
+    @AfterEach
+    public void after()
+    {
+        executor.shutdownNow();
+    }
+
+    private static byte[] createZip() throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(bytes))
+        {
+            zipOutputStream.putNextEntry(new ZipEntry("large.txt"));
+            zipOutputStream.write(LINE.repeat(50_000).getBytes(UTF_8));
+            zipOutputStream.closeEntry();
+            zipOutputStream.putNextEntry(new ZipEntry("small.txt"));
+            zipOutputStream.write(LINE.getBytes(UTF_8));
+            zipOutputStream.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ParseContext createParseContext()
+    {
+        ParseContext context = new ParseContext();
+        context.set(Parser.class, new AutoDetectParser());
+        return context;
+    }
+
+    @Test
+    public void testRecordedCharsAreLimited() throws IOException, InterruptedException
+    {
+        byte[] zip = createZip();
+        StringWriter writer = new StringWriter();
+        BodyContentHandler handler = new BodyContentHandler(writer);
+        ParseContext context = createParseContext();
+        ParallelEmbeddedDocumentExtractor extractor = new ParallelEmbeddedDocumentExtractor(executor, 4, handler,
+            context, ParallelEmbeddedDocumentExtractorTest::createParseContext, 100);
+        context.set(EmbeddedDocumentExtractor.class, extractor);
+
+        try
+        {
+            Exception e = assertThrows(Exception.class, () ->
+            {
+                new PackageParser().parse(new ByteArrayInputStream(zip), extractor.getContentHandler(),
+                    new Metadata(), context);
+                extractor.finish();
+            });
+            assertTrue(WriteLimitReachedException.isWriteLimitReached(e));
+        }
+        finally
+        {
+            extractor.close();
+        }
+        // afterExecute() may still be running
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertFalse(recorded.isEmpty());
+        assertTrue(recorded.stream().allMatch(events -> events.getRecordedChars() <= 100));
+        assertTrue(recorded.stream().anyMatch(RecordedEvents::isTruncated));
+        assertTrue(writer.toString().contains(LINE));
+        assertTrue(writer.toString().length() < 1000);
+    }
+}
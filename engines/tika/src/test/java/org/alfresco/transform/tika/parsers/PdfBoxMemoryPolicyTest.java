@@ -0,0 +1,137 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import static org.alfresco.transform.tika.parsers.PdfBoxMemoryPolicy.Policy.FILE;
+import static org.alfresco.transform.tika.parsers.PdfBoxMemoryPolicy.Policy.MEMORY;
+import static org.alfresco.transform.tika.parsers.PdfBoxMemoryPolicy.Policy.MIXED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import org.alfresco.transform.base.TransformManager;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.pdf.PDFParser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Tests the parsers and source streams used by each {@link PdfBoxMemoryPolicy}.
+ */
+public class PdfBoxMemoryPolicyTest
+{
+    @TempDir
+    Path tempDir;
+
+    static PdfBoxMemoryPolicy createPdfBoxMemoryPolicy(String policy, long maxMainMemory)
+    {
+        PdfBoxMemoryPolicy pdfBoxMemoryPolicy = new PdfBoxMemoryPolicy();
+        ReflectionTestUtils.setField(pdfBoxMemoryPolicy, "memoryPolicy", policy);
+        ReflectionTestUtils.setField(pdfBoxMemoryPolicy, "maxMainMemory", maxMainMemory);
+        pdfBoxMemoryPolicy.init();
+        return pdfBoxMemoryPolicy;
+    }
+
+    @Test
+    public void testDefault()
+    {
+        PdfBoxMemoryPolicy pdfBoxMemoryPolicy = createPdfBoxMemoryPolicy("mixed", 536870912L);
+
+        // The same as before the policy was added
+        assertEquals(new PDFParser().getMaxMainMemoryBytes(), pdfBoxMemoryPolicy.getPdfParser().getMaxMainMemoryBytes());
+    }
+
+    @Test
+    public void testMemory() throws Exception
+    {
+        PdfBoxMemoryPolicy pdfBoxMemoryPolicy = createPdfBoxMemoryPolicy("memory", 1024);
+        InputStream inputStream = InputStream.nullInputStream();
+        TransformManager transformManager = mock(TransformManager.class);
+
+        assertEquals(MEMORY, pdfBoxMemoryPolicy.getPolicy());
+        assertEquals(-1, pdfBoxMemoryPolicy.getPdfParser().getMaxMainMemoryBytes());
+        assertSame(inputStream, pdfBoxMemoryPolicy.getInputStream(inputStream, transformManager));
+        verifyNoInteractions(transformManager);
+    }
+
+    @Test
+    public void testMixed() throws Exception
+    {
+        PdfBoxMemoryPolicy pdfBoxMemoryPolicy = createPdfBoxMemoryPolicy(" Mixed ", 1024);
+        InputStream inputStream = InputStream.nullInputStream();
+
+        assertEquals(MIXED, pdfBoxMemoryPolicy.getPolicy());
+        assertEquals(1024, pdfBoxMemoryPolicy.getPdfParser().getMaxMainMemoryBytes());
+        assertSame(inputStream, pdfBoxMemoryPolicy.getInputStream(inputStream, mock(TransformManager.class)));
+    }
+
+    @Test
+    public void testFile() throws Exception
+    {
+        PdfBoxMemoryPolicy pdfBoxMemoryPolicy = createPdfBoxMemoryPolicy("file", 1024);
+        File sourceFile = tempDir.resolve("source.pdf").toFile();
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("quick.pdf"))
+        {
+            Files.copy(inputStream, sourceFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        TransformManager transformManager = mock(TransformManager.class);
+        when(transformManager.createSourceFile()).thenReturn(sourceFile);
+
+        assertEquals(FILE, pdfBoxMemoryPolicy.getPolicy());
+        assertEquals(1024, pdfBoxMemoryPolicy.getPdfParser().getMaxMainMemoryBytes());
+        BodyContentHandler handler = new BodyContentHandler();
+        try (InputStream inputStream = pdfBoxMemoryPolicy.getInputStream(InputStream.nullInputStream(),
+            transformManager))
+        {
+            assertInstanceOf(TikaInputStream.class, inputStream);
+            assertTrue(((TikaInputStream) inputStream).hasFile());
+            pdfBoxMemoryPolicy.getPdfParser().parse(inputStream, handler, new Metadata(), new ParseContext());
+        }
+        assertTrue(handler.toString().contains("The quick brown fox jumps over the lazy dog"));
+    }
+
+    @Test
+    public void testInvalidPolicy()
+    {
+        assertThrows(IllegalArgumentException.class, () -> createPdfBoxMemoryPolicy("disk", 1024));
+    }
+}
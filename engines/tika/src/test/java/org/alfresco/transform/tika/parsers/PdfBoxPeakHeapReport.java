@@ -0,0 +1,155 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.parsers;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.alfresco.transform.base.TransformManager;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+
+/**
+ * Reports the peak heap used to extract the text of a large, scanned-like PDF with each {@link PdfBoxMemoryPolicy}.
+ * Not run as part of the build. Run the {@link #main} method from the test classpath with an optional number of
+ * pages (default 40, about 6 MB each), preferably with {@code -XX:+UseSerialGC -Xmn32m} so that the peak is not hidden
+ * by a large young generation.
+ */
+public class PdfBoxPeakHeapReport
+{
+    private static final long MAX_MAIN_MEMORY = 16 * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception
+    {
+        int pages = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        File pdf = File.createTempFile("PdfBoxPeakHeapReport", ".pdf");
+        try
+        {
+            createPdf(pdf, pages);
+            System.out.printf("%,d byte PDF of %d pages%n", pdf.length(), pages);
+            for (String policy : List.of("memory", "mixed", "file"))
+            {
+                PdfBoxMemoryPolicy pdfBoxMemoryPolicy = PdfBoxMemoryPolicyTest.createPdfBoxMemoryPolicy(policy,
+                    MAX_MAIN_MEMORY);
+                TransformManager transformManager = mock(TransformManager.class);
+                when(transformManager.createSourceFile()).thenReturn(pdf);
+
+                long[] peakAndTime = measure(() ->
+                {
+                    try (InputStream inputStream = Files.newInputStream(pdf.toPath());
+                         InputStream sourceStream = pdfBoxMemoryPolicy.getInputStream(inputStream, transformManager))
+                    {
+                        pdfBoxMemoryPolicy.getPdfParser().parse(sourceStream, new BodyContentHandler(-1),
+                            new Metadata(), new ParseContext());
+                    }
+                });
+                System.out.printf("%-6s peak heap %,6d MB in %,d ms%n", policy, peakAndTime[0] / (1024 * 1024),
+                    peakAndTime[1]);
+            }
+        }
+        finally
+        {
+            pdf.delete();
+        }
+    }
+
+    private interface Transform
+    {
+        void run() throws Exception;
+    }
+
+    // Returns the increase in the sum of the peak usage of the heap's memory pools and the elapsed time.
+    private static long[] measure(Transform transform) throws Exception
+    {
+        List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .collect(Collectors.toList());
+        System.gc();
+        long before = 0;
+        for (MemoryPoolMXBean pool : pools)
+        {
+            pool.resetPeakUsage();
+            before += pool.getUsage().getUsed();
+        }
+        long start = System.currentTimeMillis();
+        transform.run();
+        long time = System.currentTimeMillis() - start;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : pools)
+        {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return new long[]{peak - before, time};
+    }
+
+    // Noise does not compress, so each page holds an image of about 6 MB, like a scan.
+    private static void createPdf(File pdf, int pages) throws Exception
+    {
+        Random random = new Random(42);
+        BufferedImage bufferedImage = new BufferedImage(1450, 1450, BufferedImage.TYPE_INT_RGB);
+        try (PDDocument document = new PDDocument(MemoryUsageSetting.setupTempFileOnly()))
+        {
+            for (int i = 0; i < pages; i++)
+            {
+                for (int y = 0; y < bufferedImage.getHeight(); y++)
+                {
+                    for (int x = 0; x < bufferedImage.getWidth(); x++)
+                    {
+                        bufferedImage.setRGB(x, y, random.nextInt());
+                    }
+                }
+                PDImageXObject image = LosslessFactory.createFromImage(document, bufferedImage);
+                PDPage page = new PDPage(PDRectangle.A4);
+                document.addPage(page);
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page))
+                {
+                    contentStream.drawImage(image, 0, 0, PDRectangle.A4.getWidth(), PDRectangle.A4.getHeight());
+                }
+            }
+            document.save(pdf);
+        }
+    }
+}
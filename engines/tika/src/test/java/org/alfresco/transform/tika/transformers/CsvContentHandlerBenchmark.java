@@ -0,0 +1,221 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.transformers;
+
+import org.apache.tika.sax.BodyContentHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.Writer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The time and garbage needed to write a 100,000 row, 10 column spreadsheet as CSV, comparing
+ * {@link Tika.CsvContentHandler} with the previous implementation, which created a StringBuffer and String for each
+ * cell and used a regex to decide if it should be quoted. Half the cells are numbers. Not run as part of the build.
+ * Run the {@link #main} method from the test classpath (for example from an IDE). It includes the GC profiler, so
+ * reports {@code gc.alloc.rate.norm}, the bytes allocated by each operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvContentHandlerBenchmark
+{
+    private static final String XHTML = "http://www.w3.org/1999/xhtml";
+    private static final Attributes NO_ATTRIBUTES = new AttributesImpl();
+    private static final int ROWS = 100_000;
+    private static final int COLUMNS = 10;
+
+    private char[][] cells;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        cells = new char[ROWS * COLUMNS][];
+        for (int i = 0; i < cells.length; i++)
+        {
+            cells[i] = (i % 2 == 0
+                        ? Integer.toString(random.nextInt(1_000_000))
+                        : "Item \"" + random.nextInt(1000) + "\" of the quick brown fox").toCharArray();
+        }
+    }
+
+    @Benchmark
+    public void csvContentHandler() throws SAXException
+    {
+        writeSpreadsheet(new Tika.CsvContentHandler(Writer.nullWriter()));
+    }
+
+    @Benchmark
+    public void regexCsvContentHandler() throws SAXException
+    {
+        writeSpreadsheet(new RegexCsvContentHandler(Writer.nullWriter()));
+    }
+
+    // The events a spreadsheet parser sends, after the head
+    private void writeSpreadsheet(ContentHandler handler) throws SAXException
+    {
+        handler.startDocument();
+        handler.startElement(XHTML, "html", "html", NO_ATTRIBUTES);
+        handler.startElement(XHTML, "body", "body", NO_ATTRIBUTES);
+        handler.startElement(XHTML, "table", "table", NO_ATTRIBUTES);
+        int i = 0;
+        for (int row = 0; row < ROWS; row++)
+        {
+            handler.startElement(XHTML, "tr", "tr", NO_ATTRIBUTES);
+            for (int column = 0; column < COLUMNS; column++)
+            {
+                char[] cell = cells[i++];
+                handler.startElement(XHTML, "td", "td", NO_ATTRIBUTES);
+                handler.characters(cell, 0, cell.length);
+                handler.endElement(XHTML, "td", "td");
+            }
+            handler.endElement(XHTML, "tr", "tr");
+        }
+        handler.endElement(XHTML, "table", "table");
+        handler.endElement(XHTML, "body", "body");
+        handler.endElement(XHTML, "html", "html");
+        handler.endDocument();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+            .include(CsvContentHandlerBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+
+    /**
+     * The previous implementation of the cell output in {@link Tika.CsvContentHandler}.
+     */
+    private static class RegexCsvContentHandler extends BodyContentHandler
+    {
+        private static final char[] comma = new char[]{','};
+        private static final Pattern all_nums = Pattern.compile("[\\d\\.\\-\\+]+");
+
+        private boolean inCell = false;
+        private boolean needsComma = false;
+
+        private RegexCsvContentHandler(Writer output)
+        {
+            super(output);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException
+        {
+            if (inCell)
+            {
+                StringBuffer t = new StringBuffer(new String(ch, start, length));
+
+                // Quote if not all numbers
+                if (all_nums.matcher(t).matches())
+                {
+                    super.characters(ch, start, length);
+                }
+                else
+                {
+                    for (int i = t.length() - 1; i >= 0; i--)
+                    {
+                        if (t.charAt(i) == '\"')
+                        {
+                            // Double up double quotes
+                            t.insert(i, '\"');
+                            i--;
+                        }
+                    }
+                    t.insert(0, '\"');
+                    t.append('\"');
+                    char[] c = t.toString().toCharArray();
+                    super.characters(c, 0, c.length);
+                }
+            }
+            else
+            {
+                super.characters(ch, start, length);
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String name, Attributes atts) throws SAXException
+        {
+            if (localName.equals("td"))
+            {
+                inCell = true;
+                if (needsComma)
+                {
+                    super.characters(comma, 0, 1);
+                }
+            }
+            else
+            {
+                super.startElement(uri, localName, name, atts);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String name) throws SAXException
+        {
+            if (localName.equals("td"))
+            {
+                needsComma = true;
+                inCell = false;
+            }
+            else
+            {
+                if (localName.equals("tr"))
+                {
+                    needsComma = false;
+                }
+                super.endElement(uri, localName, name);
+            }
+        }
+    }
+}
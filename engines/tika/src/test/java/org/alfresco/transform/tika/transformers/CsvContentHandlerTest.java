@@ -0,0 +1,138 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.transformers;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.SAXException;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the CSV written by {@link Tika.CsvContentHandler} for the table SAX events produced by spreadsheet parsers.
+ */
+public class CsvContentHandlerTest
+{
+    private static List<String> toCsv(String[][] rows) throws SAXException
+    {
+        return toCsv(rows, false);
+    }
+
+    // Returns the non-blank lines, as the XHTMLContentHandler adds new lines around block elements. Spreadsheet
+    // parsers separate cells with tabs as ignorable whitespace, which a ForkParser passes on as characters.
+    private static List<String> toCsv(String[][] rows, boolean forked) throws SAXException
+    {
+        StringWriter writer = new StringWriter();
+        XHTMLContentHandler xhtml = new XHTMLContentHandler(new Tika.CsvContentHandler(writer, forked),
+            new Metadata());
+        xhtml.startDocument();
+        xhtml.startElement("table");
+        for (String[] row : rows)
+        {
+            xhtml.startElement("tr");
+            for (String cell : row)
+            {
+                xhtml.startElement("td");
+                xhtml.characters(cell);
+                xhtml.endElement("td");
+                if (forked)
+                {
+                    xhtml.characters("\t");
+                }
+                else
+                {
+                    xhtml.ignorableWhitespace(new char[]{'\t'}, 0, 1);
+                }
+            }
+            xhtml.endElement("tr");
+        }
+        xhtml.endElement("table");
+        xhtml.endDocument();
+        return writer.toString().lines().filter(line -> !line.isBlank()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testNumbersAreNotQuoted() throws Exception
+    {
+        assertEquals(List.of("1,-2.5,+3,1.2.3"), toCsv(new String[][]{{"1", "-2.5", "+3", "1.2.3"}}));
+    }
+
+    @Test
+    public void testTextIsQuoted() throws Exception
+    {
+        assertEquals(List.of("\"The\",\"quick\",\"1e3\",\"12 34\",\"£5\""),
+            toCsv(new String[][]{{"The", "quick", "1e3", "12 34", "£5"}}));
+    }
+
+    @Test
+    public void testDoubleQuotesAreDoubled() throws Exception
+    {
+        assertEquals(List.of("\"say \"\"hi\"\"\",\"\"\"\"\"\""), toCsv(new String[][]{{"say \"hi\"", "\"\""}}));
+    }
+
+    @Test
+    public void testRows() throws Exception
+    {
+        assertEquals(List.of("\"a\",1", "\"b\",2"), toCsv(new String[][]{{"a", "1"}, {"b", "2"}}));
+    }
+
+    @Test
+    public void testLongCell() throws Exception
+    {
+        String cell = "\"x".repeat(1000);
+        assertEquals(List.of("\"" + cell.replace("\"", "\"\"") + "\""), toCsv(new String[][]{{cell}}));
+    }
+
+    @Test
+    public void testForkedRows() throws Exception
+    {
+        assertEquals(List.of("\"a\",1", "\"b\",2"), toCsv(new String[][]{{"a", "1"}, {"b", "2"}}, true));
+    }
+
+    @Test
+    public void testTabCharactersOutsideCellsAreKeptUnlessForked() throws Exception
+    {
+        for (boolean forked : new boolean[]{false, true})
+        {
+            StringWriter writer = new StringWriter();
+            XHTMLContentHandler xhtml = new XHTMLContentHandler(new Tika.CsvContentHandler(writer, forked),
+                new Metadata());
+            xhtml.startDocument();
+            xhtml.element("p", "a");
+            xhtml.characters("\t");
+            xhtml.element("p", "b");
+            xhtml.endDocument();
+
+            assertEquals(forked ? "a\nb\n" : "a\n\tb\n", writer.toString());
+        }
+    }
+}
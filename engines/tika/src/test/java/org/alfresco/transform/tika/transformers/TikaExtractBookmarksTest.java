@@ -79,8 +79,8 @@ public class TikaExtractBookmarksTest
         String defaultEncoding = "UTF-8";
 
         // no need to continue execution passed here or check values as we're checking the correct params passed to this method later.
-        lenient().doNothing().when(executorSpyDefaultTrue).call(any(), any(), any(), any(), any(), any());
-        lenient().doNothing().when(executorSpyDefaultFalse).call(any(), any(), any(), any(), any(), any());
+        lenient().doReturn(false).when(executorSpyDefaultTrue).call(any(), any(), any(), any(), any(), any());
+        lenient().doReturn(false).when(executorSpyDefaultFalse).call(any(), any(), any(), any(), any(), any());
 
         Map<String, String> transformOptions = new HashMap<>();
 
@@ -0,0 +1,242 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.transformers;
+
+import org.alfresco.transform.base.TransformManager;
+import org.alfresco.transform.exceptions.TransformException;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_OPENXML_WORDPROCESSING;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_TEXT_PLAIN;
+import static org.alfresco.transform.common.RequestParamMap.FRAGMENT_SIZE;
+import static org.alfresco.transform.common.RequestParamMap.MAX_CHARS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Tests splitting the target of a Tika transform into fragments with the {@code fragmentSize} transform option.
+ */
+public class TikaFragmentsTest
+{
+    // Records the fragments sent, in the same way as the TransformManager
+    private static class Fragments implements Tika.FragmentResponder
+    {
+        private final List<byte[]> fragments = new ArrayList<>();
+        private final List<String> responses = new ArrayList<>();
+        private ByteArrayOutputStream current = new ByteArrayOutputStream();
+
+        @Override
+        public OutputStream respondWithFragment(Integer index, boolean finished)
+        {
+            fragments.add(current.toByteArray());
+            responses.add(index + (finished ? " finished" : ""));
+            current = finished ? null : new ByteArrayOutputStream();
+            return current;
+        }
+
+        private List<String> getFragments()
+        {
+            return fragments.stream().map(bytes -> new String(bytes, UTF_8)).collect(Collectors.toList());
+        }
+    }
+
+    private static Fragments write(int fragmentSize, String... writes) throws IOException
+    {
+        Fragments fragments = new Fragments();
+        Tika.FragmentedOutputStream outputStream = new Tika.FragmentedOutputStream(fragments.current, fragments,
+            fragmentSize, true);
+        for (String text : writes)
+        {
+            outputStream.write(text.getBytes(UTF_8));
+        }
+        outputStream.close();
+        outputStream.finish();
+        return fragments;
+    }
+
+    @Test
+    public void testFixedSizeFragments() throws Exception
+    {
+        Fragments fragments = write(4, "abcdef", "ghij");
+
+        assertEquals(List.of("abcd", "efgh", "ij"), fragments.getFragments());
+        assertEquals(List.of("0", "1", "2 finished"), fragments.responses);
+    }
+
+    @Test
+    public void testNoEmptyFinalFragment() throws Exception
+    {
+        Fragments fragments = write(4, "abcd", "efgh");
+
+        assertEquals(List.of("abcd", "efgh"), fragments.getFragments());
+        assertEquals(List.of("0", "1 finished"), fragments.responses);
+    }
+
+    @Test
+    public void testNoOutput() throws Exception
+    {
+        Fragments fragments = write(4);
+
+        assertEquals(List.of(""), fragments.getFragments());
+        assertEquals(List.of("0 finished"), fragments.responses);
+    }
+
+    @Test
+    public void testSplitAtTheStartOfACharacter() throws Exception
+    {
+        // é is 2 bytes and € 3 bytes in UTF-8
+        Fragments fragments = write(4, "abcéd", "€€");
+
+        assertEquals(List.of("abc", "éd", "€", "€"), fragments.getFragments());
+    }
+
+    @Test
+    public void testCharacterLargerThanAFragment() throws Exception
+    {
+        Fragments fragments = write(2, "€a");
+
+        assertEquals(List.of("€", "a"), fragments.getFragments());
+    }
+
+    @Test
+    public void testCloseDoesNotSendAFragment() throws Exception
+    {
+        Fragments fragments = new Fragments();
+        Tika.FragmentedOutputStream outputStream = new Tika.FragmentedOutputStream(fragments.current, fragments, 4,
+            true);
+        outputStream.write("abcdef".getBytes(UTF_8));
+        outputStream.close();
+
+        assertEquals(List.of("abcd"), fragments.getFragments());
+        assertEquals(List.of("0"), fragments.responses);
+    }
+
+    private static TikaAutoTransformer createTransformer() throws Exception
+    {
+        TikaAutoTransformer transformer = new TikaAutoTransformer();
+        ReflectionTestUtils.setField(transformer, "tika", new Tika());
+        return transformer;
+    }
+
+    private Fragments transform(Map<String, String> transformOptions, TransformManager transformManager)
+        throws Exception
+    {
+        Fragments fragments = new Fragments();
+        when(transformManager.canRespondWithFragments()).thenReturn(true);
+        when(transformManager.respondWithFragment(any(), anyBoolean())).thenAnswer(invocation ->
+            fragments.respondWithFragment(invocation.getArgument(0), invocation.getArgument(1)));
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("quick.docx"))
+        {
+            createTransformer().transform(MIMETYPE_OPENXML_WORDPROCESSING, inputStream, MIMETYPE_TEXT_PLAIN,
+                fragments.current, transformOptions, transformManager);
+        }
+        return fragments;
+    }
+
+    @Test
+    public void testTransform() throws Exception
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("quick.docx"))
+        {
+            createTransformer().transform(MIMETYPE_OPENXML_WORDPROCESSING, inputStream, MIMETYPE_TEXT_PLAIN,
+                outputStream, Map.of(), mock(TransformManager.class));
+        }
+        String expected = outputStream.toString(UTF_8);
+
+        Fragments fragments = transform(Map.of(FRAGMENT_SIZE, "16"), mock(TransformManager.class));
+
+        assertTrue(fragments.fragments.size() > 2, "Expected several fragments, but there were " +
+            fragments.fragments.size());
+        fragments.fragments.subList(0, fragments.fragments.size() - 1)
+            .forEach(fragment -> assertEquals(16, fragment.length));
+        assertEquals(expected, String.join("", fragments.getFragments()));
+    }
+
+    @Test
+    public void testTruncatedBeforeFinalFragment() throws Exception
+    {
+        TransformManager transformManager = mock(TransformManager.class);
+        Fragments fragments = transform(Map.of(FRAGMENT_SIZE, "16", MAX_CHARS, "40"), transformManager);
+
+        assertEquals(List.of("0", "1", "2 finished"), fragments.responses);
+        assertEquals(40, String.join("", fragments.getFragments()).length());
+        InOrder inOrder = inOrder(transformManager);
+        inOrder.verify(transformManager).setTargetTruncated();
+        inOrder.verify(transformManager).respondWithFragment(eq(2), eq(true));
+    }
+
+    @Test
+    public void testInvalidFragmentSize() throws Exception
+    {
+        TransformManager transformManager = mock(TransformManager.class);
+
+        assertThrows(TransformException.class, () -> transform(Map.of(FRAGMENT_SIZE, "0"), transformManager));
+        verify(transformManager, never()).respondWithFragment(any(), anyBoolean());
+    }
+
+    @Test
+    public void testFragmentsRejectedForHttpRequests() throws Exception
+    {
+        TransformManager transformManager = mock(TransformManager.class);
+        Tika tika = mock(Tika.class);
+        TikaAutoTransformer transformer = new TikaAutoTransformer();
+        ReflectionTestUtils.setField(transformer, "tika", tika);
+
+        TransformException e = assertThrows(TransformException.class, () -> transformer.transform(
+            MIMETYPE_OPENXML_WORDPROCESSING, new ByteArrayInputStream(new byte[0]), MIMETYPE_TEXT_PLAIN,
+            new ByteArrayOutputStream(), Map.of(FRAGMENT_SIZE, "16"), transformManager));
+
+        assertEquals(BAD_REQUEST, e.getStatus());
+        verifyNoInteractions(tika);
+        verify(transformManager, never()).respondWithFragment(any(), anyBoolean());
+    }
+}
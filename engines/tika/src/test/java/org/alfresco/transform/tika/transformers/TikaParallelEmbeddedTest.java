@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.transformers;
+
+import org.alfresco.transform.tika.parsers.ParallelEmbeddedParsers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_TEXT_PLAIN;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_XHTML;
+import static org.alfresco.transform.tika.transformers.Tika.INCLUDE_CONTENTS;
+import static org.alfresco.transform.tika.transformers.Tika.MAX_BYTES;
+import static org.alfresco.transform.tika.transformers.Tika.MAX_CHARS;
+import static org.alfresco.transform.tika.transformers.Tika.TARGET_ENCODING;
+import static org.alfresco.transform.tika.transformers.Tika.TARGET_MIMETYPE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that parsing the documents embedded in an archive in parallel produces the same output as parsing them one
+ * after another.
+ */
+public class TikaParallelEmbeddedTest
+{
+    private static final String[] FILES = {"quick.docx", "quick.pdf", "quick.txt", "quick.html", "quick.doc",
+        "quick.zip", "quick.xlsx", "quick.odt"};
+
+    private final Tika tika = new Tika();
+    private ParallelEmbeddedParsers parallelEmbeddedParsers;
+    private byte[] zip;
+
+    public TikaParallelEmbeddedTest() throws Exception
+    {
+    }
+
+    @BeforeEach
+    public void before() throws IOException
+    {
+        parallelEmbeddedParsers = createParallelEmbeddedParsers(4, 0);
+        zip = createZip(5);
+    }
+
+    @AfterEach
+    public void after()
+    {
+        ReflectionTestUtils.invokeMethod(parallelEmbeddedParsers, "close");
+    }
+
+    private static ParallelEmbeddedParsers createParallelEmbeddedParsers(int parallelism, int maxPending)
+    {
+        ParallelEmbeddedParsers parallelEmbeddedParsers = new ParallelEmbeddedParsers();
+        ReflectionTestUtils.setField(parallelEmbeddedParsers, "transformers", "Archive");
+        ReflectionTestUtils.setField(parallelEmbeddedParsers, "parallelism", parallelism);
+        ReflectionTestUtils.setField(parallelEmbeddedParsers, "maxPending", maxPending);
+        ReflectionTestUtils.invokeMethod(parallelEmbeddedParsers, "init");
+        return parallelEmbeddedParsers;
+    }
+
+    private byte[] createZip(int copies) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(bytes))
+        {
+            for (int i = 0; i < copies; i++)
+            {
+                for (String file : FILES)
+                {
+                    zipOutputStream.putNextEntry(new ZipEntry(i + "/" + file));
+                    try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(file))
+                    {
+                        inputStream.transferTo(zipOutputStream);
+                    }
+                    zipOutputStream.closeEntry();
+                }
+                zipOutputStream.putNextEntry(new ZipEntry(i + "/entry.txt"));
+                zipOutputStream.write(("Entry " + i).getBytes(UTF_8));
+                zipOutputStream.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private String transform(ParallelEmbeddedParsers parallelEmbeddedParsers, String... args)
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        tika.transform(Tika.packageParser, null, parallelEmbeddedParsers, new ByteArrayInputStream(zip),
+            outputStream, args);
+        return outputStream.toString(UTF_8);
+    }
+
+    @Test
+    public void testSameTextAsSequential()
+    {
+        String[] args = {INCLUDE_CONTENTS, TARGET_MIMETYPE + MIMETYPE_TEXT_PLAIN, TARGET_ENCODING + "UTF-8"};
+        String expected = transform(null, args);
+
+        assertTrue(expected.indexOf("Entry 0") < expected.indexOf("Entry 4"));
+        assertTrue(expected.contains("The quick brown fox jumps over the lazy dog"));
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(expected, transform(parallelEmbeddedParsers, args));
+        }
+    }
+
+    @Test
+    public void testSameXhtmlAsSequential()
+    {
+        String[] args = {INCLUDE_CONTENTS, TARGET_MIMETYPE + MIMETYPE_XHTML, TARGET_ENCODING + "UTF-8"};
+
+        assertEquals(transform(null, args), transform(parallelEmbeddedParsers, args));
+    }
+
+    @Test
+    public void testWaitsForTheOldestDocument()
+    {
+        ParallelEmbeddedParsers oneAtATime = createParallelEmbeddedParsers(2, 1);
+        try
+        {
+            String[] args = {INCLUDE_CONTENTS, TARGET_MIMETYPE + MIMETYPE_TEXT_PLAIN, TARGET_ENCODING + "UTF-8"};
+
+            assertEquals(transform(null, args), transform(oneAtATime, args));
+        }
+        finally
+        {
+            ReflectionTestUtils.invokeMethod(oneAtATime, "close");
+        }
+    }
+
+    @Test
+    public void testMaxChars()
+    {
+        String[] args = {INCLUDE_CONTENTS, TARGET_MIMETYPE + MIMETYPE_TEXT_PLAIN, TARGET_ENCODING + "UTF-8",
+            MAX_CHARS + "1000"};
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        boolean truncated = tika.transform(Tika.packageParser, null, parallelEmbeddedParsers,
+            new ByteArrayInputStream(zip), outputStream, args);
+
+        assertTrue(truncated);
+        assertEquals(transform(null, args), outputStream.toString(UTF_8));
+    }
+
+    @Test
+    public void testMaxBytes()
+    {
+        String[] args = {INCLUDE_CONTENTS, TARGET_MIMETYPE + MIMETYPE_TEXT_PLAIN, TARGET_ENCODING + "UTF-8",
+            MAX_BYTES + "1000"};
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        boolean truncated = tika.transform(Tika.packageParser, null, parallelEmbeddedParsers,
+            new ByteArrayInputStream(zip), outputStream, args);
+
+        assertTrue(truncated);
+        assertEquals(transform(null, args), outputStream.toString(UTF_8));
+    }
+
+    @Test
+    public void testContentsNotIncluded()
+    {
+        String[] args = {TARGET_MIMETYPE + MIMETYPE_TEXT_PLAIN, TARGET_ENCODING + "UTF-8"};
+        String output = transform(parallelEmbeddedParsers, args);
+
+        assertEquals(transform(null, args), output);
+        assertFalse(output.contains("The quick brown fox"));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * #%L
+ * Alfresco Transform Core
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.tika.transformers;
+
+import org.apache.tika.extractor.DocumentSelector;
+import org.apache.tika.parser.EmptyParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.parser.pdf.PDFParserConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.alfresco.transform.tika.transformers.Tika.pdfBoxEmbededDocumentSelector;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests the ParseContexts built by {@link Tika} from shared templates.
+ */
+public class TikaParseContextTest
+{
+    private final Tika tika = new Tika();
+
+    public TikaParseContextTest() throws Exception
+    {
+    }
+
+    private ParseContext buildParseContext(DocumentSelector documentSelector, Boolean includeContents,
+        Boolean notExtractBookmarksText)
+    {
+        return ReflectionTestUtils.invokeMethod(tika, "buildParseContext", documentSelector, includeContents,
+            notExtractBookmarksText);
+    }
+
+    @Test
+    public void testDefaultContext()
+    {
+        ParseContext context = buildParseContext(null, null, false);
+
+        assertNull(context.get(DocumentSelector.class));
+        assertNull(context.get(PDFParserConfig.class));
+        assertNull(context.get(Parser.class));
+    }
+
+    @Test
+    public void testOptions()
+    {
+        assertSame(pdfBoxEmbededDocumentSelector,
+            buildParseContext(pdfBoxEmbededDocumentSelector, null, false).get(DocumentSelector.class));
+        assertSame(tika.autoDetectParser, buildParseContext(null, true, false).get(Parser.class));
+        assertSame(EmptyParser.INSTANCE, buildParseContext(null, false, false).get(Parser.class));
+        assertFalse(buildParseContext(null, null, true).get(PDFParserConfig.class).isExtractBookmarksText());
+    }
+
+    @Test
+    public void testSharedPdfParserConfigIsNotChanged()
+    {
+        buildParseContext(null, null, true);
+
+        assertTrue(tika.pdfParserConfig.isExtractBookmarksText());
+    }
+
+    @Test
+    public void testEachCallGetsItsOwnContext()
+    {
+        ParseContext first = buildParseContext(pdfBoxEmbededDocumentSelector, true, true);
+        first.set(Parser.class, EmptyParser.INSTANCE);
+        first.set(DocumentSelector.class, null);
+
+        ParseContext second = buildParseContext(pdfBoxEmbededDocumentSelector, true, true);
+
+        assertNotSame(first, second);
+        assertSame(tika.autoDetectParser, second.get(Parser.class));
+        assertSame(pdfBoxEmbededDocumentSelector, second.get(DocumentSelector.class));
+    }
+}
@@ -44,6 +44,8 @@ public class InternalContext implements Serializable
     private String currentTargetMediaType;
     private String replyToDestination;
     private Long currentSourceSize;
+    private Long deadline;
+    private Boolean truncated;
     private Map<String, String> transformRequestOptions = new HashMap<>();
 
     public MultiStep getMultiStep()
@@ -117,6 +119,44 @@ public class InternalContext implements Serializable
         this.currentSourceSize = currentSourceSize;
     }
 
+    /**
+     * Gets the time by which the whole request must be completed.
+     *
+     * @return milliseconds since the epoch, or {@code null} if there is no deadline
+     */
+    public Long getDeadline()
+    {
+        return deadline;
+    }
+
+    /**
+     * Sets the time by which the whole request must be completed. T-Engines give up on the request once it has passed,
+     * including if it is still waiting on a queue.
+     *
+     * @param deadline milliseconds since the epoch, or {@code null} if there is no deadline
+     */
+    public void setDeadline(Long deadline)
+    {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Indicates that the target of a transform only contains the start of the transformed content, because a limit
+     * such as the {@code maxChars} transform option was reached. Once set, it remains set in later steps of a
+     * pipeline.
+     *
+     * @return {@code true} if the content was truncated, otherwise {@code null}
+     */
+    public Boolean getTruncated()
+    {
+        return truncated;
+    }
+
+    public void setTruncated(Boolean truncated)
+    {
+        this.truncated = truncated;
+    }
+
     public Map<String, String> getTransformRequestOptions()
     {
         return transformRequestOptions;
@@ -137,6 +177,8 @@ public class InternalContext implements Serializable
                ", currentTargetMediaType='" + currentTargetMediaType + '\'' +
                ", replyToDestination='" + replyToDestination + '\'' +
                ", currentSourceSize=" + currentSourceSize +
+               ", deadline=" + deadline +
+               ", truncated=" + truncated +
                ", transformRequestOptions=" + transformRequestOptions +
                '}';
     }
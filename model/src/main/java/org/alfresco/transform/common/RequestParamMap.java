@@ -64,10 +64,15 @@ public interface RequestParamMap
     String INCLUDE_CONTENTS        = "includeContents";
     String NOT_EXTRACT_BOOKMARKS_TEXT = "notExtractBookmarksText";
     String PAGE_LIMIT              = "pageLimit";
+    String PAGE_RANGE              = "pageRange";
     String PDF_FORMAT              = "pdfFormat";
     String PDF_ORIENTATION         = "pdfOrientation";
     String PDF_FONT                = "pdfFont";
     String PDF_FONT_SIZE           = "pdfFontSize";
+    String MAX_CHARS               = "maxChars";
+    String MAX_BYTES               = "maxBytes";
+    String FRAGMENT_SIZE           = "fragmentSize";
+    String INCLUDE_TEXT            = "includeText";
 
     // Parameters interpreted by the TransformController
     String DIRECT_ACCESS_URL       = "directAccessUrl";
@@ -79,6 +84,9 @@ public interface RequestParamMap
     String CONFIG_VERSION_DEFAULT  = "1";
     int    CONFIG_VERSION_LATEST   = CoreVersionDecorator.CONFIG_VERSION_INCLUDES_CORE_VERSION;
 
+    // Set to "true" on synchronous (http) responses, if the target only contains the start of the transformed content.
+    String TARGET_TRUNCATED_HEADER = "X-Alfresco-Transform-Truncated";
+
     // Endpoints
     String ENDPOINT_TRANSFORM = "/transform";
     String ENDPOINT_TEST = "/test";
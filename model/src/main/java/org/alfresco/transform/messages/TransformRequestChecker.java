@@ -0,0 +1,104 @@
+/*
+ * #%L
+ * Alfresco Transform Model
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.messages;
+
+import org.alfresco.transform.client.model.InternalContext;
+import org.alfresco.transform.client.model.TransformRequest;
+
+/**
+ * Single pass check of a {@link TransformRequest} received by a T-Engine. It applies the same rules as the
+ * {@link TransformRequestValidator} and {@link InternalContext#checkForBasicErrors}, but works directly on the
+ * parsed request rather than via Spring binding objects, so is cheap enough to be called for every message.
+ */
+public final class TransformRequestChecker
+{
+    private TransformRequestChecker()
+    {
+    }
+
+    /**
+     * @param request the request to check.
+     * @param type used as a prefix in the InternalContext error message, normally {@code "T-Request"}.
+     * @return {@code null} if the request is valid, otherwise a comma separated list of the problems found.
+     */
+    public static String check(TransformRequest request, String type)
+    {
+        if (request == null)
+        {
+            return "request cannot be null";
+        }
+
+        StringBuilder errors = null;
+        if (isEmpty(request.getRequestId()))
+        {
+            errors = add(errors, "requestId cannot be null or empty");
+        }
+        Long sourceSize = request.getSourceSize();
+        if (sourceSize == null || sourceSize <= 0)
+        {
+            errors = add(errors, "sourceSize cannot be null or have its value smaller than 0");
+        }
+        if (isEmpty(request.getSourceMediaType()))
+        {
+            errors = add(errors, "sourceMediaType cannot be null or empty");
+        }
+        if (isEmpty(request.getTargetMediaType()))
+        {
+            errors = add(errors, "targetMediaType cannot be null or empty");
+        }
+        if (isEmpty(request.getTargetExtension()))
+        {
+            errors = add(errors, "targetExtension cannot be null or empty");
+        }
+        if (isEmpty(request.getClientData()))
+        {
+            errors = add(errors, "clientData cannot be null or empty");
+        }
+        if (request.getSchema() < 0)
+        {
+            errors = add(errors, "schema cannot be less than 0");
+        }
+        String internalContextError = InternalContext.checkForBasicErrors(request.getInternalContext(), type);
+        if (internalContextError != null)
+        {
+            errors = add(errors, internalContextError);
+        }
+        return errors == null ? null : errors.toString();
+    }
+
+    private static boolean isEmpty(String value)
+    {
+        return value == null || value.isEmpty();
+    }
+
+    private static StringBuilder add(StringBuilder errors, String error)
+    {
+        return errors == null
+                ? new StringBuilder(error)
+                : errors.append(", ").append(error);
+    }
+}
@@ -73,6 +73,7 @@ public class TransformStack
 
     public static final String SEPARATOR = "\u23D0";
     private static final String SEPARATOR_REGEX = "\u23D0";
+    private static final char SEPARATOR_CHAR = '\u23D0';
 
     static final int OPTIONS_LEVEL = 0;
     static final int SOURCE_REFERENCE_LEVEL = 1;
@@ -464,6 +465,9 @@ public class TransformStack
         return errorMessage;
     }
 
+    // The following checks are made on every request and reply, so each level is scanned rather than split.
+    // Fields are counted in the same way as String.split, which ignores trailing empty fields.
+
     private static boolean validTransformOptions(InternalContext internalContext)
     {
         String keysAndValues = level(internalContext, OPTIONS_LEVEL);
@@ -471,23 +475,24 @@ public class TransformStack
         {
             return false;
         }
-        if ("".equals(keysAndValues))
+        int end = endIgnoringTrailingSeparators(keysAndValues);
+        if (end == 0)
         {
             return true;
         }
-        String[] split = keysAndValues.split(SEPARATOR_REGEX);
-        if (split.length%2 != 0)
-        {
-            return false;
-        }
-        for (int i = split.length-2; i >= 0; i-=2)
+        for (int start = 0, fieldCount = 0; ; fieldCount++)
         {
-            if (split[i].isEmpty())
+            int fieldEnd = fieldEnd(keysAndValues, start, end);
+            if (fieldCount%2 == 0 && fieldEnd == start) // an empty key
             {
                 return false;
             }
+            if (fieldEnd == end)
+            {
+                return (fieldCount+1)%2 == 0;
+            }
+            start = fieldEnd+1;
         }
-        return true;
     }
 
     private static boolean validLevels(List<String> levels)
@@ -509,56 +514,100 @@ public class TransformStack
         {
             return false;
         }
-        String[] split = level.split(SEPARATOR_REGEX);
-        if (split.length   <  FIELDS_IN_HEADER+FIELDS_PER_STEP || // must be at least 1 step
-            (split.length-FIELDS_IN_HEADER)%FIELDS_PER_STEP != 0 ||
-            (!PIPELINE_FLAG.equals(split[FLAG_INDEX]) &&
-             !FAILOVER_FLAG.equals(split[FLAG_INDEX])) ||
-            !aValidReference(split[REFERENCE_INDEX]) ||
-            !aPositiveLong(split[START_INDEX]) ||
-            !aPositiveInt(split[RETRY_INDEX]))
+        int end = endIgnoringTrailingSeparators(level);
+        if (end == 0)
         {
             return false;
         }
-
-        for (int i=split.length-1; i>=FIELDS_IN_HEADER; i--)
+        for (int start = 0, fieldCount = 0; ; fieldCount++)
         {
-            if (split[i].isBlank())
+            int fieldEnd = fieldEnd(level, start, end);
+            boolean valid =
+                fieldCount == FLAG_INDEX      ? aValidFlag(level, start, fieldEnd) :
+                fieldCount == REFERENCE_INDEX ? aValidReference(level, start, fieldEnd) :
+                fieldCount == START_INDEX     ? aPositiveNumber(level, start, fieldEnd, Long.MAX_VALUE) :
+                fieldCount == RETRY_INDEX     ? aPositiveNumber(level, start, fieldEnd, Integer.MAX_VALUE) :
+                                                notBlank(level, start, fieldEnd);
+            if (!valid)
             {
                 return false;
             }
+            if (fieldEnd == end)
+            {
+                int fields = fieldCount+1;
+                return fields >= FIELDS_IN_HEADER+FIELDS_PER_STEP && // must be at least 1 step
+                       (fields-FIELDS_IN_HEADER)%FIELDS_PER_STEP == 0;
+            }
+            start = fieldEnd+1;
         }
+    }
 
-        return true;
+    private static int endIgnoringTrailingSeparators(String string)
+    {
+        int end = string.length();
+        while (end > 0 && string.charAt(end-1) == SEPARATOR_CHAR)
+        {
+            end--;
+        }
+        return end;
+    }
+
+    private static int fieldEnd(String string, int start, int end)
+    {
+        int i = string.indexOf(SEPARATOR_CHAR, start);
+        return i == -1 || i > end ? end : i;
     }
 
-    private static boolean aValidReference(String string)
+    private static boolean aValidFlag(String string, int start, int end)
     {
-        string = string.startsWith("e") ? string.substring(1) : string;
-        return aPositiveInt(string);
+        return end-start == 1 &&
+               (string.charAt(start) == PIPELINE_FLAG.charAt(0) || string.charAt(start) == FAILOVER_FLAG.charAt(0));
     }
 
-    private static boolean aPositiveInt(String string)
+    private static boolean aValidReference(String string, int start, int end)
     {
-        try
+        if (start < end && string.charAt(start) == 'e')
         {
-            return Integer.valueOf(string).toString().equals(string) && Integer.valueOf(string) >= 0;
+            start++;
         }
-        catch (NumberFormatException e)
+        return aPositiveNumber(string, start, end, Integer.MAX_VALUE);
+    }
+
+    // Only the canonical form is accepted (no sign or leading zeros), as values are written back with toString().
+    private static boolean aPositiveNumber(String string, int start, int end, long max)
+    {
+        int length = end-start;
+        if (length == 0 || (length > 1 && string.charAt(start) == '0'))
         {
             return false;
         }
+        long value = 0;
+        for (int i = start; i < end; i++)
+        {
+            char c = string.charAt(i);
+            if (c < '0' || c > '9')
+            {
+                return false;
+            }
+            int digit = c - '0';
+            if (value > (max-digit)/10)
+            {
+                return false;
+            }
+            value = value*10 + digit;
+        }
+        return true;
     }
 
-    private static boolean aPositiveLong(String string)
+    private static boolean notBlank(String string, int start, int end)
     {
-        try
+        for (int i = start; i < end; i++)
         {
-            return Long.valueOf(string).toString().equals(string) && Long.valueOf(string) >= 0;
-        }
-        catch (NumberFormatException e)
-        {
-            return false;
+            if (!Character.isWhitespace(string.charAt(i)))
+            {
+                return true;
+            }
         }
+        return false;
     }
 }
@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * Alfresco Transform Model
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.messages;
+
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_IMAGE_PNG;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_PDF;
+import static org.alfresco.transform.common.Mimetype.MIMETYPE_TEXT_PLAIN;
+import static org.alfresco.transform.messages.TransformStack.PIPELINE_FLAG;
+import static org.alfresco.transform.messages.TransformStack.SEPARATOR;
+import static org.alfresco.transform.messages.TransformStack.levelBuilder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.alfresco.transform.client.model.InternalContext;
+import org.alfresco.transform.client.model.TransformRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.validation.DirectFieldBindingResult;
+import org.springframework.validation.Errors;
+import org.springframework.validation.ObjectError;
+
+/**
+ * Checks that {@link TransformRequestChecker} reports the same problems as {@link TransformRequestValidator} and
+ * {@link InternalContext#checkForBasicErrors}.
+ */
+public class TransformRequestCheckerTest
+{
+    private final TransformRequestValidator validator = new TransformRequestValidator();
+
+    static TransformRequest singleStepRequest()
+    {
+        return TransformRequest.builder()
+            .withRequestId("1")
+            .withSourceReference("sourceReference")
+            .withSourceSize(1234L)
+            .withSourceMediaType(MIMETYPE_PDF)
+            .withTargetMediaType(MIMETYPE_IMAGE_PNG)
+            .withTargetExtension("png")
+            .withClientData("clientData")
+            .withSchema(1)
+            .withInternalContextForTransformEngineTests()
+            .build();
+    }
+
+    static TransformRequest threeLevelPipelineRequest()
+    {
+        TransformRequest request = singleStepRequest();
+        TransformStack.addTransformLevel(request.getInternalContext(), levelBuilder(PIPELINE_FLAG)
+            .withStep("pdfToText", MIMETYPE_PDF, MIMETYPE_TEXT_PLAIN)
+            .withStep("textToPng", MIMETYPE_TEXT_PLAIN, MIMETYPE_IMAGE_PNG));
+        TransformStack.addTransformLevel(request.getInternalContext(), levelBuilder(PIPELINE_FLAG)
+            .withStep("pdfToHtml", MIMETYPE_PDF, "text/html")
+            .withStep("htmlToText", "text/html", MIMETYPE_TEXT_PLAIN));
+        return request;
+    }
+
+    private String validatorErrors(TransformRequest request)
+    {
+        Errors errors = new DirectFieldBindingResult(request, "request");
+        validator.validate(request, errors);
+        List<String> messages = errors.getAllErrors().stream()
+            .map(ObjectError::getDefaultMessage)
+            .collect(Collectors.toList());
+        String internalContextError = request == null
+            ? null
+            : InternalContext.checkForBasicErrors(request.getInternalContext(), "T-Request");
+        if (internalContextError != null)
+        {
+            messages.add(internalContextError);
+        }
+        return messages.isEmpty() ? null : String.join(", ", messages);
+    }
+
+    private void assertSameAsValidator(TransformRequest request)
+    {
+        assertEquals(validatorErrors(request), TransformRequestChecker.check(request, "T-Request"));
+    }
+
+    @Test
+    public void testValidRequests()
+    {
+        assertNull(TransformRequestChecker.check(singleStepRequest(), "T-Request"));
+        assertNull(TransformRequestChecker.check(threeLevelPipelineRequest(), "T-Request"));
+        assertSameAsValidator(singleStepRequest());
+        assertSameAsValidator(threeLevelPipelineRequest());
+    }
+
+    @Test
+    public void testNullRequest()
+    {
+        assertEquals("request cannot be null", TransformRequestChecker.check(null, "T-Request"));
+        assertSameAsValidator(null);
+    }
+
+    @Test
+    public void testEmptyRequest()
+    {
+        TransformRequest request = new TransformRequest();
+        request.setSchema(-1);
+
+        assertEquals("requestId cannot be null or empty, " +
+                "sourceSize cannot be null or have its value smaller than 0, " +
+                "sourceMediaType cannot be null or empty, " +
+                "targetMediaType cannot be null or empty, " +
+                "targetExtension cannot be null or empty, " +
+                "clientData cannot be null or empty, " +
+                "schema cannot be less than 0, " +
+                "T-Request InternalContext was null",
+            TransformRequestChecker.check(request, "T-Request"));
+        assertSameAsValidator(request);
+    }
+
+    @Test
+    public void testSingleMissingField()
+    {
+        TransformRequest request = singleStepRequest();
+        request.setSourceSize(0L);
+        assertSameAsValidator(request);
+
+        request = singleStepRequest();
+        request.setTargetExtension("");
+        assertEquals("targetExtension cannot be null or empty", TransformRequestChecker.check(request, "T-Request"));
+        assertSameAsValidator(request);
+    }
+
+    @Test
+    public void testBadInternalContext()
+    {
+        TransformRequest request = threeLevelPipelineRequest();
+        List<String> levels = request.getInternalContext().getMultiStep().getTransformsToBeDone();
+        levels.set(levels.size()-1, "P" + SEPARATOR + "1" + SEPARATOR + "0" + SEPARATOR + "0" + SEPARATOR + "name");
+
+        assertEquals("T-Request InternalContext did not have levels set correctly",
+            TransformRequestChecker.check(request, "T-Request"));
+        assertSameAsValidator(request);
+
+        request = singleStepRequest();
+        request.getInternalContext().getMultiStep().setInitialRequestId(null);
+        assertSameAsValidator(request);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * Alfresco Transform Model
+ * %%
+ * Copyright (C) 2005 - 2023 Alfresco Software Limited
+ * %%
+ * This file is part of the Alfresco software.
+ * -
+ * If the software was purchased under a paid Alfresco license, the terms of
+ * the paid license agreement will prevail.  Otherwise, the software is
+ * provided under the following open source license terms:
+ * -
+ * Alfresco is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * -
+ * Alfresco is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * -
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Alfresco. If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.alfresco.transform.messages;
+
+import static org.alfresco.transform.messages.TransformRequestCheckerTest.singleStepRequest;
+import static org.alfresco.transform.messages.TransformRequestCheckerTest.threeLevelPipelineRequest;
+
+import java.util.concurrent.TimeUnit;
+
+import org.alfresco.transform.client.model.InternalContext;
+import org.alfresco.transform.client.model.TransformRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.validation.DirectFieldBindingResult;
+import org.springframework.validation.Errors;
+
+/**
+ * Per message validation cost of a T-Engine request, comparing the Spring {@link TransformRequestValidator} plus
+ * {@link InternalContext#checkForBasicErrors} with the single pass {@link TransformRequestChecker}. Not run as
+ * part of the build. Run the {@link #main} method from the test classpath (for example from an IDE) and compare
+ * the average time and, if {@code -prof gc} is added, the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformRequestValidationBenchmark
+{
+    @Param({"singleStep", "threeLevelPipeline"})
+    public String requestType;
+
+    private final TransformRequestValidator validator = new TransformRequestValidator();
+    private TransformRequest request;
+
+    @Setup
+    public void setup()
+    {
+        request = "singleStep".equals(requestType) ? singleStepRequest() : threeLevelPipelineRequest();
+        if (TransformRequestChecker.check(request, "T-Request") != null)
+        {
+            throw new IllegalStateException("The benchmark request is not valid");
+        }
+    }
+
+    @Benchmark
+    public Object springValidator()
+    {
+        Errors errors = new DirectFieldBindingResult(request, "request");
+        validator.validate(request, errors);
+        String errorMessage = InternalContext.checkForBasicErrors(request.getInternalContext(), "T-Request");
+        if (errorMessage != null)
+        {
+            errors.rejectValue("internalContext", null, errorMessage);
+        }
+        return errors;
+    }
+
+    @Benchmark
+    public String singlePassChecker()
+    {
+        return TransformRequestChecker.check(request, "T-Request");
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+            .include(TransformRequestValidationBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}